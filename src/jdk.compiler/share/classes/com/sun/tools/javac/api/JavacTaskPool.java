@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.javac.api;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.code.ClassFinder;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.comp.Annotate;
+import com.sun.tools.javac.comp.ArgumentAttr;
+import com.sun.tools.javac.comp.Check;
+import com.sun.tools.javac.comp.CompileStates;
+import com.sun.tools.javac.comp.Enter;
+import com.sun.tools.javac.comp.Modules;
+import com.sun.tools.javac.main.Arguments;
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.model.JavacElements;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.util.Abort;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.DefinedBy;
+import com.sun.tools.javac.util.DefinedBy.Api;
+import com.sun.tools.javac.util.Log;
+
+/**
+ * A pool of compiler contexts that can be used for more than one task.
+ *
+ * <p>A task normally runs in a context of its own, which completes the
+ * classes the task uses from the platform and the class path, starting
+ * with java.lang, and is then thrown away. A task got from this pool runs
+ * in the context of an earlier task with the same file manager and
+ * options, if one has been released to the pool, and finds the classes
+ * that task completed ready for use. Only the sources of the task, and
+ * the classes in their packages, are entered and completed again.
+ *
+ * <p>When a task is released, the classes of the packages its sources
+ * belong to are removed from the context, so that the class files
+ * generated for them are read afresh by the next task. A context whose
+ * task compiled sources into a package of a named module is not reused.
+ *
+ * <p>A task must not be used after it has been released. Tasks that are
+ * never released are simply not reused.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+public class JavacTaskPool {
+
+    private final JavacTool tool = JavacTool.create();
+    private final int maxPoolSize;
+    private final Map<List<Object>, Deque<ReusableContext>> pool = new HashMap<>();
+
+    /**
+     * @param maxPoolSize the number of contexts kept for each combination
+     *                    of file manager and options
+     */
+    public JavacTaskPool(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Create a task, in a context released by an earlier task with the same
+     * file manager and options if there is one.
+     *
+     * @see JavacTool#getTask(Writer, JavaFileManager, DiagnosticListener,
+     *                        Iterable, Iterable, Iterable)
+     */
+    public JavacTaskImpl getTask(Writer out,
+                                 JavaFileManager fileManager,
+                                 DiagnosticListener<? super JavaFileObject> diagnosticListener,
+                                 Iterable<String> options,
+                                 Iterable<String> classes,
+                                 Iterable<? extends JavaFileObject> compilationUnits) {
+        List<Object> key = new ArrayList<>();
+        key.add(fileManager);
+        if (options != null)
+            options.forEach(key::add);
+
+        ReusableContext context = null;
+        synchronized (this) {
+            Deque<ReusableContext> contexts = pool.get(key);
+            if (contexts != null) {
+                context = contexts.poll();
+            }
+        }
+        boolean reused = context != null;
+        if (!reused) {
+            context = new ReusableContext(key);
+        }
+        JavacTaskImpl task = (JavacTaskImpl) tool.getTask(out, fileManager, diagnosticListener,
+                                                          options, classes, compilationUnits, context);
+        if (reused) {
+            // The log was created for an earlier task.
+            Log log = Log.instance(context);
+            @SuppressWarnings("unchecked")
+            DiagnosticListener<? super JavaFileObject> dl =
+                context.get(DiagnosticListener.class);
+            log.setDiagnosticListener(dl);
+            PrintWriter err = context.get(Log.errKey);
+            if (err != null)
+                log.setWriters(err);
+        }
+        MultiTaskListener.instance(context).add(context);
+        return task;
+    }
+
+    /**
+     * Return the context of a task to the pool. The task, and the trees and
+     * elements it produced, must not be used after this.
+     *
+     * @param context the context of the task, as returned by
+     *                {@link BasicJavacTask#getContext} before the task was run
+     */
+    public void release(Context context) {
+        if (!(context instanceof ReusableContext))
+            return;
+        ReusableContext rc = (ReusableContext) context;
+        if (!rc.newRound())
+            return;
+        synchronized (this) {
+            Deque<ReusableContext> contexts = pool.computeIfAbsent(rc.key, k -> new ArrayDeque<>());
+            if (contexts.size() < maxPoolSize) {
+                contexts.push(rc);
+            }
+        }
+    }
+
+    /**
+     * Discard all contexts in the pool, such as when the class path has
+     * changed.
+     */
+    public synchronized void clear() {
+        pool.clear();
+    }
+
+    /**
+     * A context that can be prepared for another task, remembering the
+     * compilation units entered by its current task.
+     */
+    static class ReusableContext extends Context implements TaskListener {
+
+        final List<Object> key;
+        private final Set<JCCompilationUnit> roots = new LinkedHashSet<>();
+
+        ReusableContext(List<Object> key) {
+            this.key = key;
+            put(JavaCompiler.compilerKey, (Factory<JavaCompiler>) ReusableJavaCompiler::new);
+        }
+
+        @Override @DefinedBy(Api.COMPILER_TREE)
+        public void started(TaskEvent e) {
+        }
+
+        @Override @DefinedBy(Api.COMPILER_TREE)
+        public void finished(TaskEvent e) {
+            if (e.getKind() == TaskEvent.Kind.ENTER && e.getCompilationUnit() != null) {
+                roots.add((JCCompilationUnit) e.getCompilationUnit());
+            }
+        }
+
+        /**
+         * Prepare the context for the next task.
+         *
+         * @return false if the context cannot be reused
+         */
+        boolean newRound() {
+            if (ht.get(JavaCompiler.compilerKey) instanceof ReusableJavaCompiler) {
+                if (!dropRootPackages())
+                    return false;
+                Log.instance(this).newRound();
+                JavaCompiler.instance(this).newRound();
+                Enter.instance(this).newRound();
+                Check.instance(this).newRound();
+                Types.instance(this).newRound();
+                Annotate.instance(this).newRound();
+                Modules.instance(this).newRound();
+                ArgumentAttr.instance(this).newRound();
+                CompileStates.instance(this).clear();
+            }
+            MultiTaskListener.instance(this).clear();
+            roots.clear();
+
+            // Forget the values specific to the task.
+            drop(Arguments.argsKey);
+            drop(DiagnosticListener.class);
+            drop(Log.outKey);
+            drop(Log.errKey);
+            drop(JavaFileManager.class);
+            drop(JavacTask.class);
+            drop(JavacTrees.class);
+            drop(JavacElements.class);
+            drop(Locale.class);
+            return true;
+        }
+
+        /**
+         * Remove the classes of the packages of the compilation units from
+         * the symbol table, to be read again when they are next used.
+         */
+        private boolean dropRootPackages() {
+            Symtab syms = Symtab.instance(this);
+            Set<PackageSymbol> packages = new LinkedHashSet<>();
+            for (JCCompilationUnit root : roots) {
+                PackageSymbol p = root.packge;
+                if (p == null)
+                    continue;
+                if (p.modle != syms.unnamedModule && p.modle != syms.noModule) {
+                    // Classes in other modules may depend on these classes.
+                    return false;
+                }
+                packages.add(p);
+            }
+            if (packages.isEmpty())
+                return true;
+            List<ClassSymbol> dropped = new ArrayList<>();
+            for (ClassSymbol c : syms.getAllClasses()) {
+                if (packages.contains(c.packge()))
+                    dropped.add(c);
+            }
+            for (ClassSymbol c : dropped) {
+                syms.removeClass(c.packge().modle, c.flatname);
+            }
+            ClassFinder finder = ClassFinder.instance(this);
+            for (PackageSymbol p : packages) {
+                p.members_field = null;
+                p.package_info = null;
+                p.completer = finder.getCompleter();
+            }
+            return true;
+        }
+
+        private <T> void drop(Key<T> k) {
+            ht.remove(k);
+        }
+
+        private <T> void drop(Class<T> c) {
+            ht.remove(key(c));
+        }
+    }
+
+    /**
+     * A compiler that stays usable after a compilation.
+     */
+    static class ReusableJavaCompiler extends JavaCompiler {
+
+        ReusableJavaCompiler(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void close() {
+            // Keep the state shared with later tasks; just flush the output.
+            log.flush();
+            try {
+                fileManager.flush();
+            } catch (IOException e) {
+                throw new Abort(e);
+            }
+        }
+    }
+}
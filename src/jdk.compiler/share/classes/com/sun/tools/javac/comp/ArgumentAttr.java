@@ -110,6 +110,11 @@ public class ArgumentAttr extends JCTree.Visitor {
     /** Cache for argument types; behavior is influences by the currrently selected cache policy. */
     Map<UniquePos, ArgumentType<?>> argumentTypeCache = new LinkedHashMap<>();
 
+    /** Forget the argument types cached for the trees of the previous compilation. */
+    public void newRound() {
+        argumentTypeCache.clear();
+    }
+
     public static ArgumentAttr instance(Context context) {
         ArgumentAttr instance = context.get(methodAttrKey);
         if (instance == null)
@@ -50,6 +50,7 @@ import com.sun.tools.javac.util.*;
 import com.sun.tools.javac.util.JCDiagnostic.DiagnosticPosition;
 import com.sun.source.tree.MemberReferenceTree.ReferenceMode;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -105,12 +106,18 @@ public class LambdaToMethod extends TreeTranslator {
     /** info about the current class being processed */
     private KlassInfo kInfo;
 
+    /** class members containing lambdas or method references; if null, all members are translated */
+    private Set<JCTree> lambdaMembers;
+
     /** dump statistics about lambda code generation */
     private final boolean dumpLambdaToMethodStats;
 
     /** force serializable representation, for stress testing **/
     private final boolean forceSerializable;
 
+    /** share one synthetic method between structurally identical lambdas of a class */
+    private final boolean deduplicateLambdas;
+
     /** Flag for alternate metafactories indicating the lambda object is intended to be serializable */
     public static final int FLAG_SERIALIZABLE = 1 << 0;
 
@@ -147,6 +154,7 @@ public class LambdaToMethod extends TreeTranslator {
         dumpLambdaToMethodStats = options.isSet("debug.dumpLambdaToMethodStats");
         attr = Attr.instance(context);
         forceSerializable = options.isSet("forceSerializable");
+        deduplicateLambdas = options.isSet("deduplicateLambdas");
     }
     // </editor-fold>
 
@@ -172,12 +180,18 @@ public class LambdaToMethod extends TreeTranslator {
          */
         private final VarSymbol deserParamSym;
 
+        /**
+         * translated lambda methods, keyed by the shape of their body and signature
+         */
+        private final Map<ArrayList<Object>, MethodSymbol> lambdaMethodsByKey;
+
         private final JCClassDecl clazz;
 
         private KlassInfo(JCClassDecl clazz) {
             this.clazz = clazz;
             appendedMethodList = new ListBuffer<>();
             deserializeCases = new HashMap<>();
+            lambdaMethodsByKey = new HashMap<>();
             MethodType type = new MethodType(List.of(syms.serializedLambdaType), syms.objectType,
                     List.nil(), syms.methodClass);
             deserMethodSym = makePrivateSyntheticMethod(STATIC, names.deserializeLambda, type, clazz.sym);
@@ -217,11 +231,47 @@ public class LambdaToMethod extends TreeTranslator {
     }
 
     public JCTree translateTopLevelClass(Env<AttrContext> env, JCTree cdef, TreeMaker make) {
+        return translateTopLevelClass(env, cdef, make, null);
+    }
+
+    /**
+     * Translate a toplevel class, only visiting those class members that are
+     * known to contain lambdas or method references. All other members are
+     * left untouched, as this translation would not change them anyway.
+     */
+    public JCTree translateTopLevelClass(Env<AttrContext> env, JCTree cdef, TreeMaker make,
+                                         Set<JCTree> lambdaMembers) {
         this.make = make;
         this.attrEnv = env;
         this.context = null;
         this.contextMap = new HashMap<>();
-        return translate(cdef);
+        this.lambdaMembers = lambdaMembers;
+        try {
+            return translate(cdef);
+        } finally {
+            this.lambdaMembers = null;
+        }
+    }
+
+    /**
+     * Translate the members of a class which contain lambdas or method
+     * references. Inside a lambda, all members of local classes are translated,
+     * as they might refer to captured variables.
+     */
+    private void translateClassBody(TreeTranslator translator, JCClassDecl tree, boolean inLambda) {
+        if (lambdaMembers == null || inLambda) {
+            tree.mods = translator.translate(tree.mods);
+            tree.typarams = translator.translateTypeParams(tree.typarams);
+            tree.extending = translator.translate(tree.extending);
+            tree.implementing = translator.translate(tree.implementing);
+            tree.defs = translator.translate(tree.defs);
+        } else {
+            for (List<JCTree> l = tree.defs; l.nonEmpty(); l = l.tail) {
+                if (lambdaMembers.contains(l.head)) {
+                    l.head = translator.translate(l.head);
+                }
+            }
+        }
     }
     // </editor-fold>
 
@@ -241,7 +291,7 @@ public class LambdaToMethod extends TreeTranslator {
         KlassInfo prevKlassInfo = kInfo;
         try {
             kInfo = new KlassInfo(tree);
-            super.visitClassDef(tree);
+            translateClassBody(this, tree, context != null);
             if (!kInfo.deserializeCases.isEmpty()) {
                 int prevPos = make.pos;
                 try {
@@ -327,8 +377,16 @@ public class LambdaToMethod extends TreeTranslator {
         //captured members directly).
         lambdaDecl.body = translate(makeLambdaBody(tree, lambdaDecl));
 
-        //Add the method to the list of methods to be added to this class.
-        kInfo.addMethod(lambdaDecl);
+        MethodSymbol shared = deduplicateLambdas && !localContext.isSerializable() ?
+                findIdenticalLambdaMethod(lambdaDecl) : null;
+        if (shared != null) {
+            //an identical method has already been generated for this class;
+            //drop the new one and let the indy call below refer to the old one.
+            sym = shared;
+        } else {
+            //Add the method to the list of methods to be added to this class.
+            kInfo.addMethod(lambdaDecl);
+        }
 
         //now that we have generated a method for the lambda expression,
         //we can translate the lambda into a method reference pointing to the newly
@@ -375,6 +433,28 @@ public class LambdaToMethod extends TreeTranslator {
     }
 
     // where
+        /**
+         * Look for a lambda method of the current class whose translated body
+         * and signature are structurally identical to the given one; if there
+         * is none, the given method is recorded for later lambdas to share.
+         */
+        private MethodSymbol findIdenticalLambdaMethod(JCMethodDecl lambdaDecl) {
+            MethodSymbol sym = lambdaDecl.sym;
+            if (!sym.getRawTypeAttributes().isEmpty()) {
+                //type annotations are specific to the lambda they come from
+                return null;
+            }
+            ArrayList<Object> key = new LambdaBodyKeyBuilder().makeKey(lambdaDecl);
+            if (key == null) {
+                return null;
+            }
+            MethodSymbol prev = kInfo.lambdaMethodsByKey.get(key);
+            if (prev == null) {
+                kInfo.lambdaMethodsByKey.put(key, sym);
+            }
+            return prev;
+        }
+
         // Reassign type annotations from the source that should really belong to the lambda
         private void apportionTypeAnnotations(JCLambda tree,
                                               Supplier<List<Attribute.TypeCompound>> source,
@@ -1184,6 +1264,160 @@ public class LambdaToMethod extends TreeTranslator {
         }
     }
 
+    /**
+     * This visitor computes a key describing the shape of a translated lambda
+     * method: two lambda methods of the same class with equal keys generate the
+     * same code and can therefore be shared. Local variables and parameters are
+     * identified by their declaration order, all other symbols by identity. The
+     * source line of each tree is part of the key, so that a shared method has
+     * the same line numbers as each of the lambdas it stands for. A null key is
+     * returned for bodies which cannot be shared, e.g. because they declare
+     * local or anonymous classes.
+     */
+    class LambdaBodyKeyBuilder extends TreeScanner {
+
+        private final ArrayList<Object> key = new ArrayList<>();
+        private final Map<Symbol, Integer> locals = new HashMap<>();
+        private final Position.LineMap lineMap = attrEnv.toplevel.lineMap;
+        private boolean shareable = true;
+
+        ArrayList<Object> makeKey(JCMethodDecl lambdaDecl) {
+            MethodSymbol sym = lambdaDecl.sym;
+            key.add(sym.flags() & (AccessFlags | STATIC | STRICTFP));
+            key.add(typeKey(sym.type));
+            scan(lambdaDecl.params);
+            scan(lambdaDecl.body);
+            return shareable ? key : null;
+        }
+
+        @Override
+        public void scan(JCTree tree) {
+            if (tree != null && shareable) {
+                key.add(tree.getTag());
+                key.add(typeKey(tree.type));
+                if (lineMap != null && tree.pos != Position.NOPOS) {
+                    key.add(lineMap.getLineNumber(tree.pos));
+                }
+                tree.accept(this);
+            } else {
+                key.add(Tag.NO_TAG);
+            }
+        }
+
+        @Override
+        public void visitClassDef(JCClassDecl tree) {
+            shareable = false;
+        }
+
+        @Override
+        public void visitLambda(JCLambda tree) {
+            shareable = false;
+        }
+
+        @Override
+        public void visitReference(JCMemberReference tree) {
+            shareable = false;
+        }
+
+        @Override
+        public void visitVarDef(JCVariableDecl tree) {
+            locals.put(tree.sym, locals.size());
+            super.visitVarDef(tree);
+        }
+
+        @Override
+        public void visitIdent(JCIdent tree) {
+            symbolKey(tree.sym);
+        }
+
+        @Override
+        public void visitSelect(JCFieldAccess tree) {
+            key.add(tree.name);
+            symbolKey(tree.sym);
+            super.visitSelect(tree);
+        }
+
+        @Override
+        public void visitLiteral(JCLiteral tree) {
+            key.add(tree.typetag);
+            key.add(tree.value);
+        }
+
+        @Override
+        public void visitApply(JCMethodInvocation tree) {
+            key.add(typeKey(tree.varargsElement));
+            super.visitApply(tree);
+        }
+
+        @Override
+        public void visitNewClass(JCNewClass tree) {
+            key.add(tree.constructor);
+            key.add(typeKey(tree.varargsElement));
+            super.visitNewClass(tree);
+        }
+
+        @Override
+        public void visitUnary(JCUnary tree) {
+            key.add(tree.operator);
+            super.visitUnary(tree);
+        }
+
+        @Override
+        public void visitBinary(JCBinary tree) {
+            key.add(tree.operator);
+            super.visitBinary(tree);
+        }
+
+        @Override
+        public void visitAssignop(JCAssignOp tree) {
+            key.add(tree.operator);
+            super.visitAssignop(tree);
+        }
+
+        @Override
+        public void visitLabelled(JCLabeledStatement tree) {
+            key.add(tree.label);
+            super.visitLabelled(tree);
+        }
+
+        @Override
+        public void visitBreak(JCBreak tree) {
+            key.add(tree.label);
+        }
+
+        @Override
+        public void visitContinue(JCContinue tree) {
+            key.add(tree.label);
+        }
+
+        //where
+        private void symbolKey(Symbol sym) {
+            if (sym == null) {
+                key.add(null);
+            } else if (locals.containsKey(sym)) {
+                key.add(locals.get(sym));
+            } else if (sym.kind == VAR &&
+                    (sym.name == names._this || sym.name == names._super)) {
+                key.add(sym.name);
+            } else if (sym.kind == MTH && sym instanceof DynamicMethodSymbol) {
+                //a nested lambda or method reference, already translated
+                DynamicMethodSymbol dynSym = (DynamicMethodSymbol)sym;
+                key.add(dynSym.name);
+                key.add(dynSym.bsm);
+                key.add(typeKey(dynSym.type));
+                for (Object arg : dynSym.staticArgs) {
+                    key.add(arg instanceof Type ? typeKey((Type)arg) : arg);
+                }
+            } else {
+                key.add(sym);
+            }
+        }
+
+        private Object typeKey(Type type) {
+            return type == null ? null : new Types.UniqueType(types.erasure(type), types);
+        }
+    }
+
     // <editor-fold defaultstate="collapsed" desc="Lambda/reference analyzer">
     /**
      * This visitor collects information about translation of a lambda expression.
@@ -1315,7 +1549,8 @@ public class LambdaToMethod extends TreeTranslator {
                     }
                 }
                 frameStack = frameStack.prepend(new Frame(tree));
-                super.visitClassDef(tree);
+                translateClassBody(this, tree, context() != null);
+                result = tree;
             }
             finally {
                 log.useSource(prevSource.getFile());
@@ -67,6 +67,15 @@ public class JRTIndex {
         return sharedInstance;
     }
 
+    /**
+     * Trim the shared instance of the cache, if there is one.
+     * @see #trim
+     */
+    public synchronized static void trimSharedInstance() {
+        if (sharedInstance != null)
+            sharedInstance.trim();
+    }
+
     /** Get a context-specific instance of a cache. */
     public static JRTIndex instance(Context context) {
         try {
@@ -228,6 +237,23 @@ public class JRTIndex {
         return e;
     }
 
+    /**
+     * Drop the cached entries, except those for packages in java.base,
+     * which nearly every compilation looks up. Used by long running
+     * compile servers to shrink their heap while they are idle.
+     */
+    public synchronized void trim() {
+        entries.values().removeIf(ref -> {
+            Entry e = ref.get();
+            return e == null || e.files.values().stream().noneMatch(JRTIndex::isInBaseModule);
+        });
+    }
+
+    private static boolean isInBaseModule(Path p) {
+        return p.getNameCount() > 1 && p.getName(0).toString().equals("modules")
+                && p.getName(1).toString().equals("java.base");
+    }
+
     public boolean isInJRT(FileObject fo) {
         if (fo instanceof PathFileObject) {
             Path path = ((PathFileObject) fo).getPath();
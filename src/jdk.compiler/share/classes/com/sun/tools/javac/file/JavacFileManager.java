@@ -112,6 +112,8 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
     protected boolean symbolFileEnabled;
 
+    private boolean shareArchives;
+
     private PathFactory pathFactory = Paths::get;
 
     protected enum SortFiles implements Comparator<Path> {
@@ -188,6 +190,16 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
         return symbolFileEnabled;
     }
 
+    /**
+     * Set whether archives on the search paths are shared with other file
+     * managers in this VM that have the same archives open, instead of
+     * being opened and indexed by this file manager alone.
+     * Must be set before any archive has been opened.
+     */
+    public void setArchivesShared(boolean b) {
+        shareArchives = b;
+    }
+
     // used by tests
     public JavaFileObject getJavaFileObject(String name) {
         return getJavaFileObjects(name).iterator().next();
@@ -507,31 +519,33 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
         private final Path archivePath;
         private final FileSystem fileSystem;
         private final Map<RelativePath, Path> packages;
+        // non-null if the archive is shared with other file managers
+        private final SharedArchives.Archive shared;
+        // a container may be registered under several paths, so may be closed more than once
+        private boolean released;
 
         public ArchiveContainer(Path archivePath) throws IOException, ProviderNotFoundException, SecurityException {
             this.archivePath = archivePath;
+            if (shareArchives) {
+                shared = SharedArchives.acquire(archivePath, multiReleaseValue,
+                        this::openFileSystem, JavacFileManager::indexArchivePackages);
+                fileSystem = shared.fileSystem;
+                packages = shared.packages;
+            } else {
+                shared = null;
+                fileSystem = openFileSystem(archivePath);
+                packages = indexArchivePackages(fileSystem);
+            }
+        }
+
+        private FileSystem openFileSystem(Path archivePath) throws IOException {
             if (multiReleaseValue != null && archivePath.toString().endsWith(".jar")) {
                 Map<String,String> env = Collections.singletonMap("multi-release", multiReleaseValue);
                 FileSystemProvider jarFSProvider = fsInfo.getJarFSProvider();
                 Assert.checkNonNull(jarFSProvider, "should have been caught before!");
-                this.fileSystem = jarFSProvider.newFileSystem(archivePath, env);
+                return jarFSProvider.newFileSystem(archivePath, env);
             } else {
-                this.fileSystem = FileSystems.newFileSystem(archivePath, null);
-            }
-            packages = new HashMap<>();
-            for (Path root : fileSystem.getRootDirectories()) {
-                Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
-                        new SimpleFileVisitor<Path>() {
-                            @Override
-                            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                                if (isValid(dir.getFileName())) {
-                                    packages.put(new RelativeDirectory(root.relativize(dir).toString()), dir);
-                                    return FileVisitResult.CONTINUE;
-                                } else {
-                                    return FileVisitResult.SKIP_SUBTREE;
-                                }
-                            }
-                        });
+                return FileSystems.newFileSystem(archivePath, null);
             }
         }
 
@@ -556,7 +570,7 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
                     new SimpleFileVisitor<Path>() {
                         @Override
                         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                            if (isValid(dir.getFileName())) {
+                            if (isValidArchiveDirectory(dir.getFileName())) {
                                 return FileVisitResult.CONTINUE;
                             } else {
                                 return FileVisitResult.SKIP_SUBTREE;
@@ -576,18 +590,6 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
         }
 
-        private boolean isValid(Path fileName) {
-            if (fileName == null) {
-                return true;
-            } else {
-                String name = fileName.toString();
-                if (name.endsWith("/")) {
-                    name = name.substring(0, name.length() - 1);
-                }
-                return SourceVersion.isIdentifier(name);
-            }
-        }
-
         @Override
         public JavaFileObject getFileObject(Path userPath, RelativeFile name) throws IOException {
             RelativeDirectory root = name.dirname();
@@ -603,7 +605,45 @@ public class JavacFileManager extends BaseFileManager implements StandardJavaFil
 
         @Override
         public void close() throws IOException {
-            fileSystem.close();
+            if (shared != null) {
+                if (!released) {
+                    released = true;
+                    SharedArchives.release(shared);
+                }
+            } else {
+                fileSystem.close();
+            }
+        }
+    }
+
+    private static Map<RelativePath, Path> indexArchivePackages(FileSystem fileSystem) throws IOException {
+        Map<RelativePath, Path> packages = new HashMap<>();
+        for (Path root : fileSystem.getRootDirectories()) {
+            Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                            if (isValidArchiveDirectory(dir.getFileName())) {
+                                packages.put(new RelativeDirectory(root.relativize(dir).toString()), dir);
+                                return FileVisitResult.CONTINUE;
+                            } else {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                        }
+                    });
+        }
+        return packages;
+    }
+
+    private static boolean isValidArchiveDirectory(Path fileName) {
+        if (fileName == null) {
+            return true;
+        } else {
+            String name = fileName.toString();
+            if (name.endsWith("/")) {
+                name = name.substring(0, name.length() - 1);
+            }
+            return SourceVersion.isIdentifier(name);
         }
     }
 
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.javac.file;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Archives opened on behalf of several file managers at the same time.
+ *
+ * <p>Concurrent compilations against the same class path, such as the
+ * chunks of an sjavac build, would otherwise each open every archive on
+ * the path and index its packages. An archive acquired here is opened and
+ * indexed once, and is shared by all file managers using it until the
+ * last of them releases it. An archive that has changed on disk since it
+ * was opened is not handed out again; it is closed when its last user
+ * releases it.
+ *
+ * <p><b>This is NOT part of any supported API.
+ * If you write code that depends on this, you do so at your own risk.
+ * This code and its internal interfaces are subject to change or
+ * deletion without notice.</b>
+ */
+final class SharedArchives {
+
+    /** Opens the file system for an archive. */
+    interface Opener {
+        FileSystem open(Path archivePath) throws IOException;
+    }
+
+    /** Indexes the packages in an opened archive. */
+    interface Indexer {
+        Map<RelativePath, Path> index(FileSystem fileSystem) throws IOException;
+    }
+
+    /** An opened archive, with the index of its packages. */
+    static final class Archive {
+        final FileSystem fileSystem;
+        final Map<RelativePath, Path> packages;
+        private final FileTime lastModified;
+        private final long size;
+        private int users;
+        private boolean stale;
+
+        private Archive(FileSystem fileSystem, Map<RelativePath, Path> packages,
+                        BasicFileAttributes attrs) {
+            this.fileSystem = fileSystem;
+            this.packages = packages;
+            this.lastModified = attrs.lastModifiedTime();
+            this.size = attrs.size();
+        }
+
+        private boolean isCurrent(BasicFileAttributes attrs) {
+            return lastModified.equals(attrs.lastModifiedTime()) && size == attrs.size();
+        }
+    }
+
+    /** The archives in use, keyed by their real path and multi-release setting. */
+    private static final Map<List<String>, Archive> archives = new HashMap<>();
+
+    private SharedArchives() { }
+
+    /**
+     * Get the archive at the given real path, opening and indexing it
+     * if no other file manager is currently using it.
+     * Every call must be paired with a call to {@link #release}.
+     */
+    static Archive acquire(Path realPath, String multiReleaseValue,
+                           Opener opener, Indexer indexer) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+        List<String> key = Arrays.asList(realPath.toString(), String.valueOf(multiReleaseValue));
+        synchronized (archives) {
+            Archive archive = archives.get(key);
+            if (archive != null && !archive.isCurrent(attrs)) {
+                // The archive has been rewritten; let its current users
+                // finish with the old contents, but open it afresh.
+                archive.stale = true;
+                archives.remove(key);
+                archive = null;
+            }
+            if (archive == null) {
+                FileSystem fileSystem = opener.open(realPath);
+                try {
+                    archive = new Archive(fileSystem, indexer.index(fileSystem), attrs);
+                } catch (IOException | RuntimeException ex) {
+                    fileSystem.close();
+                    throw ex;
+                }
+                archives.put(key, archive);
+            }
+            archive.users++;
+            return archive;
+        }
+    }
+
+    /**
+     * Release an archive obtained from {@link #acquire}, closing it if
+     * this was its last user.
+     */
+    static void release(Archive archive) throws IOException {
+        synchronized (archives) {
+            if (--archive.users > 0)
+                return;
+            if (!archive.stale)
+                archives.values().remove(archive);
+        }
+        archive.fileSystem.close();
+    }
+}
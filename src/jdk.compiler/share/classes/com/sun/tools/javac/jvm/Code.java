@@ -52,6 +52,12 @@ public class Code {
     public final boolean debugCode;
     public final boolean needStackMap;
 
+    /** Switch: collect raw frames during code generation and compress them
+     *  into StackMapTable entries in a single pass once the method is done
+     *  (see {@link #compressStackMap()}).
+     */
+    public final boolean lazyStackMap;
+
     public enum StackMapFormat {
         NONE,
         CLDC {
@@ -82,9 +88,13 @@ public class Code {
      */
     public int max_locals = 0;
 
+    /** The default initial size of the code buffer.
+     */
+    public static final int DEFAULT_CODE_SIZE = 64;
+
     /** The code buffer.
      */
-    public byte[] code = new byte[64];
+    public byte[] code;
 
     /** the current code pointer.
      */
@@ -195,7 +205,28 @@ public class Code {
                 Symtab syms,
                 Types types,
                 Pool pool) {
+        this(meth, fatcode, lineMap, varDebugInfo, stackMap, debugCode, crt,
+             syms, types, pool, DEFAULT_CODE_SIZE, false);
+    }
+
+    /** Construct a code object, as above, whose code buffer is presized
+     *  to the given estimate, and which optionally defers the compression
+     *  of stack map frames until the method has been fully generated.
+     */
+    public Code(MethodSymbol meth,
+                boolean fatcode,
+                Position.LineMap lineMap,
+                boolean varDebugInfo,
+                StackMapFormat stackMap,
+                boolean debugCode,
+                CRTable crt,
+                Symtab syms,
+                Types types,
+                Pool pool,
+                int codeSizeHint,
+                boolean lazyStackMap) {
         this.meth = meth;
+        this.code = new byte[Math.max(codeSizeHint, DEFAULT_CODE_SIZE)];
         this.fatcode = fatcode;
         this.lineMap = lineMap;
         this.lineDebugInfo = lineMap != null;
@@ -213,6 +244,7 @@ public class Code {
         default:
             this.needStackMap = false;
         }
+        this.lazyStackMap = stackMap == StackMapFormat.JSR202 && lazyStackMap;
         state = new State();
         lvar = new LocalVar[20];
         this.pool = pool;
@@ -1225,7 +1257,8 @@ public class Code {
         Type[] stack;
     }
 
-    /** A buffer of cldc stack map entries. */
+    /** A buffer of cldc stack map entries; also holds the uncompressed
+     *  StackMapTable frames while generating code in lazy mode. */
     StackMapFrame[] stackMapBuffer = null;
 
     /** A buffer of compressed StackMapTable entries. */
@@ -1305,7 +1338,9 @@ public class Code {
     }
 
     void emitStackMapFrame(int pc, int localsSize) {
-        if (lastFrame == null) {
+        if (lazyStackMap) {
+            // the initial frame is computed by compressStackMap
+        } else if (lastFrame == null) {
             // first frame
             lastFrame = getInitialFrame();
         } else if (lastFrame.pc == pc) {
@@ -1350,6 +1385,20 @@ public class Code {
             }
         }
 
+        if (lazyStackMap) {
+            if (stackMapBufferSize > 0 && stackMapBuffer[stackMapBufferSize - 1].pc == pc) {
+                // drop existing stackmap at this offset
+                stackMapBuffer[--stackMapBufferSize] = null;
+            }
+            if (stackMapBuffer == null) {
+                stackMapBuffer = new StackMapFrame[20];
+            } else {
+                stackMapBuffer = ArrayUtils.ensureCapacity(stackMapBuffer, stackMapBufferSize);
+            }
+            stackMapBuffer[stackMapBufferSize++] = frame;
+            return;
+        }
+
         if (stackMapTableBuffer == null) {
             stackMapTableBuffer = new StackMapTableFrame[20];
         } else {
@@ -1364,6 +1413,23 @@ public class Code {
         lastFrame = frame;
     }
 
+    /** Turn the frames collected in lazy mode into StackMapTable entries,
+     *  each one expressed relative to its predecessor. This is a no-op if
+     *  frames are compressed eagerly, or if they have already been compressed.
+     */
+    public void compressStackMap() {
+        if (!lazyStackMap || stackMapBuffer == null) return;
+        StackMapFrame prev = getInitialFrame();
+        stackMapTableBuffer = new StackMapTableFrame[stackMapBufferSize];
+        for (int i = 0; i < stackMapBufferSize; i++) {
+            StackMapFrame frame = stackMapBuffer[i];
+            stackMapTableBuffer[i] =
+                    StackMapTableFrame.getInstance(frame, prev.pc, prev.locals, types);
+            prev = frame;
+        }
+        stackMapBuffer = null;
+    }
+
     StackMapFrame getInitialFrame() {
         StackMapFrame frame = new StackMapFrame();
         List<Type> arg_types = ((MethodType)meth.externalType(types)).argtypes;
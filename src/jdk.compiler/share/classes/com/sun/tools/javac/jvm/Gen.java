@@ -72,6 +72,9 @@ public class Gen extends JCTree.Visitor {
     private final Annotate annotate;
     private final StringConcat concat;
 
+    /** Splitter for methods that are too large, or null if disabled. */
+    private final MethodSplitter splitter;
+
     /** Format of stackmap tables to be generated. */
     private final Code.StackMapFormat stackMap;
 
@@ -123,6 +126,8 @@ public class Gen extends JCTree.Visitor {
             : options.isSet(G_CUSTOM, "vars");
         genCrt = options.isSet(XJCOV);
         debugCode = options.isSet("debug.code");
+        fastCodeGen = options.isSet("fastCodeGen");
+        splitter = options.isSet("splitLargeMethods") ? MethodSplitter.instance(context) : null;
         allowBetterNullChecks = target.hasObjects();
         pool = new Pool(types);
 
@@ -137,6 +142,7 @@ public class Gen extends JCTree.Visitor {
     private final boolean varDebugInfo;
     private final boolean genCrt;
     private final boolean debugCode;
+    private final boolean fastCodeGen;
     private final boolean allowBetterNullChecks;
 
     /** Code buffer, set by genMethod.
@@ -490,6 +496,10 @@ public class Gen extends JCTree.Visitor {
             if (!c.getClassInitTypeAttributes().isEmpty())
                 clinit.appendUniqueTypeAttributes(c.getClassInitTypeAttributes());
         }
+        // Move code out of methods that would exceed the code size limit.
+        if (splitter != null) {
+            return splitter.splitLargeMethods(methodDefs.toList(), c);
+        }
         // Return all method definitions.
         return methodDefs.toList();
     }
@@ -947,6 +957,7 @@ public class Gen extends JCTree.Visitor {
 
                 // Clean up
                 if(stackMap == StackMapFormat.JSR202) {
+                    code.compressStackMap();
                     code.lastFrame = null;
                     code.frameBeforeLast = null;
                 }
@@ -973,7 +984,10 @@ public class Gen extends JCTree.Visitor {
                                                : null,
                                         syms,
                                         types,
-                                        pool);
+                                        pool,
+                                        fastCodeGen ? MethodSplitter.estimateCodeSize(tree.body)
+                                                    : Code.DEFAULT_CODE_SIZE,
+                                        fastCodeGen);
             items = new Items(pool, code, syms, types);
             if (code.debugCode) {
                 System.err.println(meth + " for body " + tree);
@@ -2170,6 +2184,7 @@ public class Gen extends JCTree.Visitor {
              */
             cdef.defs = normalizeDefs(cdef.defs, c);
             generateReferencesToPrunedTree(c, pool);
+            concat.startClass(c, cdef.defs);
             Env<GenContext> localEnv = new Env<>(cdef, new GenContext());
             localEnv.toplevel = env.toplevel;
             localEnv.enclClass = cdef;
@@ -2177,6 +2192,7 @@ public class Gen extends JCTree.Visitor {
             for (List<JCTree> l = cdef.defs; l.nonEmpty(); l = l.tail) {
                 genDef(l.head, localEnv);
             }
+            concat.finishClass(c);
             if (pool.numEntries() > Pool.MAX_ENTRIES) {
                 log.error(cdef.pos(), "limit.pool");
                 nerrs++;
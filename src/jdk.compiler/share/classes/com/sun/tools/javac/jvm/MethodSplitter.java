@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.javac.jvm;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.tools.javac.code.*;
+import com.sun.tools.javac.code.Symbol.*;
+import com.sun.tools.javac.code.Type.*;
+import com.sun.tools.javac.tree.*;
+import com.sun.tools.javac.tree.JCTree.*;
+import com.sun.tools.javac.util.*;
+import com.sun.tools.javac.util.List;
+
+import static com.sun.tools.javac.code.Flags.*;
+import static com.sun.tools.javac.code.Kinds.Kind.*;
+import static com.sun.tools.javac.tree.JCTree.Tag.*;
+
+/** This pass moves code out of methods whose bytecode is likely to exceed
+ *  the code size limit of the class file format into synthetic helper
+ *  methods, before the methods are handed over to Gen. Large array
+ *  initializers are built by helpers that fill the array in slices, and
+ *  runs of self-contained statements are moved into helpers that receive
+ *  the local variables they read as arguments.
+ *
+ *  <p>The pass is enabled with the hidden option -XDsplitLargeMethods.
+ *  Constructors are never split, and neither are statements that assign
+ *  local variables declared outside of them, assign final fields, or
+ *  transfer control outside of themselves.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class MethodSplitter {
+    protected static final Context.Key<MethodSplitter> splitterKey = new Context.Key<>();
+
+    /** Estimated code size above which a method is split.
+     */
+    private static final int SPLIT_THRESHOLD = ClassFile.MAX_CODE / 2;
+
+    /** Estimated code size of the body of each helper method.
+     */
+    private static final int CHUNK_SIZE = ClassFile.MAX_CODE / 8;
+
+    /** Estimated number of bytes of code generated for each tree node.
+     */
+    static final int BYTES_PER_TREE_NODE = 3;
+
+    /** Estimated number of bytes of code needed to store an array element,
+     *  on top of the code for the element itself.
+     */
+    private static final int BYTES_PER_ARRAY_ELEMENT = 5;
+
+    /** The maximum number of local variables passed to a helper method.
+     */
+    private static final int MAX_HELPER_PARAMS = 32;
+
+    private final Names names;
+    private final Symtab syms;
+    private final Types types;
+    private final TreeMaker make;
+    private final Target target;
+
+    public static MethodSplitter instance(Context context) {
+        MethodSplitter instance = context.get(splitterKey);
+        if (instance == null)
+            instance = new MethodSplitter(context);
+        return instance;
+    }
+
+    protected MethodSplitter(Context context) {
+        context.put(splitterKey, this);
+        names = Names.instance(context);
+        syms = Symtab.instance(context);
+        types = Types.instance(context);
+        make = TreeMaker.instance(context);
+        target = Target.instance(context);
+    }
+
+    /** Estimate the size of the bytecode generated for a tree from the
+     *  number of nodes it contains.
+     */
+    public static int estimateCodeSize(JCTree tree) {
+        class NodeCounter extends TreeScanner {
+            int count = 0;
+
+            @Override
+            public void scan(JCTree tree) {
+                if (tree != null) {
+                    count++;
+                    super.scan(tree);
+                }
+            }
+        }
+        NodeCounter counter = new NodeCounter();
+        counter.scan(tree);
+        return Math.min(counter.count * BYTES_PER_TREE_NODE, ClassFile.MAX_CODE + 1);
+    }
+
+    /** The class whose methods are being split.
+     */
+    private ClassSymbol currentClass;
+
+    /** The method being split.
+     */
+    private JCMethodDecl currentMethod;
+
+    /** The helper methods created so far for the current class.
+     */
+    private ListBuffer<JCTree> helpers;
+
+    /** Split all methods of a class that are likely to be too large.
+     *  @param methodDefs  The normalized method definitions of the class.
+     *  @param c           The class.
+     *  @return            The method definitions, including any helpers.
+     */
+    public List<JCTree> splitLargeMethods(List<JCTree> methodDefs, ClassSymbol c) {
+        ClassSymbol prevClass = currentClass;
+        ListBuffer<JCTree> prevHelpers = helpers;
+        currentClass = c;
+        helpers = new ListBuffer<>();
+        try {
+            for (JCTree def : methodDefs) {
+                JCMethodDecl md = (JCMethodDecl)def;
+                if (md.body != null &&
+                        !md.sym.isConstructor() &&
+                        estimateCodeSize(md.body) > SPLIT_THRESHOLD) {
+                    splitMethod(md);
+                }
+            }
+            return helpers.isEmpty() ? methodDefs : methodDefs.appendList(helpers.toList());
+        } finally {
+            currentClass = prevClass;
+            helpers = prevHelpers;
+        }
+    }
+
+    private void splitMethod(JCMethodDecl md) {
+        JCMethodDecl prevMethod = currentMethod;
+        currentMethod = md;
+        try {
+            md.body = new ArrayInitializerOutliner().translate(md.body);
+            if (estimateCodeSize(md.body) > SPLIT_THRESHOLD) {
+                outlineStatements(md.body);
+            }
+        } finally {
+            currentMethod = prevMethod;
+        }
+    }
+
+/* ************************************************************************
+ * Array initializers
+ *************************************************************************/
+
+    /** Replaces large array initializers that only refer to fields and
+     *  constants by calls to helper methods that build the array.
+     */
+    class ArrayInitializerOutliner extends TreeTranslator {
+        @Override
+        public void visitNewArray(JCNewArray tree) {
+            super.visitNewArray(tree);
+            if (tree.elems != null && estimateArrayInitSize(tree.elems) > CHUNK_SIZE) {
+                Outlinable info = outlinable(tree.elems);
+                if (info.ok && info.freeLocals.isEmpty()) {
+                    result = outlineArrayInitializer(tree);
+                }
+            }
+        }
+    }
+
+    private int estimateArrayInitSize(List<JCExpression> elems) {
+        int size = 0;
+        for (JCExpression elem : elems) {
+            size += estimateCodeSize(elem) + BYTES_PER_ARRAY_ELEMENT;
+        }
+        return size;
+    }
+
+    /** Build the helper methods for an array initializer:
+     *  <pre>
+     *      T[] m$split$0() { T[] a = new T[n]; m$split$1(a); ...; return a; }
+     *      void m$split$1(T[] a) { a[0] = e0; a[1] = e1; ... }
+     *  </pre>
+     *  and return an invocation of the first one.
+     */
+    private JCExpression outlineArrayInitializer(JCNewArray tree) {
+        make.at(tree.pos);
+        Type arrayType = tree.type;
+        Type elemtype = types.elemtype(arrayType);
+
+        MethodSymbol build = makeHelperSymbol(List.nil(), arrayType);
+        VarSymbol array = new VarSymbol(SYNTHETIC, names.fromString("array"), arrayType, build);
+        JCNewArray alloc = make.NewArray(make.Type(elemtype),
+                                         List.of(make.Literal(tree.elems.length())),
+                                         null);
+        alloc.type = arrayType;
+        ListBuffer<JCStatement> buildStats = new ListBuffer<>();
+        buildStats.append(make.VarDef(array, alloc));
+
+        int index = 0;
+        List<JCExpression> elems = tree.elems;
+        while (elems.nonEmpty()) {
+            MethodSymbol fill = makeHelperSymbol(List.of(arrayType), syms.voidType);
+            VarSymbol param = fill.params.head;
+            ListBuffer<JCStatement> fillStats = new ListBuffer<>();
+            int size = 0;
+            while (elems.nonEmpty() && (fillStats.isEmpty() || size < CHUNK_SIZE)) {
+                JCExpression elem = elems.head;
+                size += estimateCodeSize(elem) + BYTES_PER_ARRAY_ELEMENT;
+                make.at(elem.pos);
+                JCArrayAccess lhs = make.Indexed(make.Ident(param), make.Literal(index++));
+                lhs.type = elemtype;
+                fillStats.append(make.Exec(make.Assign(lhs, elem).setType(elemtype)));
+                elems = elems.tail;
+            }
+            addHelper(fill, fillStats.toList());
+            make.at(tree.pos);
+            buildStats.append(make.Exec(makeHelperCall(fill, List.of(make.Ident(array)))));
+        }
+        buildStats.append(make.Return(make.Ident(array)));
+        addHelper(build, buildStats.toList());
+        make.at(tree.pos);
+        return makeHelperCall(build, List.nil());
+    }
+
+/* ************************************************************************
+ * Statements
+ *************************************************************************/
+
+    /** Move runs of self-contained statements of a block, and of the blocks
+     *  nested in it, into helper methods.
+     */
+    private void outlineStatements(JCBlock block) {
+        ListBuffer<JCStatement> stats = new ListBuffer<>();
+        ListBuffer<JCStatement> chunk = new ListBuffer<>();
+        Set<VarSymbol> chunkLocals = new LinkedHashSet<>();
+        int chunkSize = 0;
+        for (JCStatement stat : block.stats) {
+            int size = estimateCodeSize(stat);
+            Outlinable info = outlinable(stat);
+            if (!info.ok || stat.hasTag(VARDEF) || size > CHUNK_SIZE ||
+                    chunkLocals.size() + info.freeLocals.size() > MAX_HELPER_PARAMS) {
+                flushChunk(chunk, chunkLocals, stats);
+                chunkSize = 0;
+                if (size > CHUNK_SIZE) {
+                    outlineNestedStatements(stat);
+                }
+                stats.append(stat);
+                continue;
+            }
+            if (chunkSize + size > CHUNK_SIZE && chunk.nonEmpty()) {
+                flushChunk(chunk, chunkLocals, stats);
+                chunkSize = 0;
+            }
+            chunk.append(stat);
+            chunkLocals.addAll(info.freeLocals);
+            chunkSize += size;
+        }
+        flushChunk(chunk, chunkLocals, stats);
+        block.stats = stats.toList();
+    }
+
+    /** Split the large blocks nested in a statement that cannot be moved
+     *  as a whole.
+     */
+    private void outlineNestedStatements(JCStatement stat) {
+        new TreeScanner() {
+            @Override
+            public void visitBlock(JCBlock tree) {
+                if (estimateCodeSize(tree) > CHUNK_SIZE) {
+                    outlineStatements(tree);
+                }
+            }
+        }.scan(stat);
+    }
+
+    private void flushChunk(ListBuffer<JCStatement> chunk,
+                            Set<VarSymbol> chunkLocals,
+                            ListBuffer<JCStatement> stats) {
+        if (chunk.isEmpty())
+            return;
+        List<JCStatement> chunkStats = chunk.toList();
+        chunk.clear();
+        if (chunkStats.tail.isEmpty() && estimateCodeSize(chunkStats.head) < CHUNK_SIZE / 8) {
+            // not worth a method of its own
+            stats.appendList(chunkStats);
+            chunkLocals.clear();
+            return;
+        }
+
+        ListBuffer<Type> argtypes = new ListBuffer<>();
+        ListBuffer<JCExpression> args = new ListBuffer<>();
+        make.at(chunkStats.head.pos);
+        for (VarSymbol v : chunkLocals) {
+            argtypes.append(v.erasure(types));
+            args.append(make.Ident(v));
+        }
+        MethodSymbol helper = makeHelperSymbol(argtypes.toList(), syms.voidType);
+
+        // redirect the uses of the local variables to the helper's parameters
+        final Map<Symbol, VarSymbol> paramMap = new IdentityHashMap<>();
+        List<VarSymbol> params = helper.params;
+        for (VarSymbol v : chunkLocals) {
+            paramMap.put(v, params.head);
+            params = params.tail;
+        }
+        chunkLocals.clear();
+        if (!paramMap.isEmpty()) {
+            new TreeScanner() {
+                @Override
+                public void visitIdent(JCIdent tree) {
+                    VarSymbol param = paramMap.get(tree.sym);
+                    if (param != null) {
+                        tree.sym = param;
+                    }
+                }
+            }.scan(chunkStats);
+        }
+
+        addHelper(helper, chunkStats);
+        make.at(chunkStats.head.pos);
+        stats.append(make.Exec(makeHelperCall(helper, args.toList())));
+    }
+
+/* ************************************************************************
+ * Helper methods
+ *************************************************************************/
+
+    /** Create the symbol of a new helper method for the current method;
+     *  the helper is static if the current method is.
+     */
+    private MethodSymbol makeHelperSymbol(List<Type> argtypes, Type restype) {
+        MethodSymbol meth = currentMethod.sym;
+        long flags = PRIVATE | SYNTHETIC | (meth.flags() & (STATIC | STRICTFP));
+        MethodType mtype = new MethodType(argtypes,
+                                          restype,
+                                          meth.type.getThrownTypes(),
+                                          syms.methodClass);
+        MethodSymbol helper = new MethodSymbol(flags, helperName(meth), mtype, currentClass);
+        ListBuffer<VarSymbol> params = new ListBuffer<>();
+        int i = 0;
+        for (Type argtype : argtypes) {
+            params.append(new VarSymbol(PARAMETER | SYNTHETIC,
+                                        make.paramName(i++),
+                                        argtype,
+                                        helper));
+        }
+        helper.params = params.toList();
+        currentClass.members().enter(helper);
+        return helper;
+    }
+
+    private Name helperName(MethodSymbol meth) {
+        String base = (meth.name == names.clinit ? "clinit" : meth.name.toString()) +
+                target.syntheticNameChar() + "split" + target.syntheticNameChar();
+        for (int i = 0; ; i++) {
+            Name name = names.fromString(base + i);
+            if (currentClass.members().findFirst(name) == null)
+                return name;
+        }
+    }
+
+    private void addHelper(MethodSymbol helper, List<JCStatement> stats) {
+        make.at(stats.head.pos);
+        JCBlock body = make.Block(0, stats);
+        body.endpos = TreeInfo.endPos(stats.last());
+        helpers.append(make.MethodDef(helper, body));
+    }
+
+    private JCMethodInvocation makeHelperCall(MethodSymbol helper, List<JCExpression> args) {
+        return make.App(make.Ident(helper), args);
+    }
+
+/* ************************************************************************
+ * Analysis
+ *************************************************************************/
+
+    /** The result of checking whether a tree can be moved to another method.
+     */
+    static class Outlinable {
+        /** Can the tree be moved at all? */
+        boolean ok = true;
+
+        /** The local variables read by, but declared outside of, the tree. */
+        final Set<VarSymbol> freeLocals = new LinkedHashSet<>();
+    }
+
+    Outlinable outlinable(List<? extends JCTree> trees) {
+        OutlinableChecker checker = new OutlinableChecker();
+        checker.scan(trees);
+        return checker.result;
+    }
+
+    Outlinable outlinable(JCTree tree) {
+        OutlinableChecker checker = new OutlinableChecker();
+        checker.scan(tree);
+        return checker.result;
+    }
+
+    class OutlinableChecker extends TreeScanner {
+        final Outlinable result = new Outlinable();
+        final Set<JCTree> inside = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Symbol> declared = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        @Override
+        public void scan(JCTree tree) {
+            if (tree != null && result.ok) {
+                inside.add(tree);
+                super.scan(tree);
+            }
+        }
+
+        @Override
+        public void visitVarDef(JCVariableDecl tree) {
+            declared.add(tree.sym);
+            super.visitVarDef(tree);
+        }
+
+        @Override
+        public void visitIdent(JCIdent tree) {
+            if (isFreeLocal(tree.sym)) {
+                result.freeLocals.add((VarSymbol)tree.sym);
+            }
+        }
+
+        @Override
+        public void visitAssign(JCAssign tree) {
+            checkAssignable(tree.lhs);
+            super.visitAssign(tree);
+        }
+
+        @Override
+        public void visitAssignop(JCAssignOp tree) {
+            checkAssignable(tree.lhs);
+            super.visitAssignop(tree);
+        }
+
+        @Override
+        public void visitUnary(JCUnary tree) {
+            switch (tree.getTag()) {
+                case PREINC: case PREDEC: case POSTINC: case POSTDEC:
+                    checkAssignable(tree.arg);
+            }
+            super.visitUnary(tree);
+        }
+
+        @Override
+        public void visitReturn(JCReturn tree) {
+            result.ok = false;
+        }
+
+        @Override
+        public void visitBreak(JCBreak tree) {
+            if (!inside.contains(tree.target))
+                result.ok = false;
+        }
+
+        @Override
+        public void visitContinue(JCContinue tree) {
+            if (!inside.contains(tree.target))
+                result.ok = false;
+        }
+
+        private void checkAssignable(JCExpression lhs) {
+            Symbol sym = TreeInfo.symbol(TreeInfo.skipParens(lhs));
+            if (sym == null)
+                return;
+            if (isFreeLocal(sym) ||
+                    (sym.kind == VAR && sym.owner.kind == TYP && (sym.flags() & FINAL) != 0)) {
+                result.ok = false;
+            }
+        }
+
+        private boolean isFreeLocal(Symbol sym) {
+            return sym != null &&
+                    sym.kind == VAR &&
+                    sym.owner.kind == MTH &&
+                    !declared.contains(sym);
+        }
+    }
+}
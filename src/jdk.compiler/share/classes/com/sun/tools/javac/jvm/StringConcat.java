@@ -26,10 +26,13 @@
 package com.sun.tools.javac.jvm;
 
 import com.sun.tools.javac.code.*;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Types.UniqueType;
 import com.sun.tools.javac.comp.Resolve;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.tree.TreeMaker;
+import com.sun.tools.javac.tree.TreeScanner;
 import com.sun.tools.javac.util.*;
 
 import static com.sun.tools.javac.code.Kinds.Kind.MTH;
@@ -39,7 +42,9 @@ import static com.sun.tools.javac.tree.JCTree.Tag.PLUS;
 import com.sun.tools.javac.jvm.Items.*;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /** This lowers the String concatenation to something that JVM can understand.
  *
@@ -97,6 +102,8 @@ public abstract class StringConcat {
                 return new IndyPlain(context);
             case "indyWithConstants":
                 return new IndyConstants(context);
+            case "indyShared":
+                return new IndyShared(context);
             default:
                 Assert.error("Unknown stringConcat: " + opt);
                 throw new IllegalStateException("Unknown stringConcat: " + opt);
@@ -104,7 +111,16 @@ public abstract class StringConcat {
     }
 
     protected StringConcat(Context context) {
-        context.put(concatKey, this);
+        this(context, true);
+    }
+
+    /** Create a strategy; strategies that are only used as delegates
+     *  of another strategy are not registered in the context.
+     */
+    protected StringConcat(Context context, boolean register) {
+        if (register) {
+            context.put(concatKey, this);
+        }
         gen = Gen.instance(context);
         syms = Symtab.instance(context);
         types = Types.instance(context);
@@ -117,6 +133,17 @@ public abstract class StringConcat {
     public abstract Item makeConcat(JCTree.JCAssignOp tree);
     public abstract Item makeConcat(JCTree.JCBinary tree);
 
+    /** Called by Gen before generating code for the (normalized) method
+     *  definitions of a class.
+     */
+    public void startClass(ClassSymbol c, List<JCTree> defs) {
+    }
+
+    /** Called by Gen once code for all methods of a class has been generated.
+     */
+    public void finishClass(ClassSymbol c) {
+    }
+
     protected List<JCTree> collectAll(JCTree tree) {
         return collect(tree, List.nil());
     }
@@ -168,6 +195,10 @@ public abstract class StringConcat {
             super(context);
         }
 
+        Inline(Context context, boolean register) {
+            super(context, register);
+        }
+
         @Override
         public Item makeConcat(JCTree.JCAssignOp tree) {
             // Generate code to make a string builder
@@ -257,6 +288,10 @@ public abstract class StringConcat {
             super(context);
         }
 
+        Indy(Context context, boolean register) {
+            super(context, register);
+        }
+
         @Override
         public Item makeConcat(JCTree.JCAssignOp tree) {
             List<JCTree> args = collectAll(tree.lhs, tree.rhs);
@@ -317,6 +352,10 @@ public abstract class StringConcat {
             super(context);
         }
 
+        IndyPlain(Context context, boolean register) {
+            super(context, register);
+        }
+
         /** Emit the indy concat for all these arguments, possibly peeling along the way */
         protected void emit(List<JCTree> args, Type type, JCDiagnostic.DiagnosticPosition pos) {
             List<List<JCTree>> split = split(args);
@@ -401,6 +440,10 @@ public abstract class StringConcat {
             super(context);
         }
 
+        IndyConstants(Context context, boolean register) {
+            super(context, register);
+        }
+
         @Override
         protected void emit(List<JCTree> args, Type type, JCDiagnostic.DiagnosticPosition pos) {
             List<List<JCTree>> split = split(args);
@@ -499,4 +542,227 @@ public abstract class StringConcat {
         }
     }
 
+    /**
+     * Emits invokedynamic calls to JDK java.lang.invoke.StringConcatFactory,
+     * choosing per call site between the {@link IndyConstants} flavor, which
+     * folds the constants into the recipe, and the {@link IndyPlain} flavor,
+     * which passes them as ordinary arguments.
+     *
+     * All concatenations of a class are inspected before any code is generated
+     * for it. Recipes with constants are only used if the same recipe occurs
+     * more than once, or if no other site with a recipe of its own shares its
+     * argument shape; otherwise, sites that only differ in their constants are
+     * generated with the plain flavor, so that they share a single bootstrap
+     * method entry and, for the same argument types, a single call site
+     * descriptor.
+     *
+     * Concatenations of at most {@code -XDstringConcat.inlineThreshold} operands
+     * are emitted as StringBuilder chains, like {@link Inline}, which avoids
+     * linking a call site for them at all. With {@code -XDstringConcat.stats},
+     * the sharing achieved is reported for every class.
+     */
+    private static final class IndyShared extends Indy {
+        private final Log log;
+        private final int inlineThreshold;
+        private final boolean printStats;
+
+        private final Inline inline;
+        private final IndyPlain plain;
+        private final IndyConstants constants;
+
+        /** The number of occurrences of each recipe with constants in the current class. */
+        private final Map<Object, Integer> constantShapes = new HashMap<>();
+
+        /** The number of occurrences of each argument shape in the current class,
+         *  counting only sites whose recipe with constants is unique. */
+        private final Map<Object, Integer> plainShapes = new HashMap<>();
+
+        /** Statistics for the current class. */
+        private int sites;
+        private int inlined;
+        private final Set<Object> callSites = new HashSet<>();
+        private final Set<Object> bootstrapMethods = new HashSet<>();
+
+        public IndyShared(Context context) {
+            super(context);
+            log = Log.instance(context);
+            Options options = Options.instance(context);
+            int threshold = 0;
+            String opt = options.get("stringConcat.inlineThreshold");
+            if (opt != null) {
+                try {
+                    threshold = Integer.parseInt(opt);
+                } catch (NumberFormatException e) {
+                    Assert.error("Bad stringConcat.inlineThreshold: " + opt);
+                }
+            }
+            inlineThreshold = threshold;
+            printStats = options.isSet("stringConcat.stats");
+            inline = new Inline(context, false);
+            plain = new IndyPlain(context, false);
+            constants = new IndyConstants(context, false);
+        }
+
+        @Override
+        public Item makeConcat(JCTree.JCAssignOp tree) {
+            if (isTiny(collectAll(tree.lhs, tree.rhs))) {
+                inlined++;
+                return inline.makeConcat(tree);
+            }
+            return super.makeConcat(tree);
+        }
+
+        @Override
+        public Item makeConcat(JCTree.JCBinary tree) {
+            if (isTiny(collectAll(tree.lhs, tree.rhs))) {
+                inlined++;
+                return inline.makeConcat(tree);
+            }
+            return super.makeConcat(tree);
+        }
+
+        private boolean isTiny(List<JCTree> args) {
+            return args.size() <= inlineThreshold;
+        }
+
+        @Override
+        protected void emit(List<JCTree> args, Type type, JCDiagnostic.DiagnosticPosition pos) {
+            List<List<JCTree>> split = split(args);
+
+            for (List<JCTree> t : split) {
+                Assert.check(!t.isEmpty(), "Arguments list is empty");
+                List<Object> constantShape = constantShape(t);
+                List<UniqueType> plainShape = plainShape(t);
+                sites++;
+                if (count(constantShapes, constantShape) <= 1 && count(plainShapes, plainShape) > 1) {
+                    plain.emit(t, type, pos);
+                    callSites.add(plainShape);
+                    bootstrapMethods.add(names.makeConcat);
+                } else {
+                    constants.emit(t, type, pos);
+                    callSites.add(constantShape);
+                    bootstrapMethods.add(constantShape.take(2));
+                }
+            }
+
+            // More that one peel slice produced: concatenate the results
+            if (split.size() > 1) {
+                ListBuffer<Type> argTypes = new ListBuffer<>();
+                for (int c = 0; c < split.size(); c++) {
+                    argTypes.append(syms.stringType);
+                }
+                plain.doCall(type, pos, argTypes.toList());
+            }
+        }
+
+        private int count(Map<Object, Integer> shapes, Object shape) {
+            Integer n = shapes.get(shape);
+            return n == null ? 0 : n;
+        }
+
+        /** The recipe, static arguments and dynamic argument types that
+         *  IndyConstants would use for a slice of arguments. */
+        private List<Object> constantShape(List<JCTree> args) {
+            StringBuilder recipe = new StringBuilder(args.size());
+            ListBuffer<Object> staticArgs = new ListBuffer<>();
+            ListBuffer<UniqueType> dynamicArgs = new ListBuffer<>();
+            for (JCTree arg : args) {
+                Object constVal = arg.type.constValue();
+                if ("".equals(constVal)) continue;
+                if (arg.type == syms.botType) {
+                    recipe.append((String) null);
+                } else if (constVal != null) {
+                    String a = arg.type.stringValue();
+                    if (a.indexOf(TAG_CONST) != -1 || a.indexOf(TAG_ARG) != -1) {
+                        recipe.append(TAG_CONST);
+                        staticArgs.add(a);
+                    } else {
+                        recipe.append(a);
+                    }
+                } else {
+                    recipe.append(TAG_ARG);
+                    dynamicArgs.add(new UniqueType(sharpestAccessible(arg.type), types));
+                }
+            }
+            return List.of(recipe.toString(), staticArgs.toList(), dynamicArgs.toList());
+        }
+
+        /** The dynamic argument types that IndyPlain would use for a slice
+         *  of arguments. */
+        private List<UniqueType> plainShape(List<JCTree> args) {
+            ListBuffer<UniqueType> dynamicArgs = new ListBuffer<>();
+            for (JCTree arg : args) {
+                Object constVal = arg.type.constValue();
+                if ("".equals(constVal)) continue;
+                Type t = (arg.type == syms.botType)
+                        ? types.boxedClass(syms.voidType).type
+                        : sharpestAccessible(arg.type);
+                dynamicArgs.add(new UniqueType(t, types));
+            }
+            return dynamicArgs.toList();
+        }
+
+        @Override
+        public void startClass(ClassSymbol c, List<JCTree> defs) {
+            constantShapes.clear();
+            plainShapes.clear();
+            sites = 0;
+            inlined = 0;
+            callSites.clear();
+            bootstrapMethods.clear();
+            ListBuffer<Pair<List<Object>, List<UniqueType>>> shapes = new ListBuffer<>();
+            new TreeScanner() {
+                @Override
+                public void visitBinary(JCTree.JCBinary tree) {
+                    if (tree.operator.opcode == string_add && tree.type.constValue() == null) {
+                        record(collectAll(tree.lhs, tree.rhs));
+                    } else {
+                        super.visitBinary(tree);
+                    }
+                }
+
+                @Override
+                public void visitAssignop(JCTree.JCAssignOp tree) {
+                    if (tree.operator.opcode == string_add) {
+                        record(collectAll(tree.lhs, tree.rhs));
+                    } else {
+                        super.visitAssignop(tree);
+                    }
+                }
+
+                private void record(List<JCTree> args) {
+                    if (!isTiny(args)) {
+                        for (List<JCTree> t : split(args)) {
+                            List<Object> constantShape = constantShape(t);
+                            constantShapes.merge(constantShape, 1, Integer::sum);
+                            shapes.append(new Pair<>(constantShape, plainShape(t)));
+                        }
+                    }
+                    scan(args);
+                }
+            }.scan(defs);
+            // only sites with a recipe of their own are candidates for sharing
+            for (Pair<List<Object>, List<UniqueType>> shape : shapes) {
+                if (count(constantShapes, shape.fst) == 1) {
+                    plainShapes.merge(shape.snd, 1, Integer::sum);
+                }
+            }
+        }
+
+        @Override
+        public void finishClass(ClassSymbol c) {
+            if (printStats && (sites > 0 || inlined > 0)) {
+                log.printRawLines(Log.WriterKind.NOTICE,
+                        "[string concat " + c + ": " + sites + " sites, " +
+                        callSites.size() + " call site shapes, " +
+                        bootstrapMethods.size() + " bootstrap methods, " +
+                        inlined + " inlined]");
+            }
+            constantShapes.clear();
+            plainShapes.clear();
+            callSites.clear();
+            bootstrapMethods.clear();
+        }
+    }
+
 }
@@ -443,6 +443,7 @@ public class JavaCompiler {
         keepComments  = options.getBoolean("keepComments");
 
         verboseCompilePolicy = options.isSet("verboseCompilePolicy");
+        skipLambdaFreeMembers = options.isSet("skipLambdaFreeMembers");
 
         if (options.isSet("should-stop.at") &&
             CompileState.valueOf(options.get("should-stop.at")) == CompileState.ATTR)
@@ -541,6 +542,12 @@ public class JavaCompiler {
      */
     public boolean verboseCompilePolicy;
 
+    /**
+     * Let the lambda translation skip class members that the desugar
+     * pre-scan found to contain no lambdas or method references.
+     */
+    protected boolean skipLambdaFreeMembers;
+
     /**
      * Policy of how far to continue compilation after errors have occurred.
      * Set this to minimum CompileState (INIT) to stop as soon as possible
@@ -1558,6 +1565,7 @@ public class JavaCompiler {
         class ScanNested extends TreeScanner {
             Set<Env<AttrContext>> dependencies = new LinkedHashSet<>();
             protected boolean hasLambdas;
+            Set<JCTree> lambdaMembers = skipLambdaFreeMembers ? new HashSet<>() : null;
             @Override
             public void visitClassDef(JCClassDecl node) {
                 if (node.sym != null) {
@@ -1586,7 +1594,11 @@ public class JavaCompiler {
                         st = types.supertype(st);
                     }
                 }
-                super.visitClassDef(node);
+                if (lambdaMembers != null) {
+                    scanMembers(node);
+                } else {
+                    super.visitClassDef(node);
+                }
             }
             @Override
             public void visitLambda(JCLambda tree) {
@@ -1598,6 +1610,26 @@ public class JavaCompiler {
                 hasLambdas = true;
                 super.visitReference(tree);
             }
+            /**
+             * Scan a class, recording those members which contain lambdas
+             * or method references.
+             */
+            private void scanMembers(JCClassDecl node) {
+                scan(node.mods);
+                scan(node.typarams);
+                scan(node.extending);
+                scan(node.implementing);
+                boolean classHasLambdas = hasLambdas;
+                for (JCTree def : node.defs) {
+                    hasLambdas = false;
+                    scan(def);
+                    if (hasLambdas) {
+                        lambdaMembers.add(def);
+                        classHasLambdas = true;
+                    }
+                }
+                hasLambdas = classHasLambdas;
+            }
         }
         ScanNested scanner = new ScanNested();
         scanner.scan(env.tree);
@@ -1650,7 +1682,8 @@ public class JavaCompiler {
                 if (shouldStop(CompileState.UNLAMBDA))
                     return;
 
-                env.tree = LambdaToMethod.instance(context).translateTopLevelClass(env, env.tree, localMake);
+                env.tree = LambdaToMethod.instance(context).translateTopLevelClass(env, env.tree, localMake,
+                        scanner.lambdaMembers);
                 compileStates.put(env, CompileState.UNLAMBDA);
             }
 
@@ -1955,6 +1988,23 @@ public class JavaCompiler {
         return now() - then;
     }
 
+    /**
+     * Prepare the compiler for compiling another set of sources in the same
+     * context, see {@link com.sun.tools.javac.api.JavacTaskPool}.
+     */
+    public void newRound() {
+        inputFiles.clear();
+        todo.clear();
+        desugaredEnvs.clear();
+        rootClasses = null;
+        enterDone = false;
+        hasBeenUsed = false;
+        annotationProcessingOccurred = false;
+        implicitSourceFilesRead = false;
+        toProcessAnnotations = List.nil();
+        deferredDiagnosticHandler = null;
+    }
+
     public void newRound(final Set<? extends JCCompilationUnit> treesToClean) {
         for (JCCompilationUnit treeToClean : treesToClean) {
             if (treeToClean.sourcefile != null) {
@@ -441,6 +441,20 @@ public class Log extends AbstractLog {
      */
     protected Set<Pair<JavaFileObject, String>>  recordedSourceLevelErrors = new HashSet<>();
 
+    /** Prepare the log for another compilation in the same context,
+     *  forgetting the diagnostics reported so far.
+     */
+    public void newRound() {
+        nerrors = 0;
+        nwarnings = 0;
+        recorded.clear();
+        recordedSourceLevelErrors.clear();
+        partialReparseRecorded.clear();
+        errTrees.clear();
+        sourceMap.clear();
+        source = null;
+    }
+
     public boolean hasDiagnosticListener() {
         return diagListener != null;
     }
@@ -58,6 +58,20 @@ public class SharedNameTable extends Name.Table {
         freelist = freelist.prepend(new SoftReference<>(t));
     }
 
+    /**
+     * Drop the tables kept for reuse, except the most recently used one.
+     * Used by long running compile servers to shrink their heap while
+     * they are idle.
+     */
+    static public synchronized void trimFreelist() {
+        while (freelist.nonEmpty() && freelist.head.get() == null) {
+            freelist = freelist.tail;
+        }
+        if (freelist.nonEmpty()) {
+            freelist = List.of(freelist.head);
+        }
+    }
+
     /** The hash table for names.
      */
     private NameImpl[] hashes;
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tools.sjavac;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.tools.sjavac.pubapi.PubApi;
+
+/**
+ * Reads and writes the javac_state in a binary format. It holds the same
+ * information as the text format, but every string is stored once in a
+ * string table and referred to by index. The file is memory mapped when
+ * loaded, strings are decoded when first used, and the public apis of the
+ * packages are only parsed when asked for. Since most builds only look at
+ * the public apis of a few packages, this avoids most of the cost of
+ * loading the state of a large source tree.
+ *
+ * Layout, all numbers are big endian ints unless stated otherwise:
+ * <pre>
+ *   magic version string_table_offset
+ *   args jar_count (path last_modified:long size:long hash)*
+ *   module_count
+ *     module_name package_count
+ *       package_name
+ *       source_count (flags:byte name last_modified:long compile_millis compile_kib size:long hash)*
+ *       dependency_count (from to_count to*)*            source dependencies
+ *       dependency_count (from to_count to*)*            classpath dependencies
+ *       artifact_count (path last_modified:long size:long hash)*
+ *       type_count (top_level_class source)*
+ *       pubapi_line_count pubapi_line*
+ *   string_count string_offset* (length:int utf8_bytes)*
+ * </pre>
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class BinaryJavacState {
+
+    // "SJST", can never be mistaken for the "# javac_state" header of the text format.
+    static final int MAGIC = 0x534a5354;
+    static final int VERSION = 3;
+
+    private static final int GENERATED = 1;
+    private static final int LINKED_ONLY = 2;
+
+    /**
+     * Check if the given javac_state file is in the binary format.
+     */
+    public static boolean isBinary(File javacState) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(javacState))) {
+            return javacState.length() >= 4 && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Save the modules, and everything below them, into the javac_state file.
+     * The file is written next to the old one and then moved into place, since
+     * the old one may still be mapped.
+     */
+    public static void save(File javacState, String args, Map<String,FileHash> classpathHashes,
+                            Map<String,Module> modules) throws IOException {
+        Writer w = new Writer();
+        w.string(args);
+        List<String> jars = new ArrayList<>(classpathHashes.keySet());
+        Collections.sort(jars);
+        w.out.writeInt(jars.size());
+        for (String jar : jars) {
+            w.string(jar);
+            w.fileHash(classpathHashes.get(jar));
+        }
+        w.out.writeInt(modules.size());
+        for (Module m : modules.values()) {
+            w.string(m.name());
+            List<String> packageNames = new ArrayList<>(m.packages().keySet());
+            Collections.sort(packageNames);
+            w.out.writeInt(packageNames.size());
+            for (String pn : packageNames) {
+                w.writePackage(m.packages().get(pn));
+            }
+        }
+        byte[] body = w.bytes.toByteArray();
+
+        File tmp = new File(javacState.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int stringTableOffset = 12 + body.length;
+            out.writeInt(stringTableOffset);
+            out.write(body);
+            List<byte[]> strings = w.strings;
+            out.writeInt(strings.size());
+            int offset = stringTableOffset + 4 + 4 * strings.size();
+            for (byte[] s : strings) {
+                out.writeInt(offset);
+                offset += 4 + s.length;
+            }
+            for (byte[] s : strings) {
+                out.writeInt(s.length);
+                out.write(s);
+            }
+        }
+        Files.move(tmp.toPath(), javacState.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Load a binary javac_state file into the given build state.
+     *
+     * @return the arguments the state was built with, or null if the file
+     *         is of a different version of the format.
+     */
+    public static String load(File javacState, Map<String,FileHash> classpathHashes,
+                              BuildState bs) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel fc = FileChannel.open(javacState.toPath(), StandardOpenOption.READ)) {
+            if (File.separatorChar == '\\') {
+                // A mapped file cannot be replaced on Windows, read it instead.
+                buf = ByteBuffer.allocate((int) fc.size());
+                while (buf.hasRemaining() && fc.read(buf) >= 0) { }
+                buf.flip();
+            } else {
+                buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+            }
+        }
+        try {
+            Reader r = new Reader(buf);
+            if (r.nextInt() != MAGIC || r.nextInt() != VERSION)
+                return null;
+            r.stringTable = r.nextInt();
+            String args = r.nextString();
+            int numJars = r.nextInt();
+            for (int i = 0; i < numJars; i++) {
+                String jar = r.nextString();
+                classpathHashes.put(jar, r.nextFileHash());
+            }
+            int numModules = r.nextInt();
+            for (int i = 0; i < numModules; i++) {
+                Module m = bs.addLoadedModule(new Module(r.nextString(), ""));
+                int numPackages = r.nextInt();
+                for (int j = 0; j < numPackages; j++) {
+                    r.readPackage(bs, m);
+                }
+            }
+            return args;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated javac_state", e);
+        }
+    }
+
+    private static class Writer {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final Map<String,Integer> stringIndex = new HashMap<>();
+        final List<byte[]> strings = new ArrayList<>();
+
+        void string(String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer idx = stringIndex.get(s);
+            if (idx == null) {
+                idx = strings.size();
+                stringIndex.put(s, idx);
+                strings.add(s.getBytes(StandardCharsets.UTF_8));
+            }
+            out.writeInt(idx);
+        }
+
+        void fileHash(FileHash h) throws IOException {
+            out.writeLong(h.lastModified());
+            out.writeLong(h.size());
+            string(h.hash());
+        }
+
+        void writePackage(Package p) throws IOException {
+            string(p.name());
+
+            List<String> sourceNames = new ArrayList<>(p.sources().keySet());
+            Collections.sort(sourceNames);
+            out.writeInt(sourceNames.size());
+            for (String sn : sourceNames) {
+                Source s = p.sources().get(sn);
+                out.writeByte((s.isGenerated() ? GENERATED : 0) | (s.isLinkedOnly() ? LINKED_ONLY : 0));
+                string(s.name());
+                out.writeLong(s.file().lastModified());
+                out.writeInt(s.compileMillis());
+                out.writeInt(s.compileKiB());
+                FileHash h = s.contentHash();
+                out.writeLong(h != null ? h.size() : -1);
+                string(h != null ? h.hash() : null);
+            }
+
+            writeDependencies(p.typeDependencies());
+            writeDependencies(p.typeClasspathDependencies());
+
+            List<File> artifacts = new ArrayList<>(p.artifacts().values());
+            Collections.sort(artifacts);
+            out.writeInt(artifacts.size());
+            for (File f : artifacts) {
+                string(f.getPath());
+                FileHash h = p.artifactHashes().get(f.getPath());
+                out.writeLong(f.lastModified());
+                out.writeLong(h != null ? h.size() : -1);
+                string(h != null ? h.hash() : null);
+            }
+
+            out.writeInt(p.typeSources().size());
+            for (Map.Entry<String,String> e : p.typeSources().entrySet()) {
+                string(e.getKey());
+                string(e.getValue());
+            }
+
+            List<String> pubApi = p.getPubApi().asListOfStrings();
+            out.writeInt(pubApi.size());
+            for (String l : pubApi) {
+                string(l);
+            }
+        }
+
+        void writeDependencies(Map<String,Set<String>> deps) throws IOException {
+            out.writeInt(deps.size());
+            for (Map.Entry<String,Set<String>> e : deps.entrySet()) {
+                List<String> tos = new ArrayList<>(e.getValue());
+                Collections.sort(tos);
+                string(e.getKey());
+                out.writeInt(tos.size());
+                for (String to : tos) {
+                    string(to);
+                }
+            }
+        }
+    }
+
+    private static class Reader {
+        final ByteBuffer buf;
+        int pos;
+        int stringTable;
+        String[] strings;
+
+        Reader(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        int nextInt() {
+            int i = buf.getInt(pos);
+            pos += 4;
+            return i;
+        }
+
+        long nextLong() {
+            long l = buf.getLong(pos);
+            pos += 8;
+            return l;
+        }
+
+        byte nextByte() {
+            return buf.get(pos++);
+        }
+
+        String nextString() {
+            return string(nextInt());
+        }
+
+        String string(int idx) {
+            if (idx == -1)
+                return null;
+            if (strings == null)
+                strings = new String[buf.getInt(stringTable)];
+            String s = strings[idx];
+            if (s == null) {
+                int offset = buf.getInt(stringTable + 4 + 4 * idx);
+                byte[] bytes = new byte[buf.getInt(offset)];
+                for (int i = 0; i < bytes.length; i++)
+                    bytes[i] = buf.get(offset + 4 + i);
+                s = strings[idx] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+
+        FileHash nextFileHash() {
+            long lastModified = nextLong();
+            long size = nextLong();
+            return new FileHash(lastModified, size, nextString());
+        }
+
+        void readPackage(BuildState bs, Module m) {
+            Package p = bs.addLoadedPackage(m, new Package(m, nextString()));
+
+            int numSources = nextInt();
+            for (int i = 0; i < numSources; i++) {
+                int flags = nextByte();
+                String name = nextString();
+                long lastModified = nextLong();
+                int compileMillis = nextInt();
+                int compileKiB = nextInt();
+                long size = nextLong();
+                String hash = nextString();
+                Source s = bs.addLoadedSource(p, Source.load(p, name, lastModified,
+                                                             (flags & GENERATED) != 0,
+                                                             (flags & LINKED_ONLY) != 0));
+                s.setCompileCost(compileMillis, compileKiB);
+                if (hash != null)
+                    s.setContentHash(new FileHash(lastModified, size, hash));
+            }
+
+            readDependencies(p, false);
+            readDependencies(p, true);
+
+            int numArtifacts = nextInt();
+            for (int i = 0; i < numArtifacts; i++) {
+                String path = nextString();
+                p.loadArtifact(path, nextFileHash());
+            }
+
+            int numTypes = nextInt();
+            for (int i = 0; i < numTypes; i++) {
+                String type = nextString();
+                p.addTypeSource(type, nextString());
+            }
+
+            int numLines = nextInt();
+            if (numLines > 0) {
+                int start = pos;
+                pos += 4 * numLines;
+                p.setPubapiLoader(() -> {
+                    PubApi api = new PubApi();
+                    for (int i = 0; i < numLines; i++)
+                        api.appendItem(string(buf.getInt(start + 4 * i)));
+                    return api;
+                });
+            }
+        }
+
+        void readDependencies(Package p, boolean cp) {
+            int numFroms = nextInt();
+            for (int i = 0; i < numFroms; i++) {
+                String from = nextString();
+                int numTos = nextInt();
+                for (int j = 0; j < numTos; j++) {
+                    p.addDependency(from, nextString(), cp);
+                }
+            }
+        }
+    }
+}
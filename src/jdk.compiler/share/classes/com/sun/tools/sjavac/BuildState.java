@@ -246,7 +246,10 @@ public class BuildState {
      * Load a module from the javac state file.
      */
     public Module loadModule(String l) {
-        Module m = Module.load(l);
+        return addLoadedModule(Module.load(l));
+    }
+
+    public Module addLoadedModule(Module m) {
         modules.put(m.name(), m);
         return m;
     }
@@ -255,7 +258,10 @@ public class BuildState {
      * Load a package from the javac state file.
      */
     public Package loadPackage(Module lastModule, String l) {
-        Package p = Package.load(lastModule, l);
+        return addLoadedPackage(lastModule, Package.load(lastModule, l));
+    }
+
+    public Package addLoadedPackage(Module lastModule, Package p) {
         lastModule.addPackage(p);
         packages.put(p.name(), p);
         return p;
@@ -265,7 +271,10 @@ public class BuildState {
      * Load a source from the javac state file.
      */
     public Source loadSource(Package lastPackage, String l, boolean is_generated) {
-        Source s = Source.load(lastPackage, l, is_generated);
+        return addLoadedSource(lastPackage, Source.load(lastPackage, l, is_generated));
+    }
+
+    public Source addLoadedSource(Package lastPackage, Source s) {
         lastPackage.addSource(s);
         sources.put(s.name(), s);
         return s;
@@ -40,18 +40,25 @@ import java.util.Set;
  */
 public class CompileChunk implements Comparable<CompileChunk> {
     public int numPackages;
-    public int numDependents;
+    public Set<String> packages = new HashSet<>();
     public Set<URI> srcs = new HashSet<>();
     public StringBuilder pkgNames = new StringBuilder();
-    public String pkgFromTos = "";
+    // The estimated time and heap needed to compile the chunk.
+    public long millis;
+    public long kib;
+    // The chunks with packages that packages in this chunk depend upon.
+    public Set<CompileChunk> dependencies = new HashSet<>();
+    // The estimated time needed to compile this chunk and the chunks
+    // that depend on it.
+    public long criticalPath;
 
+    /**
+     * Chunks on the longest critical path come first.
+     */
     public int compareTo(CompileChunk c) {
-        if (numDependents == c.numDependents) return 0;
-        if (numDependents > c.numDependents) return -1;
-        return -1;
-    }
-
-    boolean equal(CompileChunk c) {
-        return numDependents == c.numDependents;
+        if (criticalPath != c.criticalPath) {
+            return criticalPath > c.criticalPath ? -1 : 1;
+        }
+        return Long.compare(c.millis, millis);
     }
 }
@@ -27,14 +27,19 @@ package com.sun.tools.sjavac;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -42,18 +47,27 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.cache.BuildCache;
+import com.sun.tools.sjavac.cache.PackageCache;
 import com.sun.tools.sjavac.comp.CompilationService;
 import com.sun.tools.sjavac.options.Options;
 import com.sun.tools.sjavac.pubapi.PubApi;
 import com.sun.tools.sjavac.server.CompilationSubResult;
+import com.sun.tools.sjavac.server.ServerMetrics;
 import com.sun.tools.sjavac.server.SysInfo;
 
 /**
  * This transform compiles a set of packages containing Java sources.
  * The compile request is divided into separate sets of source files.
- * For each set a separate request thread is dispatched to a javac server
+ * For each set a separate request is dispatched to a javac server
  * and the meta data is accumulated. The number of sets correspond more or
- * less to the number of cores. Less so now, than it will in the future.
+ * less to the number of cores, unless more sets are needed to fit the
+ * compilations in the heap. The sets are chosen using the time and heap
+ * it took to compile each source in earlier builds.
+ *
+ * <p>With a build cache, packages compiled before with the same sources,
+ * class path and options are fetched from the cache instead of compiled,
+ * and the packages that are compiled are stored in the cache.
  *
  * <p><b>This is NOT part of any supported API.
  * If you write code that depends on this, you do so at your own
@@ -67,8 +81,30 @@ public class CompileJavaPackages implements Transformer {
     // We hope to improve this in the future.
     final static int limitOnConcurrency = 3;
 
+    // How full a chunk is discounts the affinity of a package for it, but
+    // never below this factor. Past its share of the time, a chunk still
+    // draws the packages that depend most on it, rather than repelling them.
+    final static double minLoadFactor = 0.05;
+
     Options args;
 
+    // Source -> top level classes declared in it, for the sources compiled
+    // by the last call to transform.
+    private Map<URI, Set<String>> sourceTypes = new HashMap<>();
+
+    // The sources that may be compiled, with the time and heap it took to
+    // compile them when they were last compiled.
+    private Map<URI, Source> sources = new HashMap<>();
+
+    // Source -> time and heap it took to compile it, for the sources compiled
+    // by the last call to transform.
+    private Map<URI, Integer> measuredMillis = new HashMap<>();
+    private Map<URI, Integer> measuredHeapKiB = new HashMap<>();
+
+    // All sources visible to the compilation, which are part of the keys
+    // of the packages in the build cache.
+    private Map<URI, Source> visibleSources = new HashMap<>();
+
     public void setExtra(String e) {
     }
 
@@ -91,9 +127,27 @@ public class CompileJavaPackages implements Transformer {
                              int numCores) {
 
         Log.debug("Performing CompileJavaPackages transform...");
+        sourceTypes = new HashMap<>();
+        measuredMillis = new HashMap<>();
+        measuredHeapKiB = new HashMap<>();
 
         boolean rc = true;
-        boolean concurrentCompiles = true;
+
+        // Fetch what can be fetched from the build cache, and compile the rest.
+        List<CompilationSubResult> subResults = new ArrayList<>();
+        PackageCache packageCache = null;
+        if (args.getBuildCache() != null) {
+            packageCache = new PackageCache(BuildCache.create(args.getBuildCache()),
+                                            args, args.prepJavacArgs(), this.visibleSources);
+            Map<String, CompilationSubResult> fetched = packageCache.fetch(pkgSrcs);
+            if (!fetched.isEmpty()) {
+                Log.info("Fetched " + fetched.size() + " of " + pkgSrcs.size()
+                         + " packages from the build cache");
+                pkgSrcs = new HashMap<>(pkgSrcs);
+                pkgSrcs.keySet().removeAll(fetched.keySet());
+                subResults.addAll(fetched.values());
+            }
+        }
 
         // Fetch the id.
         final String id = String.valueOf(new Random().nextInt());
@@ -127,76 +181,45 @@ public class CompileJavaPackages implements Transformer {
             numSources += ss.size();
         }
 
-        int sourcesPerCompile = numSources / numCompiles;
-
-        // For 64 bit Java, it seems we can compile the OpenJDK 8800 files with a 1500M of heap
-        // in a single chunk, with reasonable performance.
-        // For 32 bit java, it seems we need 1G of heap.
-        // Number experimentally determined when compiling the OpenJDK.
-        // Includes space for reasonably efficient garbage collection etc,
-        // Calculating backwards gives us a requirement of
-        // 1500M/8800 = 175 KiB for 64 bit platforms
-        // and 1G/8800 = 119 KiB for 32 bit platform
-        // for each compile.....
-        int kbPerFile = 175;
-        String osarch = System.getProperty("os.arch");
-        String dataModel = System.getProperty("sun.arch.data.model");
-        if ("32".equals(dataModel)) {
-            // For 32 bit platforms, assume it is slightly smaller
-            // because of smaller object headers and pointers.
-            kbPerFile = 119;
+        // Estimate the time and heap needed to compile each package, from
+        // what was measured when its sources were last compiled.
+        Map<String, Long> pkgMillis = new HashMap<>();
+        Map<String, Long> pkgKiB = new HashMap<>();
+        estimateCosts(pkgSrcs, pkgMillis, pkgKiB);
+        long totalMillis = 0;
+        long totalKiB = 0;
+        for (String pkg : pkgSrcs.keySet()) {
+            totalMillis += pkgMillis.get(pkg);
+            totalKiB += pkgKiB.get(pkg);
         }
-        int numRequiredMBytes = (kbPerFile*numSources)/1024;
-        Log.debug("For os.arch "+osarch+" the empirically determined heap required per file is "+kbPerFile+"KiB");
+        // Leave 30% of the heap for reasonably efficient garbage collection.
+        long heapBudgetKiB = sysinfo.maxMemory / 1024 * 7 / 10;
         Log.debug("Server has "+numMBytes+"MiB of heap.");
-        Log.debug("Heuristics say that we need "+numRequiredMBytes+"MiB of heap for all source files.");
-        // Perform heuristics to see how many cores we can use,
-        // or if we have to the work serially in smaller chunks.
-        if (numMBytes < numRequiredMBytes) {
-            // Ouch, cannot fit even a single compile into the heap.
-            // Split it up into several serial chunks.
-            concurrentCompiles = false;
-            // Limit the number of sources for each compile to 500.
-            if (numSources < 500) {
-                numCompiles = 1;
-                sourcesPerCompile = numSources;
-                Log.debug("Compiling as a single source code chunk to stay within heap size limitations!");
-            } else if (sourcesPerCompile > 500) {
-                // This number is very low, and tuned to dealing with the OpenJDK
-                // where the source is >very< circular! In normal application,
-                // with less circularity the number could perhaps be increased.
-                numCompiles = numSources / 500;
-                sourcesPerCompile = numSources/numCompiles;
-                Log.debug("Compiling source as "+numCompiles+" code chunks serially to stay within heap size limitations!");
-            }
-        } else {
-            if (numCompiles > 1) {
-                // Ok, we can fit at least one full compilation on the heap.
-                float usagePerCompile = (float)numRequiredMBytes / ((float)numCompiles * (float)0.7);
-                int usage = (int)(usagePerCompile * (float)numCompiles);
-                Log.debug("Heuristics say that for "+numCompiles+" concurrent compiles we need "+usage+"MiB");
-                if (usage > numMBytes) {
-                    // Ouch it does not fit. Reduce to a single chunk.
-                    numCompiles = 1;
-                    sourcesPerCompile = numSources;
-                    // What if the relationship betweem number of compile_chunks and num_required_mbytes
-                    // is not linear? Then perhaps 2 chunks would fit where 3 does not. Well, this is
-                    // something to experiment upon in the future.
-                    Log.debug("Limiting compile to a single thread to stay within heap size limitations!");
-                }
-            }
+        Log.debug("Estimates say that we need "+(totalKiB/1024)+"MiB of heap and "
+                  +totalMillis+"ms for all source files.");
+
+        // Any numCompiles chunks compiled at the same time should fit in the
+        // heap. If the sources do not fit in that many chunks, split them up
+        // in more chunks and compile them as the heap permits.
+        long chunkHeapLimit = Math.max(1, heapBudgetKiB / numCompiles);
+        long numChunks = Math.max(numCompiles, (totalKiB + chunkHeapLimit - 1) / chunkHeapLimit);
+        numChunks = Math.max(1, Math.min(numChunks, pkgSrcs.size()));
+        if (totalKiB > heapBudgetKiB) {
+            Log.debug("Splitting the sources into "+numChunks+" chunks to stay within heap size limitations!");
         }
 
-        Log.debug("Compiling sources in "+numCompiles+" chunk(s)");
-
         // Create the chunks to be compiled.
-        final CompileChunk[] compileChunks = createCompileChunks(pkgSrcs, oldPackageDependents,
-                numCompiles, sourcesPerCompile);
+        final List<CompileChunk> compileChunks = pkgSrcs.isEmpty()
+                ? new ArrayList<>()
+                : createCompileChunks(pkgSrcs, oldPackageDependents,
+                                      pkgMillis, pkgKiB, (int)numChunks, chunkHeapLimit);
+
+        Log.debug("Compiling sources in "+compileChunks.size()+" chunk(s)");
 
         if (Log.isDebugging()) {
             int cn = 1;
             for (CompileChunk cc : compileChunks) {
-                Log.debug("Chunk "+cn+" for "+id+" ---------------");
+                Log.debug("Chunk "+cn+" for "+id+" ("+cc.millis+"ms, "+cc.kib+"KiB) ---------------");
                 cn++;
                 for (URI u : cc.srcs) {
                     Log.debug(""+u);
@@ -206,53 +229,9 @@ public class CompileJavaPackages implements Transformer {
 
         long start = System.currentTimeMillis();
 
-        // Prepare compilation calls
-        List<Callable<CompilationSubResult>> compilationCalls = new ArrayList<>();
-        final Object lock = new Object();
-        for (int i = 0; i < numCompiles; i++) {
-            CompileChunk cc = compileChunks[i];
-            if (cc.srcs.isEmpty()) {
-                continue;
-            }
-
-            String chunkId = id + "-" + String.valueOf(i);
-            Log log = Log.get();
-            compilationCalls.add(() -> {
-                Log.setLogForCurrentThread(log);
-                CompilationSubResult result = sjavac.compile("n/a",
-                                                             chunkId,
-                                                             args.prepJavacArgs(),
-                                                             Collections.emptyList(),
-                                                             cc.srcs,
-                                                             visibleSources);
-                synchronized (lock) {
-                    Util.getLines(result.stdout).forEach(Log::info);
-                    Util.getLines(result.stderr).forEach(Log::error);
-                }
-                return result;
-            });
-        }
-
         // Perform compilations and collect results
-        List<CompilationSubResult> subResults = new ArrayList<>();
-        List<Future<CompilationSubResult>> futs = new ArrayList<>();
-        ExecutorService exec = Executors.newFixedThreadPool(concurrentCompiles ? compilationCalls.size() : 1);
-        for (Callable<CompilationSubResult> compilationCall : compilationCalls) {
-            futs.add(exec.submit(compilationCall));
-        }
-        for (Future<CompilationSubResult> fut : futs) {
-            try {
-                subResults.add(fut.get());
-            } catch (ExecutionException ee) {
-                Log.error("Compilation failed: " + ee.getMessage());
-                Log.error(ee);
-            } catch (InterruptedException ie) {
-                Log.error("Compilation interrupted: " + ie.getMessage());
-                Log.error(ie);
-                Thread.currentThread().interrupt();
-            }
-        }
-        exec.shutdownNow();
+        subResults.addAll(compileChunks(sjavac, compileChunks, numCompiles,
+                heapBudgetKiB, id, visibleSources, pkgSrcs, packageCache));
 
         // Process each sub result
         for (CompilationSubResult subResult : subResults) {
@@ -279,6 +258,10 @@ public class CompileJavaPackages implements Transformer {
                 dependencyPubapis.merge(pkg, subResult.dependencyPubapis.get(pkg), PubApi::mergeTypes);
             }
 
+            sourceTypes.putAll(subResult.sourceTypes);
+            measuredMillis.putAll(subResult.sourceMillis);
+            measuredHeapKiB.putAll(subResult.sourceHeapKiB);
+
             // Check the return values.
             if (subResult.result != Result.OK) {
                 rc = false;
@@ -294,62 +277,456 @@ public class CompileJavaPackages implements Transformer {
     }
 
     /**
-     * Split up the sources into compile chunks. If old package dependents information
-     * is available, sort the order of the chunks into the most dependent first!
-     * (Typically that chunk contains the java.lang package.) In the future
-     * we could perhaps improve the heuristics to put the sources into even more sensible chunks.
-     * Now the package are simple sorted in alphabetical order and chunked, then the chunks
-     * are sorted on how dependent they are.
+     * The top level classes declared by each of the sources compiled by
+     * the last call to transform.
+     */
+    public Map<URI, Set<String>> getSourceTypes() {
+        return sourceTypes;
+    }
+
+    /**
+     * The time in milliseconds it took to compile each of the sources
+     * compiled by the last call to transform.
+     */
+    public Map<URI, Integer> getMeasuredMillis() {
+        return measuredMillis;
+    }
+
+    /**
+     * The heap in KiB needed to compile each of the sources compiled by
+     * the last call to transform.
+     */
+    public Map<URI, Integer> getMeasuredHeapKiB() {
+        return measuredHeapKiB;
+    }
+
+    /**
+     * Set the sources that may be compiled. The compile costs recorded in
+     * them are used to split the sources into compile chunks.
+     */
+    public void setSources(Map<URI, Source> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * Set all sources visible to the compilation. Their contents decide
+     * which packages in the build cache can be used.
+     */
+    public void setVisibleSources(Map<URI, Source> visibleSources) {
+        this.visibleSources = visibleSources;
+    }
+
+    /**
+     * Estimate the time and heap needed to compile each package. A source
+     * that has not been compiled before is assumed to cost as much as the
+     * average source that has.
+     */
+    void estimateCosts(Map<String,Set<URI>> pkgSrcs,
+                       Map<String,Long> pkgMillis,
+                       Map<String,Long> pkgKiB) {
+        long knownMillis = 0;
+        long knownKiB = 0;
+        int numKnown = 0;
+        for (Set<URI> ss : pkgSrcs.values()) {
+            for (URI u : ss) {
+                Source s = sources.get(u);
+                if (s != null && s.hasCompileCost()) {
+                    knownMillis += s.compileMillis();
+                    knownKiB += s.compileKiB();
+                    numKnown++;
+                }
+            }
+        }
+        long defaultMillis = numKnown > 0 ? Math.max(1, knownMillis / numKnown) : 1;
+        long defaultKiB = numKnown > 0 ? Math.max(1, knownKiB / numKnown) : defaultKiBPerFile();
+
+        for (Map.Entry<String,Set<URI>> e : pkgSrcs.entrySet()) {
+            long millis = 0;
+            long kib = 0;
+            for (URI u : e.getValue()) {
+                Source s = sources.get(u);
+                if (s != null && s.hasCompileCost()) {
+                    millis += Math.max(1, s.compileMillis());
+                    kib += Math.max(1, s.compileKiB());
+                } else {
+                    millis += defaultMillis;
+                    kib += defaultKiB;
+                }
+            }
+            pkgMillis.put(e.getKey(), millis);
+            pkgKiB.put(e.getKey(), kib);
+        }
+    }
+
+    /**
+     * The heap needed per source file when nothing has been measured yet.
+     */
+    static int defaultKiBPerFile() {
+        // For 64 bit Java, it seems we can compile the OpenJDK 8800 files with a 1500M of heap
+        // in a single chunk, with reasonable performance.
+        // For 32 bit java, it seems we need 1G of heap.
+        // Number experimentally determined when compiling the OpenJDK.
+        // Includes space for reasonably efficient garbage collection etc,
+        // Calculating backwards gives us a requirement of
+        // 1500M/8800 = 175 KiB for 64 bit platforms
+        // and 1G/8800 = 119 KiB for 32 bit platform
+        // for each compile.....
+        if ("32".equals(System.getProperty("sun.arch.data.model"))) {
+            // For 32 bit platforms, assume it is slightly smaller
+            // because of smaller object headers and pointers.
+            return 119;
+        }
+        return 175;
+    }
+
+    /**
+     * Split up the sources into compile chunks. A chunk that depends on a
+     * package in another chunk has to compile the sources of that package
+     * as well, therefore the packages are packed so that few dependencies
+     * cross chunks, while keeping the estimated time of the chunks even,
+     * and the heap of each chunk below chunkHeapLimit. Packages in a
+     * dependency cycle are kept together, if they fit.
+     *
+     * The packages are placed dependencies first, each in the chunk that
+     * already holds most of what it depends on, discounted by how full
+     * the chunk is. The chunks are returned with the chunks on the longest
+     * critical path first.
      *
      * @param pkgSrcs The sources to compile.
-     * @param oldPackageDependents Old package dependents, if non-empty, used to sort the chunks.
-     * @param numCompiles The number of chunks.
-     * @param sourcesPerCompile The number of sources per chunk.
-     * @return
+     * @param oldPackageDependents Old package dependents, if non-empty, used to group the packages.
+     * @param pkgMillis The estimated time to compile each package.
+     * @param pkgKiB The estimated heap needed to compile each package.
+     * @param numChunks The number of chunks.
+     * @param chunkHeapLimit The heap available to each chunk.
+     * @return The non-empty chunks.
      */
-    CompileChunk[] createCompileChunks(Map<String,Set<URI>> pkgSrcs,
-                                       Map<String,Set<String>> oldPackageDependents,
-                                       int numCompiles,
-                                       int sourcesPerCompile) {
-
-        CompileChunk[] compileChunks = new CompileChunk[numCompiles];
-        for (int i=0; i<compileChunks.length; ++i) {
-            compileChunks[i] = new CompileChunk();
+    List<CompileChunk> createCompileChunks(Map<String,Set<URI>> pkgSrcs,
+                                           Map<String,Set<String>> oldPackageDependents,
+                                           Map<String,Long> pkgMillis,
+                                           Map<String,Long> pkgKiB,
+                                           int numChunks,
+                                           long chunkHeapLimit) {
+
+        // The dependencies between the packages to compile, as of the previous build.
+        Map<String,Set<String>> deps = new TreeMap<>();
+        for (String pkg : pkgSrcs.keySet()) {
+            deps.put(pkg, new TreeSet<>());
+        }
+        for (String pkg : pkgSrcs.keySet()) {
+            for (String dependent : oldPackageDependents.getOrDefault(pkg, Collections.emptySet())) {
+                if (deps.containsKey(dependent) && !dependent.equals(pkg)) {
+                    deps.get(dependent).add(pkg);
+                }
+            }
         }
 
-        // Now go through the packages and spread out the source on the different chunks.
-        int ci = 0;
-        // Sort the packages
-        String[] packageNames = pkgSrcs.keySet().toArray(new String[0]);
-        Arrays.sort(packageNames);
-        String from = null;
-        for (String pkgName : packageNames) {
-            CompileChunk cc = compileChunks[ci];
-            Set<URI> s = pkgSrcs.get(pkgName);
-            if (cc.srcs.size()+s.size() > sourcesPerCompile && ci < numCompiles-1) {
-                from = null;
-                ci++;
-                cc = compileChunks[ci];
+        // The units to place, dependencies first.
+        List<List<String>> units = new ArrayList<>();
+        for (List<String> cycle : new CycleFinder(deps).cycles) {
+            long kib = 0;
+            for (String pkg : cycle) {
+                kib += pkgKiB.get(pkg);
             }
-            cc.numPackages++;
-            cc.srcs.addAll(s);
-
-            // Calculate nice package names to use as information when compiling.
-            String justPkgName = Util.justPackageName(pkgName);
-            // Fetch how many packages depend on this package from the old build state.
-            Set<String> ss = oldPackageDependents.get(pkgName);
-            if (ss != null) {
-                // Accumulate this information onto this chunk.
-                cc.numDependents += ss.size();
+            if (kib <= chunkHeapLimit) {
+                units.add(cycle);
+            } else {
+                for (String pkg : cycle) {
+                    units.add(Collections.singletonList(pkg));
+                }
             }
-            if (from == null || from.trim().equals("")) from = justPkgName;
-            cc.pkgNames.append(justPkgName+"("+s.size()+") ");
-            cc.pkgFromTos = from+" to "+justPkgName;
         }
-        // If we are compiling serially, sort the chunks, so that the chunk (with the most dependents) (usually the chunk
-        // containing java.lang.Object, is to be compiled first!
-        // For concurrent compilation, this does not matter.
-        Arrays.sort(compileChunks);
+
+        long totalMillis = 0;
+        for (long millis : pkgMillis.values()) {
+            totalMillis += millis;
+        }
+        double targetMillis = Math.max(1.0, (double)totalMillis / numChunks);
+
+        List<CompileChunk> compileChunks = new ArrayList<>();
+        for (int i = 0; i < numChunks; i++) {
+            compileChunks.add(new CompileChunk());
+        }
+        Map<String,CompileChunk> chunkOf = new HashMap<>();
+        for (List<String> unit : units) {
+            long unitKiB = 0;
+            for (String pkg : unit) {
+                unitKiB += pkgKiB.get(pkg);
+            }
+            boolean anyFits = false;
+            for (CompileChunk cc : compileChunks) {
+                anyFits |= cc.kib + unitKiB <= chunkHeapLimit;
+            }
+            CompileChunk best = null;
+            double bestScore = 0;
+            for (CompileChunk cc : compileChunks) {
+                if (anyFits && cc.kib + unitKiB > chunkHeapLimit) {
+                    continue;
+                }
+                // The time saved by not compiling what the unit depends on in another chunk.
+                long affinity = 0;
+                for (String pkg : unit) {
+                    for (String dep : deps.get(pkg)) {
+                        if (chunkOf.get(dep) == cc) {
+                            affinity += pkgMillis.get(dep);
+                        }
+                    }
+                }
+                double load = Math.max(minLoadFactor, 1.0 - cc.millis / targetMillis);
+                double score = (affinity + 1) * load;
+                if (best == null || score > bestScore
+                        || (score == bestScore && cc.millis < best.millis)) {
+                    best = cc;
+                    bestScore = score;
+                }
+            }
+            for (String pkg : unit) {
+                chunkOf.put(pkg, best);
+                best.packages.add(pkg);
+                best.numPackages++;
+                best.srcs.addAll(pkgSrcs.get(pkg));
+                best.millis += pkgMillis.get(pkg);
+                best.kib += pkgKiB.get(pkg);
+                best.pkgNames.append(Util.justPackageName(pkg)+"("+pkgSrcs.get(pkg).size()+") ");
+            }
+        }
+        compileChunks.removeIf(cc -> cc.numPackages == 0);
+
+        // Link the chunks and find their critical paths.
+        Map<CompileChunk,Set<CompileChunk>> dependents = new HashMap<>();
+        for (CompileChunk cc : compileChunks) {
+            dependents.put(cc, new HashSet<>());
+        }
+        for (CompileChunk cc : compileChunks) {
+            for (String pkg : cc.packages) {
+                for (String dep : deps.get(pkg)) {
+                    CompileChunk dc = chunkOf.get(dep);
+                    if (dc != cc) {
+                        cc.dependencies.add(dc);
+                        dependents.get(dc).add(cc);
+                    }
+                }
+            }
+        }
+        Set<CompileChunk> visiting = new HashSet<>();
+        for (CompileChunk cc : compileChunks) {
+            calculateCriticalPath(cc, dependents, visiting);
+        }
+        Collections.sort(compileChunks);
         return compileChunks;
     }
+
+    private long calculateCriticalPath(CompileChunk cc,
+                                       Map<CompileChunk,Set<CompileChunk>> dependents,
+                                       Set<CompileChunk> visiting) {
+        if (cc.criticalPath > 0 || !visiting.add(cc)) {
+            // Done, or a cycle between chunks, which is cut here.
+            return cc.criticalPath;
+        }
+        long longest = 0;
+        for (CompileChunk d : dependents.get(cc)) {
+            longest = Math.max(longest, calculateCriticalPath(d, dependents, visiting));
+        }
+        visiting.remove(cc);
+        cc.criticalPath = cc.millis + longest;
+        return cc.criticalPath;
+    }
+
+    /**
+     * Compile the chunks with numWorkers threads. An idle thread takes the
+     * chunk with the longest critical path among the chunks that fit in
+     * the heap next to the chunks being compiled. The chunks compile
+     * against the sources of each other, so a chunk need not wait for the
+     * chunks it depends on to finish. The dependencies only decide which
+     * chunks to start first. The packages of a chunk that compiles are
+     * stored in the build cache, if there is one.
+     */
+    private List<CompilationSubResult> compileChunks(CompilationService sjavac,
+                                                     List<CompileChunk> compileChunks,
+                                                     int numWorkers,
+                                                     long heapBudgetKiB,
+                                                     String id,
+                                                     Set<URI> visibleSources,
+                                                     Map<String,Set<URI>> pkgSrcs,
+                                                     PackageCache packageCache) {
+        ChunkQueue queue = new ChunkQueue(compileChunks, heapBudgetKiB);
+        List<CompilationSubResult> subResults = Collections.synchronizedList(new ArrayList<>());
+        final Object lock = new Object();
+        Log log = Log.get();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(numWorkers, compileChunks.size()); i++) {
+            workers.add(() -> {
+                Log.setLogForCurrentThread(log);
+                CompileChunk cc;
+                while ((cc = queue.take()) != null) {
+                    String chunkId = id + "-" + compileChunks.indexOf(cc);
+                    long start = System.currentTimeMillis();
+                    Result chunkResult = Result.ERROR;
+                    long chunkKiB = 0;
+                    ServerMetrics.chunkStarted();
+                    try {
+                        CompilationSubResult result = sjavac.compile("n/a",
+                                                                     chunkId,
+                                                                     args.prepJavacArgs(),
+                                                                     Collections.emptyList(),
+                                                                     cc.srcs,
+                                                                     visibleSources);
+                        synchronized (lock) {
+                            Util.getLines(result.stdout).forEach(Log::info);
+                            Util.getLines(result.stderr).forEach(Log::error);
+                        }
+                        subResults.add(result);
+                        chunkResult = result.result;
+                        for (int kib : result.sourceHeapKiB.values())
+                            chunkKiB += kib;
+                        if (packageCache != null) {
+                            Map<String,Set<URI>> compiled = new HashMap<>();
+                            for (String pkg : cc.packages)
+                                compiled.put(pkg, pkgSrcs.get(pkg));
+                            packageCache.store(compiled, result);
+                        }
+                    } catch (RuntimeException | Error e) {
+                        Log.error("Compilation failed: " + e.getMessage());
+                        Log.error(e);
+                        subResults.add(new CompilationSubResult(Result.ERROR));
+                    } finally {
+                        ServerMetrics.chunkFinished(chunkId, cc.srcs.size(),
+                                                    System.currentTimeMillis() - start,
+                                                    chunkKiB, chunkResult);
+                        queue.done(cc);
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService exec = Executors.newFixedThreadPool(Math.max(1, workers.size()));
+        try {
+            for (Future<Void> fut : exec.invokeAll(workers)) {
+                try {
+                    fut.get();
+                } catch (ExecutionException ee) {
+                    Log.error("Compilation failed: " + ee.getMessage());
+                    Log.error(ee);
+                    subResults.add(new CompilationSubResult(Result.ERROR));
+                }
+            }
+        } catch (InterruptedException ie) {
+            Log.error("Compilation interrupted: " + ie.getMessage());
+            Log.error(ie);
+            Thread.currentThread().interrupt();
+        }
+        exec.shutdownNow();
+        return subResults;
+    }
+
+    /**
+     * The chunks waiting to be compiled, in the order they should be
+     * compiled. Chunks are handed out as long as the chunks being compiled
+     * fit in the heap. A chunk is always handed out if nothing else is
+     * being compiled.
+     */
+    private static class ChunkQueue {
+        private final List<CompileChunk> pending;
+        private final long heapBudgetKiB;
+        private long compilingKiB;
+        private int compiling;
+
+        ChunkQueue(List<CompileChunk> chunks, long heapBudgetKiB) {
+            this.pending = new ArrayList<>(chunks);
+            this.heapBudgetKiB = heapBudgetKiB;
+        }
+
+        synchronized CompileChunk take() throws InterruptedException {
+            while (!pending.isEmpty()) {
+                for (Iterator<CompileChunk> it = pending.iterator(); it.hasNext(); ) {
+                    CompileChunk cc = it.next();
+                    if (compiling == 0 || compilingKiB + cc.kib <= heapBudgetKiB) {
+                        it.remove();
+                        compiling++;
+                        compilingKiB += cc.kib;
+                        return cc;
+                    }
+                }
+                wait();
+            }
+            return null;
+        }
+
+        synchronized void done(CompileChunk cc) {
+            compiling--;
+            compilingKiB -= cc.kib;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Finds the strongly connected components of the package dependency
+     * graph, with Tarjan's algorithm. A component is listed after the
+     * components it depends on.
+     */
+    private static class CycleFinder {
+        final List<List<String>> cycles = new ArrayList<>();
+        private final Map<String,Set<String>> deps;
+        private final Map<String,Integer> index = new HashMap<>();
+        private final Map<String,Integer> lowLink = new HashMap<>();
+        private final Deque<String> stack = new ArrayDeque<>();
+        private final Set<String> onStack = new HashSet<>();
+
+        CycleFinder(Map<String,Set<String>> deps) {
+            this.deps = deps;
+            for (String pkg : deps.keySet()) {
+                if (!index.containsKey(pkg)) {
+                    visit(pkg);
+                }
+            }
+        }
+
+        // The search keeps its own stack of the packages on the current
+        // path, with the dependencies of each that are left to visit, as
+        // a chain of dependencies may be too long to recurse along.
+        private void visit(String root) {
+            Deque<String> path = new ArrayDeque<>();
+            Deque<Iterator<String>> pending = new ArrayDeque<>();
+            enter(root, path, pending);
+            while (!path.isEmpty()) {
+                String pkg = path.peek();
+                Iterator<String> it = pending.peek();
+                if (it.hasNext()) {
+                    String dep = it.next();
+                    if (!index.containsKey(dep)) {
+                        enter(dep, path, pending);
+                    } else if (onStack.contains(dep)) {
+                        lowLink.put(pkg, Math.min(lowLink.get(pkg), index.get(dep)));
+                    }
+                    continue;
+                }
+                path.pop();
+                pending.pop();
+                if (lowLink.get(pkg).equals(index.get(pkg))) {
+                    List<String> cycle = new ArrayList<>();
+                    String p;
+                    do {
+                        p = stack.pop();
+                        onStack.remove(p);
+                        cycle.add(p);
+                    } while (!p.equals(pkg));
+                    Collections.sort(cycle);
+                    cycles.add(cycle);
+                }
+                String dependent = path.peek();
+                if (dependent != null) {
+                    lowLink.put(dependent, Math.min(lowLink.get(dependent), lowLink.get(pkg)));
+                }
+            }
+        }
+
+        private void enter(String pkg, Deque<String> path, Deque<Iterator<String>> pending) {
+            index.put(pkg, index.size());
+            lowLink.put(pkg, index.get(pkg));
+            stack.push(pkg);
+            onStack.add(pkg);
+            path.push(pkg);
+            pending.push(deps.get(pkg).iterator());
+        }
+    }
 }
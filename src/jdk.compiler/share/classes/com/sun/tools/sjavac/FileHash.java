@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The content hash of a file, together with the size and timestamp the
+ * file had when it was hashed. As long as the size and timestamp of the
+ * file are unchanged, the file is presumed to still have this content,
+ * and it is not hashed again.
+ *
+ * <p>The hash lets sjavac recognize files whose timestamps have changed
+ * without their contents changing, as happens after a version control
+ * checkout or when a build directory is restored from a cache.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class FileHash {
+
+    private final long lastModified;
+    private final long size;
+    private final String hash;
+
+    /**
+     * @param hash the content hash, or null if only the timestamp is known
+     */
+    public FileHash(long lastModified, long size, String hash) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    public long lastModified() { return lastModified; }
+    public long size() { return size; }
+    public String hash() { return hash; }
+
+    /**
+     * Hash the file, or return null if it cannot be read.
+     */
+    public static FileHash of(File f) {
+        long lm = f.lastModified();
+        long size = f.length();
+        try {
+            return new FileHash(lm, size, hashContents(f));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hash the files, in parallel. The result has a null element for
+     * each file that cannot be read.
+     */
+    public static FileHash[] of(List<File> files) {
+        FileHash[] hashes = new FileHash[files.size()];
+        IntStream.range(0, hashes.length)
+                 .parallel()
+                 .forEach(i -> hashes[i] = of(files.get(i)));
+        return hashes;
+    }
+
+    /**
+     * Check if the file still has the size and timestamp it had when it
+     * was hashed, in which case this hash is presumed to still be valid.
+     */
+    public boolean isCurrent(File f) {
+        return hash != null && f.lastModified() == lastModified && f.length() == size;
+    }
+
+    public boolean sameContentsAs(FileHash other) {
+        return other != null && hash != null && size == other.size && hash.equals(other.hash);
+    }
+
+    private static String hashContents(File f) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError(e);
+        }
+        byte[] buf = new byte[8192];
+        try (InputStream in = new FileInputStream(f)) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                md.update(buf, 0, n);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+              .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
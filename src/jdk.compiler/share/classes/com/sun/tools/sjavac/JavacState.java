@@ -35,6 +35,7 @@ import java.io.Writer;
 import java.net.URI;
 import java.nio.file.NoSuchFileException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -44,10 +45,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
 
 import com.sun.tools.sjavac.comp.CompilationService;
 import com.sun.tools.sjavac.options.Options;
+import com.sun.tools.sjavac.options.SourceLocation;
 import com.sun.tools.sjavac.pubapi.PubApi;
+import com.sun.tools.sjavac.pubapi.PubType;
 
 /**
  * The javac state class maintains the previous (prev) and the current (now)
@@ -103,6 +107,20 @@ public class JavacState {
     // verbatim from the previous (prev) to the new (now) build state.
     private Set<String> recompiledPackages;
 
+    // When recompiling on class level (--incremental=class) these are the sources
+    // that need to be recompiled, even though their packages as a whole do not.
+    // The state of the rest of their packages is carried over from the previous build.
+    private Set<Source> taintedSources;
+    // When recompiling on class level, the pubapis of the recompiled top level classes
+    // are compared with their previous pubapis. Any classes where the pubapi differ
+    // are added to this set, and used to taint the sources that depend on them.
+    private Set<String> typesWithChangedPublicApis;
+    // Packages that got new top level classes. A new class can change how names are
+    // resolved, so anything depending on such a package is recompiled.
+    private Set<String> packagesWithNewTypes;
+    // All sources compiled so far.
+    private Set<Source> recompiledSources;
+
     // The output directories filled with tasty artifacts.
     private File binDir, gensrcDir, headerDir, stateDir;
 
@@ -119,6 +137,12 @@ public class JavacState {
     // Visible sources for linking. These are the only
     // ones that -sourcepath is allowed to see.
     Set<URI> visibleSrcs;
+    private Map<URI,Source> visibleSources;
+
+    // The content hashes of the jars on the class path, as of the previous
+    // build, and as of this build once they have been checked.
+    private Map<String,FileHash> prevClasspathHashes = new HashMap<>();
+    private Map<String,FileHash> classpathHashes;
 
     // Setup transform that always exist.
     private CompileJavaPackages compileJavaPackages = new CompileJavaPackages();
@@ -157,6 +181,10 @@ public class JavacState {
         taintedPackages = new HashSet<>();
         recompiledPackages = new HashSet<>();
         packagesWithChangedPublicApis = new HashSet<>();
+        taintedSources = new HashSet<>();
+        typesWithChangedPublicApis = new HashSet<>();
+        packagesWithNewTypes = new HashSet<>();
+        recompiledSources = new HashSet<>();
     }
 
     public BuildState prev() { return prev; }
@@ -195,9 +223,11 @@ public class JavacState {
      */
     public void setVisibleSources(Map<String,Source> vs) {
         visibleSrcs = new HashSet<>();
+        visibleSources = new HashMap<>();
         for (String s : vs.keySet()) {
             Source src = vs.get(s);
             visibleSrcs.add(src.file().toURI());
+            visibleSources.put(src.file().toURI(), src);
         }
     }
 
@@ -208,6 +238,14 @@ public class JavacState {
         return !prev.sources().isEmpty();
     }
 
+    /**
+     * Returns true if this is an incremental build that recompiles
+     * individual sources rather than whole packages.
+     */
+    public boolean isClassLevelIncremental() {
+        return options.isClassLevelIncremental() && isIncremental();
+    }
+
     /**
      * Find all artifacts that exists on disk.
      */
@@ -229,7 +267,17 @@ public class JavacState {
     }
 
     /**
-     * Delete all prev artifacts in the currently tainted packages.
+     * Lookup the most recent state of a package, i.e. the state after it was
+     * recompiled, or the state from the previous build if it has not been.
+     */
+    private Package packageState(String pkg) {
+        return recompiledPackages.contains(pkg) ? now.packages().get(pkg)
+                                                : prev.packages().get(pkg);
+    }
+
+    /**
+     * Delete all prev artifacts in the currently tainted packages,
+     * and the class files generated from the currently tainted sources.
      */
     public void deleteClassArtifactsInTaintedPackages() {
         for (String pkg : taintedPackages) {
@@ -240,6 +288,15 @@ public class JavacState {
                 }
             }
         }
+        for (Source s : taintedSources) {
+            Package p = packageState(s.pkg().name());
+            Map<String,File> arts = p.artifactsOfTypes(p.typesOfSource(s.name()));
+            for (File f : arts.values()) {
+                if (f.exists() && f.getName().endsWith(".class")) {
+                    f.delete();
+                }
+            }
+        }
     }
 
     /**
@@ -256,31 +313,52 @@ public class JavacState {
     public void save() throws IOException {
         if (!needsSaving)
             return;
-        try (FileWriter out = new FileWriter(javacState)) {
-            StringBuilder b = new StringBuilder();
-            long millisNow = System.currentTimeMillis();
-            Date d = new Date(millisNow);
-            SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss SSS");
-            b.append("# javac_state ver 0.4 generated "+millisNow+" "+df.format(d)+"\n");
-            b.append("# This format might change at any time. Please do not depend on it.\n");
-            b.append("# R arguments\n");
-            b.append("# M module\n");
-            b.append("# P package\n");
-            b.append("# S C source_tobe_compiled timestamp\n");
-            b.append("# S L link_only_source timestamp\n");
-            b.append("# G C generated_source timestamp\n");
-            b.append("# A artifact timestamp\n");
-            b.append("# D S dependant -> source dependency\n");
-            b.append("# D C dependant -> classpath dependency\n");
-            b.append("# I pubapi\n");
-            b.append("R ").append(theArgs).append("\n");
-
-            // Copy over the javac_state for the packages that did not need recompilation.
-            now.copyPackagesExcept(prev, recompiledPackages, new HashSet<String>());
-            // Save the packages, ie package names, dependencies, pubapis and artifacts!
-            // I.e. the lot.
-            Module.saveModules(now.modules(), b);
 
+        // Copy over the javac_state for the packages that did not need recompilation.
+        // (Do this, and collect everything to be saved, before the old javac_state
+        // is overwritten, since its contents may still be read lazily.)
+        now.copyPackagesExcept(prev, recompiledPackages, new HashSet<String>());
+        hashArtifacts();
+        Map<String,FileHash> cpHashes = classpathHashes != null ? classpathHashes
+                                                                : new HashMap<>();
+        if (!options.isStateInTextFormat()) {
+            BinaryJavacState.save(javacState, theArgs, cpHashes, now.modules());
+            return;
+        }
+
+        StringBuilder b = new StringBuilder();
+        long millisNow = System.currentTimeMillis();
+        Date d = new Date(millisNow);
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss SSS");
+        b.append("# javac_state ver 0.4 generated "+millisNow+" "+df.format(d)+"\n");
+        b.append("# This format might change at any time. Please do not depend on it.\n");
+        b.append("# R arguments\n");
+        b.append("# M module\n");
+        b.append("# P package\n");
+        b.append("# S C source_tobe_compiled timestamp\n");
+        b.append("# S L link_only_source timestamp\n");
+        b.append("# G C generated_source timestamp\n");
+        b.append("# W compile_millis heap_kib of the source above\n");
+        b.append("# H size content_hash of the source or artifact above\n");
+        b.append("# A artifact timestamp\n");
+        b.append("# D S dependant -> source dependency\n");
+        b.append("# D C dependant -> classpath dependency\n");
+        b.append("# I pubapi\n");
+        b.append("# T top_level_class source\n");
+        b.append("# J timestamp size content_hash classpath_jar\n");
+        b.append("R ").append(theArgs).append("\n");
+        List<String> jars = new ArrayList<>(cpHashes.keySet());
+        Collections.sort(jars);
+        for (String jar : jars) {
+            FileHash h = cpHashes.get(jar);
+            b.append("J "+h.lastModified()+" "+h.size()+" "+h.hash()+" "+jar+"\n");
+        }
+
+        // Save the packages, ie package names, dependencies, pubapis and artifacts!
+        // I.e. the lot.
+        Module.saveModules(now.modules(), b);
+
+        try (FileWriter out = new FileWriter(javacState)) {
             String s = b.toString();
             out.write(s, 0, s.length());
         }
@@ -294,6 +372,7 @@ public class JavacState {
         Module  lastModule = null;
         Package lastPackage = null;
         Source  lastSource = null;
+        String  lastArtifact = null;
         boolean noFileFound = false;
         boolean foundCorrectVerNr = false;
         boolean newCommandLine = false;
@@ -301,57 +380,91 @@ public class JavacState {
 
         Log.debug("Loading javac state file: " + db.javacState);
 
-        try (BufferedReader in = new BufferedReader(new FileReader(db.javacState))) {
-            for (;;) {
-                String l = in.readLine();
-                if (l==null) break;
-                if (l.length()>=3 && l.charAt(1) == ' ') {
-                    char c = l.charAt(0);
-                    if (c == 'M') {
-                        lastModule = db.prev.loadModule(l);
-                    } else
-                    if (c == 'P') {
-                        if (lastModule == null) { syntaxError = true; break; }
-                        lastPackage = db.prev.loadPackage(lastModule, l);
-                    } else
-                    if (c == 'D') {
-                        if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
-                        char depType = l.charAt(2);
-                        if (depType != 'S' && depType != 'C')
-                            throw new RuntimeException("Bad dependency string: " + l);
-                        lastPackage.parseAndAddDependency(l.substring(4), depType == 'C');
-                    } else
-                    if (c == 'I') {
-                        if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
-                        lastPackage.getPubApi().appendItem(l.substring(2)); // Strip "I "
-                    } else
-                    if (c == 'A') {
-                        if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
-                        lastPackage.loadArtifact(l);
-                    } else
-                    if (c == 'S') {
-                        if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
-                        lastSource = db.prev.loadSource(lastPackage, l, false);
-                    } else
-                    if (c == 'G') {
-                        if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
-                        lastSource = db.prev.loadSource(lastPackage, l, true);
-                    } else
-                    if (c == 'R') {
-                        String ncmdl = "R "+db.theArgs;
-                        if (!l.equals(ncmdl)) {
-                            newCommandLine = true;
-                        }
-                    } else
-                         if (c == '#') {
-                        if (l.startsWith("# javac_state ver ")) {
-                            int sp = l.indexOf(" ", 18);
-                            if (sp != -1) {
-                                String ver = l.substring(18,sp);
-                                if (!ver.equals("0.4")) {
-                    break;
-                                 }
-                foundCorrectVerNr = true;
+        boolean binary = false;
+
+        try {
+            if (BinaryJavacState.isBinary(db.javacState)) {
+                binary = true;
+                String args = BinaryJavacState.load(db.javacState, db.prevClasspathHashes, db.prev);
+                if (args != null) {
+                    foundCorrectVerNr = true;
+                    newCommandLine = !args.equals(db.theArgs);
+                }
+            } else {
+                try (BufferedReader in = new BufferedReader(new FileReader(db.javacState))) {
+                    for (;;) {
+                        String l = in.readLine();
+                        if (l==null) break;
+                        if (l.length()>=3 && l.charAt(1) == ' ') {
+                            char c = l.charAt(0);
+                            if (c == 'M') {
+                                lastModule = db.prev.loadModule(l);
+                            } else
+                            if (c == 'P') {
+                                if (lastModule == null) { syntaxError = true; break; }
+                                lastPackage = db.prev.loadPackage(lastModule, l);
+                            } else
+                            if (c == 'D') {
+                                if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
+                                char depType = l.charAt(2);
+                                if (depType != 'S' && depType != 'C')
+                                    throw new RuntimeException("Bad dependency string: " + l);
+                                lastPackage.parseAndAddDependency(l.substring(4), depType == 'C');
+                            } else
+                            if (c == 'I') {
+                                if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
+                                lastPackage.getPubApi().appendItem(l.substring(2)); // Strip "I "
+                            } else
+                            if (c == 'A') {
+                                if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
+                                lastArtifact = lastPackage.loadArtifact(l);
+                                lastSource = null;
+                            } else
+                            if (c == 'T') {
+                                if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
+                                lastPackage.loadTypeSource(l);
+                            } else
+                            if (c == 'S') {
+                                if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
+                                lastSource = db.prev.loadSource(lastPackage, l, false);
+                                lastArtifact = null;
+                            } else
+                            if (c == 'G') {
+                                if (lastModule == null || lastPackage == null) { syntaxError = true; break; }
+                                lastSource = db.prev.loadSource(lastPackage, l, true);
+                                lastArtifact = null;
+                            } else
+                            if (c == 'W') {
+                                if (lastSource == null) { syntaxError = true; break; }
+                                lastSource.loadCompileCost(l);
+                            } else
+                            if (c == 'H') {
+                                if (lastSource != null) {
+                                    lastSource.loadContentHash(l);
+                                } else if (lastArtifact != null) {
+                                    lastPackage.loadArtifactHash(lastArtifact, l);
+                                } else { syntaxError = true; break; }
+                            } else
+                            if (c == 'J') {
+                                if (!db.loadClasspathHash(l)) { syntaxError = true; break; }
+                            } else
+                            if (c == 'R') {
+                                String ncmdl = "R "+db.theArgs;
+                                if (!l.equals(ncmdl)) {
+                                    newCommandLine = true;
+                                }
+                            } else
+                                 if (c == '#') {
+                                if (l.startsWith("# javac_state ver ")) {
+                                    int sp = l.indexOf(" ", 18);
+                                    if (sp != -1) {
+                                        String ver = l.substring(18,sp);
+                                        if (!ver.equals("0.4")) {
+                            break;
+                                         }
+                        foundCorrectVerNr = true;
+                                    }
+                                }
                             }
                         }
                     }
@@ -367,6 +480,10 @@ public class JavacState {
             newCommandLine = false;
             syntaxError = false;
     }
+        if (binary == options.isStateInTextFormat() && !noFileFound) {
+            // Rewrite the state in the requested format even if nothing is recompiled.
+            db.needsSaving();
+        }
         if (foundCorrectVerNr == false && !noFileFound) {
             Log.debug("Dropping old javac_state since it is of an old version.");
             db = new JavacState(options, true);
@@ -380,9 +497,122 @@ public class JavacState {
             db = new JavacState(options, true);
         }
         db.prev.calculateDependents();
+        db.checkArtifacts();
         return db;
     }
 
+    // Parse a line that looks like this:
+    // J 1357631228000 4096 da39a3ee5e6b4b0d3255bfef95601890afd80709 /libs/alfa.jar
+    private boolean loadClasspathHash(String l) {
+        String[] parts = l.split(" ", 5);
+        if (parts.length != 5) return false;
+        prevClasspathHashes.put(parts[4], new FileHash(Long.parseLong(parts[1]),
+                                                       Long.parseLong(parts[2]),
+                                                       parts[3]));
+        return true;
+    }
+
+    /**
+     * Remove artifacts whose timestamps do not match the javac_state.
+     * Someone else has written to them, so we no longer trust them, and
+     * the smart javac wrapper will rebuild them. Artifacts whose contents
+     * still match their recorded hash are kept, and their new timestamps
+     * are recorded. That is what happens to all artifacts when a build
+     * directory is restored, or copied.
+     */
+    private void checkArtifacts() {
+        List<File> suspects = new ArrayList<>();
+        List<FileHash> recorded = new ArrayList<>();
+        List<Package> owners = new ArrayList<>();
+        for (Package p : prev.packages().values()) {
+            for (Map.Entry<String,FileHash> e : p.artifactHashes().entrySet()) {
+                File f = p.artifacts().get(e.getKey());
+                FileHash h = e.getValue();
+                if (f == null || !f.exists() || f.lastModified() == h.lastModified())
+                    continue;
+                if (h.hash() == null || f.length() != h.size()) {
+                    removeTamperedArtifact(f);
+                } else {
+                    suspects.add(f);
+                    recorded.add(h);
+                    owners.add(p);
+                }
+            }
+        }
+        FileHash[] onDisk = FileHash.of(suspects);
+        for (int i = 0; i < onDisk.length; i++) {
+            File f = suspects.get(i);
+            if (onDisk[i] != null && onDisk[i].sameContentsAs(recorded.get(i))) {
+                owners.get(i).artifactHashes().put(f.getPath(), onDisk[i]);
+                needsSaving();
+            } else {
+                removeTamperedArtifact(f);
+            }
+        }
+    }
+
+    private void removeTamperedArtifact(File f) {
+        Log.debug("Removing "+f.getPath()+" since its timestamp does not match javac_state.");
+        f.delete();
+    }
+
+    /**
+     * Make sure the artifacts to be saved in javac_state have up to date
+     * content hashes. Only new or rewritten artifacts are hashed.
+     */
+    private void hashArtifacts() {
+        List<File> files = new ArrayList<>();
+        List<Package> owners = new ArrayList<>();
+        for (Package p : now.packages().values()) {
+            for (File f : p.artifacts().values()) {
+                FileHash h = p.artifactHashes().get(f.getPath());
+                if (h == null || !h.isCurrent(f)) {
+                    files.add(f);
+                    owners.add(p);
+                }
+            }
+        }
+        FileHash[] hashes = FileHash.of(files);
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != null) {
+                owners.get(i).artifactHashes().put(files.get(i).getPath(), hashes[i]);
+            } else {
+                owners.get(i).artifactHashes().remove(files.get(i).getPath());
+            }
+        }
+    }
+
+    /**
+     * Hash the sources found in this build. Sources that still have the
+     * size and timestamp recorded in javac_state keep their recorded hash,
+     * the others are hashed.
+     */
+    private void hashSources() {
+        List<Source> unhashed = new ArrayList<>();
+        for (Source n : now.sources().values()) {
+            if (n.file() == null || (n.contentHash() != null && n.contentHash().isCurrent(n.file())))
+                continue;
+            Source t = prev.sources().get(n.name());
+            FileHash h = t != null ? t.contentHash() : null;
+            if (h != null && h.isCurrent(n.file())) {
+                n.setContentHash(h);
+            } else {
+                unhashed.add(n);
+            }
+        }
+        List<File> files = unhashed.stream().map(Source::file).collect(Collectors.toList());
+        FileHash[] hashes = FileHash.of(files);
+        for (int i = 0; i < hashes.length; i++) {
+            Source n = unhashed.get(i);
+            n.setContentHash(hashes[i]);
+            // If the source is not recompiled, its previous state is
+            // what gets saved; let it carry the hash as well.
+            Source t = prev.sources().get(n.name());
+            if (t != null && t.contentHash() == null && t.lastModified() == n.lastModified())
+                t.setContentHash(hashes[i]);
+        }
+    }
+
     /**
      * Mark a java package as tainted, ie it needs recompilation.
      */
@@ -401,6 +631,30 @@ public class JavacState {
         }
     }
 
+    /**
+     * Mark a java source as tainted, ie it needs recompilation. Unless this is
+     * a class level incremental build, and the javac state knows which classes
+     * the sources of the package declare, the whole package is tainted instead.
+     */
+    public void taintSource(Source s, String because) {
+        String pkg = s.pkg().name();
+        if (taintedPackages.contains(pkg) || taintedSources.contains(s))
+            return;
+        Package p = packageState(pkg);
+        boolean isNew = prev.sources().get(s.name()) == null;
+        if (!isClassLevelIncremental()
+                || !s.suffix().equals(".java")
+                || p == null
+                || p.typeSources().isEmpty()
+                || (!isNew && p.typesOfSource(s.name()).isEmpty())) {
+            taintPackage(pkg, because);
+            return;
+        }
+        if (because != null) Log.debug("Tainting "+s.name()+" because "+because);
+        taintedSources.add(s);
+        needsSaving();
+    }
+
     /**
      * This packages need recompilation.
      */
@@ -421,6 +675,7 @@ public class JavacState {
      * and taint the corresponding packages.
      */
     public void checkSourceStatus(boolean check_gensrc) {
+        hashSources();
         removedSources = calculateRemovedSources();
         for (Source s : removedSources) {
             if (!s.isGenerated() || check_gensrc) {
@@ -438,14 +693,14 @@ public class JavacState {
                 msg = "source "+s.name()+" was added";
             }
             if (!s.isGenerated() || check_gensrc) {
-                taintPackage(s.pkg().name(), msg);
+                taintSource(s, msg);
             }
         }
 
         modifiedSources = calculateModifiedSources();
         for (Source s : modifiedSources) {
             if (!s.isGenerated() || check_gensrc) {
-                taintPackage(s.pkg().name(), "source "+s.name()+" was modified");
+                taintSource(s, "source "+s.name()+" was modified");
             }
         }
     }
@@ -501,12 +756,54 @@ public class JavacState {
         }
     }
 
+    /**
+     * Propagate recompilation through the class level dependency chains.
+     * Avoid re-tainting sources that have already been compiled.
+     */
+    public void taintSourcesDependingOnChangedTypes(Set<String> typesWithChangedPubApi,
+                                                    Set<String> pkgsWithNewTypes,
+                                                    Set<String> recentlyCompiled) {
+        Set<String> pkgs = new HashSet<>(prev.packages().keySet());
+        pkgs.addAll(recompiledPackages);
+        for (String pkgName : pkgs) {
+            Package pkg = packageState(pkgName);
+            if (pkg == null || pkg.sources().isEmpty())
+                continue;
+            for (Map.Entry<String, Set<String>> e : pkg.typeDependencies().entrySet()) {
+                String from = e.getKey();
+                for (String dep : e.getValue()) {
+                    if (dep.equals(from))
+                        continue;
+                    if (!typesWithChangedPubApi.contains(dep)
+                            && !pkgsWithNewTypes.contains(Util.pkgNameOfClassName(dep)))
+                        continue;
+                    String srcName = pkg.typeSources().get(from);
+                    Source src = srcName == null ? null : now.sources().get(srcName);
+                    if (src == null) {
+                        if (!recentlyCompiled.contains(pkgName))
+                            taintPackage(pkgName, "its depending on " + dep);
+                    } else if (!recompiledSources.contains(src)) {
+                        taintSource(src, "its depending on " + dep);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
     /**
      * Compare the javac_state recorded public apis of packages on the classpath
      * with the actual public apis on the classpath.
      */
     public void taintPackagesDependingOnChangedClasspathPackages() throws IOException {
 
+        // 0. If the class path consists of jars with the same contents as
+        // in the previous build, there is nothing to compare.
+        if (classpathIsUnchanged()) {
+            Log.debug("The class path jars are unchanged.");
+            return;
+        }
+
         // 1. Collect fully qualified names of all interesting classpath dependencies
         Set<String> fqDependencies = new HashSet<>();
         for (Package pkg : prev.packages().values()) {
@@ -521,13 +818,14 @@ public class JavacState {
 
         // 2. Extract the public APIs from the on disk .class files
         // (Reason for doing step 1 in a separate phase is to avoid extracting
-        // public APIs of the same class twice.)
-        PubApiExtractor pubApiExtractor = new PubApiExtractor(options);
-        Map<String, PubApi> onDiskPubApi = new HashMap<>();
-        for (String cpDep : fqDependencies) {
-            onDiskPubApi.put(cpDep, pubApiExtractor.getPubApi(cpDep));
-        }
-        pubApiExtractor.close();
+        // public APIs of the same class twice.) Classes in jars that have not
+        // changed since the last compilation still have the same public APIs.
+        Set<String> unchangedDependencies = findClassesIn(unchangedLeadingJars(), fqDependencies);
+        Set<String> changedDependencies = new HashSet<>(fqDependencies);
+        changedDependencies.removeAll(unchangedDependencies);
+        Log.debug("Extracting the public APIs of " + changedDependencies.size() + " of "
+                  + fqDependencies.size() + " classpath dependencies.");
+        Map<String, PubApi> onDiskPubApi = PubApiExtractor.getPubApis(options, changedDependencies);
 
         // 3. Compare them with the public APIs as of last compilation (loaded from javac_state)
         nextPkg:
@@ -544,6 +842,9 @@ public class JavacState {
 
             for (String fqDep : cpDepsOfThisPkg) {
 
+                if (unchangedDependencies.contains(fqDep))
+                    continue;
+
                 String depPkg = ":" + fqDep.substring(0, fqDep.lastIndexOf('.'));
                 PubApi prevPkgApi = prev.packages().get(depPkg).getPubApi();
 
@@ -572,6 +873,95 @@ public class JavacState {
         }
     }
 
+    /**
+     * Hash the jars on the class path, and check if they have the same
+     * contents as in the previous build. Directories on the class path,
+     * and the module path, cannot be vouched for.
+     */
+    private boolean classpathIsUnchanged() {
+        List<File> jars = new ArrayList<>();
+        boolean onlyJars = options.getModuleSearchPaths().isEmpty();
+        for (SourceLocation sl : options.getClassSearchPath()) {
+            File f = sl.getPath().toFile();
+            if (f.isFile()) {
+                jars.add(f);
+            } else if (f.exists()) {
+                onlyJars = false;
+            }
+        }
+        classpathHashes = new HashMap<>();
+        List<File> unhashed = new ArrayList<>();
+        for (File jar : jars) {
+            FileHash h = prevClasspathHashes.get(jar.getPath());
+            if (h != null && h.isCurrent(jar)) {
+                classpathHashes.put(jar.getPath(), h);
+            } else {
+                unhashed.add(jar);
+            }
+        }
+        FileHash[] hashes = FileHash.of(unhashed);
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != null)
+                classpathHashes.put(unhashed.get(i).getPath(), hashes[i]);
+        }
+        if (!classpathHashes.equals(prevClasspathHashes))
+            needsSaving();
+        if (!onlyJars || classpathHashes.size() != jars.size()
+                || !classpathHashes.keySet().equals(prevClasspathHashes.keySet()))
+            return false;
+        for (Map.Entry<String,FileHash> e : classpathHashes.entrySet()) {
+            if (!e.getValue().sameContentsAs(prevClasspathHashes.get(e.getKey())))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The jars at the start of the class path whose contents are the same
+     * as in the previous build. Since the class path itself is unchanged
+     * (otherwise everything is recompiled), a class found in one of these
+     * jars is the very class found there by the previous build.
+     */
+    private List<File> unchangedLeadingJars() {
+        List<File> jars = new ArrayList<>();
+        // A package in a module takes precedence over the class path.
+        if (!options.getModuleSearchPaths().isEmpty())
+            return jars;
+        for (SourceLocation sl : options.getClassSearchPath()) {
+            File f = sl.getPath().toFile();
+            FileHash h = classpathHashes.get(f.getPath());
+            if (h == null || !h.sameContentsAs(prevClasspathHashes.get(f.getPath())))
+                break;
+            jars.add(f);
+        }
+        return jars;
+    }
+
+    /**
+     * Find which of the top level classes are in any of the jars. The jars
+     * are searched in parallel.
+     */
+    private static Set<String> findClassesIn(List<File> jars, Set<String> classNames) {
+        Map<String, String> entryNames = new HashMap<>();
+        for (String cn : classNames) {
+            entryNames.put(cn.replace('.', '/') + ".class", cn);
+        }
+        return jars.parallelStream()
+                   .flatMap(jar -> {
+                       List<String> found = new ArrayList<>();
+                       try (ZipFile zf = new ZipFile(jar)) {
+                           for (Map.Entry<String, String> e : entryNames.entrySet()) {
+                               if (zf.getEntry(e.getKey()) != null)
+                                   found.add(e.getValue());
+                           }
+                       } catch (IOException e) {
+                           // Then the classes will be extracted, and the error reported.
+                       }
+                       return found.stream();
+                   })
+                   .collect(Collectors.toSet());
+    }
+
     /**
      * Scan all output dirs for artifacts and remove those files (artifacts?)
      * that are not recognized as such, in the javac_state file.
@@ -657,7 +1047,8 @@ public class JavacState {
      * Return those files where the timestamp is newer.
      * If a source file timestamp suddenly is older than what is known
      * about it in javac_state, then consider it modified, but print
-     * a warning!
+     * a warning! A file whose timestamp has changed, but whose contents
+     * still match the hash in javac_state, is not modified.
      */
     private Set<Source> calculateModifiedSources() {
         Set<Source> modified = new HashSet<>();
@@ -666,7 +1057,13 @@ public class JavacState {
             Source t = prev.sources().get(src);
             if (prev.sources().get(src) != null) {
                 if (t != null) {
-                    if (n.lastModified() > t.lastModified()) {
+                    if (n.lastModified() != t.lastModified()
+                            && n.contentHash() != null
+                            && n.contentHash().sameContentsAs(t.contentHash())) {
+                        // Only the timestamp has changed, remember it.
+                        t.setContentHash(n.contentHash());
+                        needsSaving();
+                    } else if (n.lastModified() > t.lastModified()) {
                         modified.add(n);
                     } else if (n.lastModified() < t.lastModified()) {
                         modified.add(n);
@@ -737,6 +1134,17 @@ public class JavacState {
         rcValue[0] = perform(sjavac, binDir, suffixRules);
         recentlyCompiled.addAll(taintedPackages());
         clearTaintedPackages();
+        if (isClassLevelIncremental()) {
+            for (Source s : taintedSources) {
+                recentlyCompiled.add(s.pkg().name());
+            }
+            taintedSources = new HashSet<>();
+            boolean again = !typesWithChangedPublicApis.isEmpty() || !packagesWithNewTypes.isEmpty();
+            taintSourcesDependingOnChangedTypes(typesWithChangedPublicApis, packagesWithNewTypes, recentlyCompiled);
+            typesWithChangedPublicApis = new HashSet<>();
+            packagesWithNewTypes = new HashSet<>();
+            return again && rcValue[0];
+        }
         boolean again = !packagesWithChangedPublicApis.isEmpty();
         taintPackagesDependingOnChangedPackages(packagesWithChangedPublicApis, recentlyCompiled);
         packagesWithChangedPublicApis = new HashSet<>();
@@ -775,11 +1183,21 @@ public class JavacState {
         boolean rc = true;
         // Group sources based on transforms. A source file can only belong to a single transform.
         Map<Transformer,Map<String,Set<URI>>> groupedSources = new HashMap<>();
+        // The sources being transformed, and among those the sources that are
+        // recompiled without the rest of their packages.
+        Map<URI,Source> transformedSources = new HashMap<>();
+        Map<String,Set<Source>> partiallyRecompiled = new HashMap<>();
         for (Source src : now.sources().values()) {
             Transformer t = suffixRules.get(src.suffix());
-            if (t != null) {
-                if (taintedPackages.contains(src.pkg().name()) && !src.isLinkedOnly()) {
+            if (t != null && !src.isLinkedOnly()) {
+                String pkg = src.pkg().name();
+                if (taintedPackages.contains(pkg)) {
                     addFileToTransform(groupedSources, t, src);
+                    transformedSources.put(src.file().toURI(), src);
+                } else if (taintedSources.contains(src)) {
+                    addFileToTransform(groupedSources, t, src);
+                    transformedSources.put(src.file().toURI(), src);
+                    partiallyRecompiled.computeIfAbsent(pkg, p -> new HashSet<>()).add(src);
                 }
             }
         }
@@ -787,6 +1205,55 @@ public class JavacState {
         for (Map.Entry<Transformer, Map<String, Set<URI>>> e : groupedSources.entrySet()) {
             Transformer t = e.getKey();
             Map<String, Set<URI>> srcs = e.getValue();
+
+            // Before a class level compile, remember the pubapis of the classes
+            // about to be recompiled, and drop what we know about them.
+            Map<String, Map<String, PubType>> previousTypes = new HashMap<>();
+            if (t == compileJavaPackages && isClassLevelIncremental()) {
+                for (String pkg : srcs.keySet()) {
+                    Package pnow = now.packages().get(pkg);
+                    Package pstate = packageState(pkg);
+                    Set<String> types;
+                    if (partiallyRecompiled.containsKey(pkg)) {
+                        if (!recompiledPackages.contains(pkg))
+                            pnow.copyCompilationResults(pstate);
+                        types = new HashSet<>();
+                        for (Source s : partiallyRecompiled.get(pkg))
+                            types.addAll(pnow.typesOfSource(s.name()));
+                    } else {
+                        types = pstate == null ? new HashSet<>()
+                                               : new HashSet<>(pstate.getPubApi().types.keySet());
+                    }
+                    if (pstate != null && pstate.existsInJavacState()) {
+                        Map<String, PubType> old = new HashMap<>();
+                        for (String type : types) {
+                            PubType pt = pstate.getPubApi().types.get(type);
+                            if (pt != null)
+                                old.put(type, pt);
+                        }
+                        previousTypes.put(pkg, old);
+                    }
+                    if (partiallyRecompiled.containsKey(pkg))
+                        pnow.removeTypes(types);
+                    else if (recompiledPackages.contains(pkg))
+                        pnow.clearCompilationResults();
+                }
+            }
+            // Let the compile know what the sources cost to compile last time.
+            if (t == compileJavaPackages) {
+                for (Source src : now.sources().values()) {
+                    Source psrc = prev.sources().get(src.name());
+                    if (!src.hasCompileCost() && psrc != null && psrc.hasCompileCost())
+                        src.setCompileCost(psrc.compileMillis(), psrc.compileKiB());
+                }
+                compileJavaPackages.setSources(transformedSources);
+                if (options.getBuildCache() != null) {
+                    // Prefer the sources to compile, whose contents have been hashed.
+                    Map<URI,Source> visible = new HashMap<>(visibleSources);
+                    visible.putAll(transformedSources);
+                    compileJavaPackages.setVisibleSources(visible);
+                }
+            }
             // These maps need to be synchronized since multiple threads will be
             // writing results into them.
             Map<String, Set<URI>> packageArtifacts = Collections.synchronizedMap(new HashMap<>());
@@ -814,6 +1281,30 @@ public class JavacState {
             for (String p : srcs.keySet()) {
                 recompiledPackages.add(p);
             }
+            for (Set<URI> uris : srcs.values()) {
+                for (URI u : uris) {
+                    recompiledSources.add(transformedSources.get(u));
+                }
+            }
+            // Record which top level classes each compiled source declares,
+            // and what it cost to compile it.
+            if (t == compileJavaPackages) {
+                for (Map.Entry<URI, Integer> a : compileJavaPackages.getMeasuredMillis().entrySet()) {
+                    Source src = transformedSources.get(a.getKey());
+                    Integer kib = compileJavaPackages.getMeasuredHeapKiB().get(a.getKey());
+                    if (src != null && kib != null)
+                        src.updateCompileCost(a.getValue(), kib);
+                }
+                for (Map.Entry<URI, Set<String>> a : compileJavaPackages.getSourceTypes().entrySet()) {
+                    Source src = transformedSources.get(a.getKey());
+                    if (src == null)
+                        continue;
+                    Package pnow = now.packages().get(src.pkg().name());
+                    for (String type : a.getValue()) {
+                        pnow.addTypeSource(type, src.name());
+                    }
+                }
+            }
             // The transform is done! Extract all the artifacts and store the info into the Package objects.
             for (Map.Entry<String, Set<URI>> a : packageArtifacts.entrySet()) {
                 Module mnow = now.findModuleFromPackageName(a.getKey());
@@ -823,12 +1314,18 @@ public class JavacState {
             for (Map.Entry<String, Map<String, Set<String>>> a : packageDependencies.entrySet()) {
                 Map<String, Set<String>> deps = a.getValue();
                 Module mnow = now.findModuleFromPackageName(a.getKey());
-                mnow.setDependencies(a.getKey(), deps, false);
+                if (partiallyRecompiled.containsKey(a.getKey()))
+                    mnow.lookupPackage(a.getKey()).addDependencies(deps, false);
+                else
+                    mnow.setDependencies(a.getKey(), deps, false);
             }
             for (Map.Entry<String, Map<String, Set<String>>> a : packageCpDependencies.entrySet()) {
                 Map<String, Set<String>> deps = a.getValue();
                 Module mnow = now.findModuleFromPackageName(a.getKey());
-                mnow.setDependencies(a.getKey(), deps, true);
+                if (partiallyRecompiled.containsKey(a.getKey()))
+                    mnow.lookupPackage(a.getKey()).addDependencies(deps, true);
+                else
+                    mnow.setDependencies(a.getKey(), deps, true);
             }
 
             // This map contains the public api of the types that this
@@ -850,6 +1347,32 @@ public class JavacState {
                     now.packages().put(pkg, pkgNow);
             }
 
+            // When only some of the sources of a package were recompiled, the
+            // packagePublicApis only cover the classes of those sources. Their
+            // previous pubapis were dropped before the compile, so merge them in.
+            for (String pkg : partiallyRecompiled.keySet()) {
+                Package pnow = now.packages().get(pkg);
+                PubApi newPubApi = packagePublicApis.getOrDefault(pkg, new PubApi());
+                pnow.setPubapi(PubApi.mergeTypes(pnow.getPubApi(), newPubApi));
+            }
+
+            // Compare the pubapis of the recompiled classes one by one.
+            for (Map.Entry<String, Map<String, PubType>> a : previousTypes.entrySet()) {
+                String pkg = a.getKey();
+                Map<String, PubType> oldTypes = a.getValue();
+                Map<String, PubType> newTypes = packagePublicApis.getOrDefault(pkg, new PubApi()).types;
+                for (String type : Util.union(oldTypes.keySet(), newTypes.keySet())) {
+                    if (!oldTypes.containsKey(type)) {
+                        packagesWithNewTypes.add(pkg);
+                        Log.debug("The class " + type + " is new!");
+                    } else if (!newTypes.containsKey(type)
+                            || !newTypes.get(type).equals(oldTypes.get(type))) {
+                        typesWithChangedPublicApis.add(type);
+                        Log.debug("The API of " + type + " has changed!");
+                    }
+                }
+            }
+
             // The packagePublicApis cover entire packages (since sjavac compiles
             // stuff on package level). This means that if a type is missing
             // in the public api of a given package, it means that it has been
@@ -857,10 +1380,16 @@ public class JavacState {
             // this map contains, and not merge it with what we already have.
             for (Map.Entry<String, PubApi> a : packagePublicApis.entrySet()) {
                 String pkg = a.getKey();
+                if (partiallyRecompiled.containsKey(pkg))
+                    continue;
                 PubApi newPubApi = a.getValue();
                 Module mprev = prev.findModuleFromPackageName(pkg);
                 Module mnow = now.findModuleFromPackageName(pkg);
                 mnow.setPubapi(pkg, newPubApi);
+                if (isClassLevelIncremental()) {
+                    // Changes have already been detected class by class above.
+                    continue;
+                }
                 if (mprev.hasPubapiChanged(pkg, newPubApi)) {
                     // Aha! The pubapi of this package has changed!
                     // It can also be a new compile from scratch.
@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -60,6 +61,10 @@ import com.sun.tools.sjavac.pubapi.PubApi;
  * the visible recompilation of the dependent packages indicates how much circular
  * dependencies your code has.
  *
+ * The package also remembers which source declares which top level class.
+ * This is what allows --incremental=class to recompile individual sources
+ * and to tell which artifacts belong to them.
+ *
  *  <p><b>This is NOT part of any supported API.
  *  If you write code that depends on this, you do so at your own risk.
  *  This code and its internal interfaces are subject to change or
@@ -86,10 +91,18 @@ public class Package implements Comparable<Package> {
 
     // This is the public api of this package.
     private PubApi pubApi = new PubApi();
+    // When loaded from a binary javac_state, the public api is only parsed
+    // once it is asked for.
+    private Supplier<PubApi> pubApiLoader;
     // Map from source file name to Source info object.
     private Map<String,Source> sources = new HashMap<>();
     // This package generated these artifacts.
     private Map<String,File> artifacts = new HashMap<>();
+    // The timestamps, and if known the content hashes, of the artifacts
+    // as recorded in javac_state, or as computed when it is saved.
+    private Map<String,FileHash> artifactHashes = new HashMap<>();
+    // Fully qualified name of top level class in this package -> name of its source file.
+    private Map<String,String> typeSources = new TreeMap<>();
 
     public Package(Module m, String n) {
         int c = n.indexOf(":");
@@ -108,10 +121,17 @@ public class Package implements Comparable<Package> {
     public String dirname() { return dirname; }
     public Map<String,Source> sources() { return sources; }
     public Map<String,File> artifacts() { return artifacts; }
-    public PubApi getPubApi() { return pubApi; }
+    public PubApi getPubApi() {
+        if (pubApiLoader != null) {
+            pubApi = pubApiLoader.get();
+            pubApiLoader = null;
+        }
+        return pubApi;
+    }
 
     public Map<String,Set<String>> typeDependencies() { return dependencies; }
     public Map<String,Set<String>> typeClasspathDependencies() { return cpDependencies; }
+    public Map<String,String> typeSources() { return typeSources; }
 
     public Set<String> dependents() { return dependents; }
 
@@ -151,6 +171,12 @@ public class Package implements Comparable<Package> {
         map.get(fullyQualifiedFrom).add(fullyQualifiedTo);
     }
 
+    public void addDependencies(Map<String, Set<String>> ds, boolean cp) {
+        for (String fullyQualifiedFrom : ds.keySet())
+            for (String fullyQualifiedTo : ds.get(fullyQualifiedFrom))
+                addDependency(fullyQualifiedFrom, fullyQualifiedTo, cp);
+    }
+
     public void addDependent(String d) {
         dependents.add(d);
     }
@@ -160,22 +186,119 @@ public class Package implements Comparable<Package> {
      * describe the results of compiling this package before.
      */
     public boolean existsInJavacState() {
-        return artifacts.size() > 0 || !pubApi.isEmpty();
+        return artifacts.size() > 0 || !getPubApi().isEmpty();
     }
 
     public boolean hasPubApiChanged(PubApi newPubApi) {
-        return !newPubApi.isBackwardCompatibleWith(pubApi);
+        return !newPubApi.isBackwardCompatibleWith(getPubApi());
     }
 
     public void setPubapi(PubApi newPubApi) {
         pubApi = newPubApi;
+        pubApiLoader = null;
+    }
+
+    public void setPubapiLoader(Supplier<PubApi> loader) {
+        pubApiLoader = loader;
     }
 
     public void setDependencies(Map<String, Set<String>> ds, boolean cp) {
         (cp ? cpDependencies : dependencies).clear();
-        for (String fullyQualifiedFrom : ds.keySet())
-            for (String fullyQualifiedTo : ds.get(fullyQualifiedFrom))
-                addDependency(fullyQualifiedFrom, fullyQualifiedTo, cp);
+        addDependencies(ds, cp);
+    }
+
+    public void addTypeSource(String fullyQualifiedType, String source) {
+        typeSources.put(fullyQualifiedType, source);
+    }
+
+    /**
+     * The top level classes declared in the given source, as recorded
+     * when the source was last compiled.
+     */
+    public Set<String> typesOfSource(String source) {
+        Set<String> types = new HashSet<>();
+        for (Map.Entry<String,String> e : typeSources.entrySet()) {
+            if (e.getValue().equals(source))
+                types.add(e.getKey());
+        }
+        return types;
+    }
+
+    /**
+     * Find the artifacts generated for the given top level classes, i.e. their
+     * class files, the class files of their nested classes and their headers.
+     * An artifact is attributed to the longest matching class name, so that
+     * a$b.class is not mistaken for a member of class a if there also is a top
+     * level class called a$b.
+     */
+    public Map<String,File> artifactsOfTypes(Set<String> fullyQualifiedTypes) {
+        Map<String,File> result = new HashMap<>();
+        for (Map.Entry<String,File> e : artifacts.entrySet()) {
+            String owner = ownerOfArtifact(e.getValue().getName());
+            if (owner != null && fullyQualifiedTypes.contains(owner))
+                result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    private String ownerOfArtifact(String fileName) {
+        String owner = null;
+        for (String type : typeSources.keySet()) {
+            String simpleName = type.substring(type.lastIndexOf('.') + 1);
+            String headerName = type.replace('.', '_');
+            boolean matches =
+                fileName.equals(simpleName + ".class")
+                || (fileName.startsWith(simpleName + "$") && fileName.endsWith(".class"))
+                || fileName.equals(headerName + ".h")
+                || (fileName.startsWith(headerName + "_") && fileName.endsWith(".h"));
+            if (matches && (owner == null || type.length() > owner.length()))
+                owner = type;
+        }
+        return owner;
+    }
+
+    /**
+     * Forget everything known about the given top level classes, i.e. their
+     * dependencies, public apis, artifacts and sources. Used before the classes
+     * are recompiled without recompiling the rest of the package.
+     */
+    public void removeTypes(Set<String> fullyQualifiedTypes) {
+        artifacts.keySet().removeAll(artifactsOfTypes(fullyQualifiedTypes).keySet());
+        dependencies.keySet().removeAll(fullyQualifiedTypes);
+        cpDependencies.keySet().removeAll(fullyQualifiedTypes);
+        PubApi remaining = PubApi.mergeTypes(getPubApi(), new PubApi());
+        remaining.types.keySet().removeAll(fullyQualifiedTypes);
+        setPubapi(remaining);
+        typeSources.keySet().removeAll(fullyQualifiedTypes);
+    }
+
+    /**
+     * Copy the results of the previous compilation of this package, so that
+     * they can be updated as individual sources are recompiled. Artifacts
+     * already produced during this build (for example copied resources)
+     * are kept.
+     */
+    public void copyCompilationResults(Package p) {
+        setDependencies(p.dependencies, false);
+        setDependencies(p.cpDependencies, true);
+        setPubapi(PubApi.mergeTypes(p.getPubApi(), new PubApi()));
+        for (Map.Entry<String,File> e : p.artifacts.entrySet())
+            artifacts.putIfAbsent(e.getKey(), e.getValue());
+        for (Map.Entry<String,FileHash> e : p.artifactHashes.entrySet())
+            artifactHashes.putIfAbsent(e.getKey(), e.getValue());
+        typeSources = new TreeMap<>(p.typeSources);
+    }
+
+    /**
+     * Forget the results of compiling this package, used when a package
+     * that was partially recompiled, is about to be recompiled as a whole.
+     */
+    public void clearCompilationResults() {
+        removeTypes(new HashSet<>(typeSources.keySet()));
+        artifacts.values().removeIf(f -> f.getName().endsWith(".class"));
+        dependencies.clear();
+        cpDependencies.clear();
+        setPubapi(new PubApi());
     }
 
     public void save(StringBuilder b) {
@@ -184,6 +307,7 @@ public class Package implements Comparable<Package> {
         saveDependencies(b);
         savePubapi(b);
         saveArtifacts(b);
+        saveTypeSources(b);
     }
 
     static public Package load(Module module, String l) {
@@ -208,8 +332,20 @@ public class Package implements Comparable<Package> {
         }
     }
 
+    public void loadTypeSource(String l) {
+        // Find next space after "T ".
+        int sp = l.indexOf(' ', 2);
+        typeSources.put(l.substring(2, sp), l.substring(sp + 1));
+    }
+
+    public void saveTypeSources(StringBuilder b) {
+        for (Map.Entry<String,String> e : typeSources.entrySet()) {
+            b.append("T ").append(e.getKey()).append(" ").append(e.getValue()).append("\n");
+        }
+    }
+
     public void savePubapi(StringBuilder b) {
-        pubApi.asListOfStrings()
+        getPubApi().asListOfStrings()
               .stream()
               .flatMap(l -> Stream.of("I ", l, "\n"))
               .forEach(b::append);
@@ -247,21 +383,38 @@ public class Package implements Comparable<Package> {
         addArtifacts(as);
     }
 
-    public void loadArtifact(String l) {
+    public String loadArtifact(String l) {
         // Find next space after "A ".
         int dp = l.indexOf(' ',2);
         String fn = l.substring(2,dp);
         long last_modified = Long.parseLong(l.substring(dp+1));
+        loadArtifact(fn, new FileHash(last_modified, -1, null));
+        return fn;
+    }
+
+    // Parse a line that looks like this, following the A line of the artifact:
+    // H 1234 da39a3ee5e6b4b0d3255bfef95601890afd80709
+    public void loadArtifactHash(String fn, String l) {
+        int sp = l.indexOf(' ', 2);
+        FileHash h = artifactHashes.get(fn);
+        if (sp == -1 || h == null) return;
+        artifactHashes.put(fn, new FileHash(h.lastModified(),
+                                            Long.parseLong(l.substring(2, sp)),
+                                            l.substring(sp+1)));
+    }
+
+    public void loadArtifact(String fn, FileHash h) {
         File f = new File(fn);
-        if (f.exists() && f.lastModified() != last_modified) {
-            // Hmm, the artifact on disk does not have the same last modified
-            // timestamp as the information from the build database.
-            // We no longer trust the artifact on disk. Delete it.
-            // The smart javac wrapper will then rebuild the artifact.
-            Log.debug("Removing "+f.getPath()+" since its timestamp does not match javac_state.");
-            f.delete();
-        }
         artifacts.put(f.getPath(), f);
+        artifactHashes.put(f.getPath(), h);
+    }
+
+    /**
+     * The timestamps and content hashes recorded for the artifacts.
+     * Artifacts may be missing from this map, or have no hash recorded.
+     */
+    public Map<String,FileHash> artifactHashes() {
+        return artifactHashes;
     }
 
     public void saveArtifacts(StringBuilder b) {
@@ -276,9 +429,14 @@ public class Package implements Comparable<Package> {
             // If the outputdir has been modified, not by javac,
             // then a mismatch will be detected in the last modified
             // timestamps stored in the build database compared
-            // to the timestamps on disk and the artifact will be deleted.
+            // to the timestamps on disk and the artifact will be deleted,
+            // unless its contents still match the recorded hash.
 
             b.append("A "+f.getPath()+" "+f.lastModified()+"\n");
+            FileHash h = artifactHashes.get(f.getPath());
+            if (h != null && h.hash() != null) {
+                b.append("H "+h.size()+" "+h.hash()+"\n");
+            }
         }
     }
 
@@ -27,7 +27,13 @@ package com.sun.tools.sjavac;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileManager;
@@ -35,10 +41,13 @@ import javax.tools.JavaFileManager;
 import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.code.ClassFinder;
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.ModuleSymbol;
 import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.comp.Modules;
 import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Convert;
+import com.sun.tools.javac.util.List;
 import com.sun.tools.javac.util.Name;
 import com.sun.tools.javac.util.Names;
 import com.sun.tools.sjavac.comp.PubapiVisitor;
@@ -54,6 +63,10 @@ public class PubApiExtractor {
 
     final SmartFileManager fileManager;
 
+    // Each extractor sets up a compiler context of its own, so it is only
+    // worth starting another one for at least this many classes.
+    private static final int CLASSES_PER_EXTRACTOR = 50;
+
     /**
      * Setup a compilation context, used for reading public apis of classes on the classpath
      * as well as annotation processors.
@@ -74,6 +87,8 @@ public class PubApiExtractor {
         // The sourceCompleter is used for build situations where a classpath class references other classes
         // that happens to be on the sourcepath.
         JavaCompiler.instance(context);
+        // Set up the module graph, so that classes can be looked up in the unnamed module.
+        Modules.instance(context).initModules(List.nil());
 
 //        context.put(JavaFileManager.class, fileManager);
     }
@@ -83,7 +98,13 @@ public class PubApiExtractor {
         ClassFinder cr = ClassFinder.instance(context);
         Names ns = Names.instance(context);
         Name n = ns.fromString(fullyQualifiedClassName);
-        ClassSymbol cs = cr.loadClass(syms.inferModule(Convert.packagePart(n)), n);
+        ModuleSymbol msym = syms.inferModule(Convert.packagePart(n));
+        if (msym == null) {
+            // The package has not been seen yet, as is the case for most
+            // class path packages; those are in the unnamed module.
+            msym = syms.unnamedModule;
+        }
+        ClassSymbol cs = cr.loadClass(msym, n);
         PubapiVisitor v = new PubapiVisitor();
         v.visit(cs);
         return v.getCollectedPubApi();
@@ -92,4 +113,36 @@ public class PubApiExtractor {
     public void close() throws IOException {
         fileManager.close();
     }
+
+    /**
+     * Extract the public apis of the given classes. A compiler context can
+     * only be used by one thread at a time, so the classes are divided
+     * between several extractors that run in parallel.
+     */
+    public static Map<String, PubApi> getPubApis(Options options, Collection<String> classNames)
+            throws IOException {
+        java.util.List<String> names = new ArrayList<>(classNames);
+        Map<String, PubApi> pubApis = new ConcurrentHashMap<>();
+        int numExtractors = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                                                 names.size() / CLASSES_PER_EXTRACTOR));
+        try {
+            IntStream.range(0, numExtractors).parallel().forEach(i -> {
+                PubApiExtractor extractor = new PubApiExtractor(options);
+                try {
+                    for (int j = i; j < names.size(); j += numExtractors) {
+                        pubApis.put(names.get(j), extractor.getPubApi(names.get(j)));
+                    }
+                } finally {
+                    try {
+                        extractor.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return pubApis;
+    }
 }
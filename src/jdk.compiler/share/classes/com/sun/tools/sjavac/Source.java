@@ -69,6 +69,12 @@ public class Source implements Comparable<Source> {
     private boolean isGenerated;
     // If the source is only linked to, not compiled.
     private boolean linkedOnly;
+    // How long it took to compile this source, and how much heap it
+    // needed, when it was last compiled. -1 if unknown.
+    private int compileMillis = -1;
+    private int compileKiB = -1;
+    // The content hash of this source file, null if not known.
+    private FileHash contentHash;
 
     @Override
     public boolean equals(Object o) {
@@ -141,10 +147,72 @@ public class Source implements Comparable<Source> {
         return linkedOnly;
     }
 
+    public boolean hasCompileCost() {
+        return compileMillis >= 0;
+    }
+
+    public int compileMillis() {
+        return compileMillis;
+    }
+
+    public int compileKiB() {
+        return compileKiB;
+    }
+
+    public void setCompileCost(int millis, int kib) {
+        compileMillis = millis;
+        compileKiB = kib;
+    }
+
+    /**
+     * Record a new measurement of the cost of compiling this source. The
+     * measurements are noisy, so average them with what we knew before.
+     */
+    public void updateCompileCost(int millis, int kib) {
+        if (hasCompileCost()) {
+            millis = (compileMillis + millis) / 2;
+            kib = (compileKiB + kib) / 2;
+        }
+        setCompileCost(millis, kib);
+    }
+
+    public FileHash contentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(FileHash h) {
+        contentHash = h;
+    }
+
     private void save(StringBuilder b) {
         String CL = linkedOnly?"L":"C";
         String GS = isGenerated?"G":"S";
         b.append(GS+" "+CL+" "+name+" "+file.lastModified()+"\n");
+        if (hasCompileCost()) {
+            b.append("W "+compileMillis+" "+compileKiB+"\n");
+        }
+        if (contentHash != null) {
+            b.append("H "+contentHash.size()+" "+contentHash.hash()+"\n");
+        }
+    }
+
+    // Parse a line that looks like this:
+    // H 1234 da39a3ee5e6b4b0d3255bfef95601890afd80709
+    public void loadContentHash(String l) {
+        int sp = l.indexOf(' ', 2);
+        if (sp == -1) return;
+        contentHash = new FileHash(lastModified,
+                                   Long.parseLong(l.substring(2, sp)),
+                                   l.substring(sp+1));
+    }
+
+    // Parse a line that looks like this:
+    // W 120 2048
+    public void loadCompileCost(String l) {
+        int sp = l.indexOf(' ', 2);
+        if (sp == -1) return;
+        setCompileCost(Integer.parseInt(l.substring(2, sp)),
+                       Integer.parseInt(l.substring(sp+1)));
     }
     // Parse a line that looks like this:
     // S C /code/alfa/A.java 1357631228000
@@ -161,6 +229,11 @@ public class Source implements Comparable<Source> {
             isLinkedOnly = false;
         } else return null;
 
+        return load(lastPackage, name, last_modified, isGenerated, isLinkedOnly);
+    }
+
+    static public Source load(Package lastPackage, String name, long last_modified,
+                              boolean isGenerated, boolean isLinkedOnly) {
         Source s = new Source(lastPackage, name, last_modified);
         s.file = new File(name);
         if (isGenerated) s.markAsGenerated();
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.cache;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * A store of compiled packages, shared between builds and possibly between
+ * machines. Entries are immutable and addressed by a key that is a hash of
+ * everything that went into compiling them, so a store never needs to
+ * invalidate anything. Failing to reach the store must not fail a build,
+ * callers treat errors as misses.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public interface BuildCache {
+
+    /**
+     * Get the entry stored under the key, or null if there is none.
+     */
+    byte[] get(String key) throws IOException;
+
+    /**
+     * Store an entry under the key. Storing an entry that already exists
+     * has no effect.
+     */
+    void put(String key, byte[] value) throws IOException;
+
+    /**
+     * Create the store at the given location: an http or https url, or
+     * else a local directory.
+     */
+    static BuildCache create(String location) {
+        if (location.startsWith("http://") || location.startsWith("https://")) {
+            return new HttpBuildCache(URI.create(location));
+        }
+        return new DirectoryBuildCache(Paths.get(location));
+    }
+}
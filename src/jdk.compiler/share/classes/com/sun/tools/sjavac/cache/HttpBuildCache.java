@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+/**
+ * A build cache on an http server. An entry is read with a GET, and
+ * stored with a PUT, of the key relative to the base url. The server
+ * answers 404 for entries it does not have. Any server that can store
+ * and serve files, such as a WebDAV share or an nginx with PUT enabled,
+ * will do.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class HttpBuildCache implements BuildCache {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+
+    private final URI base;
+
+    public HttpBuildCache(URI base) {
+        String s = base.toString();
+        this.base = s.endsWith("/") ? base : URI.create(s + "/");
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        HttpURLConnection conn = open(key, "GET");
+        int status = conn.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            discard(conn);
+            if (status == HttpURLConnection.HTTP_NOT_FOUND)
+                return null;
+            throw new IOException("GET " + conn.getURL() + " returned " + status);
+        }
+        try (InputStream in = conn.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value) throws IOException {
+        int status;
+        try {
+            status = send(key, value);
+        } catch (IOException e) {
+            // Unlike a GET, a streamed PUT is not retried when it goes out
+            // on a kept-alive connection that the server has since closed.
+            status = send(key, value);
+        }
+        if (status / 100 != 2)
+            throw new IOException("PUT " + base.resolve(key) + " returned " + status);
+    }
+
+    private int send(String key, byte[] value) throws IOException {
+        HttpURLConnection conn = open(key, "PUT");
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(value.length);
+        conn.setRequestProperty("Content-Type", "application/octet-stream");
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(value);
+        }
+        int status = conn.getResponseCode();
+        discard(conn);
+        return status;
+    }
+
+    // Read what is left of the response, so that the connection can be reused.
+    private static void discard(HttpURLConnection conn) throws IOException {
+        InputStream in = conn.getResponseCode() / 100 == 2 ? conn.getInputStream()
+                                                           : conn.getErrorStream();
+        if (in != null) {
+            try (InputStream s = in) {
+                s.readAllBytes();
+            }
+        }
+    }
+
+    private HttpURLConnection open(String key, String method) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) base.resolve(key).toURL().openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        conn.setReadTimeout(READ_TIMEOUT_MILLIS);
+        conn.setUseCaches(false);
+        return conn;
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.FileHash;
+import com.sun.tools.sjavac.Log;
+import com.sun.tools.sjavac.Source;
+import com.sun.tools.sjavac.options.Options;
+import com.sun.tools.sjavac.options.SourceLocation;
+import com.sun.tools.sjavac.pubapi.PubApi;
+import com.sun.tools.sjavac.server.CompilationSubResult;
+import com.sun.tools.sjavac.server.ServerMetrics;
+
+/**
+ * Looks up compiled packages in a {@link BuildCache}, and stores freshly
+ * compiled packages in it.
+ *
+ * <p>A package is stored under a key that hashes the contents of every
+ * source visible to the compilation, the contents of the class and module
+ * paths, the javac options and the jdk doing the compiling, together with
+ * the package name and which of its sources were compiled. The output
+ * directories, and where the sources and class path live, are left out,
+ * so that builds of the same sources in different workspaces, or on
+ * different machines, share entries. The entry holds the class files and
+ * other artifacts of the package, and everything sjavac records about it
+ * in javac_state: its dependencies, public api and the top level classes
+ * of its sources.
+ *
+ * <p>Packages, rather than compile chunks, are the unit of caching since
+ * how packages are grouped into chunks depends on the number of cores and
+ * the heap of the machine compiling them.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class PackageCache {
+
+    private static final int MAGIC = 0x534a5043; // "SJPC"
+    private static final int VERSION = 1;
+    // An entry inflates to at most this many times the size of the sources
+    // of its package, plus MIN_ENTRY_LIMIT; a larger one is taken to be bad.
+    private static final int ENTRY_SIZE_FACTOR = 16;
+    private static final long MIN_ENTRY_LIMIT = 1 << 20;
+
+    private final BuildCache store;
+    // Output directory, by the tag used for it in the entries.
+    private final Map<String,Path> outputRoots = new LinkedHashMap<>();
+    // Visible source -> its name relative to its source root.
+    private final Map<URI,String> sourceNames = new HashMap<>();
+    // Package -> the number of sources in it that are visible.
+    private final Map<String,Integer> visiblePerPackage = new HashMap<>();
+    // Hash of everything that affects the compilation besides the package itself.
+    private final String context;
+
+    public PackageCache(BuildCache store, Options options, String[] javacArgs,
+                        Map<URI,Source> visibleSources) {
+        this.store = store;
+        addOutputRoot("d", options.getDestDir());
+        addOutputRoot("s", options.getGenSrcDir());
+        addOutputRoot("h", options.getHeaderDir());
+
+        MessageDigest md = newDigest();
+        line(md, "jdk " + Runtime.version());
+        for (String arg : locationIndependent(javacArgs)) {
+            line(md, "arg " + arg);
+        }
+
+        // The contents of the visible sources, most of them already hashed
+        // when looking for changed sources.
+        List<Source> unhashed = new ArrayList<>();
+        List<String> sourceLines = new ArrayList<>();
+        for (Map.Entry<URI,Source> e : visibleSources.entrySet()) {
+            Source s = e.getValue();
+            String name = rootRelativeName(s);
+            sourceNames.put(e.getKey(), name);
+            if (s.pkg() != null)
+                visiblePerPackage.merge(s.pkg().name(), 1, Integer::sum);
+            if (s.contentHash() != null && s.contentHash().isCurrent(s.file())) {
+                sourceLines.add("source " + name + " " + s.contentHash().hash());
+            } else {
+                unhashed.add(s);
+            }
+        }
+        FileHash[] computed = FileHash.of(unhashed.stream().map(Source::file).collect(Collectors.toList()));
+        for (int i = 0; i < computed.length; i++) {
+            sourceLines.add("source " + rootRelativeName(unhashed.get(i)) + " "
+                            + (computed[i] != null ? computed[i].hash() : "unreadable"));
+        }
+        Collections.sort(sourceLines);
+        for (String l : sourceLines) {
+            line(md, l);
+        }
+
+        hashLocations(md, "classpath", options.getClassSearchPath());
+        hashLocations(md, "modulepath", options.getModuleSearchPaths());
+        context = hex(md.digest());
+    }
+
+    /**
+     * Fetch the packages that are in the cache, and write their artifacts
+     * into the output directories.
+     *
+     * @param pkgSrcs the packages to compile, and which of their sources
+     * @return the results of compiling the packages that were found
+     */
+    public Map<String,CompilationSubResult> fetch(Map<String,Set<URI>> pkgSrcs) {
+        List<String> pkgs = new ArrayList<>();
+        for (Map.Entry<String,Set<URI>> e : pkgSrcs.entrySet()) {
+            if (isCacheable(e.getKey(), e.getValue()))
+                pkgs.add(e.getKey());
+        }
+        Map<String,String> keys = new HashMap<>();
+        for (String pkg : pkgs) {
+            keys.put(pkg, key(pkg, pkgSrcs.get(pkg)));
+        }
+
+        // Entries are fetched concurrently, to hide the latency of a remote store.
+        Map<String,Object> fetched = Collections.synchronizedMap(new HashMap<>());
+        pkgs.parallelStream().forEach(pkg -> {
+            try {
+                byte[] entry = store.get(keys.get(pkg));
+                if (entry != null)
+                    fetched.put(pkg, entry);
+            } catch (IOException | RuntimeException e) {
+                fetched.put(pkg, e);
+            }
+        });
+
+        Map<String,CompilationSubResult> results = new HashMap<>();
+        int errors = 0;
+        for (String pkg : pkgs) {
+            Object o = fetched.get(pkg);
+            if (o instanceof Exception) {
+                Log.warn("Could not read " + pkg + " from the build cache: " + o);
+                errors++;
+            } else if (o != null) {
+                try {
+                    results.put(pkg, restore(pkg, pkgSrcs.get(pkg), (byte[]) o));
+                    Log.debug("Fetched " + pkg + " from the build cache.");
+                } catch (IOException | RuntimeException e) {
+                    Log.warn("Ignoring bad build cache entry for " + pkg + ": " + e.getMessage());
+                    errors++;
+                }
+            }
+        }
+        ServerMetrics.buildCacheLookups(results.size(), pkgs.size() - results.size() - errors, errors);
+        return results;
+    }
+
+    /**
+     * Store the packages compiled together in one compilation.
+     *
+     * @param pkgSrcs the compiled packages, and which of their sources
+     *                were compiled
+     * @param result  the result of the compilation
+     */
+    public void store(Map<String,Set<URI>> pkgSrcs, CompilationSubResult result) {
+        if (result.result != Result.OK)
+            return;
+        int stored = 0;
+        int errors = 0;
+        for (Map.Entry<String,Set<URI>> e : pkgSrcs.entrySet()) {
+            String pkg = e.getKey();
+            if (!isCacheable(pkg, e.getValue()))
+                continue;
+            try {
+                byte[] entry = save(pkg, e.getValue(), result);
+                if (entry != null) {
+                    store.put(key(pkg, e.getValue()), entry);
+                    Log.debug("Stored " + pkg + " in the build cache.");
+                    stored++;
+                }
+            } catch (IOException | RuntimeException ex) {
+                Log.warn("Could not store " + pkg + " in the build cache: " + ex);
+                errors++;
+            }
+        }
+        ServerMetrics.buildCacheStores(stored, errors);
+    }
+
+    // Only packages compiled as a whole are cached. When some of the
+    // sources of a package are recompiled, the result also depends on the
+    // classes of the package left in the output directory.
+    private boolean isCacheable(String pkg, Set<URI> srcs) {
+        return srcs.size() == visiblePerPackage.getOrDefault(pkg, 0);
+    }
+
+    // The name of the source relative to its source root, such as
+    // ":p.q/C.java", which is the same wherever the sources are.
+    private static String rootRelativeName(Source s) {
+        return s.pkg() != null ? s.pkg().name() + "/" + s.file().getName() : s.name();
+    }
+
+    private String key(String pkg, Set<URI> srcs) {
+        MessageDigest md = newDigest();
+        line(md, context);
+        line(md, "package " + pkg);
+        for (String name : new TreeSet<>(names(srcs).values())) {
+            line(md, "compile " + name);
+        }
+        return hex(md.digest());
+    }
+
+    private Map<URI,String> names(Set<URI> srcs) {
+        Map<URI,String> names = new HashMap<>();
+        for (URI u : srcs) {
+            String name = sourceNames.get(u);
+            names.put(u, name != null ? name : u.toString());
+        }
+        return names;
+    }
+
+    private byte[] save(String pkg, Set<URI> srcs, CompilationSubResult r) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            string(out, pkg);
+
+            Set<URI> artifacts = r.packageArtifacts.getOrDefault(pkg, Collections.emptySet());
+            out.writeInt(artifacts.size());
+            for (URI u : artifacts) {
+                Path file = Paths.get(u);
+                String[] location = outputLocation(file);
+                if (location == null) {
+                    // Not in an output directory we know how to restore into.
+                    return null;
+                }
+                string(out, location[0]);
+                string(out, location[1]);
+                byte[] contents = Files.readAllBytes(file);
+                out.writeInt(contents.length);
+                out.write(contents);
+            }
+
+            dependencies(out, r.packageDependencies.get(pkg));
+            dependencies(out, r.packageCpDependencies.get(pkg));
+            pubApi(out, r.packagePubapis.get(pkg));
+            out.writeInt(r.dependencyPubapis.size());
+            for (Map.Entry<String,PubApi> e : r.dependencyPubapis.entrySet()) {
+                string(out, e.getKey());
+                pubApi(out, e.getValue());
+            }
+
+            Map<URI,String> names = names(srcs);
+            out.writeInt(srcs.size());
+            for (URI u : srcs) {
+                string(out, names.get(u));
+                Set<String> types = r.sourceTypes.get(u);
+                out.writeInt(types == null ? -1 : types.size());
+                if (types != null) {
+                    for (String t : types)
+                        string(out, t);
+                }
+                out.writeInt(r.sourceMillis.getOrDefault(u, -1));
+                out.writeInt(r.sourceHeapKiB.getOrDefault(u, -1));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private CompilationSubResult restore(String pkg, Set<URI> srcs, byte[] entry) throws IOException {
+        CompilationSubResult r = new CompilationSubResult(Result.OK);
+        Map<Path,byte[]> files = new LinkedHashMap<>();
+        // The entry is decompressed first, so that the lengths in it can be
+        // checked against the bytes left; entries from the store are untrusted.
+        byte[] data = inflate(entry, entryLimit(srcs));
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !pkg.equals(string(in)))
+                throw new IOException("not an entry for this package");
+
+            int numArtifacts = length(in);
+            Set<URI> artifacts = new HashSet<>();
+            for (int i = 0; i < numArtifacts; i++) {
+                Path root = outputRoots.get(string(in));
+                String rel = string(in);
+                if (root == null)
+                    throw new IOException("artifact in an unknown output directory");
+                Path file = root.resolve(rel).normalize();
+                if (!file.startsWith(root))
+                    throw new IOException("artifact outside of the output directory: " + rel);
+                byte[] contents = new byte[length(in)];
+                in.readFully(contents);
+                files.put(file, contents);
+                artifacts.add(file.toUri());
+            }
+            r.packageArtifacts.put(pkg, artifacts);
+
+            Map<String,Set<String>> deps = dependencies(in);
+            if (deps != null)
+                r.packageDependencies.put(pkg, deps);
+            Map<String,Set<String>> cpDeps = dependencies(in);
+            if (cpDeps != null)
+                r.packageCpDependencies.put(pkg, cpDeps);
+            PubApi api = pubApi(in);
+            if (api != null)
+                r.packagePubapis.put(pkg, api);
+            int numDepApis = length(in);
+            for (int i = 0; i < numDepApis; i++) {
+                String depPkg = string(in);
+                r.dependencyPubapis.put(depPkg, pubApi(in));
+            }
+
+            Map<String,URI> uris = new HashMap<>();
+            names(srcs).forEach((u, n) -> uris.put(n, u));
+            int numSources = length(in);
+            for (int i = 0; i < numSources; i++) {
+                URI u = uris.get(string(in));
+                int numTypes = optionalLength(in);
+                Set<String> types = numTypes < 0 ? null : new HashSet<>();
+                for (int j = 0; j < numTypes; j++)
+                    types.add(string(in));
+                int millis = in.readInt();
+                int kib = in.readInt();
+                if (u == null)
+                    throw new IOException("entry for other sources");
+                if (types != null)
+                    r.sourceTypes.put(u, types);
+                if (millis >= 0 && kib >= 0) {
+                    r.sourceMillis.put(u, millis);
+                    r.sourceHeapKiB.put(u, kib);
+                }
+            }
+        }
+
+        for (Map.Entry<Path,byte[]> e : files.entrySet()) {
+            Files.createDirectories(e.getKey().getParent());
+            Files.write(e.getKey(), e.getValue());
+        }
+        return r;
+    }
+
+    private void addOutputRoot(String tag, Path dir) {
+        if (dir != null)
+            outputRoots.put(tag, dir.toAbsolutePath().normalize());
+    }
+
+    // Return the tag of the output directory the file is in, and the path
+    // of the file relative to it.
+    private String[] outputLocation(Path file) {
+        Path abs = file.toAbsolutePath().normalize();
+        for (Map.Entry<String,Path> e : outputRoots.entrySet()) {
+            if (abs.startsWith(e.getValue())) {
+                String rel = e.getValue().relativize(abs).toString().replace(File.separatorChar, '/');
+                return new String[] { e.getKey(), rel };
+            }
+        }
+        return null;
+    }
+
+    // The javac options, without the locations that differ between
+    // workspaces. The contents of the locations are hashed separately.
+    private static List<String> locationIndependent(String[] args) {
+        Set<String> locationOptions = new HashSet<>(List.of(
+                "-d", "-s", "-h", "-sourcepath", "--source-path",
+                "-cp", "-classpath", "--class-path", "-p", "--module-path"));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            result.add(args[i]);
+            if (locationOptions.contains(args[i]))
+                i++;
+        }
+        return result;
+    }
+
+    private static void hashLocations(MessageDigest md, String kind, List<SourceLocation> locs) {
+        int index = 0;
+        for (SourceLocation loc : locs) {
+            Path root = loc.getPath();
+            List<Path> files = new ArrayList<>();
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> s = Files.walk(root)) {
+                    files = s.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                } catch (IOException e) {
+                    line(md, kind + " " + index + " unreadable");
+                }
+            } else if (Files.isRegularFile(root)) {
+                files = Collections.singletonList(root);
+            }
+            FileHash[] hashes = FileHash.of(files.stream().map(Path::toFile).collect(Collectors.toList()));
+            for (int i = 0; i < hashes.length; i++) {
+                String rel = root.equals(files.get(i)) ? "" : root.relativize(files.get(i)).toString();
+                line(md, kind + " " + index + " " + rel.replace(File.separatorChar, '/') + " "
+                         + (hashes[i] != null ? hashes[i].hash() : "unreadable"));
+            }
+            index++;
+        }
+    }
+
+    private static void dependencies(DataOutputStream out, Map<String,Set<String>> deps) throws IOException {
+        out.writeInt(deps == null ? -1 : deps.size());
+        if (deps == null)
+            return;
+        for (Map.Entry<String,Set<String>> e : deps.entrySet()) {
+            string(out, e.getKey());
+            out.writeInt(e.getValue().size());
+            for (String to : e.getValue())
+                string(out, to);
+        }
+    }
+
+    private static Map<String,Set<String>> dependencies(DataInputStream in) throws IOException {
+        int numFroms = optionalLength(in);
+        if (numFroms < 0)
+            return null;
+        Map<String,Set<String>> deps = new HashMap<>();
+        for (int i = 0; i < numFroms; i++) {
+            String from = string(in);
+            int numTos = length(in);
+            Set<String> tos = new HashSet<>();
+            for (int j = 0; j < numTos; j++)
+                tos.add(string(in));
+            deps.put(from, tos);
+        }
+        return deps;
+    }
+
+    private static void pubApi(DataOutputStream out, PubApi api) throws IOException {
+        List<String> lines = api == null ? null : api.asListOfStrings();
+        out.writeInt(lines == null ? -1 : lines.size());
+        if (lines != null) {
+            for (String l : lines)
+                string(out, l);
+        }
+    }
+
+    private static PubApi pubApi(DataInputStream in) throws IOException {
+        int numLines = optionalLength(in);
+        if (numLines < 0)
+            return null;
+        PubApi api = new PubApi();
+        for (int i = 0; i < numLines; i++)
+            api.appendItem(string(in));
+        return api;
+    }
+
+    private static long entryLimit(Set<URI> srcs) {
+        long size = 0;
+        for (URI u : srcs)
+            size += new File(u).length();
+        return Math.min(MIN_ENTRY_LIMIT + ENTRY_SIZE_FACTOR * size, Integer.MAX_VALUE - 8);
+    }
+
+    private static byte[] inflate(byte[] entry, long limit) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (InputStream gz = new GZIPInputStream(new ByteArrayInputStream(entry))) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = gz.read(buf)) > 0) {
+                if (data.size() + n > limit)
+                    throw new IOException("entry inflates to more than " + limit + " bytes");
+                data.write(buf, 0, n);
+            }
+        }
+        return data.toByteArray();
+    }
+
+    private static void string(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String string(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[length(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Read a length or a count. Each byte or item counted takes at least
+    // one byte of the entry, so a valid value is never more than the bytes
+    // left in it.
+    private static int length(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > in.available())
+            throw new IOException("bad length: " + n);
+        return n;
+    }
+
+    // Read a length or a count that is -1 when there is no value.
+    private static int optionalLength(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < -1 || n > in.available())
+            throw new IOException("bad length: " + n);
+        return n;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    private static void line(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) '\n');
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+              .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.Log;
+import com.sun.tools.sjavac.server.FramedProtocol.Frame;
+
+import static com.sun.tools.sjavac.server.FramedProtocol.*;
+
+/**
+ * A connection to a sjavac server, speaking the framed protocol. The
+ * connection is kept open, and can carry several compile requests at the
+ * same time. A reader thread hands the frames it receives to the thread
+ * waiting for the request they belong to, which logs them.
+ *
+ * While the connection is open, the server is pinged at regular intervals.
+ * If it does not answer, the connection is closed.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+class ServerConnection {
+
+    static int KEEPALIVE_INTERVAL = 10000;
+
+    // Handed to the requests in progress when the connection is closed.
+    private static final Frame CLOSED = new Frame(0, (byte) 0, new byte[0]);
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Map<Integer, BlockingQueue<Frame>> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger lastRequestId = new AtomicInteger();
+    private final Timer keepAliveTimer = new Timer("sjavac-keepalive", true);
+    private volatile boolean closed;
+    private volatile boolean pongReceived = true;
+
+    ServerConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        synchronized (out) {
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+
+        Thread reader = new Thread(this::readFrames, "sjavac-connection");
+        reader.setDaemon(true);
+        reader.start();
+
+        keepAliveTimer.schedule(new TimerTask() {
+            public void run() {
+                ping();
+            }
+        }, KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL);
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Perform a compile request, and log what the server logs for it.
+     */
+    Result compile(String[] args, Log.Level level) throws IOException, InterruptedException {
+        int requestId = lastRequestId.incrementAndGet();
+        BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+        requests.put(requestId, frames);
+        try {
+            if (closed)
+                throw new IOException("Connection to server closed");
+            writeFrame(out, requestId, COMPILE, compilePayload(level, args));
+            while (true) {
+                Frame frame = frames.take();
+                if (frame == CLOSED)
+                    throw new IOException("Connection to server closed");
+                DataInputStream payload = frame.payload();
+                switch (frame.type) {
+                    case LOG:
+                        Log.Level msgLevel = readLevel(payload);
+                        String content = readString(payload);
+                        if (Log.isDebugging()) {
+                            // Distinguish server generated output if debugging.
+                            content = "[sjavac-server] " + content;
+                        }
+                        Log.log(msgLevel, content);
+                        break;
+                    case RESULT:
+                        return readResult(payload);
+                    default:
+                        throw new IOException("Unexpected frame type: " + frame.type);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } finally {
+            requests.remove(requestId);
+        }
+    }
+
+    /**
+     * Ask the server for its statistics.
+     *
+     * @return the statistics, as a JSON object
+     */
+    String metrics() throws IOException, InterruptedException {
+        int requestId = lastRequestId.incrementAndGet();
+        BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+        requests.put(requestId, frames);
+        try {
+            if (closed)
+                throw new IOException("Connection to server closed");
+            writeFrame(out, requestId, METRICS, new byte[0]);
+            Frame frame = frames.take();
+            if (frame == CLOSED)
+                throw new IOException("Connection to server closed");
+            if (frame.type != METRICS_REPORT)
+                throw new IOException("Unexpected frame type: " + frame.type);
+            return readString(frame.payload());
+        } finally {
+            requests.remove(requestId);
+        }
+    }
+
+    void close() {
+        if (closed)
+            return;
+        closed = true;
+        keepAliveTimer.cancel();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.debug(e);
+        }
+        for (BlockingQueue<Frame> frames : requests.values()) {
+            frames.add(CLOSED);
+        }
+    }
+
+    private void readFrames() {
+        try {
+            while (true) {
+                Frame frame = readFrame(in);
+                if (frame.type == PONG) {
+                    pongReceived = true;
+                    continue;
+                }
+                BlockingQueue<Frame> frames = requests.get(frame.requestId);
+                if (frames != null) {
+                    frames.add(frame);
+                }
+            }
+        } catch (IOException e) {
+            // The server closed the connection, or went away.
+        } finally {
+            close();
+        }
+    }
+
+    private void ping() {
+        if (!pongReceived) {
+            // No answer since the last ping.
+            close();
+            return;
+        }
+        pongReceived = false;
+        try {
+            writeFrame(out, 0, PING, new byte[0]);
+        } catch (IOException e) {
+            close();
+        }
+    }
+}
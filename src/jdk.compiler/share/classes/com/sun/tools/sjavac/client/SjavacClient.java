@@ -28,17 +28,17 @@ package com.sun.tools.sjavac.client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.Reader;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
-import com.sun.tools.javac.main.Main;
 import com.sun.tools.javac.main.Main.Result;
 import com.sun.tools.sjavac.Log;
 import com.sun.tools.sjavac.Util;
@@ -71,6 +71,13 @@ public class SjavacClient implements Sjavac {
     private final int keepalive;
     private final int poolsize;
 
+    // Default is to trim the caches of the server after 30 seconds of inactivity.
+    private final int trimafter;
+
+    // The file the server writes its metrics to, if any, and how often.
+    private final String metricsfile;
+    private final int metricsinterval;
+
     // The sjavac option specifies how the server part of sjavac is spawned.
     // If you have the experimental sjavac in your path, you are done. If not, you have
     // to point to a com.sun.tools.sjavac.Main that supports --startserver
@@ -85,6 +92,13 @@ public class SjavacClient implements Sjavac {
     // Store the server conf settings here.
     private final String settings;
 
+    // The log level the server should log at.
+    private final Log.Level logLevel;
+
+    // The open connections, one per port file. They are shared by all
+    // clients in this vm, and are kept open between compiles.
+    private static final Map<String, ServerConnection> connections = new HashMap<>();
+
     public SjavacClient(Options options) {
         String tmpServerConf = options.getServerConf();
         String serverConf = (tmpServerConf!=null)? tmpServerConf : "";
@@ -99,9 +113,13 @@ public class SjavacClient implements Sjavac {
         sjavacForkCmd = Util.extractStringOption("sjavac", serverConf, "sjavac");
         int poolsize = Util.extractIntOption("poolsize", serverConf);
         keepalive = Util.extractIntOption("keepalive", serverConf, 120);
+        trimafter = Util.extractIntOption("trimafter", serverConf, 30);
+        metricsfile = Util.extractStringOption("metricsfile", serverConf);
+        metricsinterval = Util.extractIntOption("metricsinterval", serverConf, 10);
 
         this.poolsize = poolsize > 0 ? poolsize : Runtime.getRuntime().availableProcessors();
         settings = (serverConf.equals("")) ? "id="+id+",portfile="+portfileName : serverConf;
+        logLevel = Log.Level.valueOf(options.getLogLevel().toUpperCase(Locale.US));
     }
 
     /**
@@ -114,42 +132,9 @@ public class SjavacClient implements Sjavac {
 
     @Override
     public Result compile(String[] args) {
-        Result result = null;
-        try (Socket socket = tryConnect()) {
-            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            // Send args array to server
-            out.println(args.length);
-            for (String arg : args)
-                out.println(arg);
-            out.flush();
-
-            // Read server response line by line
-            String line;
-            while (null != (line = in.readLine())) {
-                if (!line.contains(":")) {
-                    throw new AssertionError("Could not parse protocol line: >>\"" + line + "\"<<");
-                }
-                String[] typeAndContent = line.split(":", 2);
-                String type = typeAndContent[0];
-                String content = typeAndContent[1];
-
-                try {
-                    if (Log.isDebugging()) {
-                        // Distinguish server generated output if debugging.
-                        content = "[sjavac-server] " + content;
-                    }
-                    Log.log(Log.Level.valueOf(type), content);
-                    continue;
-                } catch (IllegalArgumentException e) {
-                    // Parsing of 'type' as log level failed.
-                }
-
-                if (type.equals(SjavacServer.LINE_TYPE_RC)) {
-                    result = Main.Result.valueOf(content);
-                }
-            }
+        Result result;
+        try {
+            result = getConnection().compile(args, logLevel);
         } catch (PortFileInaccessibleException e) {
             Log.error("Port file inaccessible.");
             result = Result.ERROR;
@@ -164,12 +149,43 @@ public class SjavacClient implements Sjavac {
             result = Result.ERROR;
         }
 
-        if (result == null) {
-            // No LINE_TYPE_RC was found.
-            result = Result.ERROR;
+        return result;
+    }
+
+    /**
+     * Ask the server for its statistics, connecting to it or starting it
+     * if needed.
+     *
+     * @return the statistics as a JSON object, or null if the server
+     *         could not be reached
+     */
+    public String serverMetrics() {
+        try {
+            return getConnection().metrics();
+        } catch (IOException ioe) {
+            Log.error("IOException caught while fetching server metrics: " + ioe.getMessage());
+            Log.debug(ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt(); // Restore interrupt
+            Log.debug(ie);
         }
+        return null;
+    }
 
-        return result;
+    /*
+     * Returns the open connection to the server, or connects to it.
+     */
+    private ServerConnection getConnection() throws IOException, InterruptedException {
+        synchronized (connections) {
+            ServerConnection connection = connections.get(portFile.getFilename());
+            if (connection != null && connection.isOpen()) {
+                Log.debug("Reusing connection to server");
+                return connection;
+            }
+            connection = new ServerConnection(tryConnect());
+            connections.put(portFile.getFilename(), connection);
+            return connection;
+        }
     }
 
     /*
@@ -224,7 +240,10 @@ public class SjavacClient implements Sjavac {
         SjavacClient.fork(sjavacForkCmd,
                           portFile,
                           poolsize,
-                          keepalive);
+                          keepalive,
+                          trimafter,
+                          metricsfile,
+                          metricsinterval);
     }
 
     @Override
@@ -235,14 +254,19 @@ public class SjavacClient implements Sjavac {
     /*
      * Fork a server process process and wait for server to come around
      */
-    public static void fork(String sjavacCmd, PortFile portFile, int poolsize, int keepalive)
+    public static void fork(String sjavacCmd, PortFile portFile, int poolsize, int keepalive,
+                            int trimafter, String metricsfile, int metricsinterval)
             throws IOException, InterruptedException {
         List<String> cmd = new ArrayList<>();
         cmd.addAll(Arrays.asList(OptionHelper.unescapeCmdArg(sjavacCmd).split(" ")));
         cmd.add("--startserver:"
               + "portfile=" + portFile.getFilename()
               + ",poolsize=" + poolsize
-              + ",keepalive="+ keepalive);
+              + ",keepalive="+ keepalive
+              + ",trimafter=" + trimafter
+              + (metricsfile != null
+                 ? ",metricsfile=" + metricsfile + ",metricsinterval=" + metricsinterval
+                 : ""));
 
         Process serverProcess;
         Log.debug("Starting server. Command: " + String.join(" ", cmd));
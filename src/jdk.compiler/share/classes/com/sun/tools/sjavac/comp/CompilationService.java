@@ -31,8 +31,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.tools.JavaFileObject;
@@ -77,6 +80,9 @@ public class CompilationService {
         JavacTool compiler = (JavacTool) ToolProvider.getSystemJavaCompiler();
         try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, null)) {
             SmartFileManager sfm = new SmartFileManager(fm);
+            // Chunks compiled concurrently, here or in the server, mostly
+            // have the same class path; open and index each jar just once.
+            sfm.setArchivesShared(true);
             Context context = new Context();
 
             Dependencies.GraphDependencies.preRegister(context);
@@ -91,11 +97,21 @@ public class CompilationService {
             }
             // Now deal with sources supplied as source_to_compile
             ListBuffer<File> sourcesToCompileFiles = new ListBuffer<>();
-            for (URI u : sourcesToCompile)
+            ListBuffer<URI> sourcesToCompileURIs = new ListBuffer<>();
+            for (URI u : sourcesToCompile) {
                 sourcesToCompileFiles.append(new File(u));
+                sourcesToCompileURIs.append(u);
+            }
 
-            for (JavaFileObject jfo : fm.getJavaFileObjectsFromFiles(sourcesToCompileFiles))
-                explicitJFOs.append(SmartFileManager.locWrap(jfo, StandardLocation.SOURCE_PATH));
+            // Remember the URIs as given, so that the caller can recognize its
+            // sources in the source to types mapping.
+            Map<JavaFileObject, URI> jfoToURI = new HashMap<>();
+            Iterator<URI> uris = sourcesToCompileURIs.iterator();
+            for (JavaFileObject jfo : fm.getJavaFileObjectsFromFiles(sourcesToCompileFiles)) {
+                JavaFileObject wrapped = SmartFileManager.locWrap(jfo, StandardLocation.SOURCE_PATH);
+                explicitJFOs.append(wrapped);
+                jfoToURI.put(wrapped, uris.next());
+            }
 
             // Create a log to capture compiler output
             StringWriter stderrLog = new StringWriter();
@@ -103,6 +119,7 @@ public class CompilationService {
             PublicApiCollector pubApiCollector = new PublicApiCollector(context, explicitJFOs);
             PathAndPackageVerifier papVerifier = new PathAndPackageVerifier();
             NewDependencyCollector depsCollector = new NewDependencyCollector(context, explicitJFOs);
+            CompileCostCollector costCollector = new CompileCostCollector();
             try {
                 if (explicitJFOs.size() > 0) {
                     sfm.setVisibleSources(visibleSources);
@@ -121,8 +138,14 @@ public class CompilationService {
                     task.addTaskListener(depsCollector);
                     task.addTaskListener(pubApiCollector);
                     task.addTaskListener(papVerifier);
+                    task.addTaskListener(costCollector);
                     logJavacInvocation(args);
-                    result = task.doCall();
+                    costCollector.compilationStarted();
+                    try {
+                        result = task.doCall();
+                    } finally {
+                        costCollector.compilationFinished();
+                    }
                     Log.debug("javac result: " + result);
                     sfm.flush();
                 } else {
@@ -145,6 +168,12 @@ public class CompilationService {
 
             compilationResult.packagePubapis = pubApiCollector.getPubApis(true);
             compilationResult.dependencyPubapis = pubApiCollector.getPubApis(false);
+            for (Map.Entry<JavaFileObject, Set<String>> e : pubApiCollector.getSourceTypes().entrySet()) {
+                URI u = jfoToURI.get(e.getKey());
+                if (u != null)
+                    compilationResult.sourceTypes.put(u, new HashSet<>(e.getValue()));
+            }
+            costCollector.getCosts(jfoToURI, compilationResult);
             compilationResult.stderr = stderrLog.toString();
             compilationResult.result = result;
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.comp;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.JavaFileObject;
+
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.util.DefinedBy;
+import com.sun.tools.javac.util.DefinedBy.Api;
+import com.sun.tools.sjavac.server.CompilationSubResult;
+
+/**
+ * Measures how much time and heap the compilation of each source file
+ * needs. The time is the time spent parsing, analyzing and generating
+ * code for the file. The heap needed by the compilation is sampled as it
+ * proceeds, and is apportioned among the files according to their time.
+ * The measurements are used to plan the compile chunks of later builds.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class CompileCostCollector implements TaskListener {
+
+    // The number of compilations currently running in this vm. They share
+    // the heap, so the heap in use is divided among them.
+    private static final AtomicInteger runningCompilations = new AtomicInteger();
+
+    private final Map<JavaFileObject, Long> nanos = new HashMap<>();
+
+    // The files of the events currently in progress, innermost first.
+    // Completing a symbol can parse another file in the middle of
+    // analyzing a class, in which case the time goes to the inner file.
+    private final Deque<JavaFileObject> inProgress = new ArrayDeque<>();
+    private long lastSwitch;
+
+    private long heapAtStart;
+    private long peakHeap;
+    private int sharedWith = 1;
+
+    public void compilationStarted() {
+        sharedWith = runningCompilations.incrementAndGet();
+        heapAtStart = usedHeap();
+        peakHeap = heapAtStart;
+    }
+
+    public void compilationFinished() {
+        sampleHeap();
+        runningCompilations.decrementAndGet();
+    }
+
+    @Override
+    @DefinedBy(Api.COMPILER_TREE)
+    public void started(TaskEvent e) {
+        if (!isTimed(e))
+            return;
+        long now = System.nanoTime();
+        if (!inProgress.isEmpty())
+            charge(inProgress.peek(), now);
+        inProgress.push(e.getSourceFile());
+        lastSwitch = now;
+    }
+
+    @Override
+    @DefinedBy(Api.COMPILER_TREE)
+    public void finished(TaskEvent e) {
+        if (!isTimed(e) || inProgress.isEmpty())
+            return;
+        long now = System.nanoTime();
+        charge(inProgress.pop(), now);
+        lastSwitch = now;
+        if (e.getKind() == TaskEvent.Kind.ANALYZE)
+            sampleHeap();
+    }
+
+    /**
+     * Store the measured costs of the given sources in the result.
+     */
+    public void getCosts(Map<JavaFileObject, URI> sources, CompilationSubResult result) {
+        long totalNanos = 0;
+        for (JavaFileObject jfo : sources.keySet()) {
+            totalNanos += nanos.getOrDefault(jfo, 0L);
+        }
+        if (totalNanos == 0)
+            return;
+        long heapKiB = Math.max(0, peakHeap - heapAtStart) / 1024 / sharedWith;
+        for (Map.Entry<JavaFileObject, URI> e : sources.entrySet()) {
+            long n = nanos.getOrDefault(e.getKey(), 0L);
+            result.sourceMillis.put(e.getValue(), (int) (n / 1_000_000));
+            result.sourceHeapKiB.put(e.getValue(), (int) (heapKiB * n / totalNanos));
+        }
+    }
+
+    private boolean isTimed(TaskEvent e) {
+        switch (e.getKind()) {
+            case PARSE:
+            case ANALYZE:
+            case GENERATE:
+                return e.getSourceFile() != null;
+            default:
+                return false;
+        }
+    }
+
+    private void charge(JavaFileObject jfo, long now) {
+        nanos.merge(jfo, now - lastSwitch, Long::sum);
+    }
+
+    private void sampleHeap() {
+        peakHeap = Math.max(peakHeap, usedHeap());
+        sharedWith = Math.max(sharedWith, runningCompilations.get());
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -27,6 +27,7 @@ package com.sun.tools.sjavac.comp;
 
 import com.sun.tools.javac.main.Main.Result;
 import com.sun.tools.sjavac.Log;
+import com.sun.tools.sjavac.server.ServerMetrics;
 import com.sun.tools.sjavac.server.Sjavac;
 
 import java.util.Objects;
@@ -57,10 +58,17 @@ public class PooledSjavac implements Sjavac {
     @Override
     public Result compile(String[] args) {
         Log log = Log.get();
+        long queued = System.currentTimeMillis();
+        ServerMetrics.requestQueued();
         try {
             return pool.submit(() -> {
                 Log.setLogForCurrentThread(log);
-                return delegate.compile(args);
+                ServerMetrics.requestStarted(System.currentTimeMillis() - queued);
+                try {
+                    return delegate.compile(args);
+                } finally {
+                    ServerMetrics.requestFinished();
+                }
             }).get();
         } catch (Exception e) {
             e.printStackTrace();
@@ -68,6 +76,11 @@ public class PooledSjavac implements Sjavac {
         }
     }
 
+    @Override
+    public void trimCaches() {
+        delegate.trimCaches();
+    }
+
     @Override
     public void shutdown() {
         Log.debug("Shutting down PooledSjavac");
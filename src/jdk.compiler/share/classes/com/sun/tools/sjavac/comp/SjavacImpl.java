@@ -39,10 +39,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
+import com.sun.tools.javac.file.JRTIndex;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.main.Main;
 import com.sun.tools.javac.main.Main.Result;
 import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.SharedNameTable;
 import com.sun.tools.sjavac.JavacState;
 import com.sun.tools.sjavac.Log;
 import com.sun.tools.sjavac.Module;
@@ -311,6 +313,21 @@ public class SjavacImpl implements Sjavac {
         // Nothing to clean up
     }
 
+    @Override
+    public void trimCaches() {
+        // Everything compiled with is dropped after each compilation, except
+        // the name tables kept for reuse and the index of the platform classes.
+        Runtime rt = Runtime.getRuntime();
+        long before = rt.totalMemory() - rt.freeMemory();
+        SharedNameTable.trimFreelist();
+        JRTIndex.trimSharedInstance();
+        // Collect while idle, so that the heap can shrink until the next build.
+        System.gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+        Log.debug("Trimmed caches, heap in use went from " + (before >> 20) + "MiB to "
+                  + (after >> 20) + "MiB of " + (rt.totalMemory() >> 20) + "MiB");
+    }
+
     private static boolean validateOptions(Options options) {
 
         String err = null;
@@ -87,6 +87,16 @@ public class SmartFileManager extends ForwardingJavaFileManager<JavaFileManager>
         ((JavacFileManager) fileManager).setSymbolFileEnabled(b);
     }
 
+    /**
+     * Set whether archives on the class and source paths are shared with
+     * the other compilations running in this vm.
+     */
+    public void setArchivesShared(boolean b) {
+        if (!(fileManager instanceof JavacFileManager))
+            throw new IllegalStateException();
+        ((JavacFileManager) fileManager).setArchivesShared(b);
+    }
+
     @DefinedBy(Api.COMPILER)
     public String inferBinaryName(Location location, JavaFileObject file) {
         return super.inferBinaryName(location, locUnwrap(file));
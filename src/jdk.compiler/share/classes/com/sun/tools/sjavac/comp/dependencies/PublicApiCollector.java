@@ -26,6 +26,7 @@
 package com.sun.tools.sjavac.comp.dependencies;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -51,6 +52,7 @@ public class PublicApiCollector implements TaskListener {
     private Context context;
     private final Set<ClassSymbol> classSymbols = new HashSet<>();
     private final Collection<JavaFileObject> explicitJFOs;
+    private final Map<JavaFileObject, Set<String>> explicitSourceTypes = new HashMap<>();
 
     // Result collected upon compilation task finished
     private Map<String, PubApi> explicitPubApis;
@@ -89,9 +91,16 @@ public class PublicApiCollector implements TaskListener {
     }
 
     private void collectClassSymbols(JCCompilationUnit cu) {
+        boolean explicit = explicitJFOs.contains(cu.sourcefile);
         for (Tree t : cu.getTypeDecls()) {
-            if (t instanceof JCClassDecl)  // Can also be a JCSkip
-                classSymbols.add(((JCClassDecl) t).sym);
+            if (t instanceof JCClassDecl) { // Can also be a JCSkip
+                ClassSymbol sym = ((JCClassDecl) t).sym;
+                classSymbols.add(sym);
+                if (explicit && sym != null) {
+                    explicitSourceTypes.computeIfAbsent(cu.sourcefile, f -> new HashSet<>())
+                                       .add(sym.flatname.toString());
+                }
+            }
         }
     }
 
@@ -109,4 +118,9 @@ public class PublicApiCollector implements TaskListener {
     public Map<String, PubApi> getPubApis(boolean explicit) {
         return explicit ? explicitPubApis : nonExplicitPubApis;
     }
+
+    // Explicitly compiled source -> flat names of the top level classes it declares
+    public Map<JavaFileObject, Set<String>> getSourceTypes() {
+        return explicitSourceTypes;
+    }
 }
@@ -296,6 +296,24 @@ public enum Option {
             String p = iter.current().substring(arg.length());
             helper.stateDir(Paths.get(p));
         }
+    },
+    INCREMENTAL("--incremental=", "Granularity of incremental recompilation: package (default) or class") {
+        @Override
+        protected void processMatching(ArgumentIterator iter, OptionHelper helper) {
+            helper.incremental(iter.current().substring(arg.length()));
+        }
+    },
+    STATE_FORMAT("--state-format=", "Format of the javac_state file: binary (default) or text") {
+        @Override
+        protected void processMatching(ArgumentIterator iter, OptionHelper helper) {
+            helper.stateFormat(iter.current().substring(arg.length()));
+        }
+    },
+    BUILD_CACHE("--build-cache=", "Directory, or http(s) url, of a cache of compiled packages shared between builds") {
+        @Override
+        protected void processMatching(ArgumentIterator iter, OptionHelper helper) {
+            helper.buildCache(iter.current().substring(arg.length()));
+        }
     };
 
 
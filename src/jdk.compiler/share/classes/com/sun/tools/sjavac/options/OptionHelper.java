@@ -110,6 +110,15 @@ public abstract class OptionHelper {
     /** Sets the implicit policy */
     public abstract void implicit(String policy);
 
+    /** Sets the granularity of incremental recompilation */
+    public abstract void incremental(String granularity);
+
+    /** Sets the format of the javac_state file */
+    public abstract void stateFormat(String format);
+
+    /** Sets the location of the shared cache of compiled packages */
+    public abstract void buildCache(String location);
+
 
     /**
      * Traverses an array of arguments and performs the appropriate callbacks.
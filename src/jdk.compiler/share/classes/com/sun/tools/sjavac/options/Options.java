@@ -67,6 +67,9 @@ public class Options {
     private Path sourceReferenceList;
     private int numCores = 4;
     private String implicitPolicy = "none";
+    private boolean classLevelIncremental = false;
+    private boolean textState = false;
+    private String buildCache;
     private List<String> javacArgs = new ArrayList<>();
 
     private Map<String, Transformer> trRules = new HashMap<>();
@@ -145,6 +148,24 @@ public class Options {
         return permitSourcesInDefaultPackage;
     }
 
+    /** Returns true iff incremental builds should recompile individual classes. */
+    public boolean isClassLevelIncremental() {
+        return classLevelIncremental;
+    }
+
+    /** Returns true iff the javac_state should be saved in the text format. */
+    public boolean isStateInTextFormat() {
+        return textState;
+    }
+
+    /**
+     * Get the location of the shared cache of compiled packages, a directory
+     * or an http(s) url, or null if there is none.
+     */
+    public String getBuildCache() {
+        return buildCache;
+    }
+
     /** Get the path to the list of reference sources (or null if none is set) */
     public Path getSourceReferenceList() {
         return sourceReferenceList;
@@ -444,6 +465,33 @@ public class Options {
             implicitPolicy = policy;
         }
 
+        @Override
+        public void incremental(String granularity) {
+            if (granularity.equals("class"))
+                classLevelIncremental = true;
+            else if (granularity.equals("package"))
+                classLevelIncremental = false;
+            else
+                reportError("Unknown incremental granularity: " + granularity);
+        }
+
+        @Override
+        public void stateFormat(String format) {
+            if (format.equals("text"))
+                textState = true;
+            else if (format.equals("binary"))
+                textState = false;
+            else
+                reportError("Unknown javac_state format: " + format);
+        }
+
+        @Override
+        public void buildCache(String location) {
+            if (location.isEmpty())
+                reportError("No location given for the build cache");
+            buildCache = location;
+        }
+
         @Override
         public void startServerConf(String conf) {
             if (serverConf != null)
@@ -51,6 +51,11 @@ public class CompilationSubResult implements Serializable {
     public Map<String, Map<String, Set<String>>> packageCpDependencies = new HashMap<>();
     public Map<String, PubApi> packagePubapis = new HashMap<>();
     public Map<String, PubApi> dependencyPubapis = new HashMap<>();
+    // Source file -> fully qualified names of the top level classes it declares
+    public Map<URI, Set<String>> sourceTypes = new HashMap<>();
+    // Source file -> time and heap it took to compile it
+    public Map<URI, Integer> sourceMillis = new HashMap<>();
+    public Map<URI, Integer> sourceHeapKiB = new HashMap<>();
     public String stdout = "";
     public String stderr = "";
 
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.Log;
+
+/**
+ * The framed protocol spoken between the sjavac client and server. A client
+ * opens a connection by sending MAGIC, and then keeps the connection open
+ * for as long as it likes. Several compile requests can be in progress on a
+ * connection at the same time. Every frame carries the id of the request it
+ * belongs to, so the frames of different requests can be interleaved.
+ *
+ * A frame is laid out as:
+ * <pre>
+ *   request_id:int type:byte payload_length:int payload
+ * </pre>
+ * where the payload depends on the type:
+ * <pre>
+ *   COMPILE  client to server  log_level:byte arg_count:int string*
+ *   LOG      server to client  log_level:byte string
+ *   RESULT   server to client  exit_code:int
+ *   PING     client to server  (empty)
+ *   PONG     server to client  (empty)
+ *   METRICS  client to server  (empty)
+ *   METRICS_REPORT  server to client  string
+ * </pre>
+ * A METRICS request is answered with the statistics of the server, as
+ * the JSON object described in {@link ServerMetrics}.
+ * Strings are written as a length followed by the UTF-8 bytes.
+ *
+ * A connection that does not start with MAGIC is served with the older line
+ * based protocol, see {@link RequestHandler}.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class FramedProtocol {
+
+    public static final int MAGIC = 0x534a4d58; // "SJMX"
+
+    public static final byte COMPILE = 1;
+    public static final byte LOG = 2;
+    public static final byte RESULT = 3;
+    public static final byte PING = 4;
+    public static final byte PONG = 5;
+    public static final byte METRICS = 6;
+    public static final byte METRICS_REPORT = 7;
+
+    public static class Frame {
+        public final int requestId;
+        public final byte type;
+        private final byte[] payload;
+
+        public Frame(int requestId, byte type, byte[] payload) {
+            this.requestId = requestId;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public DataInputStream payload() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+
+    /**
+     * Write a frame. Frames can be written to the same stream from several
+     * threads, a frame is never interleaved with another.
+     */
+    public static void writeFrame(DataOutputStream out, int requestId, byte type, byte[] payload)
+            throws IOException {
+        synchronized (out) {
+            out.writeInt(requestId);
+            out.writeByte(type);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int requestId = in.readInt();
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("Bad frame length: " + length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(requestId, type, payload);
+    }
+
+    public static byte[] compilePayload(Log.Level level, String[] args) {
+        return payload(out -> {
+            out.writeByte(level.ordinal());
+            out.writeInt(args.length);
+            for (String arg : args)
+                writeString(out, arg);
+        });
+    }
+
+    public static byte[] logPayload(Log.Level level, String msg) {
+        return payload(out -> {
+            out.writeByte(level.ordinal());
+            writeString(out, msg);
+        });
+    }
+
+    public static byte[] resultPayload(Result rc) {
+        return payload(out -> out.writeInt(rc.exitCode));
+    }
+
+    public static byte[] metricsPayload(String json) {
+        return payload(out -> writeString(out, json));
+    }
+
+    public static Log.Level readLevel(DataInputStream in) throws IOException {
+        int level = in.readByte();
+        Log.Level[] levels = Log.Level.values();
+        if (level < 0 || level >= levels.length)
+            throw new IOException("Bad log level: " + level);
+        return levels[level];
+    }
+
+    public static String[] readArgs(DataInputStream in) throws IOException {
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++)
+            args[i] = readString(in);
+        return args;
+    }
+
+    public static Result readResult(DataInputStream in) throws IOException {
+        int exitCode = in.readInt();
+        for (Result rc : Result.values()) {
+            if (rc.exitCode == exitCode)
+                return rc;
+        }
+        return Result.ERROR;
+    }
+
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] payload(PayloadWriter w) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            w.write(out);
+        } catch (IOException e) {
+            // Cannot happen when writing to a byte array.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -36,7 +36,9 @@ import java.util.TimerTask;
  * given Terminable upon idleness timeout.
  *
  * An idleness timeout kicks in {@code idleTimeout} milliseconds after the last
- * request is completed.
+ * request is completed. Before that, {@code trimTimeout} milliseconds after the
+ * last request is completed, the delegate is asked to trim its caches, so that
+ * an idle server keeps a small heap while still starting the next build warm.
  *
  *  <p><b>This is NOT part of any supported API.
  *  If you write code that depends on this, you do so at your own risk.
@@ -49,17 +51,33 @@ public class IdleResetSjavac implements Sjavac {
     private final Terminable toShutdown;
     private final Timer idlenessTimer = new Timer();
     private final long idleTimeout;
+    private final long trimTimeout;
     private int outstandingCalls = 0;
 
     // Class invariant: idlenessTimerTask != null <-> idlenessTimerTask is scheduled
     private TimerTask idlenessTimerTask;
 
+    // Scheduled along with idlenessTimerTask, unless trimming is disabled.
+    private TimerTask trimTimerTask;
+
     public IdleResetSjavac(Sjavac delegate,
                            Terminable toShutdown,
                            long idleTimeout) {
+        this(delegate, toShutdown, idleTimeout, 0);
+    }
+
+    /**
+     * @param trimTimeout milliseconds of idleness before the caches are
+     *                    trimmed, or 0 to never trim them
+     */
+    public IdleResetSjavac(Sjavac delegate,
+                           Terminable toShutdown,
+                           long idleTimeout,
+                           long trimTimeout) {
         this.delegate = delegate;
         this.toShutdown = toShutdown;
         this.idleTimeout = idleTimeout;
+        this.trimTimeout = trimTimeout;
         scheduleTimeout();
     }
 
@@ -82,6 +100,10 @@ public class IdleResetSjavac implements Sjavac {
             // Cancel timeout task
             idlenessTimerTask.cancel();
             idlenessTimerTask = null;
+            if (trimTimerTask != null) {
+                trimTimerTask.cancel();
+                trimTimerTask = null;
+            }
         }
     }
 
@@ -102,6 +124,19 @@ public class IdleResetSjavac implements Sjavac {
             }
         };
         idlenessTimer.schedule(idlenessTimerTask, idleTimeout);
+
+        if (trimTimeout > 0 && trimTimeout < idleTimeout) {
+            trimTimerTask = new TimerTask() {
+                public void run() {
+                    Log.setLogForCurrentThread(ServerMain.getErrorLog());
+                    // A compilation may start while trimming; the caches
+                    // trimmed are safe to use concurrently.
+                    delegate.trimCaches();
+                    ServerMetrics.idleTrimmed();
+                }
+            };
+            idlenessTimer.schedule(trimTimerTask, trimTimeout);
+        }
     }
 
     @Override
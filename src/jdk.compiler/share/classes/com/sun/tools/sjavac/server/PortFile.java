@@ -233,7 +233,9 @@ public class PortFile {
      * Wait for the port file to contain values that look valid.
      */
     public void waitForValidValues() throws IOException, InterruptedException {
-        final int MS_BETWEEN_ATTEMPTS = 500;
+        // Poll often at first, a server usually starts in well under a second.
+        final int MAX_MS_BETWEEN_ATTEMPTS = 500;
+        int msBetweenAttempts = 20;
         long startTime = System.currentTimeMillis();
         long timeout = startTime + getServerStartupTimeoutSeconds() * 1000;
         while (true) {
@@ -250,7 +252,8 @@ public class PortFile {
             if (System.currentTimeMillis() > timeout) {
                 break;
             }
-            Thread.sleep(MS_BETWEEN_ATTEMPTS);
+            Thread.sleep(msBetweenAttempts);
+            msBetweenAttempts = Math.min(2 * msBetweenAttempts, MAX_MS_BETWEEN_ATTEMPTS);
         }
         throw new IOException("No port file values materialized. Giving up after " +
                                       (System.currentTimeMillis() - startTime) + " ms");
@@ -29,12 +29,24 @@ import com.sun.tools.javac.main.Main;
 import com.sun.tools.sjavac.Log;
 import com.sun.tools.sjavac.Util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
+import com.sun.tools.sjavac.server.FramedProtocol.Frame;
+
+import static com.sun.tools.sjavac.server.FramedProtocol.*;
 import static com.sun.tools.sjavac.server.SjavacServer.LINE_TYPE_RC;
 
 
@@ -45,6 +57,10 @@ import static com.sun.tools.sjavac.server.SjavacServer.LINE_TYPE_RC;
  *  - Delegates the actual invocation to the given sjavac implementation
  *  - Writes the result back to the socket output stream
  *
+ * A client that starts the connection with {@link FramedProtocol#MAGIC} is
+ * served with the framed protocol. The connection is then kept open, and
+ * each compile request on it is performed in a thread of its own.
+ *
  * None of the work performed by this class is really bound by the CPU. It
  * should be completely fine to have a large number of RequestHandlers active.
  * To limit the number of concurrent compilations, use PooledSjavac.
@@ -59,6 +75,10 @@ public class RequestHandler extends Thread {
     private final Socket socket;
     private final Sjavac sjavac;
 
+    // The compile requests in progress on a framed connection.
+    private final List<Thread> requests = new ArrayList<>();
+    private boolean closeWhenIdle;
+
     public RequestHandler(Socket socket, Sjavac sjavac) {
         this.socket = socket;
         this.sjavac = sjavac;
@@ -66,8 +86,150 @@ public class RequestHandler extends Thread {
 
     @Override
     public void run() {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            in.mark(4);
+            DataInputStream din = new DataInputStream(in);
+            int magic;
+            try {
+                magic = din.readInt();
+            } catch (EOFException e) {
+                magic = 0;
+            }
+            if (magic == MAGIC) {
+                serveFrames(din);
+            } else {
+                in.reset();
+                serveLines(in);
+            }
+        } catch (IOException ex) {
+            Log.error(ex);
+        }
+    }
+
+    /**
+     * Close the connection as soon as no compile request is in progress on it.
+     */
+    public synchronized void closeWhenIdle() {
+        closeWhenIdle = true;
+        closeIfIdle();
+    }
+
+    private synchronized void closeIfIdle() {
+        if (closeWhenIdle && requests.isEmpty()) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.error(e);
+            }
+        }
+    }
+
+    private void serveFrames(DataInputStream in) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        try {
+            while (true) {
+                Frame frame;
+                try {
+                    frame = readFrame(in);
+                } catch (EOFException e) {
+                    // The client closed the connection.
+                    break;
+                }
+                switch (frame.type) {
+                    case PING:
+                        writeFrame(out, frame.requestId, PONG, new byte[0]);
+                        break;
+                    case METRICS:
+                        writeFrame(out, frame.requestId, METRICS_REPORT,
+                                   metricsPayload(ServerMetrics.toJson()));
+                        break;
+                    case COMPILE:
+                        DataInputStream payload = frame.payload();
+                        Log.Level level = readLevel(payload);
+                        String[] args = readArgs(payload);
+                        Thread t = new Thread(() -> {
+                            try {
+                                compile(out, frame.requestId, level, args);
+                            } finally {
+                                synchronized (this) {
+                                    requests.remove(Thread.currentThread());
+                                    closeIfIdle();
+                                }
+                            }
+                        }, "sjavac-request-" + frame.requestId);
+                        // Let an ongoing compile finish before the server exits.
+                        t.setDaemon(false);
+                        synchronized (this) {
+                            requests.add(t);
+                        }
+                        t.start();
+                        break;
+                    default:
+                        throw new IOException("Unexpected frame type: " + frame.type);
+                }
+            }
+        } catch (IOException ex) {
+            // Closed by closeWhenIdle, or the client went away.
+            if (!socket.isClosed())
+                throw ex;
+        } finally {
+            List<Thread> inProgress;
+            synchronized (this) {
+                inProgress = new ArrayList<>(requests);
+            }
+            for (Thread t : inProgress) {
+                try {
+                    t.join();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            socket.close();
+        }
+    }
 
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+    private void compile(DataOutputStream conn, int requestId, Log.Level clientLevel, String[] args) {
+        // Send the log messages the client wants to see back as frames of
+        // this request.
+        Log.setLogForCurrentThread(new Log(null, null) {
+            {
+                level = clientLevel;
+            }
+
+            @Override
+            protected void printLogMsg(Level msgLevel, String msg) {
+                if (isLevelLogged(msgLevel)) {
+                    try {
+                        writeFrame(conn, requestId, LOG, logPayload(msgLevel, msg));
+                    } catch (IOException e) {
+                        // The client went away, nothing to do but to finish.
+                    }
+                }
+            }
+        });
+        try {
+            checkInternalErrorLog();
+            Main.Result rc;
+            try {
+                rc = sjavac.compile(args);
+            } catch (RuntimeException | Error e) {
+                Log.error(e);
+                rc = Main.Result.ABNORMAL;
+            }
+            checkInternalErrorLog();
+            writeFrame(conn, requestId, RESULT, resultPayload(rc));
+        } catch (IOException ex) {
+            // The client went away.
+        } finally {
+            Log.setLogForCurrentThread(null);
+        }
+    }
+
+    private void serveLines(InputStream input) {
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(input));
              PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
 
             // Set up logging for this thread. Stream back logging messages to
@@ -119,6 +281,10 @@ public class RequestHandler extends Thread {
     }
 
     private void checkInternalErrorLog() {
+        if (ServerMain.getErrorLog() == null) {
+            // Not running as a server process.
+            return;
+        }
         Path errorLog = ServerMain.getErrorLog().getLogDestination();
         if (errorLog != null) {
             Log.error("Server has encountered an internal error. See " + errorLog.toAbsolutePath()
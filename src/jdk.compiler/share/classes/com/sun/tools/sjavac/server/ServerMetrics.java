@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.tools.sjavac.server;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.sun.tools.javac.main.Main.Result;
+
+/**
+ * Statistics about the compilations performed by this vm, for tuning the
+ * server settings: how long compile requests wait for a free slot in the
+ * pool, how long each compile chunk takes and how much heap it needs, and
+ * how well the build cache works. The statistics are reported as JSON, on
+ * request over the framed protocol, and periodically to a file if the
+ * server is started with the metricsfile setting.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class ServerMetrics {
+
+    // The number of compile chunks reported individually.
+    private static final int RECENT_CHUNKS = 50;
+
+    private static final long startMillis = System.currentTimeMillis();
+
+    // Compile requests.
+    private static int queuedRequests;
+    private static int activeRequests;
+    private static long completedRequests;
+    private static long totalQueueMillis;
+    private static long maxQueueMillis;
+    private static long lastQueueMillis;
+
+    // Compile chunks.
+    private static int activeChunks;
+    private static long completedChunks;
+    private static long failedChunks;
+    private static long totalChunkMillis;
+    private static final Deque<ChunkRecord> recentChunks = new ArrayDeque<>();
+
+    // The build cache.
+    private static long cacheHits;
+    private static long cacheMisses;
+    private static long cacheStores;
+    private static long cacheErrors;
+
+    private static long idleTrims;
+
+    private static class ChunkRecord {
+        final String id;
+        final int numSources;
+        final long millis;
+        final long heapKiB;
+        final Result result;
+
+        ChunkRecord(String id, int numSources, long millis, long heapKiB, Result result) {
+            this.id = id;
+            this.numSources = numSources;
+            this.millis = millis;
+            this.heapKiB = heapKiB;
+            this.result = result;
+        }
+    }
+
+    private ServerMetrics() { }
+
+    /** A compile request is waiting for a thread in the pool. */
+    public static synchronized void requestQueued() {
+        queuedRequests++;
+    }
+
+    /** A compile request has started, after waiting for queueMillis. */
+    public static synchronized void requestStarted(long queueMillis) {
+        queuedRequests--;
+        activeRequests++;
+        lastQueueMillis = queueMillis;
+        totalQueueMillis += queueMillis;
+        maxQueueMillis = Math.max(maxQueueMillis, queueMillis);
+    }
+
+    public static synchronized void requestFinished() {
+        activeRequests--;
+        completedRequests++;
+    }
+
+    public static synchronized void chunkStarted() {
+        activeChunks++;
+    }
+
+    /**
+     * A compile chunk has finished.
+     *
+     * @param heapKiB the heap measured for compiling its sources, or 0 if
+     *                it was not measured
+     */
+    public static synchronized void chunkFinished(String id, int numSources, long millis,
+                                                  long heapKiB, Result result) {
+        activeChunks--;
+        completedChunks++;
+        if (result != Result.OK)
+            failedChunks++;
+        totalChunkMillis += millis;
+        recentChunks.addLast(new ChunkRecord(id, numSources, millis, heapKiB, result));
+        if (recentChunks.size() > RECENT_CHUNKS)
+            recentChunks.removeFirst();
+    }
+
+    public static synchronized void buildCacheLookups(int hits, int misses, int errors) {
+        cacheHits += hits;
+        cacheMisses += misses;
+        cacheErrors += errors;
+    }
+
+    public static synchronized void buildCacheStores(int stores, int errors) {
+        cacheStores += stores;
+        cacheErrors += errors;
+    }
+
+    public static synchronized void idleTrimmed() {
+        idleTrims++;
+    }
+
+    /**
+     * The statistics gathered so far, as a JSON object.
+     */
+    public static synchronized String toJson() {
+        Runtime rt = Runtime.getRuntime();
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"time\": ").append(now).append(",\n");
+        sb.append("  \"uptimeMillis\": ").append(now - startMillis).append(",\n");
+        sb.append("  \"sysinfo\": {")
+          .append("\"cores\": ").append(rt.availableProcessors())
+          .append(", \"maxHeapKiB\": ").append(rt.maxMemory() / 1024)
+          .append(", \"committedHeapKiB\": ").append(rt.totalMemory() / 1024)
+          .append(", \"usedHeapKiB\": ").append((rt.totalMemory() - rt.freeMemory()) / 1024)
+          .append("},\n");
+        sb.append("  \"requests\": {")
+          .append("\"queued\": ").append(queuedRequests)
+          .append(", \"active\": ").append(activeRequests)
+          .append(", \"completed\": ").append(completedRequests)
+          .append(", \"lastQueueMillis\": ").append(lastQueueMillis)
+          .append(", \"maxQueueMillis\": ").append(maxQueueMillis)
+          .append(", \"meanQueueMillis\": ")
+          .append(completedRequests + activeRequests == 0 ? 0
+                  : totalQueueMillis / (completedRequests + activeRequests))
+          .append("},\n");
+        sb.append("  \"chunks\": {")
+          .append("\"active\": ").append(activeChunks)
+          .append(", \"completed\": ").append(completedChunks)
+          .append(", \"failed\": ").append(failedChunks)
+          .append(", \"totalMillis\": ").append(totalChunkMillis)
+          .append(", \"recent\": [");
+        String sep = "\n";
+        for (ChunkRecord c : recentChunks) {
+            sb.append(sep).append("    {")
+              .append("\"id\": ").append(jsonString(c.id))
+              .append(", \"sources\": ").append(c.numSources)
+              .append(", \"millis\": ").append(c.millis)
+              .append(", \"heapKiB\": ").append(c.heapKiB)
+              .append(", \"result\": ").append(jsonString(String.valueOf(c.result)))
+              .append('}');
+            sep = ",\n";
+        }
+        sb.append(recentChunks.isEmpty() ? "" : "\n  ").append("]},\n");
+        sb.append("  \"buildCache\": {")
+          .append("\"hits\": ").append(cacheHits)
+          .append(", \"misses\": ").append(cacheMisses)
+          .append(", \"stores\": ").append(cacheStores)
+          .append(", \"errors\": ").append(cacheErrors)
+          .append("},\n");
+        sb.append("  \"idleTrims\": ").append(idleTrims).append('\n');
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // A JSON string literal for the given string
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n");  break;
+                case '\r': sb.append("\\r");  break;
+                case '\t': sb.append("\\t");  break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -42,4 +42,11 @@ import java.io.Writer;
 public interface Sjavac {
     Result compile(String[] args);
     void shutdown();
+
+    /**
+     * Drop what is kept between compilations, except what nearly every
+     * compilation needs. Called when a server has been idle for a while.
+     */
+    default void trimCaches() {
+    }
 }
@@ -35,9 +35,19 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.sun.tools.javac.main.Main;
@@ -64,6 +74,11 @@ public class SjavacServer implements Terminable {
     final private String portfilename;
     final private int poolsize;
     final private int keepalive;
+    // Seconds of idleness after which the caches are trimmed.
+    final private int trimafter;
+    // The file the metrics are written to every metricsinterval seconds, or null.
+    final private String metricsfile;
+    final private int metricsinterval;
 
     // The secret cookie shared between server and client through the port file.
     // Used to prevent clients from believing that they are communicating with
@@ -82,6 +97,9 @@ public class SjavacServer implements Terminable {
     private PortFile portFile;
     private PortFileMonitor portFileMonitor;
 
+    // The connections served, closed when the server shuts down.
+    private final List<RequestHandler> requestHandlers = new ArrayList<>();
+
     // Set to false break accept loop
     final AtomicBoolean keepAcceptingRequests = new AtomicBoolean();
 
@@ -92,16 +110,33 @@ public class SjavacServer implements Terminable {
     public SjavacServer(String settings) throws FileNotFoundException {
         this(Util.extractStringOption("portfile", settings),
              Util.extractIntOption("poolsize", settings, Runtime.getRuntime().availableProcessors()),
-             Util.extractIntOption("keepalive", settings, 120));
+             Util.extractIntOption("keepalive", settings, 120),
+             Util.extractIntOption("trimafter", settings, 30),
+             Util.extractStringOption("metricsfile", settings),
+             Util.extractIntOption("metricsinterval", settings, 10));
+    }
+
+    public SjavacServer(String portfilename,
+                        int poolsize,
+                        int keepalive,
+                        int trimafter)
+                                throws FileNotFoundException {
+        this(portfilename, poolsize, keepalive, trimafter, null, 10);
     }
 
     public SjavacServer(String portfilename,
                         int poolsize,
-                        int keepalive)
+                        int keepalive,
+                        int trimafter,
+                        String metricsfile,
+                        int metricsinterval)
                                 throws FileNotFoundException {
         this.portfilename = portfilename;
         this.poolsize = poolsize;
         this.keepalive = keepalive;
+        this.trimafter = trimafter;
+        this.metricsfile = metricsfile;
+        this.metricsinterval = metricsinterval;
         this.myCookie = new Random().nextLong();
     }
 
@@ -179,7 +214,8 @@ public class SjavacServer implements Terminable {
             sjavac = new PooledSjavac(sjavac, poolsize);
             sjavac = new IdleResetSjavac(sjavac,
                                          this,
-                                         keepalive * 1000);
+                                         keepalive * 1000,
+                                         trimafter * 1000);
 
             serverSocket = new ServerSocket();
             InetAddress localhost = InetAddress.getByName(null);
@@ -198,13 +234,30 @@ public class SjavacServer implements Terminable {
         Log.debug("    port: " + getPort());
         Log.debug("    time: " + new java.util.Date());
         Log.debug("    poolsize: " + poolsize);
-
+        Log.debug("    trimafter: " + trimafter);
+
+        Timer metricsTimer = null;
+        if (metricsfile != null) {
+            Log.debug("    metricsfile: " + metricsfile);
+            metricsTimer = new Timer("sjavac-metrics", true);
+            metricsTimer.schedule(new TimerTask() {
+                public void run() {
+                    Log.setLogForCurrentThread(ServerMain.getErrorLog());
+                    writeMetrics();
+                }
+            }, 0, Math.max(1, metricsinterval) * 1000L);
+        }
 
         keepAcceptingRequests.set(true);
         do {
             try {
                 Socket socket = serverSocket.accept();
-                new RequestHandler(socket, sjavac).start();
+                RequestHandler handler = new RequestHandler(socket, sjavac);
+                synchronized (requestHandlers) {
+                    requestHandlers.removeIf(h -> !h.isAlive());
+                    requestHandlers.add(handler);
+                }
+                handler.start();
             } catch (SocketException se) {
                 // Caused by serverSocket.close() and indicates shutdown
             }
@@ -217,15 +270,48 @@ public class SjavacServer implements Terminable {
         // here, any attempt to read or write to the socket will result in an
         // IOException on the client side.
 
+        // Clients may keep their connections open between requests. Close
+        // them, but let the requests in progress finish first.
+        synchronized (requestHandlers) {
+            for (RequestHandler handler : requestHandlers) {
+                handler.closeWhenIdle();
+            }
+        }
+
         long realTime = System.currentTimeMillis() - serverStart;
         Log.debug("Total wall clock time " + realTime + "ms build time " + totalBuildTime + "ms");
 
         // Shut down
         sjavac.shutdown();
 
+        if (metricsTimer != null) {
+            metricsTimer.cancel();
+            writeMetrics();
+        }
+
         return Result.OK.exitCode;
     }
 
+    /**
+     * Write the metrics to the metrics file. The file is replaced as a
+     * whole, so that a reader never sees a partially written file.
+     */
+    private synchronized void writeMetrics() {
+        Path target = Paths.get(metricsfile);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, ServerMetrics.toJson().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Log.error("Could not write metrics to " + metricsfile + ": " + e.getMessage());
+        }
+    }
+
     @Override
     public void shutdown(String quitMsg) {
         if (!keepAcceptingRequests.compareAndSet(true, false)) {
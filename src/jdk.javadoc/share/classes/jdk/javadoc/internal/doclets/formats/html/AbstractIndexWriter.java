@@ -110,10 +110,14 @@ public class AbstractIndexWriter extends HtmlDocletWriter {
         addHeading(uc, contentTree);
         // Display the list only if there are elements to be displayed.
         if (!memberlist.isEmpty()) {
+            // The entries are generated as the page is written, since
+            // an index for a large API has a great many of them.
             Content dl = new HtmlTree(HtmlTag.DL);
-            for (Element element : memberlist) {
-                addDescription(dl, element);
-            }
+            dl.addContent(getStreamedContent(target -> {
+                for (Element element : memberlist) {
+                    addDescription(target, element);
+                }
+            }));
             contentTree.addContent(dl);
         }
     }
@@ -124,9 +128,11 @@ public class AbstractIndexWriter extends HtmlDocletWriter {
         // Display the list only if there are elements to be displayed.
         if (!searchList.isEmpty()) {
             Content dl = new HtmlTree(HtmlTag.DL);
-            for (SearchIndexItem sii : searchList) {
-                addDescription(sii, dl);
-            }
+            dl.addContent(getStreamedContent(target -> {
+                for (SearchIndexItem sii : searchList) {
+                    addDescription(sii, target);
+                }
+            }));
             contentTree.addContent(dl);
         }
     }
@@ -134,11 +140,21 @@ public class AbstractIndexWriter extends HtmlDocletWriter {
     protected void addContents(Character uc, List<? extends Element> memberlist,
             List<SearchIndexItem> searchList, Content contentTree) {
         addHeading(uc, contentTree);
+        // Display the list only if there are elements to be displayed.
+        if (!memberlist.isEmpty() || !searchList.isEmpty()) {
+            Content dl = new HtmlTree(HtmlTag.DL);
+            dl.addContent(getStreamedContent(target ->
+                    addDescriptions(memberlist, searchList, target)));
+            contentTree.addContent(dl);
+        }
+    }
+
+    private void addDescriptions(List<? extends Element> memberlist,
+            List<SearchIndexItem> searchList, Content dl) {
         int memberListSize = memberlist.size();
         int searchListSize = searchList.size();
         int i = 0;
         int j = 0;
-        Content dl = new HtmlTree(HtmlTag.DL);
         while (i < memberListSize && j < searchListSize) {
             String name = utils.getSimpleName(memberlist.get(i));
             if (name.compareTo(searchList.get(j).getLabel()) < 0) {
@@ -166,7 +182,6 @@ public class AbstractIndexWriter extends HtmlDocletWriter {
                 i++;
             }
         }
-        contentTree.addContent(dl);
     }
 
     protected void addHeading(Character uc, Content contentTree) {
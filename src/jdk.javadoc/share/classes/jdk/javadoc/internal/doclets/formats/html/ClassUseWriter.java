@@ -352,24 +352,28 @@ public class ClassUseWriter extends SubWriterHolderWriter {
     protected void addClassList(Content contentTree) {
         HtmlTree ul = new HtmlTree(HtmlTag.UL);
         ul.addStyle(HtmlStyle.blockList);
-        for (PackageElement pkg : pkgSet) {
-            Content markerAnchor = getMarkerAnchor(getPackageAnchorName(pkg));
-            HtmlTree htmlTree = (configuration.allowTag(HtmlTag.SECTION))
-                    ? HtmlTree.SECTION(markerAnchor)
-                    : HtmlTree.LI(HtmlStyle.blockList, markerAnchor);
-            Content link = contents.getContent("doclet.ClassUse_Uses.of.0.in.1",
-                    getLink(new LinkInfoImpl(configuration, LinkInfoImpl.Kind.CLASS_USE_HEADER,
-                            typeElement)),
-                    getPackageLink(pkg, utils.getPackageName(pkg)));
-            Content heading = HtmlTree.HEADING(HtmlConstants.SUMMARY_HEADING, link);
-            htmlTree.addContent(heading);
-            addClassUse(pkg, htmlTree);
-            if (configuration.allowTag(HtmlTag.SECTION)) {
-                ul.addContent(HtmlTree.LI(HtmlStyle.blockList, htmlTree));
-            } else {
-                ul.addContent(htmlTree);
+        // The sections are generated as the page is written, since a
+        // widely used class is used in a great many places.
+        ul.addContent(getStreamedContent(target -> {
+            for (PackageElement pkg : pkgSet) {
+                Content markerAnchor = getMarkerAnchor(getPackageAnchorName(pkg));
+                HtmlTree htmlTree = (configuration.allowTag(HtmlTag.SECTION))
+                        ? HtmlTree.SECTION(markerAnchor)
+                        : HtmlTree.LI(HtmlStyle.blockList, markerAnchor);
+                Content link = contents.getContent("doclet.ClassUse_Uses.of.0.in.1",
+                        getLink(new LinkInfoImpl(configuration, LinkInfoImpl.Kind.CLASS_USE_HEADER,
+                                typeElement)),
+                        getPackageLink(pkg, utils.getPackageName(pkg)));
+                Content heading = HtmlTree.HEADING(HtmlConstants.SUMMARY_HEADING, link);
+                htmlTree.addContent(heading);
+                addClassUse(pkg, htmlTree);
+                if (configuration.allowTag(HtmlTag.SECTION)) {
+                    target.addContent(HtmlTree.LI(HtmlStyle.blockList, htmlTree));
+                } else {
+                    target.addContent(htmlTree);
+                }
             }
-        }
+        }));
         Content li = HtmlTree.LI(HtmlStyle.blockList, ul);
         contentTree.addContent(li);
     }
@@ -347,13 +347,22 @@ public class ConstantsSummaryWriterImpl extends HtmlDocletWriter implements Cons
         return HtmlTree.TD(HtmlStyle.colLast, code);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void addPackageSummaries(Content summariesTree, Content.Generator generator) {
+        summariesTree.addContent(getStreamedContent(target -> {
+            generator.generate(target);
+            if (configuration.allowTag(HtmlTag.SECTION) && summaryTree != null) {
+                target.addContent(summaryTree);
+            }
+        }));
+    }
+
     /**
      * {@inheritDoc}
      */
     public void addConstantSummaries(Content contentTree, Content summariesTree) {
-        if (configuration.allowTag(HtmlTag.SECTION) && summaryTree != null) {
-            summariesTree.addContent(summaryTree);
-        }
         if (configuration.allowTag(HtmlTag.MAIN)) {
             mainTree.addContent(summariesTree);
             contentTree.addContent(mainTree);
@@ -128,8 +128,9 @@ public class SingleIndexWriter extends AbstractIndexWriter {
         if (configuration.allowTag(HtmlTag.FOOTER)) {
             body.addContent(htmlTree);
         }
-        createSearchIndexFiles();
+        // The search index is filled in as the index entries are written
         printHtmlDocument(null, true, body);
+        createSearchIndexFiles();
     }
 
     /**
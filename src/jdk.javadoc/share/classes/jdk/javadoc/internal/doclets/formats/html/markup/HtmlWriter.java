@@ -111,6 +111,11 @@ public class HtmlWriter {
 
     private final DocFile docFile;
 
+    /**
+     * Whether the page has content that is generated while it is written.
+     */
+    private boolean streamed;
+
     protected Content script;
 
 
@@ -161,13 +166,26 @@ public class HtmlWriter {
     }
 
     public void write(Content c) throws DocFileIOException {
-        try (Writer writer = docFile.openWriter()) {
-            c.write(writer, true);
-        } catch (IOException e) {
-            throw new DocFileIOException(docFile, DocFileIOException.Mode.WRITE, e);
+        if (streamed) {
+            configuration.docFileWriterPool.writeDirectly(docFile, c);
+        } else {
+            configuration.docFileWriterPool.write(docFile, c);
         }
     }
 
+    /**
+     * Returns content for the page that is generated while the page is written,
+     * instead of being built beforehand. A page with such content is written
+     * by the doclet thread.
+     *
+     * @param generator the generator for the content
+     * @return the content
+     */
+    public Content getStreamedContent(Content.Generator generator) {
+        streamed = true;
+        return new StreamedContent(generator);
+    }
+
     /**
      * Returns an HtmlTree for the SCRIPT tag.
      *
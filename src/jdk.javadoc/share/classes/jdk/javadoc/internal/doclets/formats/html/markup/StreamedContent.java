@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.javadoc.internal.doclets.formats.html.markup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import jdk.javadoc.internal.doclets.toolkit.Content;
+import jdk.javadoc.internal.doclets.toolkit.DocletException;
+import jdk.javadoc.internal.doclets.toolkit.util.UncheckedDocletException;
+
+/**
+ * Content that is generated while it is written.
+ *
+ * <p>Each item of content added by the generator is written as soon as it is
+ * added, and is not retained, so that large sections of a page, such as the
+ * entries of an index, do not need to be held in memory all at once.
+ * Items are added in the same way as for {@link HtmlTree#addContent}, so that
+ * the output is the same as if the items had been added to the enclosing tree.
+ *
+ * <p>The content is generated by the thread that writes it, and so a page
+ * that contains streamed content must be written by the doclet thread.
+ * The content can only be written once.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class StreamedContent extends Content {
+
+    private Generator generator;
+
+    /**
+     * Creates content that is generated while it is written.
+     *
+     * @param generator the generator for the content
+     */
+    public StreamedContent(Generator generator) {
+        this.generator = nullCheck(generator);
+    }
+
+    /**
+     * This method is not supported by the class.
+     *
+     * @param content content that needs to be added
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addContent(Content content) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * This method is not supported by the class.
+     *
+     * @param stringContent string content that needs to be added
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addContent(CharSequence stringContent) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean write(Writer out, boolean atNewline) throws IOException {
+        if (generator == null) {
+            throw new IllegalStateException("content already written");
+        }
+        Generator g = generator;
+        generator = null;
+        Target target = new Target(out, atNewline);
+        try {
+            g.generate(target);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (DocletException e) {
+            throw new UncheckedDocletException(e);
+        }
+        return target.atNewline;
+    }
+
+    /**
+     * The content to which the generator adds items, which writes each item
+     * as it is added.
+     */
+    private static class Target extends Content {
+        private final Writer out;
+        private boolean atNewline;
+
+        Target(Writer out, boolean atNewline) {
+            this.out = out;
+            this.atNewline = atNewline;
+        }
+
+        @Override
+        public void addContent(Content content) {
+            if (content instanceof ContentBuilder) {
+                for (Content c : ((ContentBuilder) content).contents) {
+                    addContent(c);
+                }
+            } else if (content == HtmlTree.EMPTY || content.isValid()) {
+                try {
+                    atNewline = content.write(out, atNewline);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void addContent(CharSequence stringContent) {
+            addContent(new StringContent(stringContent));
+        }
+
+        @Override
+        public boolean write(Writer writer, boolean atNewline) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+    }
+}
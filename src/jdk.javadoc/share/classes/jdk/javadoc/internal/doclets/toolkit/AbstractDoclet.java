@@ -40,6 +40,7 @@ import jdk.javadoc.internal.doclets.toolkit.builders.AbstractBuilder;
 import jdk.javadoc.internal.doclets.toolkit.builders.BuilderFactory;
 import jdk.javadoc.internal.doclets.toolkit.util.ClassTree;
 import jdk.javadoc.internal.doclets.toolkit.util.DocFileIOException;
+import jdk.javadoc.internal.doclets.toolkit.util.DocFileWriterPool;
 import jdk.javadoc.internal.doclets.toolkit.util.UncheckedDocletException;
 import jdk.javadoc.internal.doclets.toolkit.util.InternalException;
 import jdk.javadoc.internal.doclets.toolkit.util.PackageListWriter;
@@ -204,13 +205,19 @@ public abstract class AbstractDoclet implements Doclet {
             configuration.getDocletSpecificBuildDate());
         ClassTree classtree = new ClassTree(configuration, configuration.nodeprecated);
 
-        generateClassFiles(docEnv, classtree);
+        configuration.docFileWriterPool = new DocFileWriterPool(configuration.writethreads);
+        try {
+            generateClassFiles(docEnv, classtree);
 
-        PackageListWriter.generate(configuration);
-        generatePackageFiles(classtree);
-        generateModuleFiles();
+            PackageListWriter.generate(configuration);
+            generatePackageFiles(classtree);
+            generateModuleFiles();
 
-        generateOtherFiles(docEnv, classtree);
+            generateOtherFiles(docEnv, classtree);
+            configuration.docFileWriterPool.finish();
+        } finally {
+            configuration.docFileWriterPool.close();
+        }
         configuration.tagletManager.printReport();
     }
 
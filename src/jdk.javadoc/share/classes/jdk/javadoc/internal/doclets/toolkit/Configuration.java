@@ -47,6 +47,7 @@ import jdk.javadoc.internal.doclets.toolkit.builders.BuilderFactory;
 import jdk.javadoc.internal.doclets.toolkit.taglets.TagletManager;
 import jdk.javadoc.internal.doclets.toolkit.util.DocFile;
 import jdk.javadoc.internal.doclets.toolkit.util.DocFileFactory;
+import jdk.javadoc.internal.doclets.toolkit.util.DocFileWriterPool;
 import jdk.javadoc.internal.doclets.toolkit.util.DocFileIOException;
 import jdk.javadoc.internal.doclets.toolkit.util.DocletConstants;
 import jdk.javadoc.internal.doclets.toolkit.util.Extern;
@@ -297,6 +298,16 @@ public abstract class Configuration {
 
     public boolean dumpOnError = false;
 
+    /**
+     * The number of threads on which generated pages are written.
+     */
+    public int writethreads = 1;
+
+    /**
+     * Writes the generated pages; set when the generation of files starts.
+     */
+    public DocFileWriterPool docFileWriterPool;
+
     private List<GroupContainer> groups;
 
     private final Map<TypeElement, EnumMap<Kind, Reference<VisibleMemberMap>>> typeElementMemberCache;
@@ -668,6 +679,21 @@ public abstract class Configuration {
                     return true;
                 }
             },
+            new XOption(resources, "-Xwritethreads", 1) {
+                @Override
+                public boolean process(String opt, List<String> args) {
+                    try {
+                        writethreads = Integer.parseInt(args.get(0));
+                    } catch (NumberFormatException e) {
+                        writethreads = 0;
+                    }
+                    if (writethreads <= 0) {
+                        reporter.print(ERROR, getText("doclet.Option_writethreads_invalid_arg"));
+                        return false;
+                    }
+                    return true;
+                }
+            },
             new Option(resources, "--allow-script-in-comments") {
                 @Override
                 public boolean process(String opt, List<String> args) {
@@ -126,6 +126,15 @@ public interface ConstantsSummaryWriter {
     public abstract void addConstantMembers(TypeElement typeElement, Collection<VariableElement> fields,
             Content classConstantTree);
 
+    /**
+     * Add the summaries for the packages to the summaries tree. The summaries
+     * are generated by the given generator as the document is written.
+     *
+     * @param summariesTree the summaries content tree to which the summaries will be added
+     * @param generator the generator that adds the summaries for the packages
+     */
+    public abstract void addPackageSummaries(Content summariesTree, Content.Generator generator);
+
     /**
      * Add the summaries list to the content tree.
      *
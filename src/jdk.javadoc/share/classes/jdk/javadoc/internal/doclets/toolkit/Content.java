@@ -42,6 +42,22 @@ import java.util.Objects;
  */
 public abstract class Content {
 
+    /**
+     * Generates content, adding it to a given target.
+     * A generator may be used to generate content while it is being written,
+     * instead of building all of the content before it is written.
+     */
+    @FunctionalInterface
+    public interface Generator {
+        /**
+         * Generates content, adding it to the given target.
+         *
+         * @param target the content to which to add the generated content
+         * @throws DocletException if there is a problem generating the content
+         */
+        void generate(Content target) throws DocletException;
+    }
+
     /**
      * Returns a string representation of the content.
      *
@@ -183,16 +183,26 @@ public class ConstantsSummaryBuilder extends AbstractBuilder {
      * @throws DocletException if there is a problem while building the documentation
      */
     public void buildConstantSummaries(XMLNode node, Content contentTree) throws DocletException {
-        printedPackageHeaders.clear();
         Content summariesTree = writer.getConstantSummaries();
+        List<PackageElement> packages = new ArrayList<>();
         for (PackageElement aPackage : configuration.packages) {
             if (hasConstantField(aPackage)) {
-                currentPackage = aPackage;
-                //Build the documentation for the current package.
-                buildChildren(node, summariesTree);
-                first = false;
+                packages.add(aPackage);
             }
         }
+        if (!packages.isEmpty()) {
+            // The summaries are built as the document is written, since
+            // an API may have a great many constants.
+            writer.addPackageSummaries(summariesTree, target -> {
+                printedPackageHeaders.clear();
+                for (PackageElement aPackage : packages) {
+                    currentPackage = aPackage;
+                    //Build the documentation for the current package.
+                    buildChildren(node, target);
+                    first = false;
+                }
+            });
+        }
         writer.addConstantSummaries(contentTree, summariesTree);
     }
 
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.javadoc.internal.doclets.toolkit.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.javadoc.internal.doclets.toolkit.Content;
+
+/**
+ * Writes the content of generated pages to their files, either directly
+ * or on a pool of worker threads.
+ *
+ * <p>Only the writing of a page is done on a worker thread: its content is
+ * built beforehand by the doclet thread, which is the only thread to use the
+ * javac model, the doc comment trees and the caches in {@link Utils} and
+ * {@link jdk.javadoc.internal.doclets.toolkit.Configuration Configuration}.
+ * Once a page has been given to the pool, its content must not be modified.
+ * The file for a page is opened by the doclet thread, so that the file
+ * manager is only used by one thread, and a file is not opened again until
+ * any earlier write to it is complete. The files therefore end up the same
+ * as when they are written one after another.
+ *
+ * <p>A page whose content is generated while it is written is written
+ * directly by the doclet thread; see {@link #writeDirectly}.
+ *
+ * <p>If a write fails, the failure reported is that of the first failing
+ * page, in the order in which the pages were given to the pool.
+ *
+ *  <p><b>This is NOT part of any supported API.
+ *  If you write code that depends on this, you do so at your own risk.
+ *  This code and its internal interfaces are subject to change or
+ *  deletion without notice.</b>
+ */
+public class DocFileWriterPool {
+
+    /**
+     * The number of pages per thread that may be waiting to be written,
+     * which bounds the memory held by pages that have been built.
+     */
+    private static final int PAGES_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final int permits;
+    private final Semaphore pending;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Throwable> failures = new ConcurrentSkipListMap<>();
+    private long count;
+
+    /**
+     * Creates a pool to write pages.
+     *
+     * @param threads the number of threads on which to write pages;
+     *      if 1, pages are written directly by the calling thread
+     */
+    public DocFileWriterPool(int threads) {
+        if (threads > 1) {
+            AtomicInteger n = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "javadoc-writer-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            permits = threads * PAGES_PER_THREAD;
+            pending = new Semaphore(permits);
+        } else {
+            executor = null;
+            permits = 0;
+            pending = null;
+        }
+    }
+
+    /**
+     * Writes the content of a page to a file.
+     *
+     * @param file the file to be written
+     * @param c the content of the page
+     * @throws DocFileIOException if there is a problem opening the file, or
+     *      if there was a problem writing an earlier page
+     */
+    public void write(DocFile file, Content c) throws DocFileIOException {
+        if (executor == null) {
+            writeDirectly(file, c);
+            return;
+        }
+        if (!failures.isEmpty()) {
+            finish();
+        }
+        String path = file.getPath();
+        CompletableFuture<Void> previous = inFlight.get(path);
+        if (previous != null) {
+            previous.join();
+        }
+        pending.acquireUninterruptibly();
+        Writer writer;
+        try {
+            writer = file.openWriter();
+        } catch (IOException e) {
+            pending.release();
+            throw new DocFileIOException(file, DocFileIOException.Mode.WRITE, e);
+        }
+        long index = count++;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        inFlight.put(path, done);
+        executor.execute(() -> {
+            try (Writer w = writer) {
+                c.write(w, true);
+            } catch (IOException e) {
+                failures.put(index, new DocFileIOException(file, DocFileIOException.Mode.WRITE, e));
+            } catch (RuntimeException | Error e) {
+                failures.put(index, e);
+            } finally {
+                inFlight.remove(path, done);
+                pending.release();
+                done.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Writes the content of a page to a file on the calling thread, once any
+     * earlier write to the same file is complete. This is used for pages with
+     * content that is generated while it is written, which must be written
+     * by the doclet thread.
+     *
+     * @param file the file to be written
+     * @param c the content of the page
+     * @throws DocFileIOException if there is a problem writing the file, or
+     *      if there was a problem writing an earlier page
+     */
+    public void writeDirectly(DocFile file, Content c) throws DocFileIOException {
+        if (executor != null) {
+            if (!failures.isEmpty()) {
+                finish();
+            }
+            CompletableFuture<Void> previous = inFlight.get(file.getPath());
+            if (previous != null) {
+                previous.join();
+            }
+        }
+        try (Writer writer = file.openWriter()) {
+            c.write(writer, true);
+        } catch (IOException e) {
+            DocFileIOException failure = new DocFileIOException(file, DocFileIOException.Mode.WRITE, e);
+            // report the failure of an earlier page in preference to this one
+            finish();
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits until all the pages given to the pool have been written.
+     *
+     * @throws DocFileIOException if there was a problem writing a page
+     */
+    public void finish() throws DocFileIOException {
+        if (executor == null) {
+            return;
+        }
+        pending.acquireUninterruptibly(permits);
+        pending.release(permits);
+        if (!failures.isEmpty()) {
+            Throwable t = failures.firstEntry().getValue();
+            if (t instanceof DocFileIOException) {
+                throw (DocFileIOException) t;
+            } else if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else {
+                throw (Error) t;
+            }
+        }
+    }
+
+    /**
+     * Stops the threads of the pool, once any pages given to it have been written.
+     */
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
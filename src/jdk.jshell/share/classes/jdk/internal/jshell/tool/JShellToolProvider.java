@@ -28,6 +28,7 @@ package jdk.internal.jshell.tool;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
@@ -114,6 +115,12 @@ public class JShellToolProvider implements Tool {
      * @throws Exception an unexpected fatal exception
      */
     public static void main(String[] arguments) throws Exception {
+        // The command line tool keeps the class indexes used to suggest
+        // imports on disk, so that later sessions start quickly
+        if (System.getProperty("jdk.jshell.indexCacheDir") == null) {
+            System.setProperty("jdk.jshell.indexCacheDir",
+                    Paths.get(System.getProperty("user.home"), ".jshell", "index").toString());
+        }
         JavaShellToolBuilder
                 .builder()
                 .run(arguments);
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.jshell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import jdk.jshell.SourceCodeAnalysisImpl.ClassIndex;
+
+/**
+ * Keeps the class indexes of the JDK and of class path jars on disk, so
+ * that a new JShell process need not walk them again before it can suggest
+ * imports. There is one file for each indexed path, named after a digest of
+ * the path, and it is only used while the path has the modification time it
+ * had when it was indexed.
+ *
+ * <p>The cache directory is given by the {@code jdk.jshell.indexCacheDir}
+ * system property. If the property is not set, or is empty, indexes are not
+ * kept on disk. The jshell tool sets it to {@code .jshell/index} in the
+ * user's home directory, unless it is already set.
+ *
+ * <p>Layout, all numbers are big endian ints unless stated otherwise, and
+ * strings are a length followed by UTF-8 bytes:
+ * <pre>
+ *   magic version timestamp:long path
+ *   package_count package*
+ *   simple_name_count (simple_name fqn_count fqn*)*
+ * </pre>
+ */
+class ClassIndexCache {
+
+    // "JSCI"
+    private static final int MAGIC = 0x4a534349;
+    private static final int VERSION = 1;
+
+    private final JShell proc;
+    private final Path dir;
+
+    private ClassIndexCache(JShell proc, Path dir) {
+        this.proc = proc;
+        this.dir = dir;
+    }
+
+    /**
+     * The cache in the directory named by the system property, or one that
+     * keeps nothing if the property is not set or is empty.
+     */
+    static ClassIndexCache create(JShell proc) {
+        String dir = System.getProperty("jdk.jshell.indexCacheDir");
+        return new ClassIndexCache(proc, dir == null || dir.isEmpty() ? null : Paths.get(dir));
+    }
+
+    /**
+     * Load the index of the given path, if it was saved when the path had the
+     * given timestamp.
+     *
+     * @return the index, or null if there is no usable one
+     */
+    ClassIndex load(Path forPath, long timestamp) {
+        if (dir == null)
+            return null;
+        ByteBuffer buf;
+        try {
+            // The whole index is decoded at once, so the file is simply read.
+            buf = ByteBuffer.wrap(Files.readAllBytes(fileFor(forPath)));
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (IOException ex) {
+            proc.debug(ex, "ClassIndexCache.load(" + forPath + ")");
+            return null;
+        }
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != timestamp
+                    || !readString(buf).equals(forPath.toString())) {
+                return null;
+            }
+            int numPackages = readLength(buf);
+            Set<String> packages = new HashSet<>(numPackages * 2);
+            for (int i = 0; i < numPackages; i++) {
+                packages.add(readString(buf));
+            }
+            int numNames = readLength(buf);
+            Map<String, Collection<String>> classSimpleName2FQN = new HashMap<>(numNames * 2);
+            for (int i = 0; i < numNames; i++) {
+                String simpleName = readString(buf);
+                int numFQNs = readLength(buf);
+                Collection<String> fqns = new LinkedHashSet<>(numFQNs * 2);
+                for (int j = 0; j < numFQNs; j++) {
+                    fqns.add(readString(buf));
+                }
+                classSimpleName2FQN.put(simpleName, fqns);
+            }
+            return new ClassIndex(timestamp, forPath, packages, classSimpleName2FQN);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            proc.debug(ex, "ClassIndexCache.load(" + forPath + "): bad index");
+            return null;
+        }
+    }
+
+    /**
+     * Save the index of a path. The file is written next to the old one and
+     * then moved into place, as another JShell may be reading it.
+     */
+    void save(ClassIndex index) {
+        if (dir == null || index.timestamp == -1)
+            return;
+        Path tmp = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(index.timestamp);
+            writeString(out, index.forPath.toString());
+            out.writeInt(index.packages.size());
+            for (String p : index.packages) {
+                writeString(out, p);
+            }
+            out.writeInt(index.classSimpleName2FQN.size());
+            for (Map.Entry<String, Collection<String>> e : index.classSimpleName2FQN.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (String fqn : e.getValue()) {
+                    writeString(out, fqn);
+                }
+            }
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, "index", ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Files.move(tmp, fileFor(index.forPath), StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+        } catch (IOException ex) {
+            proc.debug(ex, "ClassIndexCache.save(" + index.forPath + ")");
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ex) {
+                    //ignore
+                }
+            }
+        }
+    }
+
+    private Path fileFor(Path forPath) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(forPath.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return dir.resolve(name.append(".idx").toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new InternalError(ex);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[readLength(buf)];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // A length or a count, each byte or item of which takes at least one
+    // byte of what is left in the index.
+    private static int readLength(ByteBuffer buf) {
+        int n = buf.getInt();
+        if (n < 0 || n > buf.remaining()) {
+            throw new IllegalArgumentException("bad length: " + n);
+        }
+        return n;
+    }
+}
@@ -38,6 +38,7 @@ import com.sun.tools.javac.util.Log;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.EnumMap;
 import java.util.Iterator;
@@ -55,7 +56,7 @@ import java.util.function.Supplier;
  */
 class CompletenessAnalyzer {
 
-    private final ScannerFactory scannerFactory;
+    private final TokenCache tokens;
     private final JShell proc;
 
     private static Completeness error() {
@@ -78,13 +79,20 @@ class CompletenessAnalyzer {
         Log log = CaLog.createLog(context);
         context.put(Log.class, log);
         context.put(Source.class, Source.JDK1_9);
-        scannerFactory = ScannerFactory.instance(context);
+        tokens = new TokenCache(ScannerFactory.instance(context));
     }
 
-    CaInfo scan(String s) {
+    /**
+     * Determine the completeness of the input. The tokens of the previous
+     * input are kept, and, if this input extends it, as when the tool reads
+     * a paste line by line, only the appended text is scanned. The matching
+     * of brackets resumes from where the previous input ended.
+     */
+    synchronized CaInfo scan(String s) {
+        tokens.reset(s);
         try {
             Parser parser = new Parser(
-                    () -> new Matched(scannerFactory.newScanner(s, false)),
+                    () -> new Matched(tokens),
                     () -> proc.taskFactory.parse(s));
             Completeness stat = parser.parseUnit();
             int endPos = stat == Completeness.UNKNOWN
@@ -92,6 +100,7 @@ class CompletenessAnalyzer {
                     : parser.endPos();
             return new CaInfo(stat, endPos);
         } catch (SyntaxException ex) {
+            tokens.clear();
             return new CaInfo(error(), s.length());
         }
     }
@@ -420,14 +429,14 @@ class CompletenessAnalyzer {
         /** The error message **/
         public final String message;
 
-        private CT(TK tk, Token tok, String msg) {
+        private CT(TK tk, Tok tok, String msg) {
             this.kind = tk;
             this.endPos = tok.endPos;
             this.message = msg;
             //throw new InternalError(msg); /* for debugging */
         }
 
-        private CT(TK tk, Token tok) {
+        private CT(TK tk, Tok tok) {
             this.kind = tk;
             this.endPos = tok.endPos;
             this.message = null;
@@ -440,20 +449,156 @@ class CompletenessAnalyzer {
         }
     }
 
+    /**
+     * A scanned token, with positions in the whole input.
+     */
+    private static class Tok {
+
+        /** The token kind */
+        final TokenKind kind;
+
+        /** The end position of this token */
+        final int endPos;
+
+        Tok(TokenKind kind, int endPos) {
+            this.kind = kind;
+            this.endPos = endPos;
+        }
+
+        @Override
+        public String toString() {
+            return kind.toString();
+        }
+    }
+
+    /**
+     * The tokens of the input, scanned as they are needed.  The tokens of the
+     * previous input which ended before its end are kept when the input only
+     * appends to it, as is the state of {@code Matched} at the first token not
+     * kept, so that neither need be redone.
+     */
+    private static class TokenCache {
+
+        private final ScannerFactory scannerFactory;
+        private final List<Tok> tokens = new ArrayList<>();
+        private String input = "";
+        private Scanner scanner;
+        private int scannerOffset;
+        private Checkpoint checkpoint;
+
+        TokenCache(ScannerFactory scannerFactory) {
+            this.scannerFactory = scannerFactory;
+        }
+
+        void reset(String s) {
+            int keep = 0;
+            if (s.startsWith(input)) {
+                // The last token may be continued by the new text
+                keep = tokens.size();
+                while (keep > 0 && isLast(tokens.get(keep - 1))) {
+                    --keep;
+                }
+            }
+            tokens.subList(keep, tokens.size()).clear();
+            if (checkpoint != null && checkpoint.index > keep) {
+                checkpoint = null;
+            }
+            input = s;
+            scannerOffset = keep == 0 ? 0 : tokens.get(keep - 1).endPos;
+            char[] rest = new char[s.length() - scannerOffset];
+            s.getChars(scannerOffset, s.length(), rest, 0);
+            scanner = scannerFactory.newScanner(rest, rest.length, false);
+        }
+
+        void clear() {
+            tokens.clear();
+            input = "";
+            checkpoint = null;
+        }
+
+        Tok get(int index) {
+            while (tokens.size() <= index) {
+                scanner.nextToken();
+                Token tok = scanner.token();
+                tokens.add(new Tok(tok.kind, tok.endPos + scannerOffset));
+            }
+            return tokens.get(index);
+        }
+
+        /**
+         * Is the token at the end of the input, so that appended text could
+         * change it?
+         */
+        boolean isLast(Tok tok) {
+            return tok.kind == TokenKind.EOF || tok.endPos >= input.length();
+        }
+
+        /**
+         * Is the token the first which could be changed by appended text,
+         * and so the first to be scanned again?
+         */
+        boolean isFirstLast(int index) {
+            return isLast(get(index)) && (index == 0 || !isLast(get(index - 1)));
+        }
+    }
+
+    /**
+     * The state of {@code Matched} when it reached a token, which depends
+     * only on the tokens before it.
+     */
+    private static class Checkpoint {
+
+        /** The index of the token */
+        final int index;
+
+        /** The completeness tokens already returned */
+        final List<CT> returned;
+
+        /** The unmatched opening tokens, innermost first */
+        final List<Tok> stack;
+
+        /** The kind of the preceding token */
+        final TK prevTK;
+
+        Checkpoint(int index, List<CT> returned, Deque<Tok> stack, TK prevTK) {
+            this.index = index;
+            this.returned = new ArrayList<>(returned);
+            this.stack = new ArrayList<>(stack);
+            this.prevTK = prevTK;
+        }
+    }
+
     /**
      * Look for matching tokens (like parens) and other special cases, like "new"
      */
     private static class Matched implements Iterator<CT> {
 
-        private final Scanner scanner;
-        private Token current;
+        private final TokenCache tokens;
+        private int index;
+        private Tok current;
         private CT prevCT;
         private CT currentCT;
-        private final Deque<Token> stack = new ArrayDeque<>();
-
-        Matched(Scanner scanner) {
-            this.scanner = scanner;
-            advance();
+        private final Deque<Tok> stack = new ArrayDeque<>();
+        private final List<CT> returned = new ArrayList<>();
+        private Iterator<CT> replay;
+        private TK resumeTK;
+        private boolean erred;
+
+        Matched(TokenCache tokens) {
+            this.tokens = tokens;
+            Checkpoint cp = tokens.checkpoint;
+            if (cp != null) {
+                // Give the tokens returned before the checkpoint, then continue from it
+                index = cp.index;
+                current = tokens.get(index);
+                stack.addAll(cp.stack);
+                returned.addAll(cp.returned);
+                replay = cp.returned.iterator();
+                resumeTK = cp.prevTK;
+            } else {
+                index = -1;
+                advance();
+            }
             prevCT = currentCT = new CT(SEMI, 0); // So is valid for testing
         }
 
@@ -462,27 +607,36 @@ class CompletenessAnalyzer {
             return currentCT.kind != EOF;
         }
 
-        private Token advance() {
-            Token prev = current;
-            scanner.nextToken();
-            current = scanner.token();
+        private Tok advance() {
+            Tok prev = current;
+            current = tokens.get(++index);
             return prev;
         }
 
         @Override
         public CT next() {
             prevCT = currentCT;
-            currentCT = nextCT();
+            if (replay != null && replay.hasNext()) {
+                currentCT = replay.next();
+                return currentCT;
+            }
+            replay = null;
+            TK prevTK = resumeTK != null ? resumeTK : currentCT.kind;
+            resumeTK = null;
+            currentCT = nextCT(prevTK);
+            returned.add(currentCT);
+            // Error tokens may take their position from the following token
+            erred |= currentCT.kind.isError();
             return currentCT;
         }
 
         private CT match(TK tk, TokenKind open) {
-            Token tok = advance();
+            Tok tok = advance();
             db("match desired-tk=%s, open=%s, seen-tok=%s", tk, open, tok.kind);
             if (stack.isEmpty()) {
                 return new CT(ERROR, tok, "Encountered '" + tok + "' with no opening '" + open + "'");
             }
-            Token p = stack.pop();
+            Tok p = stack.pop();
             if (p.kind != open) {
                 return new CT(ERROR, tok, "No match for '" + p + "' instead encountered '" + tok + "'");
             }
@@ -495,7 +649,7 @@ class CompletenessAnalyzer {
 //            if (stack.isEmpty()) {
 //
 //            } else {
-//                for (Token tok : stack) {
+//                for (Tok tok : stack) {
 //                    System.err.printf("%s ", tok.kind);
 //                }
 //            }
@@ -505,11 +659,14 @@ class CompletenessAnalyzer {
         /**
          * @return the next scanner token
          */
-        private CT nextCT() {
+        private CT nextCT(TK prevTK) {
             // TODO Annotations?
-            TK prevTK = currentCT.kind;
             while (true) {
                 db("nextCT");
+                if (!erred && tokens.isFirstLast(index)
+                        && (tokens.checkpoint == null || tokens.checkpoint.index < index)) {
+                    tokens.checkpoint = new Checkpoint(index, returned, stack, prevTK);
+                }
                 CT ct;
                 switch (current.kind) {
                     case EOF:
@@ -26,6 +26,7 @@
 package jdk.jshell;
 
 import java.util.Collection;
+import java.util.Set;
 import jdk.jshell.Key.DeclarationKey;
 
 /**
@@ -53,6 +54,7 @@ public abstract class DeclarationSnippet extends PersistentSnippet {
     private final Wrap corralled;
     private final Collection<String> declareReferences;
     private final Collection<String> bodyReferences;
+    private Set<String> publicSignature;
 
     DeclarationSnippet(DeclarationKey key, String userSource, Wrap guts,
             String unitName, SubKind subkind, Wrap corralled,
@@ -85,6 +87,18 @@ public abstract class DeclarationSnippet extends PersistentSnippet {
         return bodyReferences;
     }
 
+    /**
+     * @return the erased signatures of this declaration and of its
+     * non-private members when it was last defined, or null
+     */
+    Set<String> publicSignature() {
+        return publicSignature;
+    }
+
+    void setPublicSignature(Set<String> sig) {
+        publicSignature = sig;
+    }
+
     @Override
     String importLine(JShell state) {
         return "import static " + classFullName() + "." + name() + ";\n";
@@ -27,6 +27,7 @@ package jdk.jshell;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.regex.Matcher;
@@ -95,6 +96,9 @@ class Eval {
 
     private final JShell state;
 
+    // The declarations deferred by evalAll, or null outside of evalAll
+    private DeclarationBatch batch = null;
+
     Eval(JShell state) {
         this.state = state;
     }
@@ -109,18 +113,63 @@ class Eval {
     List<SnippetEvent> eval(String userSource) throws IllegalStateException {
         List<SnippetEvent> allEvents = new ArrayList<>();
         for (Snippet snip : sourceToSnippets(userSource)) {
-            if (snip.kind() == Kind.ERRONEOUS) {
-                state.maps.installSnippet(snip);
-                allEvents.add(new SnippetEvent(
-                        snip, Status.NONEXISTENT, Status.REJECTED,
-                        false, null, null, null));
-            } else {
-                allEvents.addAll(declare(snip, snip.syntheticDiags()));
+            allEvents.addAll(evalSnippet(snip));
+        }
+        return allEvents;
+    }
+
+    /**
+     * Evaluates a sequence of snippet sources, with the same results as
+     * evaluating each in turn. Runs of new declarations that do not refer to
+     * each other, and that nothing existing refers to, are compiled together
+     * and loaded with one call to the execution engine.
+     *
+     * @param userSources the sources of the snippets
+     * @return for each source, the list of primary and update events
+     * @throws IllegalStateException
+     */
+    List<List<SnippetEvent>> evalAll(List<String> userSources) throws IllegalStateException {
+        List<List<SnippetEvent>> allEvents = new ArrayList<>();
+        batch = new DeclarationBatch();
+        try {
+            for (String userSource : userSources) {
+                List<SnippetEvent> events = new ArrayList<>();
+                allEvents.add(events);
+                for (Snippet snip : sourceToSnippets(userSource)) {
+                    if (!batch.add(snip, events)) {
+                        batch.flush();
+                        events.addAll(evalSnippet(snip));
+                    }
+                }
             }
+            batch.flush();
+        } finally {
+            batch = null;
         }
         return allEvents;
     }
 
+    private List<SnippetEvent> evalSnippet(Snippet snip) {
+        if (snip.kind() == Kind.ERRONEOUS) {
+            state.maps.installSnippet(snip);
+            return singletonList(new SnippetEvent(
+                    snip, Status.NONEXISTENT, Status.REJECTED,
+                    false, null, null, null));
+        } else {
+            return declare(snip, snip.syntheticDiags());
+        }
+    }
+
+    /**
+     * Called before a snippet source is analyzed against the current state,
+     * so that the state includes the declarations deferred by evalAll.
+     */
+    private void stateNeeded() {
+        if (batch != null) {
+            batch.flush();
+        }
+    }
+
     /**
      * Converts the user source of a snippet into a Snippet list -- Snippet will
      * have wrappers.
@@ -161,6 +210,20 @@ class Eval {
             return compileFailResult(pt, userSource, Kind.ERRONEOUS);
         }
         Tree unitTree = units.get(0);
+        switch (unitTree.getKind()) {
+            case CLASS:
+            case ENUM:
+            case ANNOTATION_TYPE:
+            case INTERFACE:
+            case METHOD:
+            case IMPORT:
+            case VARIABLE:
+                // Processed without reference to other snippets
+                break;
+            default:
+                stateNeeded();
+                break;
+        }
         if (pt.getDiagnostics().hasOtherThanNotStatementErrors()) {
             return compileFailResult(pt, userSource, kindOfTree(unitTree));
         }
@@ -335,13 +398,13 @@ class Eval {
             guts = Wrap.methodWrap(compileSource);
             if (ei == null) {
                 // We got no type info, check for not a statement by trying
-                AnalyzeTask at = trialCompile(guts);
-                if (at.getDiagnostics().hasNotStatement()) {
+                DiagList diags = trialCompile(guts);
+                if (diags.hasNotStatement()) {
                     guts = Wrap.methodReturnWrap(compileSource);
-                    at = trialCompile(guts);
+                    diags = trialCompile(guts);
                 }
-                if (at.hasErrors()) {
-                    return compileFailResult(at, userSource, Kind.EXPRESSION);
+                if (diags.hasErrors()) {
+                    return compileFailResult(diags, userSource, Kind.EXPRESSION);
                 }
             }
             snip = new StatementSnippet(state.keyMap.keyForStatement(), userSource, guts);
@@ -372,32 +435,35 @@ class Eval {
     private List<Snippet> processStatement(String userSource, String compileSource) {
         Wrap guts = Wrap.methodWrap(compileSource);
         // Check for unreachable by trying
-        AnalyzeTask at = trialCompile(guts);
-        if (at.hasErrors()) {
-            if (at.getDiagnostics().hasUnreachableError()) {
+        DiagList diags = trialCompile(guts);
+        if (diags.hasErrors()) {
+            if (diags.hasUnreachableError()) {
                 guts = Wrap.methodUnreachableSemiWrap(compileSource);
-                at = trialCompile(guts);
-                if (at.hasErrors()) {
-                    if (at.getDiagnostics().hasUnreachableError()) {
+                diags = trialCompile(guts);
+                if (diags.hasErrors()) {
+                    if (diags.hasUnreachableError()) {
                         // Without ending semicolon
                         guts = Wrap.methodUnreachableWrap(compileSource);
-                        at = trialCompile(guts);
+                        diags = trialCompile(guts);
                     }
-                    if (at.hasErrors()) {
-                        return compileFailResult(at, userSource, Kind.STATEMENT);
+                    if (diags.hasErrors()) {
+                        return compileFailResult(diags, userSource, Kind.STATEMENT);
                     }
                 }
             } else {
-                return compileFailResult(at, userSource, Kind.STATEMENT);
+                return compileFailResult(diags, userSource, Kind.STATEMENT);
             }
         }
         Snippet snip = new StatementSnippet(state.keyMap.keyForStatement(), userSource, guts);
         return singletonList(snip);
     }
 
-    private AnalyzeTask trialCompile(Wrap guts) {
+    // The task is closed at once, so only its diagnostics are returned
+    private DiagList trialCompile(Wrap guts) {
         OuterWrap outer = state.outerMap.wrapInTrialClass(guts);
-        return state.taskFactory.new AnalyzeTask(outer);
+        AnalyzeTask at = state.taskFactory.new AnalyzeTask(outer);
+        at.close();
+        return at.getDiagnostics();
     }
 
     private List<Snippet> processMethod(String userSource, Tree unitTree, String compileSource, ParseTask pt) {
@@ -470,6 +536,7 @@ class Eval {
      * @return a rejected snippet
      */
     private List<Snippet> compileFailResult(DiagList diags, String userSource, Kind probableKind) {
+        stateNeeded();
         ErroneousKey key = state.keyMap.keyForErroneous();
         Snippet snip = new ErroneousSnippet(key, userSource, null,
                 probableKind, SubKind.UNKNOWN_SUBKIND);
@@ -634,12 +701,14 @@ class Eval {
             AnalyzeTask cat;
             if (ins.stream().anyMatch(u -> u.corralIfNeeded(ins))) {
                 // if any were corralled, re-analyze everything
+                at.close();
                 cat = state.taskFactory.new AnalyzeTask(outerWrapSet(ins));
                 ins.stream().forEach(u -> u.setCorralledDiagnostics(cat));
             } else {
                 cat = at;
             }
             ins.stream().forEach(u -> u.setStatus(cat));
+            cat.close();
             // compile and load the legit snippets
             boolean success;
             while (true) {
@@ -657,7 +726,9 @@ class Eval {
 
                     // generate class files for those capable
                     CompileTask ct = state.taskFactory.new CompileTask(outerWrapSet(legit));
-                    if (!ct.compile()) {
+                    boolean compiled = ct.compile();
+                    ct.close();
+                    if (!compiled) {
                         // oy! compile failed because of recursive new unresolved
                         if (legit.stream()
                                 .filter(u -> u.smashingErrorDiagnostics(ct))
@@ -707,6 +778,119 @@ class Eval {
         }
     }
 
+    /**
+     * A run of new declarations, collected by evalAll, which are compiled
+     * together and loaded at once. A declaration is only added if
+     * evaluating it in turn would give a single event for it alone: it must
+     * not replace or overload an active snippet, and neither an active
+     * snippet nor an earlier declaration of the run may refer to its name.
+     * If the run does not analyze cleanly as a whole, its declarations are
+     * evaluated one at a time instead.
+     */
+    private class DeclarationBatch {
+
+        private static final int MAX_BATCH_SIZE = 64;
+
+        private final List<Snippet> snippets = new ArrayList<>();
+        private final List<List<SnippetEvent>> targets = new ArrayList<>();
+        private final Set<String> names = new HashSet<>();
+        private final Set<String> references = new HashSet<>();
+        private Set<String> activeNames = null;
+
+        /**
+         * Adds the snippet to the run, if it can be compiled with it.
+         *
+         * @param snip the snippet to evaluate
+         * @param target the list to add its events to, when the run is flushed
+         * @return true if it was added
+         */
+        boolean add(Snippet snip, List<SnippetEvent> target) {
+            if (snip.kind() != Kind.METHOD && snip.kind() != Kind.TYPE_DECL) {
+                return false;
+            }
+            if (snippets.size() == MAX_BATCH_SIZE) {
+                // The units of a run import each other; bound the depth
+                // to which javac completes them
+                flush();
+            }
+            String name = snip.name();
+            if (names.contains(name)
+                    || references.contains(name)
+                    || activeNames().contains(name)
+                    || state.maps.getSnippet(snip.key()) != null
+                    || state.maps.getDependents(snip).stream()
+                            .anyMatch(sn -> sn.status().isActive())) {
+                return false;
+            }
+            snippets.add(snip);
+            targets.add(target);
+            names.add(name);
+            if (snip.declareReferences() != null) {
+                references.addAll(snip.declareReferences());
+            }
+            if (snip.bodyReferences() != null) {
+                references.addAll(snip.bodyReferences());
+            }
+            return true;
+        }
+
+        private Set<String> activeNames() {
+            if (activeNames == null) {
+                activeNames = state.maps.snippetList().stream()
+                        .filter(sn -> sn.kind().isPersistent() && sn.status().isActive())
+                        .map(Snippet::name)
+                        .collect(toSet());
+            }
+            return activeNames;
+        }
+
+        /**
+         * Compiles, loads and installs the declarations of the run, and
+         * starts a new run.
+         */
+        void flush() {
+            if (snippets.isEmpty()) {
+                return;
+            }
+            List<Snippet> snips = new ArrayList<>(snippets);
+            List<List<SnippetEvent>> targs = new ArrayList<>(targets);
+            snippets.clear();
+            targets.clear();
+            names.clear();
+            references.clear();
+            activeNames = null;
+
+            List<Unit> units = snips.stream()
+                    .map(snip -> new Unit(state, snip, null, snip.syntheticDiags()))
+                    .collect(toList());
+            if (units.size() == 1 || !analyzesCleanly(units)) {
+                for (int i = 0; i < snips.size(); i++) {
+                    targs.get(i).addAll(evalSnippet(snips.get(i)));
+                }
+                return;
+            }
+            state.debug(DBG_GEN, "DeclarationBatch.flush %s\n", units);
+            // Nothing depends on these units, so no others are compiled
+            compileAndLoad(new LinkedHashSet<>(units));
+            for (int i = 0; i < units.size(); i++) {
+                Unit u = units.get(i);
+                targs.get(i).addAll(events(u, Collections.singleton(u), null, null));
+            }
+        }
+
+        private boolean analyzesCleanly(List<Unit> ins) {
+            ins.stream().forEach(Unit::initialize);
+            // Each unit imports the ones before it, which are wrapped first
+            for (int i = 0; i < ins.size(); i++) {
+                ins.get(i).setWrap(ins, ins.subList(0, i + 1));
+            }
+            AnalyzeTask at = state.taskFactory.new AnalyzeTask(outerWrapSet(ins));
+            boolean clean = !at.hasErrors();
+            at.close();
+            return clean;
+        }
+    }
+
     /**
      * If there are classes to load, loads by calling the execution engine.
      * @param classbytecodes names of the classes to load.
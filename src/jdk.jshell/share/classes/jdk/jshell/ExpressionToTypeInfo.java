@@ -48,14 +48,15 @@ class ExpressionToTypeInfo {
 
     final AnalyzeTask at;
     final CompilationUnitTree cu;
-    final JShell state;
+    final SnippetMaps.ImportsSnapshot imports;
     final Symtab syms;
     final Types types;
 
-    private ExpressionToTypeInfo(AnalyzeTask at, CompilationUnitTree cu, JShell state) {
+    private ExpressionToTypeInfo(AnalyzeTask at, CompilationUnitTree cu,
+                                 SnippetMaps.ImportsSnapshot imports) {
         this.at = at;
         this.cu = cu;
-        this.state = state;
+        this.imports = imports;
         this.syms = Symtab.instance(at.context);
         this.types = Types.instance(at.context);
     }
@@ -144,13 +145,18 @@ class ExpressionToTypeInfo {
             return null;
         }
         try {
-            OuterWrap codeWrap = state.outerMap.wrapInTrialClass(Wrap.methodReturnWrap(code));
+            SnippetMaps.ImportsSnapshot imports = state.analysisImports();
+            OuterWrap codeWrap = state.outerMap.wrapInTrialClass(Wrap.methodReturnWrap(code), imports);
             AnalyzeTask at = state.taskFactory.new AnalyzeTask(codeWrap);
-            CompilationUnitTree cu = at.firstCuTree();
-            if (at.hasErrors() || cu == null) {
-                return null;
+            try {
+                CompilationUnitTree cu = at.firstCuTree();
+                if (at.hasErrors() || cu == null) {
+                    return null;
+                }
+                return new ExpressionToTypeInfo(at, cu, imports).typeOfExpression();
+            } finally {
+                at.close();
             }
-            return new ExpressionToTypeInfo(at, cu, state).typeOfExpression();
         } catch (Exception ex) {
             return null;
         }
@@ -206,7 +212,7 @@ class ExpressionToTypeInfo {
     private String varTypeName(Type type) {
         try {
             TypePrinter tp = new VarTypePrinter(at.messages(),
-                    state.maps::fullClassNameAndPackageToClass, syms, types);
+                    imports::fullClassNameAndPackageToClass, syms, types);
             return tp.toString(type);
         } catch (Exception ex) {
             return null;
@@ -109,6 +109,12 @@ public class JShell implements AutoCloseable {
     private final ExecutionControl executionControl;
     private SourceCodeAnalysisImpl sourceCodeAnalysis = null;
 
+    // The imports that analysis on other threads uses while evalThread
+    // changes the snippets; guarded by analysisLock
+    private final Object analysisLock = new Object();
+    private Thread evalThread = null;
+    private SnippetMaps.ImportsSnapshot analysisImports = null;
+
     private static final String L10N_RB_NAME    = "jdk.jshell.resources.l10n";
     private static ResourceBundle outputRB  = null;
 
@@ -496,7 +502,13 @@ public class JShell implements AutoCloseable {
         }
         try {
             checkIfAlive();
-            List<SnippetEvent> events = eval.eval(input);
+            List<SnippetEvent> events;
+            beginEvaluation();
+            try {
+                events = eval.eval(input);
+            } finally {
+                endEvaluation();
+            }
             events.forEach(this::notifyKeyStatusEvent);
             return Collections.unmodifiableList(events);
         } finally {
@@ -506,6 +518,49 @@ public class JShell implements AutoCloseable {
         }
     }
 
+    /**
+     * Evaluate a sequence of inputs, each of which is a snippet of source as
+     * for {@link #eval(String)}. The result is the same as evaluating the
+     * inputs in turn, but consecutive new declarations of methods and types
+     * that do not depend on each other are compiled, and their classes
+     * loaded, together. This is faster when loading a long script, such as
+     * a startup script.
+     * <p>
+     * Events are reported to the {@linkplain #onSnippetEvent(Consumer)
+     * event listeners} once all inputs have been evaluated.
+     * @param inputs the input Strings to evaluate, in order
+     * @return for each input, the list of events directly or indirectly
+     * caused by its evaluation.
+     * @throws IllegalStateException if this {@code JShell} instance is closed.
+     * @see #eval(String)
+     */
+    public List<List<SnippetEvent>> evalAll(List<String> inputs) throws IllegalStateException {
+        SourceCodeAnalysisImpl a = sourceCodeAnalysis;
+        if (a != null) {
+            a.suspendIndexing();
+        }
+        try {
+            checkIfAlive();
+            List<List<SnippetEvent>> evaluated;
+            beginEvaluation();
+            try {
+                evaluated = eval.evalAll(inputs);
+            } finally {
+                endEvaluation();
+            }
+            List<List<SnippetEvent>> allEvents = new ArrayList<>();
+            for (List<SnippetEvent> events : evaluated) {
+                events.forEach(this::notifyKeyStatusEvent);
+                allEvents.add(Collections.unmodifiableList(events));
+            }
+            return Collections.unmodifiableList(allEvents);
+        } finally {
+            if (a != null) {
+                a.resumeIndexing();
+            }
+        }
+    }
+
     /**
      * Remove a declaration from the state.  That is, if the snippet is an
      * {@linkplain jdk.jshell.Snippet.Status#isActive() active}
@@ -523,7 +578,13 @@ public class JShell implements AutoCloseable {
     public List<SnippetEvent> drop(Snippet snippet) throws IllegalStateException {
         checkIfAlive();
         checkValidSnippet(snippet);
-        List<SnippetEvent> events = eval.drop(snippet);
+        List<SnippetEvent> events;
+        beginEvaluation();
+        try {
+            events = eval.drop(snippet);
+        } finally {
+            endEvaluation();
+        }
         events.forEach(this::notifyKeyStatusEvent);
         return Collections.unmodifiableList(events);
     }
@@ -809,6 +870,44 @@ public class JShell implements AutoCloseable {
         return executionControl;
     }
 
+    /**
+     * The snippets are about to be changed by this thread.  Until
+     * {@link #endEvaluation()}, analysis on other threads uses the imports
+     * as they are now.
+     */
+    private void beginEvaluation() {
+        synchronized (analysisLock) {
+            if (analysisImports == null) {
+                analysisImports = maps.importsSnapshot();
+            }
+            evalThread = Thread.currentThread();
+        }
+    }
+
+    private void endEvaluation() {
+        synchronized (analysisLock) {
+            evalThread = null;
+            analysisImports = null;
+        }
+    }
+
+    /**
+     * The imports with which to analyse trial code.  While an evaluation is
+     * in progress, these are the imports from before it, except for the
+     * evaluating thread itself.
+     */
+    SnippetMaps.ImportsSnapshot analysisImports() {
+        synchronized (analysisLock) {
+            if (evalThread == Thread.currentThread()) {
+                return maps.importsSnapshot();
+            }
+            if (analysisImports == null) {
+                analysisImports = maps.importsSnapshot();
+            }
+            return analysisImports;
+        }
+    }
+
     void debug(int flags, String format, Object... args) {
         InternalDebugControl.debug(this, err, flags, format, args);
     }
@@ -45,10 +45,10 @@ class MaskCommentsAndModifiers {
                     .collect( Collectors.toSet() );
 
     // Builder to accumulate non-masked characters
-    private final StringBuilder sbCleared = new StringBuilder();
+    private final StringBuilder sbCleared;
 
     // Builder to accumulate masked characters
-    private final StringBuilder sbMask = new StringBuilder();
+    private final StringBuilder sbMask;
 
     // The input string
     private final String str;
@@ -69,12 +69,57 @@ class MaskCommentsAndModifiers {
     // Does the string end with an unclosed '/*' style comment?
     private boolean openComment = false;
 
+    // The state at the start of the last comment, quote, or identifier, etc,
+    // which could be continued by appended text
+    private int lastStart = 0;
+    private int lastClearedLength = 0;
+    private int lastMaskLength = 0;
+    private boolean lastMaskModifiers;
+
+    // The maskModifiers parameter
+    private final boolean initialMaskModifiers;
+
     MaskCommentsAndModifiers(String s, boolean maskModifiers) {
+        this(s, maskModifiers, null);
+    }
+
+    /**
+     * Mask a string which may extend the string of a previous mask, in
+     * which case only the appended text, and the last element before it, are
+     * examined.
+     *
+     * @param s the string to mask
+     * @param maskModifiers whether to mask-off ignored modifiers
+     * @param prev the mask of an earlier string, or null
+     */
+    MaskCommentsAndModifiers(String s, boolean maskModifiers, MaskCommentsAndModifiers prev) {
         this.str = s;
         this.length = s.length();
-        this.maskModifiers = maskModifiers;
+        this.sbCleared = new StringBuilder(length);
+        this.sbMask = new StringBuilder(length);
+        this.initialMaskModifiers = maskModifiers;
+        if (prev != null && prev.initialMaskModifiers == maskModifiers && s.startsWith(prev.str)) {
+            sbCleared.append(prev.sbCleared, 0, prev.lastClearedLength);
+            sbMask.append(prev.sbMask, 0, prev.lastMaskLength);
+            lastStart = prev.lastStart;
+            lastClearedLength = prev.lastClearedLength;
+            lastMaskLength = prev.lastMaskLength;
+            this.maskModifiers = prev.lastMaskModifiers;
+        } else {
+            this.maskModifiers = maskModifiers;
+        }
+        scan();
+    }
+
+    private void scan() {
+        next = lastStart;
+        lastMaskModifiers = maskModifiers;
         read();
         while (c >= 0) {
+            lastStart = next - 1;
+            lastClearedLength = sbCleared.length();
+            lastMaskLength = sbMask.length();
+            lastMaskModifiers = maskModifiers;
             next();
             read();
         }
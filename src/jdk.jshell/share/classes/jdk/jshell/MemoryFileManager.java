@@ -39,7 +39,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
 
 import javax.tools.JavaFileObject.Kind;
 import static javax.tools.StandardLocation.CLASS_PATH;
@@ -63,7 +64,7 @@ class MemoryFileManager implements JavaFileManager {
 
     private final StandardJavaFileManager stdFileManager;
 
-    private final Map<String, OutputMemoryJavaFileObject> classObjects = new TreeMap<>();
+    private final Map<String, OutputMemoryJavaFileObject> classObjects = new ConcurrentSkipListMap<>();
 
     private ClassFileCreationListener classListener = null;
 
@@ -107,17 +108,32 @@ class MemoryFileManager implements JavaFileManager {
          * Byte code created by the compiler will be stored in this
          * ByteArrayOutputStream.
          */
-        private ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        private ByteArrayOutputStream bos = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                written.accept(OutputMemoryJavaFileObject.this);
+            }
+        };
         private byte[] bytes = null;
 
         private final String className;
+        private final Consumer<OutputMemoryJavaFileObject> written;
 
         public OutputMemoryJavaFileObject(String name, JavaFileObject.Kind kind) {
+            this(name, kind, fo -> { });
+        }
+
+        /**
+         * @param written called when the compiler has written the class
+         */
+        OutputMemoryJavaFileObject(String name, JavaFileObject.Kind kind,
+                Consumer<OutputMemoryJavaFileObject> written) {
             super(name, kind);
             this.className = name;
+            this.written = written;
         }
 
-        public byte[] getBytes() {
+        public synchronized byte[] getBytes() {
             if (bytes == null) {
                 bytes = bos.toByteArray();
                 bos = null;
@@ -430,8 +446,10 @@ class MemoryFileManager implements JavaFileManager {
             String className, Kind kind, FileObject sibling) throws IOException {
 
         OutputMemoryJavaFileObject fo;
-        fo = new OutputMemoryJavaFileObject(className, kind);
-        classObjects.put(className, fo);
+        // Analysis on another thread may be reading the previous version
+        // of the class, so the new one replaces it once it is complete
+        fo = new OutputMemoryJavaFileObject(className, kind,
+                written -> classObjects.put(className, written));
         proc.debug(DBG_FMGR, "Set out file: %s = %s\n", className, fo);
         if (classListener != null) {
             classListener.newClassFile(fo, location, className, kind, sibling);
@@ -86,8 +86,11 @@ class OuterWrapMap {
     }
 
     OuterWrap wrapInTrialClass(Wrap wrap) {
-        String imports = state.maps.packageAndImportsExcept(null, null);
-        CompoundWrap w = wrappedInClass(REPL_DOESNOTMATTER_CLASS_NAME, imports,
+        return wrapInTrialClass(wrap, state.analysisImports());
+    }
+
+    OuterWrap wrapInTrialClass(Wrap wrap, SnippetMaps.ImportsSnapshot imports) {
+        CompoundWrap w = wrappedInClass(REPL_DOESNOTMATTER_CLASS_NAME, imports.packageAndImports,
                 Collections.singletonList(wrap));
         return new OuterWrap(w);
     }
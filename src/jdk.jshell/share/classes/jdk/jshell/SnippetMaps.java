@@ -156,12 +156,16 @@ final class SnippetMaps {
     }
 
     String fullClassNameAndPackageToClass(String full, String pkg) {
+        return fullClassNameAndPackageToClass(full, pkg, importSnippets().collect(toList()));
+    }
+
+    private String fullClassNameAndPackageToClass(String full, String pkg, List<ImportSnippet> imports) {
         Matcher mat = PREFIX_PATTERN.matcher(full);
         if (mat.lookingAt()) {
             return full.substring(mat.end());
         }
         state.debug(DBG_DEP, "SM %s %s\n", full, pkg);
-        List<String> klasses = importSnippets()
+        List<String> klasses = imports.stream()
                                .filter(isi -> !isi.isStar)
                                .map(isi -> isi.fullname)
                                .collect(toList());
@@ -170,7 +174,7 @@ final class SnippetMaps {
                 return full.substring(full.lastIndexOf(".")+1, full.length());
             }
         }
-        List<String> pkgs = importSnippets()
+        List<String> pkgs = imports.stream()
                                .filter(isi -> isi.isStar)
                                .map(isi -> isi.fullname.substring(0, isi.fullname.lastIndexOf(".")))
                                .collect(toList());
@@ -183,6 +187,35 @@ final class SnippetMaps {
         return full;
     }
 
+    /**
+     * The imports of trial code, as they are now.
+     */
+    ImportsSnapshot importsSnapshot() {
+        return new ImportsSnapshot(packageAndImportsExcept(null, null),
+                importSnippets().collect(toList()));
+    }
+
+    /**
+     * The package and imports with which trial code is analysed, and the
+     * imports used to shorten the type names in the results.  Unlike the
+     * snippets they are taken from, these do not change as snippets are
+     * evaluated, so that analysis may use them while an evaluation runs.
+     */
+    final class ImportsSnapshot {
+
+        final String packageAndImports;
+        private final List<ImportSnippet> imports;
+
+        private ImportsSnapshot(String packageAndImports, List<ImportSnippet> imports) {
+            this.packageAndImports = packageAndImports;
+            this.imports = imports;
+        }
+
+        String fullClassNameAndPackageToClass(String full, String pkg) {
+            return SnippetMaps.this.fullClassNameAndPackageToClass(full, pkg, imports);
+        }
+    }
+
     /**
      * Compute the set of imports to prepend to a snippet
      * @return a stream of the import needed
@@ -38,6 +38,14 @@ import java.util.List;
  * Is there more than one snippet?
  * etc.
  * Also includes completion suggestions, as might be used in tab-completion.
+ * <p>
+ * The {@link #completionSuggestions(String, int, int[]) completionSuggestions},
+ * {@link #documentation(String, int, boolean) documentation},
+ * {@link #analyzeType(String, int) analyzeType} and
+ * {@link #listQualifiedNames(String, int) listQualifiedNames} methods may be
+ * called from another thread while {@link JShell#eval(String)} is in progress,
+ * for example while a long-running snippet executes.  They then see the
+ * snippets as they were before that evaluation began.
  *
  * @since 9
  */
@@ -97,6 +97,7 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
@@ -140,7 +141,7 @@ import static java.util.stream.Collectors.joining;
  */
 class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
 
-    private static final Map<Path, ClassIndex> PATH_TO_INDEX = new HashMap<>();
+    private static final Map<Path, ClassIndex> PATH_TO_INDEX = new ConcurrentHashMap<>();
     private static final ExecutorService INDEXER = Executors.newFixedThreadPool(1, r -> {
         Thread t = new Thread(r);
         t.setDaemon(true);
@@ -150,6 +151,8 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
 
     private final JShell proc;
     private final CompletenessAnalyzer ca;
+    private volatile MaskCommentsAndModifiers lastCompletionMask;
+    private final ClassIndexCache indexCache;
     private final List<AutoCloseable> closeables = new ArrayList<>();
     private final Map<Path, ClassIndex> currentIndexes = new HashMap<>();
     private int indexVersion;
@@ -160,6 +163,7 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
     SourceCodeAnalysisImpl(JShell proc) {
         this.proc = proc;
         this.ca = new CompletenessAnalyzer(proc);
+        this.indexCache = ClassIndexCache.create(proc);
 
         int cpVersion = classpathVersion = 1;
 
@@ -168,7 +172,9 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
 
     @Override
     public CompletionInfo analyzeCompletion(String srcInput) {
-        MaskCommentsAndModifiers mcm = new MaskCommentsAndModifiers(srcInput, false);
+        // Input read a line at a time extends the previous input
+        MaskCommentsAndModifiers mcm = new MaskCommentsAndModifiers(srcInput, false, lastCompletionMask);
+        lastCompletionMask = mcm;
         if (mcm.endsWithOpenComment()) {
             proc.debug(DBG_COMPA, "Incomplete (open comment): %s\n", srcInput);
             return new CompletionInfoImpl(DEFINITELY_INCOMPLETE, null, srcInput + '\n');
@@ -287,6 +293,14 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
 
     private List<Suggestion> computeSuggestions(OuterWrap code, int cursor, int[] anchor) {
         AnalyzeTask at = proc.taskFactory.new AnalyzeTask(code);
+        try {
+            return computeSuggestions(at, code, cursor, anchor);
+        } finally {
+            at.close();
+        }
+    }
+
+    private List<Suggestion> computeSuggestions(AnalyzeTask at, OuterWrap code, int cursor, int[] anchor) {
         SourcePositions sp = at.trees().getSourcePositions();
         CompilationUnitTree topLevel = at.firstCuTree();
         List<Suggestion> result = new ArrayList<>();
@@ -1134,6 +1148,14 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
 
         OuterWrap codeWrap = proc.outerMap.wrapInTrialClass(Wrap.methodWrap(code));
         AnalyzeTask at = proc.taskFactory.new AnalyzeTask(codeWrap, keepParameterNames);
+        try {
+            return documentationImpl(at, codeWrap, cursor, computeJavadoc);
+        } finally {
+            at.close();
+        }
+    }
+
+    private List<Documentation> documentationImpl(AnalyzeTask at, OuterWrap codeWrap, int cursor, boolean computeJavadoc) {
         SourcePositions sp = at.trees().getSourcePositions();
         CompilationUnitTree topLevel = at.firstCuTree();
         TreePath tp = pathFor(topLevel, sp, codeWrap.snippetIndexToWrapIndex(cursor));
@@ -1342,7 +1364,7 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
                 String fullname = type.getQualifiedName().toString();
                 Element pkg = at.getElements().getPackageOf(el);
                 String name = pkg == null || useFQN ? fullname :
-                        proc.maps.fullClassNameAndPackageToClass(fullname, ((PackageElement)pkg).getQualifiedName().toString());
+                        proc.analysisImports().fullClassNameAndPackageToClass(fullname, ((PackageElement)pkg).getQualifiedName().toString());
 
                 return name + typeParametersOpt(at, type.getTypeParameters(), includeParameterNames);
             }
@@ -1476,6 +1498,14 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
                 break;
         }
         AnalyzeTask at = proc.taskFactory.new AnalyzeTask(codeWrap);
+        try {
+            return listQualifiedNames(at, codeWrap, code);
+        } finally {
+            at.close();
+        }
+    }
+
+    private QualifiedNames listQualifiedNames(AnalyzeTask at, OuterWrap codeWrap, String code) {
         SourcePositions sp = at.trees().getSourcePositions();
         CompilationUnitTree topLevel = at.firstCuTree();
         TreePath tp = pathFor(topLevel, sp, codeWrap.snippetIndexToWrapIndex(code.length()));
@@ -1574,13 +1604,17 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
                 currentIndexes.putAll(newIndexes);
             }
 
-            //update/compute the indexes if needed:
-            for (Path p : paths) {
+            //update/compute the indexes if needed, in parallel, making each one
+            //available as soon as it is ready:
+            paths.parallelStream().forEach(p -> {
                 waitIndexingNotSuspended();
 
                 ClassIndex index = indexForPath(p);
-                newIndexes.put(p, index);
-            }
+                synchronized (currentIndexes) {
+                    newIndexes.put(p, index);
+                    currentIndexes.put(p, index);
+                }
+            });
 
             synchronized (currentIndexes) {
                 currentIndexes.clear();
@@ -1610,7 +1644,7 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
     }
 
     //create/update index a given JavaFileManager entry (which may be a JDK installation, a jar/zip file or a directory):
-    //if an index exists for the given entry, the existing index is kept unless the timestamp is modified
+    //if an index exists for the given entry, in memory or in the on-disk cache, it is kept unless the timestamp is modified
     private ClassIndex indexForPath(Path path) {
         if (isJRTMarkerFile(path)) {
             FileSystem jrtfs = FileSystems.getFileSystem(URI.create("jrt:/"));
@@ -1619,9 +1653,13 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
                 try {
                     long lastModified = Files.getLastModifiedTime(modules).toMillis();
                     if (index == null || index.timestamp != lastModified) {
+                        index = indexCache.load(path, lastModified);
+                    }
+                    if (index == null) {
                         try (DirectoryStream<Path> stream = Files.newDirectoryStream(modules)) {
                             index = doIndex(lastModified, path, stream);
                         }
+                        indexCache.save(index);
                     }
                     return index;
                 } catch (IOException ex) {
@@ -1635,11 +1673,15 @@ class SourceCodeAnalysisImpl extends SourceCodeAnalysis {
                     try {
                         long lastModified = Files.getLastModifiedTime(p).toMillis();
                         if (index == null || index.timestamp != lastModified) {
+                            index = indexCache.load(path, lastModified);
+                        }
+                        if (index == null) {
                             ClassLoader cl = SourceCodeAnalysisImpl.class.getClassLoader();
 
                             try (FileSystem zip = FileSystems.newFileSystem(path, cl)) {
                                 index = doIndex(lastModified, path, zip.getRootDirectories());
                             }
+                            indexCache.save(index);
                         }
                         return index;
                     } catch (IOException ex) {
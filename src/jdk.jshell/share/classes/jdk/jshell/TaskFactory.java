@@ -29,6 +29,7 @@ import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTaskPool;
 import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.util.Context;
 import java.util.ArrayList;
@@ -54,6 +55,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import static java.util.stream.Collectors.toList;
 import java.util.stream.Stream;
@@ -74,6 +76,12 @@ class TaskFactory {
     private final MemoryFileManager fileManager;
     private final JShell state;
     private String classpath = System.getProperty("java.class.path");
+    // Contexts of analyze and compile tasks, kept for the next snippet
+    private final JavacTaskPool javacTaskPool = new JavacTaskPool(2);
+    // The file manager is not thread safe, yet analysis may run on another
+    // thread while a snippet is compiled.  Each task holds this lock from
+    // its creation until it is closed.
+    private final ReentrantLock fileManagerLock = new ReentrantLock();
 //    private final static Version INITIAL_SUPPORTED_VER = Version.parse("9");
 
     TaskFactory(JShell state, StandardJavaFileManager jfm) {
@@ -94,10 +102,17 @@ class TaskFactory {
     }
 
     void addToClasspath(String path) {
-        classpath = classpath + File.pathSeparator + path;
-        List<String> args = new ArrayList<>();
-        args.add(classpath);
-        fileManager().handleOption("-classpath", args.iterator());
+        fileManagerLock.lock();
+        try {
+            classpath = classpath + File.pathSeparator + path;
+            List<String> args = new ArrayList<>();
+            args.add(classpath);
+            fileManager().handleOption("-classpath", args.iterator());
+            // The pooled contexts have listed the packages of the old class path
+            javacTaskPool.clear();
+        } finally {
+            fileManagerLock.unlock();
+        }
     }
 
     MemoryFileManager fileManager() {
@@ -203,9 +218,15 @@ class TaskFactory {
         ParseTask(final String source, final boolean forceExpression) {
             super(Stream.of(source),
                     new StringSourceHandler(),
+                    false,
                     "-XDallowStringFolding=false", "-proc:none");
-            ReplParserFactory.preRegister(getContext(), forceExpression);
-            cuts = parse();
+            try {
+                ReplParserFactory.preRegister(getContext(), forceExpression);
+                cuts = parse();
+            } finally {
+                // Only parsing uses the file manager
+                close();
+            }
             units = Util.stream(cuts)
                     .flatMap(cut -> {
                         List<? extends ImportTree> imps = cut.getImports();
@@ -254,7 +275,7 @@ class TaskFactory {
 
         private <T>AnalyzeTask(final Stream<T> stream, SourceHandler<T> sourceHandler,
                 String... extraOptions) {
-            super(stream, sourceHandler, extraOptions);
+            super(stream, sourceHandler, true, extraOptions);
             cuts = analyze();
         }
 
@@ -264,6 +285,7 @@ class TaskFactory {
                 task.analyze();
                 return cuts;
             } catch (Exception ex) {
+                abandon();
                 throw new InternalError("Exception during analyze - " + ex.getMessage(), ex);
             }
         }
@@ -290,15 +312,20 @@ class TaskFactory {
         private final Map<OuterWrap, List<OutputMemoryJavaFileObject>> classObjs = new HashMap<>();
 
         CompileTask(final Collection<OuterWrap> wraps) {
-            super(wraps.stream(), new WrapSourceHandler(),
+            super(wraps.stream(), new WrapSourceHandler(), true,
                     "-Xlint:unchecked", "-proc:none", "-parameters");
         }
 
         boolean compile() {
             fileManager.registerClassFileCreationListener(this::listenForNewClassFile);
-            boolean result = task.call();
-            fileManager.registerClassFileCreationListener(null);
-            return result;
+            try {
+                return task.call();
+            } catch (RuntimeException | Error ex) {
+                abandon();
+                throw ex;
+            } finally {
+                fileManager.registerClassFileCreationListener(null);
+            }
         }
 
         // Returns the list of classes generated during this compile.
@@ -342,14 +369,23 @@ class TaskFactory {
         final JavacTaskImpl task;
         private DiagList diags = null;
         private final SourceHandler<?> sourceHandler;
-        final Context context = new Context();
+        final Context context;
+        private final boolean pooled;
+        private boolean closed;
         private Types types;
         private JavacMessages messages;
         private Trees trees;
 
+        /**
+         * The task holds the file manager lock until it is closed.
+         *
+         * @param pooled whether the task may run in the context of an
+         * earlier task
+         */
         private <T>BaseTask(Stream<T> inputs,
                 //BiFunction<MemoryFileManager, T, JavaFileObject> sfoCreator,
                 SourceHandler<T> sh,
+                boolean pooled,
                 String... extraOptions) {
             this.sourceHandler = sh;
             List<String> options = new ArrayList<>(extraOptions.length + state.extraCompilerOptions.size());
@@ -358,9 +394,53 @@ class TaskFactory {
             Iterable<? extends JavaFileObject> compilationUnits = inputs
                             .map(in -> sh.sourceToFileObject(fileManager, in))
                             .collect(Collectors.toList());
-            this.task = (JavacTaskImpl) ((JavacTool) compiler).getTask(null,
-                    fileManager, diagnostics, options, null,
-                    compilationUnits, context);
+            this.pooled = pooled;
+            fileManagerLock.lock();
+            try {
+                if (pooled) {
+                    this.task = javacTaskPool.getTask(null,
+                            fileManager, diagnostics, options, null,
+                            compilationUnits);
+                    this.context = task.getContext();
+                } else {
+                    // The parser factory of a parse task is registered in its context
+                    this.context = new Context();
+                    this.task = (JavacTaskImpl) ((JavacTool) compiler).getTask(null,
+                            fileManager, diagnostics, options, null,
+                            compilationUnits, context);
+                }
+            } catch (RuntimeException | Error ex) {
+                fileManagerLock.unlock();
+                throw ex;
+            }
+        }
+
+        /**
+         * Done with this task: other threads may use the file manager, and
+         * the context of a pooled task may be used by the next task.
+         * Neither a pooled task nor the trees and elements it produced may
+         * be used after this, but its diagnostics may.
+         */
+        void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    getDiagnostics();
+                    if (pooled) {
+                        javacTaskPool.release(context);
+                    }
+                } finally {
+                    fileManagerLock.unlock();
+                }
+            }
+        }
+
+        // The task failed: its context is not reused
+        void abandon() {
+            if (!closed) {
+                closed = true;
+                fileManagerLock.unlock();
+            }
         }
 
         abstract Iterable<? extends CompilationUnitTree> cuTrees();
@@ -33,6 +33,7 @@ import com.sun.source.tree.StatementTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Type.MethodType;
@@ -44,9 +45,16 @@ import jdk.jshell.TaskFactory.AnalyzeTask;
 import jdk.jshell.Wrap.Range;
 
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 import jdk.jshell.Util.Pair;
 
@@ -217,6 +225,95 @@ class TreeDissector {
         return null;
     }
 
+    /**
+     * The erased signatures of the parts of a declaration that other
+     * snippets can use: the declaration itself and, for a type, its
+     * non-private members, recursively. Each entry starts with the simple
+     * name by which that part is referred to, followed by a colon.
+     *
+     * @return the signatures, or null if the declaration is not found
+     */
+    Set<String> publicSignature(DeclarationSnippet sn) {
+        Tree tree = null;
+        switch (sn.kind()) {
+            case METHOD:
+                tree = method((MethodSnippet) sn);
+                break;
+            case VAR:
+                tree = firstVariable();
+                break;
+            case TYPE_DECL:
+                if (targetClass != null) {
+                    tree = targetClass.getMembers().stream()
+                            .filter(mem -> mem instanceof ClassTree
+                                    && ((ClassTree) mem).getSimpleName().contentEquals(sn.name()))
+                            .findFirst()
+                            .orElse(null);
+                }
+                break;
+        }
+        if (tree == null) {
+            return null;
+        }
+        Element el = trees().getElement(TreePath.getPath(targetCompilationUnit, tree));
+        if (el == null) {
+            return null;
+        }
+        Set<String> sig = new TreeSet<>();
+        addPublicSignature(sig, "", el);
+        return sig;
+    }
+
+    private void addPublicSignature(Set<String> sig, String owner, Element el) {
+        if (el.getModifiers().contains(Modifier.PRIVATE)) {
+            return;
+        }
+        String name = el.getSimpleName().toString();
+        String prefix = owner + " " + el.getKind() + " " + el.getModifiers();
+        switch (el.getKind()) {
+            case CONSTRUCTOR:
+                // used by the name of its class
+                addExecutableSignature(sig, owner.substring(owner.lastIndexOf('.') + 1),
+                        prefix, (ExecutableElement) el);
+                break;
+            case METHOD:
+                addExecutableSignature(sig, name, prefix, (ExecutableElement) el);
+                break;
+            case FIELD:
+            case ENUM_CONSTANT:
+                sig.add(name + ":" + prefix + " " + erasure(el.asType()));
+                break;
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE: {
+                TypeElement te = (TypeElement) el;
+                sig.add(name + ":" + prefix + " <" + te.getTypeParameters().size() + ">"
+                        + " extends " + erasure(te.getSuperclass())
+                        + te.getInterfaces().stream()
+                                .map(this::erasure)
+                                .collect(Collectors.joining(",", " implements ", "")));
+                for (Element mem : te.getEnclosedElements()) {
+                    addPublicSignature(sig, owner + "." + name, mem);
+                }
+                break;
+            }
+        }
+    }
+
+    private void addExecutableSignature(Set<String> sig, String name, String prefix,
+            ExecutableElement ee) {
+        sig.add(name + ":" + prefix + " <" + ee.getTypeParameters().size() + ">"
+                + erasure(ee.asType())
+                + ee.getThrownTypes().stream()
+                        .map(this::erasure)
+                        .collect(Collectors.joining(",", " throws ", "")));
+    }
+
+    private String erasure(TypeMirror type) {
+        return types().erasure((Type) type).toString();
+    }
+
     static String signature(Types types, MethodType mt) {
         TDSignatureGenerator sg = new TDSignatureGenerator(types);
         sg.assembleSig(mt);
@@ -28,6 +28,7 @@ package jdk.jshell;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -68,6 +69,7 @@ final class Unit {
     private final boolean isNew;
     private final Snippet causalSnippet;
     private final DiagList generatedDiagnostics;
+    private final Set<String> signatureInitial;
 
     private int seq;
     private String classNameInitial;
@@ -98,6 +100,7 @@ final class Unit {
 
         this.seq = isNew? 0 : siOld.sequenceNumber();
         this.classNameInitial = isNew? "<none>" : siOld.className();
+        this.signatureInitial = isNew? null : publicSignature(siOld);
         this.prevStatus = (isNew || isDependency)
                 ? si.status()
                 : siOld.status();
@@ -113,6 +116,7 @@ final class Unit {
         this.isNew = false;
         this.causalSnippet = null;
         this.generatedDiagnostics = new DiagList();
+        this.signatureInitial = null;
         this.prevStatus = si.status();
         si.setDropped();
         this.status = si.status();
@@ -259,6 +263,11 @@ final class Unit {
             status = REJECTED;
         }
         checkForOverwrite(at);
+        if (si instanceof DeclarationSnippet) {
+            ((DeclarationSnippet) si).setPublicSignature(status.isDefined()
+                    ? computePublicSignature(at)
+                    : null);
+        }
 
         state.debug(DBG_GEN, "setStatus() %s - status: %s\n",
                 si, status);
@@ -343,9 +352,68 @@ final class Unit {
     Stream<Unit> effectedDependents() {
         //System.err.printf("effectedDependents sigChanged=%b  dependenciesNeeded=%b   status=%s\n",
         //       sigChanged(), dependenciesNeeded, status);
-        return sigChanged() || dependenciesNeeded || status == RECOVERABLE_NOT_DEFINED
-                ? dependents()
-                : Stream.empty();
+        if (sigChanged() || status == RECOVERABLE_NOT_DEFINED) {
+            return dependents();
+        }
+        if (!dependenciesNeeded) {
+            return Stream.empty();
+        }
+        // Redefined in place, but new classes were loaded, such as new
+        // member or anonymous classes.  Only the dependents that use a part
+        // of the declaration whose signature changed need to be recompiled.
+        Set<String> changed = changedSignatureNames();
+        if (changed == null) {
+            return dependents();
+        }
+        return changed.isEmpty()
+                ? Stream.empty()
+                : dependents().filter(u -> u.references(changed));
+    }
+
+    // The names of the parts of the declaration whose erased signature has
+    // changed, or null if that is not known
+    private Set<String> changedSignatureNames() {
+        Set<String> current = publicSignature(si);
+        if (signatureInitial == null || current == null) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        addChangedNames(names, current, signatureInitial);
+        addChangedNames(names, signatureInitial, current);
+        return names;
+    }
+
+    private static void addChangedNames(Set<String> names, Set<String> sig, Set<String> otherSig) {
+        for (String entry : sig) {
+            if (!otherSig.contains(entry)) {
+                names.add(entry.substring(0, entry.indexOf(':')));
+            }
+        }
+    }
+
+    private boolean references(Set<String> names) {
+        Collection<String> declareRefs = si.declareReferences();
+        Collection<String> bodyRefs = si.bodyReferences();
+        if (declareRefs == null || bodyRefs == null) {
+            return true;
+        }
+        return declareRefs.stream().anyMatch(names::contains)
+                || bodyRefs.stream().anyMatch(names::contains);
+    }
+
+    private static Set<String> publicSignature(Snippet sn) {
+        return sn instanceof DeclarationSnippet
+                ? ((DeclarationSnippet) sn).publicSignature()
+                : null;
+    }
+
+    private Set<String> computePublicSignature(AnalyzeTask at) {
+        try {
+            return TreeDissector.createBySnippet(at, si).publicSignature((DeclarationSnippet) si);
+        } catch (IllegalArgumentException ex) {
+            // the wrapper class was not analyzed
+            return null;
+        }
     }
 
     Stream<Unit> dependents() {
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.jshell.execution;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import jdk.jshell.spi.ExecutionControl.ClassBytecodes;
+
+/**
+ * The binary encoding of the values that are serialized in the original
+ * protocol between the main process and the remote execution process.
+ * Writing them with the primitive data methods is more compact, avoids
+ * class descriptors and keeps the written arrays out of the handle tables
+ * of the object streams, which would otherwise retain them.
+ *
+ * @see RemoteCodes#PROTOCOL_BINARY
+ */
+final class BinaryProtocol {
+
+    // never instantiated
+    private BinaryProtocol() {}
+
+    static void writeClassBytecodes(DataOutput out, ClassBytecodes[] cbcs) throws IOException {
+        out.writeInt(cbcs.length);
+        for (ClassBytecodes cbc : cbcs) {
+            byte[] bytes = cbc.bytecodes();
+            out.writeUTF(cbc.name());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static ClassBytecodes[] readClassBytecodes(DataInput in) throws IOException {
+        ClassBytecodes[] cbcs = new ClassBytecodes[in.readInt()];
+        for (int i = 0; i < cbcs.length; i++) {
+            String name = in.readUTF();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            cbcs[i] = new ClassBytecodes(name, bytes);
+        }
+        return cbcs;
+    }
+
+    static void writeBooleans(DataOutput out, boolean[] bs) throws IOException {
+        out.writeInt(bs.length);
+        for (boolean b : bs) {
+            out.writeBoolean(b);
+        }
+    }
+
+    static boolean[] readBooleans(DataInput in) throws IOException {
+        boolean[] bs = new boolean[in.readInt()];
+        for (int i = 0; i < bs.length; i++) {
+            bs[i] = in.readBoolean();
+        }
+        return bs;
+    }
+
+    static void writeStackTrace(DataOutput out, StackTraceElement[] elems) throws IOException {
+        out.writeInt(elems.length);
+        for (StackTraceElement ste : elems) {
+            writeNullableUTF(out, ste.getClassLoaderName());
+            writeNullableUTF(out, ste.getModuleName());
+            writeNullableUTF(out, ste.getModuleVersion());
+            out.writeUTF(ste.getClassName());
+            out.writeUTF(ste.getMethodName());
+            writeNullableUTF(out, ste.getFileName());
+            out.writeInt(ste.getLineNumber());
+        }
+    }
+
+    static StackTraceElement[] readStackTrace(DataInput in) throws IOException {
+        StackTraceElement[] elems = new StackTraceElement[in.readInt()];
+        for (int i = 0; i < elems.length; i++) {
+            String classLoaderName = readNullableUTF(in);
+            String moduleName = readNullableUTF(in);
+            String moduleVersion = readNullableUTF(in);
+            String className = in.readUTF();
+            String methodName = in.readUTF();
+            String fileName = readNullableUTF(in);
+            int lineNumber = in.readInt();
+            elems[i] = new StackTraceElement(classLoaderName, moduleName, moduleVersion,
+                                             className, methodName, fileName, lineNumber);
+        }
+        return elems;
+    }
+
+    private static void writeNullableUTF(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableUTF(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
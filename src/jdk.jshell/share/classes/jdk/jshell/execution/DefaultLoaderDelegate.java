@@ -48,6 +48,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jdk.jshell.spi.ExecutionControl.ClassBytecodes;
 import jdk.jshell.spi.ExecutionControl.ClassInstallException;
@@ -67,7 +68,7 @@ class DefaultLoaderDelegate implements LoaderDelegate {
 
     private static class RemoteClassLoader extends URLClassLoader {
 
-        private final Map<String, ClassFile> classFiles = new HashMap<>();
+        private final Map<String, ClassFile> classFiles = new ConcurrentHashMap<>();
 
         RemoteClassLoader() {
             super(new URL[0]);
@@ -147,6 +148,28 @@ class DefaultLoaderDelegate implements LoaderDelegate {
             classFiles.put(toResourceString(name), new ClassFile(bytes, System.currentTimeMillis()));
         }
 
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            ClassFile file = classFiles.get(toResourceString(name));
+            if (file == null) {
+                return super.loadClass(name, resolve);
+            }
+            // Only this loader has the snippet classes: define them without
+            // asking the parent first, which would fail with an exception.
+            // A loaded class also wins over a class of the same name that
+            // the parent could find.
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> klass = findLoadedClass(name);
+                if (klass == null) {
+                    klass = defineClass(name, file.data, 0, file.data.length, (CodeSource) null);
+                }
+                if (resolve) {
+                    resolveClass(klass);
+                }
+                return klass;
+            }
+        }
+
         @Override
         protected Class<?> findClass(String name) throws ClassNotFoundException {
             ClassFile file = classFiles.get(toResourceString(name));
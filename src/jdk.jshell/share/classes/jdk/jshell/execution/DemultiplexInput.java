@@ -24,6 +24,7 @@
  */
 package jdk.jshell.execution;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,7 +47,7 @@ class DemultiplexInput extends Thread {
     DemultiplexInput(InputStream input, Map<String, OutputStream> io, Iterable<OutputStream> closeList) {
         super("output reader");
         setDaemon(true);
-        this.delegate = new DataInputStream(input);
+        this.delegate = new DataInputStream(new BufferedInputStream(input));
         this.io = io;
         this.closeList = closeList;
     }
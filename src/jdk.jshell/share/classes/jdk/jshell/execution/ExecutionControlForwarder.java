@@ -54,6 +54,7 @@ class ExecutionControlForwarder {
     private final ExecutionControl ec;
     private final ObjectInput in;
     private final ObjectOutput out;
+    private boolean binary = false;
 
     ExecutionControlForwarder(ExecutionControl ec, ObjectInput in, ObjectOutput out) {
         this.ec = ec;
@@ -93,6 +94,28 @@ class ExecutionControlForwarder {
         out.writeInt(i);
     }
 
+    private void writeBooleans(boolean[] bs) throws IOException {
+        if (binary) {
+            BinaryProtocol.writeBooleans(out, bs);
+        } else {
+            out.writeObject(bs);
+        }
+    }
+
+    private void writeStackTrace(StackTraceElement[] elems) throws IOException {
+        if (binary) {
+            BinaryProtocol.writeStackTrace(out, elems);
+        } else {
+            out.writeObject(elems);
+        }
+    }
+
+    private ClassBytecodes[] readClassBytecodes() throws IOException, ClassNotFoundException {
+        return binary
+                ? BinaryProtocol.readClassBytecodes(in)
+                : (ClassBytecodes[]) in.readObject();
+    }
+
     private void writeUTF(String s) throws IOException {
         if (s == null) {
             s = "";
@@ -117,13 +140,13 @@ class ExecutionControlForwarder {
             switch (cmd) {
                 case CMD_LOAD: {
                     // Load a generated class file over the wire
-                    ClassBytecodes[] cbcs = (ClassBytecodes[]) in.readObject();
+                    ClassBytecodes[] cbcs = readClassBytecodes();
                     ec.load(cbcs);
                     return writeSuccess();
                 }
                 case CMD_REDEFINE: {
                     // Load a generated class file over the wire
-                    ClassBytecodes[] cbcs = (ClassBytecodes[]) in.readObject();
+                    ClassBytecodes[] cbcs = readClassBytecodes();
                     ec.redefine(cbcs);
                     return writeSuccess();
                 }
@@ -156,6 +179,16 @@ class ExecutionControlForwarder {
                     }
                     return true;
                 }
+                case CMD_PROTOCOL: {
+                    // Switch encodings, once the agreed one has been reported
+                    Object requested = in.readObject();
+                    int protocol = Integer.valueOf(PROTOCOL_BINARY).equals(requested)
+                            ? PROTOCOL_BINARY
+                            : PROTOCOL_SERIAL;
+                    writeSuccessAndResult((Object) protocol);
+                    binary = protocol == PROTOCOL_BINARY;
+                    return true;
+                }
                 case CMD_CLOSE: {
                     // Terminate this process
                     try {
@@ -192,20 +225,20 @@ class ExecutionControlForwarder {
         } catch (ClassInstallException ex) {
             writeStatus(RESULT_CLASS_INSTALL_EXCEPTION);
             writeUTF(ex.getMessage());
-            writeObject(ex.installed());
+            writeBooleans(ex.installed());
             flush();
             return true;
         } catch (UserException ex) {
             writeStatus(RESULT_USER_EXCEPTION);
             writeUTF(ex.getMessage());
             writeUTF(ex.causeExceptionClass());
-            writeObject(ex.getStackTrace());
+            writeStackTrace(ex.getStackTrace());
             flush();
             return true;
         } catch (ResolutionException ex) {
             writeStatus(RESULT_CORRALLED);
             writeInt(ex.id());
-            writeObject(ex.getStackTrace());
+            writeStackTrace(ex.getStackTrace());
             flush();
             return true;
         } catch (StoppedException ex) {
@@ -87,11 +87,14 @@ public class JdiDefaultExecutionControl extends JdiExecutionControl {
      * otherwise we start explicitly and use ListeningConnector
      * @param host explicit hostname to use, if null use discovered
      * hostname, applies to listening only (!isLaunch)
+     * @param binaryProtocol should the binary encoding of commands and
+     * results be used, if the remote agent supports it?
      * @return the channel
      * @throws IOException if there are errors in set-up
      */
     static ExecutionControl create(ExecutionEnv env, String remoteAgent,
-            boolean isLaunch, String host, int timeout) throws IOException {
+            boolean isLaunch, String host, int timeout,
+            boolean binaryProtocol) throws IOException {
         try (final ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
             // timeout on I/O-socket
             listener.setSoTimeout(timeout);
@@ -114,6 +117,8 @@ public class JdiDefaultExecutionControl extends JdiExecutionControl {
             // Set-up the commands/reslts on the socket.  Piggy-back snippet
             // output.
             Socket socket = listener.accept();
+            // Commands and results are small, and each waits for the other
+            socket.setTcpNoDelay(true);
             // out before in -- match remote creation so we don't hang
             OutputStream out = socket.getOutputStream();
             Map<String, OutputStream> outputs = new HashMap<>();
@@ -121,9 +126,18 @@ public class JdiDefaultExecutionControl extends JdiExecutionControl {
             outputs.put("err", env.userErr());
             Map<String, InputStream> input = new HashMap<>();
             input.put("in", env.userIn());
-            return remoteInputOutput(socket.getInputStream(), out, outputs, input,
+            JdiDefaultExecutionControl ec = (JdiDefaultExecutionControl)
+                    remoteInputOutput(socket.getInputStream(), out, outputs, input,
                     (objIn, objOut) -> new JdiDefaultExecutionControl(env,
                                         objOut, objIn, vm, process, remoteAgent, deathListeners));
+            if (binaryProtocol) {
+                try {
+                    ec.useBinaryProtocol();
+                } catch (EngineTerminationException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+            return ec;
         }
     }
 
@@ -61,6 +61,11 @@ public class JdiExecutionControlProvider implements ExecutionControlProvider {
      */
     public static final String PARAM_LAUNCH = "launch";
 
+    /**
+     * The encoding of commands and results: "binary" or "serial".
+     */
+    public static final String PARAM_PROTOCOL = "protocol";
+
     /**
      * Default time-out expressed in milliseconds.
      */
@@ -117,6 +122,12 @@ public class JdiExecutionControlProvider implements ExecutionControlProvider {
      *     <td>connect to the named of the local host ("" for discovered)</td>
      *     <td>{@link #PARAM_HOST_NAME}</td>
      *   </tr>
+     *   <tr>
+     *     <td>protocol</td>
+     *     <td>"binary" to use the binary encoding, if the remote agent
+     *         supports it, or "serial" for serialization</td>
+     *     <td>{@link #PARAM_PROTOCOL}</td>
+     *   </tr>
      * </table>
      *
      * @return the default parameter map
@@ -128,6 +139,7 @@ public class JdiExecutionControlProvider implements ExecutionControlProvider {
         dp.put(PARAM_TIMEOUT, "" + DEFAULT_TIMEOUT);
         dp.put(PARAM_HOST_NAME, "");
         dp.put(PARAM_LAUNCH, "false");
+        dp.put(PARAM_PROTOCOL, "binary");
         return dp;
     }
 
@@ -145,7 +157,12 @@ public class JdiExecutionControlProvider implements ExecutionControlProvider {
         String sIsLaunch = parameters.getOrDefault(PARAM_LAUNCH, dp.get(PARAM_LAUNCH)).toLowerCase(Locale.ROOT);
         boolean isLaunch = sIsLaunch.length() > 0
                 && ("true".startsWith(sIsLaunch) || "yes".startsWith(sIsLaunch));
-        return JdiDefaultExecutionControl.create(env, remoteAgent, isLaunch, host, timeout);
+        String protocol = parameters.getOrDefault(PARAM_PROTOCOL, dp.get(PARAM_PROTOCOL)).toLowerCase(Locale.ROOT);
+        if (!protocol.equals("binary") && !protocol.equals("serial")) {
+            throw new IllegalArgumentException("Unknown protocol: " + protocol);
+        }
+        return JdiDefaultExecutionControl.create(env, remoteAgent, isLaunch, host, timeout,
+                protocol.equals("binary"));
     }
 
 }
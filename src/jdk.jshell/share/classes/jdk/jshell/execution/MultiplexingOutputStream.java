@@ -35,7 +35,8 @@ import java.io.UnsupportedEncodingException;
  */
 class MultiplexingOutputStream extends OutputStream {
 
-    private static final int PACKET_SIZE = 127;
+    // The packet length is read back as an unsigned byte
+    private static final int PACKET_SIZE = 255;
     private final byte[] name;
     private final OutputStream delegate;
 
@@ -55,19 +56,24 @@ class MultiplexingOutputStream extends OutputStream {
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        // Packetize all of the data, then write it at once
+        int packets = (len + PACKET_SIZE - 1) / PACKET_SIZE;
+        byte[] data = new byte[packets * (name.length + 2) + len];
+        int pos = 0;
+        int i = 0;
+        while (len > 0) {
+            int size = Math.min(PACKET_SIZE, len);
+            data[pos++] = (byte) name.length; //assuming the len is small enough to fit into byte
+            System.arraycopy(name, 0, data, pos, name.length);
+            pos += name.length;
+            data[pos++] = (byte) size;
+            System.arraycopy(b, off + i, data, pos, size);
+            pos += size;
+            i += size;
+            len -= size;
+        }
         synchronized (delegate) {
-            int i = 0;
-            while (len > 0) {
-                int size = Math.min(PACKET_SIZE, len);
-                byte[] data = new byte[name.length + 1 + size + 1];
-                data[0] = (byte) name.length; //assuming the len is small enough to fit into byte
-                System.arraycopy(name, 0, data, 1, name.length);
-                data[name.length + 1] = (byte) size;
-                System.arraycopy(b, off + i, data, name.length + 2, size);
-                delegate.write(data);
-                i += size;
-                len -= size;
-            }
+            delegate.write(data, 0, pos);
             delegate.flush();
         }
     }
@@ -35,7 +35,7 @@ import java.io.OutputStream;
 class PipeInputStream extends InputStream {
 
     private static final int INITIAL_SIZE = 128;
-    private int[] buffer = new int[INITIAL_SIZE];
+    private byte[] buffer = new byte[INITIAL_SIZE];
     private int start;
     private int end;
     private boolean closed;
@@ -56,7 +56,7 @@ class PipeInputStream extends InputStream {
             }
         }
         try {
-            return buffer[start];
+            return Byte.toUnsignedInt(buffer[start]);
         } finally {
             start = (start + 1) % buffer.length;
         }
@@ -78,38 +78,71 @@ class PipeInputStream extends InputStream {
         }
         b[off] = (byte)c;
 
+        // Copy whatever else is available, in at most two runs
         int totalRead = 1;
         while (totalRead < len && start != end) {
-            int r = read();
-            if (r == (-1))
-                break;
-            b[off + totalRead++] = (byte) r;
+            int run = Math.min(len - totalRead,
+                               (end > start ? end : buffer.length) - start);
+            System.arraycopy(buffer, start, b, off + totalRead, run);
+            start = (start + run) % buffer.length;
+            totalRead += run;
         }
         return totalRead;
     }
 
+    /**
+     * The number of bytes written to the pipe and not yet read.
+     */
+    protected synchronized int buffered() {
+        return (end - start + buffer.length) % buffer.length;
+    }
+
     protected void inputNeeded() throws IOException {}
 
     private synchronized void write(int b) {
+        ensureSpace(1);
+        buffer[end] = (byte) b;
+        end = (end + 1) % buffer.length;
+        notifyAll();
+    }
+
+    private synchronized void write(byte[] b, int off, int len) {
+        ensureSpace(len);
+        while (len > 0) {
+            int run = Math.min(len, buffer.length - end);
+            System.arraycopy(b, off, buffer, end, run);
+            end = (end + run) % buffer.length;
+            off += run;
+            len -= run;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Grow the buffer, if needed, so that len more bytes fit. One slot is
+     * always left free, so that a full buffer is not mistaken for an empty
+     * one.
+     */
+    private void ensureSpace(int len) {
         if (closed) {
             throw new IllegalStateException("Already closed.");
         }
-        int newEnd = (end + 1) % buffer.length;
-        if (newEnd == start) {
-            //overflow:
-            int[] newBuffer = new int[buffer.length * 2];
-            int rightPart = (end > start ? end : buffer.length) - start;
-            int leftPart = end > start ? 0 : start - 1;
-            System.arraycopy(buffer, start, newBuffer, 0, rightPart);
-            System.arraycopy(buffer, 0, newBuffer, rightPart, leftPart);
-            buffer = newBuffer;
-            start = 0;
-            end = rightPart + leftPart;
-            newEnd = end + 1;
+        int used = buffered();
+        if (used + len < buffer.length) {
+            return;
         }
-        buffer[end] = b;
-        end = newEnd;
-        notifyAll();
+        int size = buffer.length * 2;
+        while (used + len >= size) {
+            size *= 2;
+        }
+        byte[] newBuffer = new byte[size];
+        int rightPart = (end >= start ? end : buffer.length) - start;
+        int leftPart = end >= start ? 0 : end;
+        System.arraycopy(buffer, start, newBuffer, 0, rightPart);
+        System.arraycopy(buffer, 0, newBuffer, rightPart, leftPart);
+        buffer = newBuffer;
+        start = 0;
+        end = rightPart + leftPart;
     }
 
     @Override
@@ -125,9 +158,10 @@ class PipeInputStream extends InputStream {
             }
             @Override
             public void write(byte[] b, int off, int len) throws IOException {
-                for (int i = 0 ; i < len ; i++) {
-                    write(Byte.toUnsignedInt(b[off + i]));
+                if (off < 0 || len < 0 || len > b.length - off) {
+                    throw new IndexOutOfBoundsException();
                 }
+                PipeInputStream.this.write(b, off, len);
             }
             @Override
             public void close() throws IOException {
@@ -69,6 +69,24 @@ class RemoteCodes {
      * Stop an invoke.
      */
     static final String CMD_STOP           = "CMD_STOP";
+    /**
+     * Switch the encoding of commands and results.  Sent in the same form
+     * as an extension command, so that agents which do not know it report
+     * it as not implemented.
+     */
+    static final String CMD_PROTOCOL       = "CMD_PROTOCOL";
+
+    // Command and result encodings
+
+    /**
+     * Class bytes, install results and stack traces are serialized.
+     */
+    static final int PROTOCOL_SERIAL = 0;
+    /**
+     * Class bytes, install results and stack traces are written with the
+     * primitive data methods, see {@link BinaryProtocol}.
+     */
+    static final int PROTOCOL_BINARY = 1;
 
     // Return result codes
 
@@ -60,6 +60,7 @@ public class RemoteExecutionControl extends DirectExecutionControl implements Ex
     public static void main(String[] args) throws Exception {
         String loopBack = null;
         Socket socket = new Socket(loopBack, Integer.parseInt(args[0]));
+        socket.setTcpNoDelay(true);
         InputStream inStream = socket.getInputStream();
         OutputStream outStream = socket.getOutputStream();
         Map<String, Consumer<OutputStream>> outputs = new HashMap<>();
@@ -43,6 +43,7 @@ public class StreamingExecutionControl implements ExecutionControl {
 
     private final ObjectOutput out;
     private final ObjectInput in;
+    private boolean binary = false;
 
     /**
      * Creates an instance.
@@ -61,7 +62,7 @@ public class StreamingExecutionControl implements ExecutionControl {
         try {
             // Send a load command to the remote agent.
             writeCommand(CMD_LOAD);
-            out.writeObject(cbcs);
+            writeClassBytecodes(cbcs);
             out.flush();
             // Retrieve and report results from the remote agent.
             readAndReportClassInstallResult();
@@ -76,7 +77,7 @@ public class StreamingExecutionControl implements ExecutionControl {
         try {
             // Send a load command to the remote agent.
             writeCommand(CMD_REDEFINE);
-            out.writeObject(cbcs);
+            writeClassBytecodes(cbcs);
             out.flush();
             // Retrieve and report results from the remote agent.
             readAndReportClassInstallResult();
@@ -179,11 +180,50 @@ public class StreamingExecutionControl implements ExecutionControl {
         }
     }
 
+    /**
+     * Asks the remote agent to switch to the binary encoding of class bytes,
+     * install results and stack traces. An agent that does not support it
+     * reports the request as not implemented, and the serialized encoding
+     * stays in use.
+     *
+     * @return true if the binary encoding is now in use
+     * @throws EngineTerminationException the execution engine has terminated
+     */
+    boolean useBinaryProtocol() throws EngineTerminationException {
+        try {
+            writeCommand(CMD_PROTOCOL);
+            out.writeObject(PROTOCOL_BINARY);
+            out.flush();
+            readAndReportExecutionResult();
+            binary = (Integer) in.readObject() == PROTOCOL_BINARY;
+        } catch (RunException | InternalException ex) {
+            // Includes NotImplementedException, from agents that predate it
+            binary = false;
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            throw new EngineTerminationException("Exception negotiating remote protocol: " + ex);
+        }
+        return binary;
+    }
+
     private void writeCommand(String cmd) throws IOException {
         out.writeInt(COMMAND_PREFIX);
         out.writeUTF(cmd);
     }
 
+    private void writeClassBytecodes(ClassBytecodes[] cbcs) throws IOException {
+        if (binary) {
+            BinaryProtocol.writeClassBytecodes(out, cbcs);
+        } else {
+            out.writeObject(cbcs);
+        }
+    }
+
+    private StackTraceElement[] readStackTrace() throws IOException, ClassNotFoundException {
+        return binary
+                ? BinaryProtocol.readStackTrace(in)
+                : (StackTraceElement[]) in.readObject();
+    }
+
     /**
      * Reports results from a remote agent command that does not expect
      * exceptions.
@@ -232,7 +272,9 @@ public class StreamingExecutionControl implements ExecutionControl {
                 }
                 case RESULT_CLASS_INSTALL_EXCEPTION: {
                     String message = in.readUTF();
-                    boolean[] loaded = (boolean[]) in.readObject();
+                    boolean[] loaded = binary
+                            ? BinaryProtocol.readBooleans(in)
+                            : (boolean[]) in.readObject();
                     throw new ClassInstallException(message, loaded);
                 }
                 case RESULT_TERMINATED: {
@@ -275,13 +317,13 @@ public class StreamingExecutionControl implements ExecutionControl {
                     // A user exception was encountered.
                     String message = in.readUTF();
                     String exceptionClassName = in.readUTF();
-                    StackTraceElement[] elems = (StackTraceElement[]) in.readObject();
+                    StackTraceElement[] elems = readStackTrace();
                     throw new UserException(message, exceptionClassName, elems);
                 }
                 case RESULT_CORRALLED: {
                     // An unresolved reference was encountered.
                     int id = in.readInt();
-                    StackTraceElement[] elems = (StackTraceElement[]) in.readObject();
+                    StackTraceElement[] elems = readStackTrace();
                     ResolutionException re = new ResolutionException(id, elems);
                     throw re;
                 }
@@ -127,6 +127,26 @@ public class Util {
                             throw new IOException("Internal error: unrecognized message tag: " + tag);
                     }
                 }
+                @Override
+                public synchronized int read(byte[] b, int off, int len) throws IOException {
+                    // The data is tagged, so decode it a byte at a time
+                    if (len == 0) {
+                        return 0;
+                    }
+                    int c = read();
+                    if (c == -1) {
+                        return -1;
+                    }
+                    b[off] = (byte) c;
+                    int totalRead = 1;
+                    while (totalRead < len && buffered() > 0) {
+                        int r = read();
+                        if (r == (-1))
+                            break;
+                        b[off + totalRead++] = (byte) r;
+                    }
+                    return totalRead;
+                }
             };
             inputs.put(e.getKey(), inputPipe.createOutput());
             e.getValue().accept(inputPipe);
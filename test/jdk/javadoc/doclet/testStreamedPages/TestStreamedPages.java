@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test the pages whose main content is generated as the page
+ *          is written: the index, class use and constant values pages.
+ * @library ../lib
+ * @modules jdk.javadoc/jdk.javadoc.internal.tool
+ * @build JavadocTester
+ * @run main TestStreamedPages
+ */
+
+public class TestStreamedPages extends JavadocTester {
+
+    public static void main(String... args) throws Exception {
+        TestStreamedPages tester = new TestStreamedPages();
+        tester.runTests();
+    }
+
+    @Test
+    void testHtml5() {
+        javadoc("-d", "out-html5",
+                "-html5",
+                "-notimestamp",
+                "-use",
+                "-Xwritethreads", "2",
+                "-sourcepath", testSrc,
+                "pkg1", "pkg2", "pkg3");
+        checkExit(Exit.OK);
+
+        checkOutput("index-all.html", true,
+                "<h2 class=\"title\">L</h2>\n"
+                + "<dl>\n"
+                + "<dt><span class=\"memberNameLink\"><a href=\"pkg2/User.html#LIMIT\">LIMIT</a></span>"
+                + " - Static variable in class pkg2.<a href=\"pkg2/User.html\" title=\"class in pkg2\">User</a></dt>\n"
+                + "<dd>\n"
+                + "<div class=\"block\">The limit.</div>\n"
+                + "</dd>\n"
+                + "</dl>");
+
+        // the search index is filled in as the index is written
+        checkOutput("member-search-index.js", true,
+                "{\"p\":\"pkg2\",\"c\":\"User\",\"l\":\"LIMIT\"}",
+                "{\"p\":\"pkg3\",\"c\":\"Plain\",\"l\":\"value\"}");
+        checkOutput("type-search-index.js", true,
+                "{\"p\":\"pkg1\",\"l\":\"Constants\"}");
+
+        checkOutput("pkg1/class-use/Constants.html", true,
+                "<li class=\"blockList\">\n"
+                + "<section role=\"region\"><a id=\"pkg2\">\n"
+                + "<!--   -->\n"
+                + "</a>\n"
+                + "<h3>Uses of <a href=\"../../pkg1/Constants.html\" title=\"class in pkg1\">Constants</a>"
+                + " in <a href=\"../../pkg2/package-summary.html\">pkg2</a></h3>");
+
+        checkOutput("constant-values.html", true,
+                "<div class=\"constantValuesContainer\"><a id=\"pkg1\">\n"
+                + "<!--   -->\n"
+                + "</a>\n"
+                + "<section role=\"region\">\n"
+                + "<h2 title=\"pkg1\">pkg1.*</h2>",
+                "</section>\n"
+                + "<a id=\"pkg2\">\n"
+                + "<!--   -->\n"
+                + "</a>\n"
+                + "<section role=\"region\">\n"
+                + "<h2 title=\"pkg2\">pkg2.*</h2>",
+                "<td class=\"colLast\"><code>10L</code></td>\n"
+                + "</tr>\n"
+                + "</tbody>\n"
+                + "</table>\n"
+                + "</li>\n"
+                + "</ul>\n"
+                + "</section>\n"
+                + "</div>\n"
+                + "</main>");
+    }
+
+    @Test
+    void testSplitIndex() {
+        javadoc("-d", "out-split",
+                "-notimestamp",
+                "-splitindex",
+                "-Xwritethreads", "2",
+                "-sourcepath", testSrc,
+                "pkg1", "pkg2", "pkg3");
+        checkExit(Exit.OK);
+
+        checkOutput("index-files/index-3.html", true,
+                "<dl>\n"
+                + "<dt><span class=\"memberNameLink\"><a href=\"../pkg2/User.html#LIMIT\">LIMIT</a></span>");
+
+        // the search index is written after the last page of the index
+        checkOutput("member-search-index.js", true,
+                "{\"p\":\"pkg2\",\"c\":\"User\",\"l\":\"LIMIT\"}",
+                "{\"p\":\"pkg3\",\"c\":\"Plain\",\"l\":\"value\"}");
+        checkOutput("tag-search-index.js", true,
+                "{\"l\":\"constant\",\"h\":\"pkg1.Constants.FIRST\",\"u\":\"pkg1/Constants.html#constant\"}");
+
+        checkOutput("constant-values.html", true,
+                "</ul>\n"
+                + "<a name=\"pkg2\">\n"
+                + "<!--   -->\n"
+                + "</a>\n"
+                + "<h2 title=\"pkg2\">pkg2.*</h2>");
+    }
+
+    @Test
+    void testNoConstants() {
+        javadoc("-d", "out-none",
+                "-notimestamp",
+                "-sourcepath", testSrc,
+                "pkg3");
+        checkExit(Exit.OK);
+
+        checkOutput("constant-values.html", false,
+                "constantValuesContainer");
+    }
+}
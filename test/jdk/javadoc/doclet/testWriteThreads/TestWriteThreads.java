@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test that the pages written on several threads are the same as
+ *          those written on one thread.
+ * @library ../lib
+ * @modules jdk.javadoc/jdk.javadoc.internal.tool
+ * @build JavadocTester
+ * @run main TestWriteThreads
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class TestWriteThreads extends JavadocTester {
+
+    public static void main(String... args) throws Exception {
+        TestWriteThreads tester = new TestWriteThreads();
+        tester.runTests();
+    }
+
+    @Test
+    void testSameOutput() throws IOException {
+        String[] options = {
+            "-sourcepath", testSrc,
+            "-notimestamp",
+            "-use",
+            "-linksource",
+            "pkg1", "pkg2"
+        };
+        javadoc(concat(options, "-d", "out-serial"));
+        checkExit(Exit.OK);
+        javadoc(concat(options, "-d", "out-parallel", "-Xwritethreads", "4"));
+        checkExit(Exit.OK);
+
+        List<String> serial = listFiles("out-serial");
+        List<String> parallel = listFiles("out-parallel");
+        checking("files written");
+        if (serial.equals(parallel)) {
+            passed(serial.size() + " files");
+        } else {
+            failed("files differ: " + serial + ", " + parallel);
+        }
+        // the search index zip files hold the time at which they were written
+        diff("out-serial", "out-parallel", serial.stream()
+                .filter(f -> !f.endsWith(".zip"))
+                .toArray(String[]::new));
+    }
+
+    @Test
+    void testInvalidArgument() {
+        javadoc("-d", "out-invalid",
+                "-sourcepath", testSrc,
+                "-Xwritethreads", "0",
+                "pkg1");
+        checkExit(Exit.CMDERR);
+        checkOutput(Output.OUT, true,
+                "The argument for -Xwritethreads must be an integer greater than 0.");
+    }
+
+    private List<String> listFiles(String dir) throws IOException {
+        Path base = Paths.get(dir);
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .map(f -> base.relativize(f).toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String[] concat(String[] options, String... more) {
+        return Stream.concat(Stream.of(options), Stream.of(more)).toArray(String[]::new);
+    }
+}
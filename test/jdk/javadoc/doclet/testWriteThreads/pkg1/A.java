@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package pkg1;
+
+/**
+ * A class with members, inherited by {@link B}.
+ *
+ * @param <T> the type of the value
+ */
+public class A<T> implements Comparable<A<T>> {
+
+    /** The value. */
+    protected T value;
+
+    /**
+     * Creates an instance.
+     *
+     * @param value the value
+     */
+    public A(T value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the value.
+     *
+     * @return the value
+     * @see #set(Object)
+     */
+    public T get() {
+        return value;
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param value the new value
+     * @throws IllegalArgumentException if the value is {@code null}
+     */
+    public void set(T value) {
+        if (value == null)
+            throw new IllegalArgumentException();
+        this.value = value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int compareTo(A<T> other) {
+        return 0;
+    }
+}
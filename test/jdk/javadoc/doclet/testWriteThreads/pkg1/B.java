@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package pkg1;
+
+import pkg2.C;
+
+/**
+ * A class which inherits from {@link A}, and uses {@link C}.
+ */
+public class B extends A<String> {
+
+    /** A nested class. */
+    public static class Nested { }
+
+    /** A constant. */
+    public static final int CONSTANT = 42;
+
+    /**
+     * Creates an instance.
+     */
+    public B() {
+        super("b");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get() {
+        return value;
+    }
+
+    /**
+     * Returns a {@code C}.
+     *
+     * @param kind the kind of {@code C}
+     * @return a new {@code C}
+     * @deprecated use {@link C#C()}
+     */
+    @Deprecated
+    public C c(C.Kind kind) {
+        return new C();
+    }
+}
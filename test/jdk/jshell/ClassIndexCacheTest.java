@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that the class indexes used to suggest imports are kept
+ *          on disk, and used by a later process while the jar is unchanged.
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.jshell/jdk.jshell:open
+ * @build toolbox.ToolBox toolbox.JarTask toolbox.JavacTask
+ * @build Compiler TestingInputStream
+ * @run main/othervm ClassIndexCacheTest create
+ * @run main/othervm ClassIndexCacheTest reuse
+ * @run main/othervm ClassIndexCacheTest stale
+ * @run main/othervm ClassIndexCacheTest disabled
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import jdk.jshell.JShell;
+import jdk.jshell.SourceCodeAnalysis;
+
+public class ClassIndexCacheTest {
+
+    private static final FileTime JAR_TIME = FileTime.fromMillis(1_000_000_000_000L);
+
+    private final Compiler compiler = new Compiler();
+    private final Path outDir = Paths.get("ClassIndexCacheTest");
+    private final Path cacheDir = compiler.getPath(outDir).resolve("cache");
+
+    public static void main(String... args) throws Exception {
+        new ClassIndexCacheTest().run(args[0]);
+    }
+
+    void run(String phase) throws Exception {
+        if (phase.equals("disabled")) {
+            // Without the property, nothing is written to the home directory.
+            Path home = compiler.getPath(outDir).resolve("home");
+            System.setProperty("user.home", home.toString());
+            jar("p1");
+            checkFQNs("CachedClass", "p1.CachedClass");
+            check(!Files.exists(home.resolve(".jshell")), "indexes saved in " + home);
+            return;
+        }
+        System.setProperty("jdk.jshell.indexCacheDir", cacheDir.toString());
+        switch (phase) {
+            case "create":
+                // Index the jar and the JDK, and keep the indexes.
+                jar("p1");
+                checkFQNs("CachedClass", "p1.CachedClass");
+                check(Files.list(cacheDir).filter(f -> f.toString().endsWith(".idx")).count() >= 2,
+                      "indexes not saved");
+                break;
+            case "reuse":
+                // The jar has changed, but not its timestamp, so the index
+                // of the first process is used.
+                jar("p1", "p2");
+                checkFQNs("CachedClass", "p1.CachedClass");
+                checkFQNs("ArrayList", "java.util.ArrayList");
+                break;
+            case "stale":
+                // The jar is indexed again once its timestamp changes.
+                Path jar = jar("p1", "p2");
+                Files.setLastModifiedTime(jar, FileTime.fromMillis(JAR_TIME.toMillis() + 2000));
+                checkFQNs("CachedClass", "p1.CachedClass", "p2.CachedClass");
+                break;
+            default:
+                throw new IllegalArgumentException(phase);
+        }
+    }
+
+    Path jar(String... packages) throws Exception {
+        String[] classFiles = new String[packages.length];
+        for (int i = 0; i < packages.length; i++) {
+            compiler.compile(outDir, "package " + packages[i] + "; public class CachedClass { }");
+            classFiles[i] = packages[i] + "/CachedClass.class";
+        }
+        compiler.jar(outDir, "test.jar", classFiles);
+        Path jar = compiler.getPath(outDir).resolve("test.jar");
+        Files.setLastModifiedTime(jar, JAR_TIME);
+        return jar;
+    }
+
+    void checkFQNs(String code, String... expected) throws Exception {
+        try (JShell js = JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(new ByteArrayOutputStream()))
+                .err(new PrintStream(new ByteArrayOutputStream()))
+                .build()) {
+            js.addToClasspath(compiler.getPath(outDir).resolve("test.jar").toString());
+            SourceCodeAnalysis analysis = js.sourceCodeAnalysis();
+            long start = System.nanoTime();
+            Method waitBackgroundTaskFinished = analysis.getClass().getDeclaredMethod("waitBackgroundTaskFinished");
+            waitBackgroundTaskFinished.setAccessible(true);
+            waitBackgroundTaskFinished.invoke(analysis);
+            System.out.printf("indexed in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            List<String> names = analysis.listQualifiedNames(code, code.length()).getNames();
+            check(names.equals(Arrays.asList(expected)), "unexpected names for " + code + ": " + names);
+        }
+    }
+
+    void check(boolean cond, String message) {
+        if (!cond)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Time the completeness analysis of a large class pasted line by
+ *          line, and check that analysing each line incrementally gives the
+ *          same results as analysing the whole input afresh.
+ * @build TestingInputStream
+ * @run main CompletenessPasteBenchmark 500
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jshell.JShell;
+import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.SourceCodeAnalysis.CompletionInfo;
+
+/**
+ * Feeds a class to {@code analyzeCompletion} the way the tool does for a
+ * paste: each incomplete input is followed by a newline and the next line.
+ * Run with a larger line count to use as a benchmark:
+ * <pre>
+ *     java CompletenessPasteBenchmark 5000
+ * </pre>
+ */
+public class CompletenessPasteBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        List<String> lines = classLines(methods);
+        lines.add("int after = 1; after++");
+        try (JShell js = JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(new ByteArrayOutputStream()))
+                .err(new PrintStream(new ByteArrayOutputStream()))
+                .build()) {
+            SourceCodeAnalysis analysis = js.sourceCodeAnalysis();
+            // warm up
+            paste(analysis, classLines(50), false);
+            paste(analysis, classLines(50), true);
+
+            long t0 = System.nanoTime();
+            List<String> incremental = paste(analysis, lines, false);
+            long t1 = System.nanoTime();
+            List<String> full = paste(analysis, lines, true);
+            long t2 = System.nanoTime();
+            System.out.printf("%d lines  incremental %8.1f ms  full %8.1f ms%n",
+                    lines.size(), (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+            if (!incremental.equals(full)) {
+                for (int i = 0; i < incremental.size(); i++) {
+                    if (!incremental.get(i).equals(full.get(i))) {
+                        throw new AssertionError("Line " + i + " differs:\n"
+                                + incremental.get(i) + "\n" + full.get(i));
+                    }
+                }
+            }
+            String last = incremental.get(incremental.size() - 1);
+            if (!last.startsWith("COMPLETE ")) {
+                throw new AssertionError("Paste not complete: " + last);
+            }
+        }
+    }
+
+    /**
+     * Analyse the lines as the tool does. If {@code fresh}, another input is
+     * analysed before each line, so nothing of the previous one can be reused.
+     */
+    static List<String> paste(SourceCodeAnalysis analysis, List<String> lines, boolean fresh) {
+        List<String> results = new ArrayList<>();
+        String incomplete = "";
+        for (String line : lines) {
+            String input = incomplete + line;
+            if (fresh) {
+                analysis.analyzeCompletion("{");
+            }
+            CompletionInfo info = analysis.analyzeCompletion(input);
+            results.add(info.completeness() + " " + (info.source() == null ? -1 : info.source().length())
+                    + " " + info.remaining().length());
+            incomplete = info.completeness().isComplete()
+                    ? ""
+                    : info.remaining();
+        }
+        return results;
+    }
+
+    static List<String> classLines(int methods) {
+        List<String> lines = new ArrayList<>();
+        lines.add("public class Pasted {");
+        lines.add("    private final java.util.Map<String, int[]> values = new java.util.HashMap<>();");
+        for (int i = 0; i < methods; i++) {
+            lines.add("    /** Method " + i + ", with a {brace} in its comment. */");
+            lines.add("    int m" + i + "(int x) {");
+            lines.add("        if (x > " + i + ") {");
+            lines.add("            return values.getOrDefault(\"k" + i + "\", new int[] {x})[0];");
+            lines.add("        }");
+            lines.add("        String s = \"text with ; and } \" + x; // trailing comment");
+            lines.add("        return s.length() + (x << 2) + 'c';");
+            lines.add("    }");
+            lines.add("");
+        }
+        lines.add("}");
+        return lines;
+    }
+}
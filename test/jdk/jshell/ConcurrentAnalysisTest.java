@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test that completion, documentation and type analysis can be
+ *          used from another thread while a snippet is compiled or evaluated
+ * @build TestingInputStream
+ * @run testng ConcurrentAnalysisTest
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet.Status;
+import jdk.jshell.SnippetEvent;
+import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.SourceCodeAnalysis.Suggestion;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ConcurrentAnalysisTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Path done = Paths.get("ConcurrentAnalysisTest.done").toAbsolutePath();
+    private JShell state;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Files.deleteIfExists(done);
+        // The snippet being evaluated writes to the output once it runs
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                started.countDown();
+            }
+        };
+        state = JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(out, true))
+                .err(new PrintStream(new ByteArrayOutputStream()))
+                .build();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        state.close();
+        Files.deleteIfExists(done);
+    }
+
+    private List<String> complete(String code) {
+        return state.sourceCodeAnalysis().completionSuggestions(code, code.length(), new int[1])
+                .stream()
+                .map(Suggestion::continuation)
+                .collect(Collectors.toList());
+    }
+
+    // Evaluate the input on another thread, which runs until done exists
+    private CompletableFuture<List<SnippetEvent>> evalInBackground(String input) throws Exception {
+        state.eval("int await() throws Exception { System.out.println(); "
+                + "while (!java.nio.file.Files.exists(java.nio.file.Paths.get(\""
+                + done.toString().replace("\\", "\\\\") + "\"))) Thread.sleep(10); "
+                + "return 1; }");
+        CompletableFuture<List<SnippetEvent>> result =
+                CompletableFuture.supplyAsync(() -> state.eval(input));
+        assertTrue(started.await(60, TimeUnit.SECONDS), "evaluation did not start");
+        return result;
+    }
+
+    public void testAnalysisDuringEval() throws Exception {
+        state.eval("import java.util.*;");
+        state.eval("List<String> names = new ArrayList<>();");
+        state.eval("int square(int x) { return x * x; }");
+        CompletableFuture<List<SnippetEvent>> eval = evalInBackground("await()");
+        try {
+            assertEquals(complete("nam"), Arrays.asList("names"));
+            assertEquals(complete("names.isEm"), Arrays.asList("isEmpty()"));
+            assertEquals(state.sourceCodeAnalysis().analyzeType("names", 5), "List<String>");
+            List<SourceCodeAnalysis.Documentation> docs =
+                    state.sourceCodeAnalysis().documentation("square(", 7, false);
+            assertEquals(docs.size(), 1);
+            assertEquals(docs.get(0).signature(), "int square(int x)");
+            assertFalse(eval.isDone(), "evaluation finished before analysis");
+        } finally {
+            Files.createFile(done);
+        }
+        eval.get(60, TimeUnit.SECONDS);
+    }
+
+    public void testEvaluatedDeclarationNotSeenUntilDone() throws Exception {
+        CompletableFuture<List<SnippetEvent>> eval = evalInBackground("int fresh = await();");
+        try {
+            assertEquals(complete("fres"), Collections.emptyList());
+        } finally {
+            Files.createFile(done);
+        }
+        assertEquals(eval.get(60, TimeUnit.SECONDS).get(0).value(), "1");
+        assertEquals(complete("fres"), Arrays.asList("fresh"));
+        assertEquals(state.sourceCodeAnalysis().analyzeType("fresh", 5), "int");
+    }
+
+    public void testAnalysisDuringCompilation() throws Exception {
+        state.eval("import java.util.*;");
+        state.eval("List<String> names = new ArrayList<>();");
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            inputs.add("int v" + i + " = " + i + ";");
+            inputs.add("String m" + i + "(int x) { return \"m\" + x + v" + i + "; }");
+            inputs.add("class C" + i + " { List<String> l = names; }");
+        }
+        // Each declaration is compiled on its own while analysis runs
+        CompletableFuture<List<SnippetEvent>> eval = CompletableFuture.supplyAsync(() ->
+                inputs.stream()
+                        .flatMap(input -> state.eval(input).stream())
+                        .collect(Collectors.toList()));
+        int rounds = 0;
+        while (!eval.isDone() || rounds == 0) {
+            assertEquals(complete("names.isEm"), Arrays.asList("isEmpty()"));
+            assertEquals(state.sourceCodeAnalysis().analyzeType("names", 5), "List<String>");
+            assertEquals(state.sourceCodeAnalysis().analyzeType("new StringBuilder()", 19),
+                         "StringBuilder");
+            rounds++;
+        }
+        for (SnippetEvent e : eval.get(60, TimeUnit.SECONDS)) {
+            if (e.causeSnippet() == null) {
+                assertEquals(e.status(), Status.VALID, e.snippet().source());
+            }
+        }
+        assertEquals(complete("m9"), Arrays.asList("m9(", "m90(", "m91(", "m92(", "m93(",
+                                                   "m94(", "m95(", "m96(", "m97(", "m98(", "m99("));
+        assertEquals(state.sourceCodeAnalysis().analyzeType("new C99().l", 11), "List<String>");
+    }
+}
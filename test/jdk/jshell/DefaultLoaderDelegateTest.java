@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test which class wins when a class loaded by the default loader
+ *          delegate has the name of a class path class, and that a class
+ *          redefined after it was loaded stays the class that is found
+ * @modules jdk.compiler
+ *          jdk.jshell
+ * @build TestingInputStream
+ * @run testng DefaultLoaderDelegateTest
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.tools.ToolProvider;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet.Status;
+import jdk.jshell.SnippetEvent;
+import jdk.jshell.execution.DirectExecutionControl;
+import jdk.jshell.spi.ExecutionControl.ClassBytecodes;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class DefaultLoaderDelegateTest {
+
+    public void testLoadedClassShadowsClassPath() throws Exception {
+        Path dir = Paths.get("shadow");
+        Path src = dir.resolve("src/ShadowedClass.java");
+        Files.createDirectories(src.getParent());
+        Files.write(src, ("public class ShadowedClass {"
+                + " public static String get() { return \"loaded\"; } }").getBytes());
+        assertEquals(ToolProvider.getSystemJavaCompiler()
+                .run(null, null, null, "-d", dir.toString(), src.toString()), 0);
+        byte[] bytes = Files.readAllBytes(dir.resolve("ShadowedClass.class"));
+
+        Thread thread = Thread.currentThread();
+        ClassLoader prevLoader = thread.getContextClassLoader();
+        DirectExecutionControl ec = new DirectExecutionControl();
+        try {
+            ec.load(new ClassBytecodes[] { new ClassBytecodes("ShadowedClass", bytes) });
+            // The loaded class is used, not the one of the same name on the
+            // class path of the parent loader
+            assertEquals(ec.invoke("ShadowedClass", "get"), "\"loaded\"");
+            assertEquals(ShadowedClass.get(), "class path");
+        } finally {
+            ec.close();
+            thread.setContextClassLoader(prevLoader);
+        }
+    }
+
+    public void testRedefineAfterLoad() {
+        JShell state = JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(new ByteArrayOutputStream()))
+                .err(new PrintStream(new ByteArrayOutputStream()))
+                .build();
+        try {
+            eval(state, "class A { String v() { return \"1\"; } }");
+            assertEquals(eval(state, "new A().v()").value(), "\"1\"");
+            eval(state, "System.getProperties().put(\"A\", A.class);");
+            // Redefined in place, after the class was loaded
+            eval(state, "class A { String v() { return \"2\"; } }");
+            assertEquals(eval(state, "System.getProperties().get(\"A\") == A.class").value(), "true");
+            eval(state, "String w() { return new A().v(); }");
+            assertEquals(eval(state, "w()").value(), "\"2\"");
+            assertEquals(eval(state, "A.class.getClassLoader().loadClass(A.class.getName()) == A.class")
+                    .value(), "true");
+        } finally {
+            state.close();
+        }
+    }
+
+    private SnippetEvent eval(JShell state, String input) {
+        SnippetEvent e = state.eval(input).get(0);
+        assertEquals(e.status(), Status.VALID, input);
+        assertEquals(e.exception(), null, input);
+        return e;
+    }
+}
+
+class ShadowedClass {
+    public static String get() {
+        return "class path";
+    }
+}
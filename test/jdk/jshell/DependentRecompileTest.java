@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test that dependents of a redefined declaration are only
+ *          recompiled if they use a part of it whose signature changed
+ * @modules jdk.jshell/jdk.internal.jshell.debug
+ * @build TestingInputStream
+ * @run testng DependentRecompileTest
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import jdk.internal.jshell.debug.InternalDebugControl;
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet.Status;
+import jdk.jshell.SnippetEvent;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class DependentRecompileTest {
+
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private JShell state;
+
+    @BeforeMethod
+    public void setUp() {
+        state = JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(new ByteArrayOutputStream()))
+                .err(new PrintStream(err, true))
+                .build();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        state.close();
+    }
+
+    private void eval(String input) {
+        assertEquals(state.eval(input).get(0).status(), Status.VALID, input);
+    }
+
+    // The units recompiled as dependents, as reported by the debug output
+    private Set<String> evalRecompiled(String input) {
+        err.reset();
+        InternalDebugControl.setDebugFlags(state, InternalDebugControl.DBG_GEN);
+        try {
+            eval(input);
+        } finally {
+            InternalDebugControl.setDebugFlags(state, 0);
+        }
+        Set<String> deps = new TreeSet<>();
+        for (String line : err.toString().split("\n")) {
+            int start = line.indexOf("-- deps: [");
+            if (start >= 0) {
+                String list = line.substring(start + 10, line.indexOf(']', start));
+                if (!list.isEmpty()) {
+                    deps.addAll(Arrays.asList(list.split(", ")));
+                }
+            }
+        }
+        return deps;
+    }
+
+    public void testNewLocalClassesInMethod() {
+        eval("int g() { return 2; }");
+        eval("int useG() { return g(); }");
+        assertEquals(evalRecompiled("int g() { Runnable r = new Runnable() { public void run() { } }; return 3; }"),
+                     Collections.emptySet());
+        assertEquals(state.eval("useG()").get(0).value(), "3");
+    }
+
+    public void testNewLocalClassesInClass() {
+        eval("class A { int f() { return 1; } }");
+        eval("int useA() { return new A().f(); }");
+        eval("A makeA() { return new A(); }");
+        assertEquals(evalRecompiled("class A { int f() { return new Object() { int v = 4; }.v; } }"),
+                     Collections.emptySet());
+        assertEquals(state.eval("useA() + makeA().f()").get(0).value(), "8");
+    }
+
+    public void testNewMemberClass() {
+        eval("class A { }");
+        eval("int size(A a) { return 0; }");
+        SnippetEvent mk = state.eval("A.B mk() { return new A().new B(); }").get(0);
+        assertEquals(mk.status(), Status.RECOVERABLE_NOT_DEFINED);
+        // Only the user of the new member class is recompiled.
+        assertEquals(evalRecompiled("class A { class B { } }"), Collections.singleton("Unit(mk)"));
+        assertEquals(state.status(mk.snippet()), Status.VALID);
+        assertEquals(state.eval("mk() != null").get(0).value(), "true");
+    }
+
+    public void testReplacedDeclaration() {
+        eval("class A { int f() { return 1; } }");
+        eval("int useA() { return new A().f(); }");
+        // No VM can redefine a class to add a field, so the class holding A
+        // is replaced, and its dependents refer to it by name.
+        assertEquals(evalRecompiled("class A { private int v = 5; int f() { return v; } }"),
+                     Collections.singleton("Unit(useA)"));
+        assertEquals(state.eval("useA()").get(0).value(), "5");
+    }
+}
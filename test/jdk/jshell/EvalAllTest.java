@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test that JShell.evalAll gives the same events as evaluating
+ *          the inputs one at a time
+ * @build TestingInputStream
+ * @run testng EvalAllTest
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class EvalAllTest {
+
+    private JShell newJShell() {
+        return JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(new ByteArrayOutputStream()))
+                .err(new PrintStream(new ByteArrayOutputStream()))
+                .build();
+    }
+
+    private String describe(JShell js, SnippetEvent e) {
+        Snippet sn = e.snippet();
+        Snippet cause = e.causeSnippet();
+        String value = e.value();
+        return sn.id() + " " + sn.kind() + " " + sn.source().trim()
+                + " " + e.previousStatus() + "->" + e.status()
+                + " sig=" + e.isSignatureChange()
+                + " cause=" + (cause == null ? "-" : cause.id())
+                + " value=" + (value == null || value.contains("@") ? value == null : value)
+                + " exception=" + (e.exception() == null ? "-" : e.exception().getClass().getSimpleName())
+                + " diags=" + js.diagnostics(sn)
+                        .map(d -> d.getCode())
+                        .collect(Collectors.toList());
+    }
+
+    private void checkSameAsEval(List<String> inputs) {
+        List<String> expected = new ArrayList<>();
+        try (JShell js = newJShell()) {
+            for (String input : inputs) {
+                expected.add(js.eval(input).stream()
+                        .map(e -> describe(js, e))
+                        .collect(Collectors.joining("\n")));
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        try (JShell js = newJShell()) {
+            List<List<SnippetEvent>> events = js.evalAll(inputs);
+            assertEquals(events.size(), inputs.size(), "Number of event lists");
+            for (List<SnippetEvent> list : events) {
+                actual.add(list.stream()
+                        .map(e -> describe(js, e))
+                        .collect(Collectors.joining("\n")));
+            }
+        }
+        assertEquals(actual, expected);
+    }
+
+    public void testDeclarations() {
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            inputs.add("int f" + i + "(int x) { return x + " + i + "; }");
+            inputs.add("class K" + i + " { int v = f" + i + "(1); }");
+        }
+        inputs.add("f99(1) + new K7().v");
+        checkSameAsEval(inputs);
+    }
+
+    public void testMixed() {
+        checkSameAsEval(Arrays.asList(
+                "import java.util.*;",
+                "int sq(int x) { return x * x; }",
+                "int cube(int x) { return x * sq(x); }",
+                "interface Shape { double area(); }",
+                "class Square implements Shape { public double area() { return sq(2); } }",
+                "cube(3)",
+                "int x = cube(2);",
+                "enum Color { RED, GREEN }",
+                "@interface Ann { }",
+                "List<Color> colors() { return Arrays.asList(Color.values()); }",
+                "colors().size() + x",
+                "void twice() { } void"));
+    }
+
+    public void testForwardReferences() {
+        checkSameAsEval(Arrays.asList(
+                "void fwd() { later(); }",
+                "void later() { }",
+                "class R { Undefined u; }",
+                "class Undefined { }",
+                "new R().u"));
+    }
+
+    public void testErrors() {
+        checkSameAsEval(Arrays.asList(
+                "int bad() { return \"s\"; }",
+                "int usesBad() { return bad(); }",
+                "public static void mods() { }",
+                "synchronized void sync() { }",
+                "class E extends Missing { }",
+                "void ok() { }"));
+    }
+
+    public void testReplacements() {
+        checkSameAsEval(Arrays.asList(
+                "int sq(int x) { return x * x; }",
+                "int user() { return sq(3); }",
+                "int sq(int x) { return x * x + 1; }",
+                "user()",
+                "int ov(int a) { return a; }",
+                "int ov(String a) { return 1; }",
+                "int ov(java.lang.String a) { return 2; }",
+                "ov(\"x\") + ov(2)",
+                "class A { int f() { return 1; } }",
+                "class A { String f() { return \"a\"; } }",
+                "new A().f()"));
+    }
+}
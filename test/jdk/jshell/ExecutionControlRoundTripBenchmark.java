@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Compare the round trip times of the serialized and binary
+ *          protocols of JdiDefaultExecutionControl, and check that they
+ *          give the same results.
+ * @modules jdk.compiler
+ *          jdk.jdi
+ *          jdk.jshell
+ * @run main ExecutionControlRoundTripBenchmark 50
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import jdk.jshell.spi.ExecutionControl;
+import jdk.jshell.spi.ExecutionControl.ClassBytecodes;
+import jdk.jshell.spi.ExecutionControl.UserException;
+import jdk.jshell.spi.ExecutionEnv;
+
+/**
+ * Times load, invoke and varValue round trips to the remote agent, and a
+ * user exception with its stack trace, for each protocol. Run with a
+ * larger count, and optionally extra options for the remote VM, to use as
+ * a benchmark:
+ * <pre>
+ *     java ExecutionControlRoundTripBenchmark 2000 [remote VM options]
+ * </pre>
+ */
+public class ExecutionControlRoundTripBenchmark {
+
+    public static void main(String... args) throws Throwable {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        List<String> remoteVMOptions = args.length > 1
+                ? Arrays.asList(args).subList(1, args.length)
+                : Collections.emptyList();
+        ClassBytecodes[] classes = compile(count);
+
+        List<String> serial = run("jdi:protocol(serial)", classes, remoteVMOptions);
+        List<String> binary = run("jdi:protocol(binary)", classes, remoteVMOptions);
+        if (!serial.equals(binary)) {
+            throw new AssertionError("Results differ:\n" + serial + "\n" + binary);
+        }
+    }
+
+    static List<String> run(String spec, ClassBytecodes[] classes,
+                            List<String> remoteVMOptions) throws Throwable {
+        List<String> results = new ArrayList<>();
+        ExecutionControl ec = ExecutionControl.generate(new Env(remoteVMOptions), spec);
+        try {
+            long t0 = System.nanoTime();
+            for (ClassBytecodes cbc : classes) {
+                ec.load(new ClassBytecodes[] {cbc});
+            }
+            long t1 = System.nanoTime();
+            for (ClassBytecodes cbc : classes) {
+                results.add(ec.invoke(cbc.name(), "run"));
+            }
+            long t2 = System.nanoTime();
+            for (ClassBytecodes cbc : classes) {
+                results.add(ec.varValue(cbc.name(), "value"));
+            }
+            long t3 = System.nanoTime();
+            for (ClassBytecodes cbc : classes) {
+                try {
+                    ec.invoke(cbc.name(), "fail");
+                    throw new AssertionError("No exception from " + cbc.name());
+                } catch (UserException ex) {
+                    // StackTraceElement.toString depends on how it was created
+                    results.add(ex.causeExceptionClass() + " " + ex.getMessage());
+                    for (StackTraceElement ste : ex.getStackTrace()) {
+                        results.add(ste.getClassLoaderName() + " " + ste.getModuleName()
+                                + " " + ste.getModuleVersion() + " " + ste.getClassName()
+                                + " " + ste.getMethodName() + " " + ste.getFileName()
+                                + " " + ste.getLineNumber());
+                    }
+                }
+            }
+            long t4 = System.nanoTime();
+            System.out.printf("%-22s load %6.3f  invoke %6.3f  varValue %6.3f  exception %6.3f  ms/op%n",
+                    spec, ms(t1 - t0, classes.length), ms(t2 - t1, classes.length),
+                    ms(t3 - t2, classes.length), ms(t4 - t3, classes.length));
+        } finally {
+            ec.close();
+        }
+        return results;
+    }
+
+    static double ms(long nanos, int count) {
+        return nanos / 1e6 / count;
+    }
+
+    static ClassBytecodes[] compile(int count) throws Exception {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = "C" + i;
+            String code = "package bench;\n"
+                    + "public class " + name + " {\n"
+                    + "    public static int value = " + i + ";\n"
+                    + "    public static String run() { return \"run" + i + "\"; }\n"
+                    + "    public static String fail() { throw new IllegalStateException(\"" + i + "\"); }\n"
+                    + "}\n";
+            sources.add(new SimpleJavaFileObject(URI.create("mem:///bench/" + name + ".java"),
+                                                 JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return code;
+                }
+            });
+        }
+        Map<String, ByteArrayOutputStream> classFiles = new HashMap<>();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileManager fm = new ForwardingJavaFileManager<JavaFileManager>(
+                compiler.getStandardFileManager(null, null, null)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className + ".class"), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        classFiles.put(className, out);
+                        return out;
+                    }
+                };
+            }
+        };
+        if (!compiler.getTask(null, fm, null, null, null, sources).call()) {
+            throw new AssertionError("Compilation failed");
+        }
+        ClassBytecodes[] classes = new ClassBytecodes[count];
+        for (int i = 0; i < count; i++) {
+            String name = "bench.C" + i;
+            classes[i] = new ClassBytecodes(name, classFiles.get(name).toByteArray());
+        }
+        return classes;
+    }
+
+    static class Env implements ExecutionEnv {
+        private final List<String> remoteVMOptions;
+
+        Env(List<String> remoteVMOptions) {
+            this.remoteVMOptions = remoteVMOptions;
+        }
+
+        @Override
+        public InputStream userIn() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public PrintStream userOut() {
+            return System.out;
+        }
+
+        @Override
+        public PrintStream userErr() {
+            return System.err;
+        }
+
+        @Override
+        public List<String> extraRemoteVMOptions() {
+            return remoteVMOptions;
+        }
+
+        @Override
+        public void closeDown() {
+        }
+    }
+}
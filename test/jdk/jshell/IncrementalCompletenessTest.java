@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test that completeness analysis that reuses the analysis of the
+ *          previous input gives the same result as analysing the input alone
+ * @build KullaTesting TestingInputStream CompletenessTest
+ * @run testng IncrementalCompletenessTest
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import jdk.jshell.SourceCodeAnalysis.CompletionInfo;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class IncrementalCompletenessTest extends KullaTesting {
+
+    // Not a prefix of any input, so the input after it is analysed afresh
+    private static final String UNRELATED = "?";
+
+    static final String[] sources = new String[] {
+        "int x = y >>> 2;",
+        "double d = 1.5e10 + .5;",
+        "String s = \"a \\\" {\";",
+        "char c = '}'; char q = '\\'';",
+        "int i; // comment {\nint j = 1; /* { */ int k;",
+        "/** doc { */ void m() { }",
+        "@Deprecated(since = \"9\") int z;",
+        "@interface Ann { int value() default 1; }",
+        "class A {\n  void m() {\n    int[] a = {1};\n  }\n}\nint after;",
+        "enum E { A, B; void m() { } }",
+        "for (int i = 0; i < 10; i++) { x += i; }",
+        "if (a) { b(); } else { c(); }",
+        "Runnable r = () -> { System.out.println(\"{\"); };",
+        "new Object() { int f; }.f",
+        "import java.util.*;",
+        "List<List<String>> l = m(a < b, c > d);",
+        "void m() { return; } }",
+    };
+
+    private static List<String> inputs() {
+        List<String> inputs = new ArrayList<>();
+        for (String[] ins : new String[][] {CompletenessTest.complete,
+                CompletenessTest.expression, CompletenessTest.complete_with_semi,
+                CompletenessTest.considered_incomplete,
+                CompletenessTest.definitely_incomplete, CompletenessTest.unknown,
+                sources}) {
+            inputs.addAll(Arrays.asList(ins));
+        }
+        return inputs;
+    }
+
+    // Analyse the input right after the previous input, and check the
+    // result against that of analysing the input alone
+    private void assertIncremental(String previous, String input) {
+        getAnalysis().analyzeCompletion(previous);
+        CompletionInfo incremental = getAnalysis().analyzeCompletion(input);
+        getAnalysis().analyzeCompletion(UNRELATED);
+        CompletionInfo fresh = getAnalysis().analyzeCompletion(input);
+        String msg = "'" + previous + "' then '" + input + "'";
+        assertEquals(incremental.completeness(), fresh.completeness(), msg);
+        assertEquals(incremental.source(), fresh.source(), msg);
+        assertEquals(incremental.remaining(), fresh.remaining(), msg);
+    }
+
+    // Append the continuation to the start one character at a time
+    private void assertAppended(String start, String continuation) {
+        String previous = start;
+        for (int end = 1; end <= continuation.length(); end++) {
+            String input = start + continuation.substring(0, end);
+            assertIncremental(previous, input);
+            previous = input;
+        }
+    }
+
+    public void testAppendedInput() {
+        for (String input : inputs()) {
+            assertAppended("", input);
+        }
+    }
+
+    public void testAppendedLines() {
+        assertIncremental("int x;\n", "int x;\nint y;");
+        assertIncremental("class A {\n", "class A {\n  int f;\n");
+        assertIncremental("class A {\n  int f;\n", "class A {\n  int f;\n}");
+        assertIncremental("void m() {\n  int a = 1;\n", "void m() {\n  int a = 1;\n}\nint b;");
+    }
+
+    public void testDeletedInput() {
+        for (String input : inputs()) {
+            for (int pos = 0; pos < input.length(); pos++) {
+                assertIncremental(input, input.substring(0, pos) + input.substring(pos + 1));
+            }
+            for (int pos = 0; pos < input.length() / 2; pos++) {
+                assertIncremental(input, input.substring(0, pos) + input.substring(input.length() - pos));
+            }
+        }
+    }
+
+    public void testEditedInput() {
+        String[] edits = {"{", "}", "\"", "'", "/*", "//", "@", ";", " ", "\n", "x", "<"};
+        for (String input : inputs()) {
+            for (int pos = 0; pos < input.length(); pos++) {
+                for (String edit : edits) {
+                    String inserted = input.substring(0, pos) + edit + input.substring(pos);
+                    String replaced = input.substring(0, pos) + edit + input.substring(pos + 1);
+                    assertIncremental(input, inserted);
+                    assertIncremental(inserted, input);
+                    assertIncremental(input, replaced);
+                }
+            }
+        }
+    }
+
+    public void testResumeInString() {
+        assertAppended("String s = \"abc", " {def\";");
+        assertAppended("String s = \"abc", "\\\" \\\\\";");
+        assertAppended("String s = \"abc", "\nint x;");
+        assertAppended("char c = '", "\\'';");
+        assertAppended("char c = '", "x'; int y;");
+        assertAppended("m(\"a\", \"", "b\")");
+    }
+
+    public void testResumeInComment() {
+        assertAppended("int x; /* comment", " { still */ int y;");
+        assertAppended("int x; /* comment *", "/ int y;");
+        assertAppended("int x; /** doc", " {@code x} */ int y;");
+        assertAppended("int x; // line", " {\nint y;");
+        assertAppended("int x = 1 /", "/ c\n;");
+        assertAppended("int x = 1 /", "* c */ + 2;");
+        assertAppended("int x = 1 /", " 2;");
+    }
+
+    public void testResumeAfterAnnotationSign() {
+        assertAppended("@", "Deprecated int x;");
+        assertAppended("@", " Deprecated(since = \"9\") int x;");
+        assertAppended("@", "interface A { int v() default 1; }");
+        assertAppended("@", "FunctionalInterface interface F { void m(); }");
+        assertAppended("@Deprecated(", "since = \"{\") class A { }");
+        assertAppended("@SuppressWarnings({\"", "a\", \"b\"}) void m() { }");
+        assertAppended("class A { @", "Override public String toString() { return \"\"; } }");
+    }
+}
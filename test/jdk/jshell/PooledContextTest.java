@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Test that no symbols of redefined or dropped snippets survive
+ *          in the javac contexts that JShell reuses across tasks
+ * @build TestingInputStream
+ * @run testng PooledContextTest
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet;
+import jdk.jshell.Snippet.Status;
+import jdk.jshell.SnippetEvent;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class PooledContextTest {
+
+    // Enough rounds that each pooled context is reused many times
+    private static final int ROUNDS = 20;
+
+    private JShell state;
+
+    @BeforeMethod
+    public void setUp() {
+        state = JShell.builder()
+                .in(new TestingInputStream())
+                .out(new PrintStream(new ByteArrayOutputStream()))
+                .err(new PrintStream(new ByteArrayOutputStream()))
+                .build();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        state.close();
+    }
+
+    private Snippet eval(String input) {
+        List<SnippetEvent> events = state.eval(input);
+        assertEquals(events.get(0).status(), Status.VALID, input);
+        return events.get(0).snippet();
+    }
+
+    private void assertValue(String expr, String value) {
+        List<SnippetEvent> events = state.eval(expr);
+        assertEquals(events.get(0).status(), Status.VALID, expr);
+        assertEquals(events.get(0).value(), value, expr);
+    }
+
+    private void assertRejected(String input) {
+        assertEquals(state.eval(input).get(0).status(), Status.REJECTED, input);
+    }
+
+    public void testReplacedMethod() {
+        for (int i = 0; i < ROUNDS; i++) {
+            if (i % 2 == 0) {
+                eval("int f() { return " + i + "; }");
+                assertValue("f()", Integer.toString(i));
+            } else {
+                eval("String f() { return \"s" + i + "\"; }");
+                assertValue("f()", "\"s" + i + "\"");
+                assertRejected("int n = f();");
+            }
+        }
+    }
+
+    public void testReplacedClass() {
+        for (int i = 0; i < ROUNDS; i++) {
+            eval("class A { int f" + i + " = " + i + "; }");
+            assertValue("new A().f" + i, Integer.toString(i));
+            assertRejected("new A().f" + (i - 1));
+            assertValue("A.class.getDeclaredFields().length", "1");
+        }
+    }
+
+    public void testOverloads() {
+        eval("String g(Object o) { return \"Object\"; }");
+        for (int i = 0; i < ROUNDS; i++) {
+            Snippet str = eval("String g(String s) { return \"String\"; }");
+            assertValue("g(\"a\")", "\"String\"");
+            Snippet num = eval("String g(Integer n) { return \"Integer\"; }");
+            assertValue("g(1)", "\"Integer\"");
+            state.drop(str);
+            assertValue("g(\"a\")", "\"Object\"");
+            state.drop(num);
+            assertValue("g(1)", "\"Object\"");
+        }
+    }
+
+    public void testClassToInterface() {
+        for (int i = 0; i < ROUNDS; i++) {
+            eval("class K { int v() { return " + i + "; } }");
+            assertValue("new K().v()", Integer.toString(i));
+            assertRejected("class L" + i + " implements K { }");
+            eval("interface K { int v(); }");
+            assertRejected("new K()");
+            assertValue("new K() { public int v() { return -1; } }.v()", "-1");
+            assertValue("K.class.isInterface()", "true");
+        }
+    }
+
+    public void testDropped() {
+        for (int i = 0; i < ROUNDS; i++) {
+            Snippet h = eval("int h" + (i % 2) + "() { return " + i + "; }");
+            Snippet d = eval("class D { int v = " + i + "; }");
+            assertValue("h" + (i % 2) + "() + new D().v", Integer.toString(2 * i));
+            state.drop(h);
+            state.drop(d);
+            assertRejected("h" + (i % 2) + "()");
+            assertRejected("new D()");
+        }
+    }
+
+    public void testImportShadowing() {
+        eval("import java.util.*;");
+        for (int i = 0; i < ROUNDS; i++) {
+            assertValue("List.class.getName()", "\"java.util.List\"");
+            Snippet list = eval("class List { int size() { return " + i + "; } }");
+            assertValue("new List().size()", Integer.toString(i));
+            assertRejected("List<String> l = null;");
+            state.drop(list);
+            Snippet awt = eval("import java.awt.List;");
+            assertValue("List.class.getName()", "\"java.awt.List\"");
+            state.drop(awt);
+            eval("List<String> l = Arrays.asList(\"a\");");
+            assertValue("l.size()", "1");
+        }
+    }
+}
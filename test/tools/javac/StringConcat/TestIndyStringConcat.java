@@ -57,6 +57,14 @@ import java.io.File;
  * @clean TestIndyStringConcat*
  * @compile -XDstringConcat=indyWithConstants -source 9 -target 9 TestIndyStringConcat.java
  * @run main TestIndyStringConcat true
+ *
+ * @clean TestIndyStringConcat*
+ * @compile -XDstringConcat=indyShared -source 9 -target 9 TestIndyStringConcat.java
+ * @run main TestIndyStringConcat true
+ *
+ * @clean TestIndyStringConcat*
+ * @compile -XDstringConcat=indyShared -XDstringConcat.inlineThreshold=2 -source 9 -target 9 TestIndyStringConcat.java
+ * @run main TestIndyStringConcat false
  */
 public class TestIndyStringConcat {
 
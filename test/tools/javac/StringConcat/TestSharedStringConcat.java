@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+import com.sun.tools.classfile.*;
+
+import java.io.File;
+
+/*
+ * @test
+ * @summary Test that -XDstringConcat=indyShared shares bootstrap methods between
+ *          concatenations that only differ in their constants
+ * @modules jdk.jdeps/com.sun.tools.classfile
+ *
+ * @clean TestSharedStringConcat*
+ * @compile -XDstringConcat=indyWithConstants -source 9 -target 9 TestSharedStringConcat.java
+ * @run main TestSharedStringConcat 4
+ *
+ * @clean TestSharedStringConcat*
+ * @compile -XDstringConcat=indyShared -source 9 -target 9 TestSharedStringConcat.java
+ * @run main TestSharedStringConcat 2
+ */
+public class TestSharedStringConcat {
+
+    // Only the concatenations in this class are counted
+    static class Concats {
+        static String one(int i)   { return "one: " + i; }
+        static String two(int i)   { return "two: " + i; }
+        static String three(int i) { return "three: " + i; }
+        static String same1(String s) { return "same " + s; }
+        static String same2(String s) { return "same " + s; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String result = String.join("|", Concats.one(1), Concats.two(2), Concats.three(3),
+                Concats.same1("a"), Concats.same2("b"));
+        if (!result.equals("one: 1|two: 2|three: 3|same a|same b")) {
+            throw new AssertionError("unexpected result: " + result);
+        }
+
+        int expected = Integer.valueOf(args[0]);
+        ClassFile classFile = ClassFile.read(new File(System.getProperty("test.classes", "."),
+                Concats.class.getName() + ".class"));
+        BootstrapMethods_attribute bsm_attr =
+                (BootstrapMethods_attribute)classFile
+                        .getAttribute(Attribute.BootstrapMethods);
+        int actual = bsm_attr.bootstrap_method_specifiers.length;
+        if (expected != actual) {
+            throw new AssertionError("expected = " + expected + ", actual = " + actual);
+        }
+    }
+}
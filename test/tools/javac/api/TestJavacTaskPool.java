@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that tasks from a JavacTaskPool reuse released contexts,
+ *          and see the classes compiled by earlier tasks afresh.
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.util
+ * @run main TestJavacTaskPool
+ */
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTaskPool;
+import com.sun.tools.javac.util.Context;
+
+public class TestJavacTaskPool {
+    public static void main(String... args) throws Exception {
+        new TestJavacTaskPool().run();
+    }
+
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    final JavacTaskPool pool = new JavacTaskPool(1);
+
+    void run() throws Exception {
+        Path classes = Paths.get("classes");
+        Files.createDirectories(classes);
+        try (StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, null)) {
+            List<String> options = Arrays.asList("-d", classes.toString(),
+                                                 "-classpath", classes.toString());
+
+            Context first = compile(fm, options, true,
+                    "package p; public class A { public static int v() { return 1; } }");
+
+            // The released context is used again, and sees the new A.
+            Context second = compile(fm, options, true,
+                    "package p; public class A { public static String s() { return \"\"; } }",
+                    "package q; class B { String s = p.A.s(); }");
+            check(second == first, "context not reused");
+
+            // A method that no longer exists is reported.
+            DiagnosticCollector<JavaFileObject> dc = new DiagnosticCollector<>();
+            JavacTaskImpl task = pool.getTask(null, fm, dc, options, null,
+                    sources("package q; class C { int i = p.A.v(); }"));
+            check(task.getContext() == first, "context not reused");
+            check(!task.call(), "compilation against a stale class succeeded");
+            check(dc.getDiagnostics().size() == 1, "unexpected diagnostics: " + dc.getDiagnostics());
+            pool.release(task.getContext());
+
+            // Other options get a context of their own.
+            List<String> other = new ArrayList<>(options);
+            other.add("-g");
+            check(compile(fm, other, true, "package r; class D { }") != first,
+                  "context shared between different options");
+
+            // After the pool is cleared, a new context is created.
+            pool.clear();
+            check(compile(fm, options, true, "package r; class D { }") != first,
+                  "context reused after clear");
+        }
+    }
+
+    Context compile(StandardJavaFileManager fm, List<String> options, boolean expectOK,
+                    String... code) throws IOException {
+        DiagnosticCollector<JavaFileObject> dc = new DiagnosticCollector<>();
+        JavacTaskImpl task = pool.getTask(null, fm, dc, options, null, sources(code));
+        Context context = task.getContext();
+        boolean ok = task.call();
+        for (Diagnostic<?> d : dc.getDiagnostics()) {
+            System.err.println(d);
+        }
+        check(ok == expectOK, "unexpected result: " + ok);
+        pool.release(context);
+        return context;
+    }
+
+    List<JavaFileObject> sources(String... code) {
+        List<JavaFileObject> files = new ArrayList<>();
+        for (String c : code) {
+            String name = c.replaceAll("(?s)^package ([a-z]+);.*? class ([A-Z]+).*", "$1/$2");
+            files.add(new SimpleJavaFileObject(URI.create("mem:///" + name + ".java"),
+                                               JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return c;
+                }
+            });
+        }
+        return files;
+    }
+
+    void check(boolean cond, String message) {
+        if (!cond)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that file managers with shared archives open each archive
+ *          once, keep it open while in use, and notice when it changes.
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.file
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.jartool/sun.tools.jar
+ * @build toolbox.JarTask toolbox.JavacTask toolbox.ToolBox
+ * @run main ShareArchives
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import com.sun.tools.javac.file.JavacFileManager;
+
+import toolbox.JarTask;
+import toolbox.JavacTask;
+import toolbox.ToolBox;
+
+public class ShareArchives {
+    public static void main(String... args) throws Exception {
+        new ShareArchives().run();
+    }
+
+    final ToolBox tb = new ToolBox();
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    void run() throws Exception {
+        Path lib = Paths.get("lib.jar");
+        createLibrary(lib, "one");
+
+        // Concurrent compilations against the jar share one file system.
+        JavacFileManager fm1 = newFileManager(lib, true);
+        JavacFileManager fm2 = newFileManager(lib, true);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> f1 = pool.submit(() -> compile(fm1, "C1"));
+            Future<Boolean> f2 = pool.submit(() -> compile(fm2, "C2"));
+            check(f1.get() && f2.get(), "compilations against the shared archive failed");
+        } finally {
+            pool.shutdown();
+        }
+        FileSystem shared = archiveFileSystem(fm1);
+        check(shared == archiveFileSystem(fm2), "archive not shared");
+
+        // A file manager that does not ask for sharing gets its own.
+        try (JavacFileManager own = newFileManager(lib, false)) {
+            check(archiveFileSystem(own) != shared, "archive shared without being asked for");
+        }
+
+        // The archive stays open until its last user is closed.
+        fm1.close();
+        check(shared.isOpen(), "archive closed while still in use");
+        check(readValue(fm2).equals("one"), "unexpected contents");
+
+        // A rewritten archive is opened afresh, while existing users still
+        // see the contents they started with.
+        Path lib2 = Paths.get("lib2.jar");
+        createLibrary(lib2, "three");
+        Files.move(lib2, lib, StandardCopyOption.REPLACE_EXISTING);
+        try (JavacFileManager fm3 = newFileManager(lib, true)) {
+            check(archiveFileSystem(fm3) != shared, "rewritten archive not reopened");
+            check(readValue(fm3).equals("three"), "rewritten archive has stale contents");
+            check(readValue(fm2).equals("one"), "existing user sees rewritten archive");
+        }
+        fm2.close();
+        check(!shared.isOpen(), "archive not closed by its last user");
+    }
+
+    void createLibrary(Path jar, String value) throws IOException {
+        Path src = Paths.get("src-" + value);
+        Path classes = Paths.get("classes-" + value);
+        tb.writeJavaFiles(src,
+                "package p; public class Lib { public static final String VALUE = \"" + value + "\"; }");
+        tb.createDirectories(classes);
+        new JavacTask(tb)
+                .outdir(classes)
+                .files(tb.findJavaFiles(src))
+                .run()
+                .writeAll();
+        new JarTask(tb, jar)
+                .baseDir(classes)
+                .files("p/Lib.class")
+                .run();
+    }
+
+    JavacFileManager newFileManager(Path lib, boolean share) throws IOException {
+        JavacFileManager fm = (JavacFileManager) compiler.getStandardFileManager(null, null, null);
+        fm.setArchivesShared(share);
+        fm.setLocationFromPaths(StandardLocation.CLASS_PATH, Arrays.asList(lib));
+        return fm;
+    }
+
+    boolean compile(JavacFileManager fm, String name) throws IOException {
+        Path src = Paths.get("src-" + name);
+        Path classes = Paths.get("classes-" + name);
+        tb.writeJavaFiles(src, "class " + name + " { String s = p.Lib.VALUE; }");
+        tb.createDirectories(classes);
+        fm.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, Arrays.asList(classes));
+        Iterable<? extends JavaFileObject> files =
+                fm.getJavaFileObjectsFromPaths(Arrays.asList(tb.findJavaFiles(src)));
+        return compiler.getTask(null, fm, null, null, null, files).call();
+    }
+
+    JavaFileObject libClass(JavacFileManager fm) throws IOException {
+        Iterator<JavaFileObject> it = fm.list(StandardLocation.CLASS_PATH, "p",
+                EnumSet.of(JavaFileObject.Kind.CLASS), false).iterator();
+        check(it.hasNext(), "p.Lib not found");
+        return it.next();
+    }
+
+    FileSystem archiveFileSystem(JavacFileManager fm) throws IOException {
+        return fm.asPath(libClass(fm)).getFileSystem();
+    }
+
+    String readValue(JavacFileManager fm) throws IOException {
+        try (InputStream in = libClass(fm).openInputStream()) {
+            String contents = new String(in.readAllBytes(), "ISO-8859-1");
+            return contents.contains("three") ? "three" : contents.contains("one") ? "one" : "?";
+        }
+    }
+
+    void check(boolean cond, String message) {
+        if (!cond)
+            throw new AssertionError(message);
+    }
+}
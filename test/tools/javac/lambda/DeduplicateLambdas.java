@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that -XDdeduplicateLambdas shares one synthetic method
+ *          between structurally identical lambdas on the same source lines
+ * @modules jdk.jdeps/com.sun.tools.classfile
+ *
+ * @clean DeduplicateLambdas*
+ * @compile DeduplicateLambdas.java
+ * @run main DeduplicateLambdas 14
+ *
+ * @clean DeduplicateLambdas*
+ * @compile -XDdeduplicateLambdas DeduplicateLambdas.java
+ * @run main DeduplicateLambdas 11
+ */
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.sun.tools.classfile.ClassFile;
+import com.sun.tools.classfile.Method;
+
+public class DeduplicateLambdas {
+
+    int field = 3;
+
+    // shared: same body on the same line, different parameter names
+    static List<Function<String, String>> trims() { return Arrays.asList(s -> s.trim(), t -> t.trim()); }
+
+    // not shared: same body on different lines
+    static Function<String, String> trim1() { return s -> s.trim(); }
+    static Function<String, String> trim2() { return s -> s.trim(); }
+
+    // not shared: same body with its statements on different lines
+    static List<Supplier<Integer>> blocks() {
+        return Arrays.asList(() -> { int a = 1;
+                                     return a; }, () -> { int a = 1; return a; });
+    }
+
+    // not shared: different erased signatures
+    static Function<Integer, Integer> id1 = x -> x; static Function<String, String> id2 = x -> x;
+
+    // shared: same captured variable types
+    static List<Supplier<Integer>> incs(int k, int j) { return Arrays.asList(() -> k + 1, () -> j + 1); }
+
+    // shared: instance lambdas
+    List<Supplier<Integer>> gets() { return Arrays.asList(() -> field, () -> field); }
+
+    // not shared: serializable lambdas keep their own methods
+    interface SerSupplier extends Supplier<String>, Serializable { }
+    static List<SerSupplier> sers() { return Arrays.asList(() -> "s", () -> "s"); }
+
+    public static void main(String... args) throws Exception {
+        DeduplicateLambdas d = new DeduplicateLambdas();
+        String result = trims().get(0).apply(" a ") + trims().get(1).apply(" b ") +
+                trim1().apply(" c ") + trim2().apply(" d ") +
+                blocks().get(0).get() + blocks().get(1).get() +
+                id1.apply(1) + id2.apply("e") +
+                incs(1, 2).get(0).get() + incs(1, 2).get(1).get() +
+                d.gets().get(0).get() + d.gets().get(1).get() +
+                sers().get(0).get() + sers().get(1).get();
+        if (!result.equals("abcd111e2333ss")) {
+            throw new AssertionError("unexpected result: " + result);
+        }
+
+        int expected = Integer.valueOf(args[0]);
+        ClassFile classFile = ClassFile.read(new File(System.getProperty("test.classes", "."),
+                DeduplicateLambdas.class.getName() + ".class"));
+        int actual = 0;
+        for (Method m : classFile.methods) {
+            if (m.getName(classFile.constant_pool).startsWith("lambda$")) {
+                actual++;
+            }
+        }
+        if (expected != actual) {
+            throw new AssertionError("expected = " + expected + ", actual = " + actual);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that -XDskipLambdaFreeMembers, which lets the lambda
+ *          translation skip class members without lambdas, produces
+ *          identical class files.
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ * @build toolbox.ToolBox toolbox.JavacTask
+ * @run main SkipLambdaFreeMembersTest
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import toolbox.JavacTask;
+import toolbox.ToolBox;
+
+public class SkipLambdaFreeMembersTest {
+
+    static final String SOURCE =
+            "import java.io.Serializable;\n" +
+            "import java.util.*;\n" +
+            "import java.util.function.*;\n" +
+            "public class Test<T extends Comparable<T>> implements Comparable<Test<T>> {\n" +
+            "    static final Supplier<String> S = () -> \"s\";\n" +
+            "    final Supplier<String> f = () -> \"f\" + this;\n" +
+            "    T value;\n" +
+            "    static { Runnable r = () -> { }; r.run(); }\n" +
+            "    { Runnable r = () -> { }; r.run(); }\n" +
+            "    Test() { this(() -> 1); }\n" +
+            "    Test(Supplier<Integer> s) { }\n" +
+            "    public int compareTo(Test<T> o) { return value.compareTo(o.value); }\n" +
+            "    int plain(int x) { return x * 2; }\n" +
+            "    Supplier<Object> local(int k) {\n" +
+            "        return () -> { class L { int v() { return k + 1; } } return new L().v(); };\n" +
+            "    }\n" +
+            "    Supplier<Object> anon(int k) {\n" +
+            "        return () -> new Object() { public String toString() { return \"\" + k + plain(k); } };\n" +
+            "    }\n" +
+            "    Runnable nested(List<String> l) {\n" +
+            "        return () -> l.forEach(s -> l.stream().filter(Objects::nonNull).count());\n" +
+            "    }\n" +
+            "    interface SerSupplier extends Supplier<String>, Serializable { }\n" +
+            "    static SerSupplier ser(String s) { return () -> s; }\n" +
+            "    class Inner {\n" +
+            "        Function<Integer, Integer> g = x -> x + plain(x);\n" +
+            "        int none() { return 1; }\n" +
+            "        class Deeper { IntSupplier h = () -> plain(3); }\n" +
+            "    }\n" +
+            "    static class Nested { int none() { return 2; } }\n" +
+            "    enum E { A { int v() { return 1; } }, B; int v() { return 0; } }\n" +
+            "    int sw(E e) { switch (e) { case A: return 1; default: return 2; } }\n" +
+            "    Object mref() { return (Function<Object, String>) Object::toString; }\n" +
+            "}\n";
+
+    public static void main(String... args) throws Exception {
+        new SkipLambdaFreeMembersTest().run();
+    }
+
+    final ToolBox tb = new ToolBox();
+
+    void run() throws Exception {
+        Path src = Paths.get("src");
+        tb.writeJavaFiles(src, SOURCE);
+
+        Path plain = compile(src, Paths.get("plain"));
+        Path skipped = compile(src, Paths.get("skipped"), "-XDskipLambdaFreeMembers");
+
+        List<Path> expected = classFiles(plain);
+        List<Path> actual = classFiles(skipped);
+        if (!expected.equals(actual)) {
+            throw new AssertionError("different class files generated: " + expected + ", " + actual);
+        }
+        for (Path p : expected) {
+            if (!Arrays.equals(Files.readAllBytes(plain.resolve(p)),
+                               Files.readAllBytes(skipped.resolve(p)))) {
+                throw new AssertionError("class files differ with -XDskipLambdaFreeMembers: " + p);
+            }
+        }
+    }
+
+    List<Path> classFiles(Path dir) throws Exception {
+        return Files.list(dir)
+                .map(dir::relativize)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    Path compile(Path src, Path out, String... options) throws Exception {
+        tb.createDirectories(out);
+        new JavacTask(tb)
+                .options(options)
+                .outdir(out)
+                .files(tb.findJavaFiles(src))
+                .run()
+                .writeAll();
+        return out;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that -XDsplitLargeMethods moves large array initializers
+ *          and runs of statements out of methods that would be too large.
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ * @build toolbox.ToolBox toolbox.JavacTask
+ * @run main SplitLargeMethods
+ */
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import toolbox.JavacTask;
+import toolbox.Task;
+import toolbox.ToolBox;
+
+public class SplitLargeMethods {
+
+    static final int TABLE_SIZE = 9000;
+    static final int ENTRIES = 6000;
+    static final int BRANCHES = 5000;
+
+    public static void main(String... args) throws Exception {
+        new SplitLargeMethods().run();
+    }
+
+    final ToolBox tb = new ToolBox();
+
+    void run() throws Exception {
+        Path src = Paths.get("src");
+        Path classes = Paths.get("classes");
+        tb.writeJavaFiles(src, generateSource());
+        tb.createDirectories(classes);
+
+        // control: the methods really are too large
+        new JavacTask(tb)
+                .outdir(classes)
+                .files(tb.findJavaFiles(src))
+                .run(Task.Expect.FAIL);
+
+        new JavacTask(tb)
+                .options("-XDsplitLargeMethods")
+                .outdir(classes)
+                .files(tb.findJavaFiles(src))
+                .run()
+                .writeAll();
+
+        try (URLClassLoader cl = new URLClassLoader(new URL[] { classes.toUri().toURL() })) {
+            Class<?> c = cl.loadClass("Big");
+            Method m = c.getDeclaredMethod("summary", int.class);
+            String actual = (String) m.invoke(null, BRANCHES / 2);
+            String expected = expectedSummary(BRANCHES / 2);
+            if (!expected.equals(actual)) {
+                throw new AssertionError("expected: " + expected + ", found: " + actual);
+            }
+        }
+    }
+
+    String generateSource() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("import java.util.*;\n");
+        sb.append("public class Big {\n");
+        sb.append("    static final int[] TABLE = {");
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            sb.append(i == 0 ? " " : ", ").append(element(i));
+        }
+        sb.append(" };\n");
+        sb.append("    static final Map<String, Integer> MAP;\n");
+        sb.append("    static {\n");
+        sb.append("        Map<String, Integer> m = new HashMap<>();\n");
+        sb.append("        int base = TABLE.length;\n");
+        for (int i = 0; i < ENTRIES; i++) {
+            sb.append("        m.put(\"k").append(i).append("\", ").append(i).append(" + base);\n");
+        }
+        sb.append("        MAP = m;\n");
+        sb.append("    }\n");
+        sb.append("    int acc;\n");
+        sb.append("    void compute(int x) {\n");
+        for (int i = 0; i < BRANCHES; i++) {
+            sb.append("        if (x > ").append(i).append(") acc += x * ").append(i)
+              .append("; else acc--;\n");
+        }
+        sb.append("    }\n");
+        sb.append("    public static String summary(int x) {\n");
+        sb.append("        long sum = 0;\n");
+        sb.append("        for (int v : TABLE) sum += v;\n");
+        sb.append("        Big b = new Big();\n");
+        sb.append("        b.compute(x);\n");
+        sb.append("        return sum + \" \" + MAP.size() + \" \" + MAP.get(\"k")
+          .append(ENTRIES - 1).append("\") + \" \" + b.acc;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    static int element(int i) {
+        return i * 7 % 1000;
+    }
+
+    static String expectedSummary(int x) {
+        long sum = 0;
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            sum += element(i);
+        }
+        int acc = 0;
+        for (int i = 0; i < BRANCHES; i++) {
+            if (x > i) acc += x * i; else acc--;
+        }
+        return sum + " " + ENTRIES + " " + (ENTRIES - 1 + TABLE_SIZE) + " " + acc;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that presized code buffers and deferred stack map
+ *          compression (-XDfastCodeGen) produce identical class files.
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ * @build toolbox.ToolBox toolbox.JavacTask
+ * @run main FastCodeGenTest
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import toolbox.JavacTask;
+import toolbox.ToolBox;
+
+public class FastCodeGenTest {
+
+    static final String SOURCE =
+            "import java.util.*;\n" +
+            "public class Test {\n" +
+            "    final String name;\n" +
+            "    Test(String s, int i) { this(i == 0 ? s : \"x\" + i); }\n" +
+            "    Test(String s) { name = s; }\n" +
+            "    static long loops(int n, List<String> l) {\n" +
+            "        long s = 0;\n" +
+            "        for (int i = 0; i < n; i++) {\n" +
+            "            if ((i & 1) == 0) { double d = i; s += (long) d; }\n" +
+            "            else { String q = \"a\" + i; s += q.length(); }\n" +
+            "            try { s += l.get(i).length(); }\n" +
+            "            catch (RuntimeException e) { s--; }\n" +
+            "            finally { s++; }\n" +
+            "        }\n" +
+            "        switch (n) { case 1: return 3; case 5: s++; default: break; }\n" +
+            "        return n > 3 ? s : -s;\n" +
+            "    }\n" +
+            "    static int big(int x) {\n" +
+            "        int r = 0;\n" +
+            generateBranches(2000) +
+            "        return r;\n" +
+            "    }\n" +
+            "}\n";
+
+    static String generateBranches(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("        if (x > ").append(i).append(") r += x * ")
+              .append(i).append("; else r--;\n");
+        }
+        return sb.toString();
+    }
+
+    public static void main(String... args) throws Exception {
+        new FastCodeGenTest().run();
+    }
+
+    final ToolBox tb = new ToolBox();
+
+    void run() throws Exception {
+        Path src = Paths.get("src");
+        tb.writeJavaFiles(src, SOURCE);
+
+        Path plain = compile(src, Paths.get("plain"));
+        Path fast = compile(src, Paths.get("fast"), "-XDfastCodeGen");
+
+        byte[] expected = Files.readAllBytes(plain.resolve("Test.class"));
+        byte[] actual = Files.readAllBytes(fast.resolve("Test.class"));
+        if (!Arrays.equals(expected, actual)) {
+            throw new AssertionError("class files differ with -XDfastCodeGen");
+        }
+    }
+
+    Path compile(Path src, Path out, String... options) throws Exception {
+        tb.createDirectories(out);
+        new JavacTask(tb)
+                .options(options)
+                .outdir(out)
+                .files(tb.findJavaFiles(src))
+                .run()
+                .writeAll();
+        return out;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that packages compiled by one build are fetched from the
+ *          build cache by a build of the same sources in another workspace
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ *          jdk.httpserver
+ * @build Wrapper toolbox.ToolBox
+ * @run main Wrapper BuildCache
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class BuildCache extends SJavacTester {
+    public static void main(String... args) throws Exception {
+        BuildCache bc = new BuildCache();
+        bc.test(bc.TEST_ROOT.resolve("cache").toAbsolutePath().toString());
+        bc.testCorruptEntries(bc.TEST_ROOT.resolve("cache").toAbsolutePath());
+
+        // The same against a remote cache.
+        Map<String,byte[]> entries = new ConcurrentHashMap<>();
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", exchange -> {
+            String key = exchange.getRequestURI().getPath();
+            if (exchange.getRequestMethod().equals("PUT")) {
+                try (InputStream in = exchange.getRequestBody()) {
+                    entries.put(key, in.readAllBytes());
+                }
+                exchange.sendResponseHeaders(201, -1);
+            } else {
+                byte[] entry = entries.get(key);
+                int status = 200;
+                if (entry == null) {
+                    status = 404;
+                    entry = "No such entry".getBytes();
+                }
+                exchange.sendResponseHeaders(status, entry.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(entry);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            bc.test("http://localhost:" + server.getAddress().getPort() + "/cache/");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    void test(String cache) throws Exception {
+        if (Files.exists(TEST_ROOT))
+            tb.cleanDirectory(TEST_ROOT);
+        initialCompile();
+
+        // The first build fills the cache.
+        Path first = TEST_ROOT.resolve("first");
+        String out = build(GENSRC, first, cache);
+        check(!out.contains("from the build cache"), "fetched from an empty cache: " + out);
+
+        // A build of the same sources elsewhere compiles nothing.
+        Path src2 = TEST_ROOT.resolve("elsewhere/src");
+        copy(GENSRC, src2);
+        Path second = TEST_ROOT.resolve("elsewhere/build");
+        out = build(src2, second, cache);
+        check(out.contains("Fetched 2 of 2 packages from the build cache"),
+              "expected everything to be fetched: " + out);
+        for (String f : List.of("bin/alfa/omega/A.class", "bin/alfa/omega/AA$AAA.class",
+                                "bin/beta/B.class", "headers/beta_B.h")) {
+            check(Arrays.equals(Files.readAllBytes(first.resolve(f)),
+                                Files.readAllBytes(second.resolve(f))),
+                  "different " + f);
+        }
+
+        // The fetched packages are recorded as if they had been compiled,
+        // so an incremental build after a change only compiles what is needed.
+        tb.writeFile(src2.resolve("beta/B.java"),
+                     "package beta; import alfa.omega.A; public class B {"+
+                     "private int b() { return A.DEFINITION + 1; } native void foo(); }");
+        Map<String,Long> previous = collectState(second.resolve("bin"));
+        out = build(src2, second, cache);
+        check(!out.contains("from the build cache"), "unexpected fetch: " + out);
+        verifyNewerFiles(previous, collectState(second.resolve("bin")),
+                         second + "/bin/beta/B.class",
+                         second + "/bin/beta/BINT.class",
+                         second + "/bin/javac_state");
+
+        // A change in a package that others depend on misses for both.
+        tb.writeFile(src2.resolve("alfa/omega/A.java"),
+                     "package alfa.omega; public class A implements AINT { "+
+                     "public final static int DEFINITION = 18; public void aint() { } }");
+        Path third = TEST_ROOT.resolve("third");
+        out = build(src2, third, cache);
+        check(!out.contains("from the build cache"), "fetched stale packages: " + out);
+    }
+
+    void testCorruptEntries(Path cache) throws Exception {
+        // Replace the entries with ones that have a negative or a huge length
+        // where the name of the package is expected, and then with ones that
+        // inflate to far more than the package could hold. They are treated
+        // as misses.
+        testCorruptEntries(cache, "negative", -1, 0, "bad length");
+        testCorruptEntries(cache, "huge", Integer.MAX_VALUE, 0, "bad length");
+        testCorruptEntries(cache, "bomb", 0, 64 << 20, "inflates to more than");
+    }
+
+    void testCorruptEntries(Path cache, String name, int length, int padding,
+                            String expected) throws Exception {
+        int n = 0;
+        for (Path entry : tb.findFiles("", cache)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+                out.writeInt(0x534a5043);
+                out.writeInt(1);
+                out.writeInt(length);
+                out.write(new byte[padding]);
+            }
+            Files.write(entry, bytes.toByteArray());
+            n++;
+        }
+        check(n > 0, "no entries in " + cache);
+
+        Path dir = TEST_ROOT.resolve("corrupt-" + name);
+        String out = build(GENSRC, dir, cache.toString());
+        check(out.contains("Ignoring bad build cache entry"), "expected bad entries: " + out);
+        check(out.contains(expected), "expected " + expected + ": " + out);
+        check(!out.contains("from the build cache"), "fetched bad entries: " + out);
+        check(Files.exists(dir.resolve("bin/beta/B.class")), "B.class not compiled");
+    }
+
+    String build(Path src, Path dir, String cache) throws Exception {
+        Files.createDirectories(dir.resolve("bin"));
+        Files.createDirectories(dir.resolve("headers"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream prevOut = System.out;
+        PrintStream prevErr = System.err;
+        PrintStream capture = new PrintStream(bytes, true);
+        System.setOut(capture);
+        System.setErr(capture);
+        try {
+            compile(src.toString(),
+                    "-d", dir.resolve("bin").toString(),
+                    "--state-dir=" + dir.resolve("bin"),
+                    "-h", dir.resolve("headers").toString(),
+                    "-j", "1",
+                    "--build-cache=" + cache);
+        } finally {
+            System.setOut(prevOut);
+            System.setErr(prevErr);
+        }
+        String out = bytes.toString();
+        System.out.print(out);
+        return out;
+    }
+
+    void copy(Path from, Path to) throws Exception {
+        for (Path p : tb.findFiles(".java", from)) {
+            Path target = to.resolve(from.relativize(p).toString());
+            Files.createDirectories(target.getParent());
+            Files.copy(p, target);
+        }
+    }
+
+    void check(boolean cond, String message) throws Exception {
+        if (!cond)
+            throw new Exception(message);
+    }
+}
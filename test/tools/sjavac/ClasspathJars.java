@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Make sure that only the public APIs of classes in jars that have
+ *          changed, or come after a changed jar on the class path, are
+ *          extracted when checking for classpath API changes
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ * @build Wrapper toolbox.ToolBox toolbox.Assert
+ * @run main Wrapper ClasspathJars
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static toolbox.Assert.check;
+
+public class ClasspathJars extends SjavacBase {
+
+    public static void main(String... args) throws Exception {
+
+        Path root = Paths.get(ClasspathJars.class.getSimpleName() + "Test");
+        ClasspathDependencies.delete(root);
+
+        Path src = root.resolve("src");
+        Path classes = root.resolve("classes");
+        Path jar1 = root.resolve("one.jar");
+        Path jar2 = root.resolve("two.jar");
+        String cp = jar1 + java.io.File.pathSeparator + jar2;
+
+        ClasspathDependencies.headline("Compile against two jars");
+        createJar(root, jar1, "one", "One", "public class One { public void m() {} }");
+        createJar(root, jar2, "two", "Two", "public class Two { public void m() {} }");
+        toolbox.writeFile(src.resolve("pkg/C.java"),
+                          "package pkg;" +
+                          "public class C { one.One o; two.Two t; }");
+        String out = compileWithOutput(src, classes, cp);
+        FileTime modTime1 = Files.getLastModifiedTime(classes.resolve("pkg/C.class"));
+
+        ClasspathDependencies.headline("Change the last jar without changing its api");
+        createJar(root, jar2, "two", "Two", "public class Two { public void m() {} private void p() {} }");
+        out = compileWithOutput(src, classes, cp);
+        check(out.contains("Extracting the public APIs of 1 of 2 classpath dependencies"),
+              "Expected only two.Two to be extracted");
+        FileTime modTime2 = Files.getLastModifiedTime(classes.resolve("pkg/C.class"));
+        check(modTime1.equals(modTime2), "Recompilation erroneously triggered");
+
+        ClasspathDependencies.headline("Change the api of the first jar");
+        createJar(root, jar1, "one", "One", "public class One { public void m(int i) {} }");
+        out = compileWithOutput(src, classes, cp);
+        check(out.contains("Extracting the public APIs of 2 of 2 classpath dependencies"),
+              "Expected both classes to be extracted");
+        FileTime modTime3 = Files.getLastModifiedTime(classes.resolve("pkg/C.class"));
+        check(modTime2.compareTo(modTime3) < 0, "Recompilation not triggered");
+    }
+
+    static void createJar(Path root, Path jar, String pkg, String cls, String code) throws Exception {
+        Path src = root.resolve("src-" + pkg);
+        Path classes = root.resolve("classes-" + pkg);
+        toolbox.writeFile(src.resolve(pkg + "/" + cls + ".java"), "package " + pkg + "; " + code);
+        int rc = compile("-d", classes, "--state-dir=" + classes, src);
+        check(rc == 0, "Compilation failed unexpectedly");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Path f : toolbox.findFiles(".class", classes)) {
+                out.putNextEntry(new JarEntry(classes.relativize(f).toString().replace('\\', '/')));
+                out.write(Files.readAllBytes(f));
+                out.closeEntry();
+            }
+        }
+        // Make sure the next compile sees a new timestamp.
+        Thread.sleep(1000);
+    }
+
+    static String compileWithOutput(Path src, Path classes, String cp) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream prev = System.out;
+        System.setOut(new PrintStream(bytes, true));
+        int rc;
+        try {
+            rc = compile("-d", classes, "--state-dir=" + classes, src, "-cp", cp, "--log=debug");
+        } finally {
+            System.setOut(prev);
+        }
+        String out = bytes.toString();
+        System.out.print(out);
+        check(rc == 0, "Compilation failed unexpectedly");
+        return out;
+    }
+}
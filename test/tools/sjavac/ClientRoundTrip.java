@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Measure the round trip time of sjavac client requests, and verify
+ *          that concurrent requests are multiplexed over a single connection
+ * @modules jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ *          jdk.compiler/com.sun.tools.sjavac.client
+ *          jdk.compiler/com.sun.tools.sjavac.options
+ *          jdk.compiler/com.sun.tools.sjavac.server
+ * @build Wrapper
+ * @run main Wrapper ClientRoundTrip
+ */
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.Log;
+import com.sun.tools.sjavac.client.SjavacClient;
+import com.sun.tools.sjavac.options.Options;
+import com.sun.tools.sjavac.server.PortFile;
+import com.sun.tools.sjavac.server.RequestHandler;
+import com.sun.tools.sjavac.server.Sjavac;
+import com.sun.tools.sjavac.server.SjavacServer;
+
+public class ClientRoundTrip {
+
+    static final int WARMUP = 200;
+    static final int ROUND_TRIPS = 1000;
+    static final int THREADS = 8;
+
+    public static void main(String... args) throws Exception {
+        new ClientRoundTrip().run();
+    }
+
+    final AtomicInteger connections = new AtomicInteger();
+
+    void run() throws Exception {
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(null), 0));
+        String portFileName = Paths.get("portfile").toAbsolutePath().toString();
+        PortFile portFile = SjavacServer.getPortFile(portFileName);
+        portFile.lock();
+        portFile.getValues();
+        portFile.setValues(serverSocket.getLocalPort(), 4711);
+        portFile.unlock();
+
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    new RequestHandler(socket, new EchoSjavac()).start();
+                }
+            } catch (Exception e) {
+                // Server socket closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        SjavacClient client = new SjavacClient(Options.parseArgs(
+                "--server:portfile=" + portFileName + ",sjavac=none", "-d", "bin"));
+
+        // Sequential round trips
+        for (int i = 0; i < WARMUP; i++) {
+            roundTrip(client, "warmup" + i);
+        }
+        long[] nanos = new long[ROUND_TRIPS];
+        for (int i = 0; i < ROUND_TRIPS; i++) {
+            long start = System.nanoTime();
+            roundTrip(client, "seq" + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        report("sequential", nanos);
+
+        // Concurrent round trips, over the same connection
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            String name = "thread" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < ROUND_TRIPS / THREADS; i++) {
+                        roundTrip(client, name + "-" + i);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("concurrent: %d requests from %d threads in %.1f ms%n",
+                          ROUND_TRIPS, THREADS, elapsed / 1e6);
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Concurrent requests failed", failures.get(0));
+        }
+        if (connections.get() != 1) {
+            throw new AssertionError("Expected a single connection, found " + connections.get());
+        }
+
+        // Clients speaking the line based protocol are still served
+        try (Socket socket = new Socket(InetAddress.getByName(null), serverSocket.getLocalPort())) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out.println("1");
+            out.println("legacy");
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+            }
+            if (!lines.equals(Arrays.asList("INFO:echo legacy", "RC:OK"))) {
+                throw new AssertionError("Unexpected response: " + lines);
+            }
+        }
+
+        serverSocket.close();
+    }
+
+    void roundTrip(SjavacClient client, String arg) {
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        Log.setLogForCurrentThread(new Log(out, err));
+        Result rc = client.compile(new String[] { arg });
+        Log.setLogForCurrentThread(null);
+        if (rc != Result.OK) {
+            throw new AssertionError("Unexpected result " + rc + ": " + err);
+        }
+        if (!out.toString().trim().equals("echo " + arg)) {
+            throw new AssertionError("Unexpected output for " + arg + ": " + out);
+        }
+    }
+
+    void report(String what, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%s: median %.1f us, 90%% %.1f us, 99%% %.1f us%n", what,
+                          sorted[sorted.length / 2] / 1e3,
+                          sorted[sorted.length * 90 / 100] / 1e3,
+                          sorted[sorted.length * 99 / 100] / 1e3);
+    }
+
+    static class EchoSjavac implements Sjavac {
+        @Override
+        public Result compile(String[] args) {
+            Log.info("echo " + args[args.length - 1]);
+            return Result.OK;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
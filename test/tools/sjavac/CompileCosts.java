@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that the time and heap needed to compile each source is
+ *          recorded in the javac_state, and kept when it is not recompiled,
+ *          and that packages are planned into the chunks of their dependencies
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac:open
+ * @build Wrapper toolbox.ToolBox
+ * @run main Wrapper CompileCosts
+ */
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.*;
+import java.nio.file.*;
+
+import com.sun.tools.sjavac.CompileChunk;
+import com.sun.tools.sjavac.CompileJavaPackages;
+
+public class CompileCosts extends SJavacTester {
+    public static void main(String... args) throws Exception {
+        CompileCosts cc = new CompileCosts();
+        cc.test();
+        cc.testOverTargetChunk();
+    }
+
+    void test() throws Exception {
+        Files.createDirectories(GENSRC);
+        Files.createDirectories(BIN);
+
+        for (int i = 0; i < 6; i++) {
+            tb.writeFile(GENSRC.resolve("p" + i + "/A.java"),
+                         "package p" + i + "; public class A extends " +
+                         (i == 0 ? "Object" : "p" + (i - 1) + ".A") + " { }");
+            tb.writeFile(GENSRC.resolve("p" + i + "/B.java"),
+                         "package p" + i + "; class B { int b() { return " + i + "; } }");
+        }
+        compileWithTextState();
+        Map<String,String> costs = readCosts();
+        if (costs.size() != 12) {
+            throw new Exception("Expected compile costs for 12 sources, found " + costs);
+        }
+
+        // Only p5 is recompiled. The costs of the other sources are kept.
+        tb.writeFile(GENSRC.resolve("p5/B.java"),
+                     "package p5; class B { int b() { return 55; } }");
+        compileWithTextState();
+        Map<String,String> newCosts = readCosts();
+        if (newCosts.size() != 12) {
+            throw new Exception("Expected compile costs for 12 sources, found " + newCosts);
+        }
+        for (Map.Entry<String,String> e : costs.entrySet()) {
+            if (!e.getKey().contains("p5") && !e.getValue().equals(newCosts.get(e.getKey()))) {
+                throw new Exception("The compile cost of " + e.getKey() + " changed");
+            }
+        }
+    }
+
+    // A package is placed in the chunk holding what it depends on, even when
+    // that chunk has already passed its share of the time.
+    void testOverTargetChunk() throws Exception {
+        Map<String,Set<URI>> pkgSrcs = new TreeMap<>();
+        Map<String,Long> pkgMillis = new HashMap<>();
+        Map<String,Long> pkgKiB = new HashMap<>();
+        // :big alone takes more than half of the time.
+        for (String pkg : List.of(":big", ":other", ":user")) {
+            pkgSrcs.put(pkg, Set.of(URI.create("file:///src/" + pkg.substring(1) + "/A.java")));
+            pkgKiB.put(pkg, 1000L);
+        }
+        pkgMillis.put(":big", 1000L);
+        pkgMillis.put(":other", 100L);
+        pkgMillis.put(":user", 10L);
+        Map<String,Set<String>> dependents = Map.of(":big", Set.of(":user"));
+
+        Method m = CompileJavaPackages.class.getDeclaredMethod("createCompileChunks",
+                Map.class, Map.class, Map.class, Map.class, int.class, long.class);
+        m.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        List<CompileChunk> chunks = (List<CompileChunk>) m.invoke(new CompileJavaPackages(),
+                pkgSrcs, dependents, pkgMillis, pkgKiB, 2, 1000000L);
+        if (chunks.size() != 2) {
+            throw new Exception("Expected 2 chunks, found " + chunks.size());
+        }
+        for (CompileChunk c : chunks) {
+            if (c.packages.contains(":user") && !c.packages.contains(":big")) {
+                throw new Exception(":user planned away from :big: " + c.packages);
+            }
+        }
+    }
+
+    void compileWithTextState() throws Exception {
+        compile(GENSRC.toString(),
+                "-d", BIN.toString(),
+                "--state-dir=" + BIN,
+                "--state-format=text",
+                "-j", "2",
+                "--log=debug");
+    }
+
+    // Source -> compile cost line
+    Map<String,String> readCosts() throws Exception {
+        Map<String,String> costs = new HashMap<>();
+        String source = null;
+        for (String l : Files.readAllLines(BIN.resolve("javac_state"))) {
+            if (l.startsWith("S ")) {
+                source = l.split(" ")[2];
+            } else if (l.startsWith("W ") && source != null) {
+                if (!l.matches("W \\d+ \\d+")) {
+                    throw new Exception("Bad compile cost: " + l);
+                }
+                costs.put(source, l);
+            }
+        }
+        return costs;
+    }
+}
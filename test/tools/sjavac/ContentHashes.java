@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that sources and artifacts whose timestamps change, but
+ *          whose contents do not, are not recompiled
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ * @build Wrapper toolbox.ToolBox
+ * @run main Wrapper ContentHashes
+ */
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+public class ContentHashes extends SJavacTester {
+    public static void main(String... args) throws Exception {
+        ContentHashes ch = new ContentHashes();
+        ch.test("binary");
+        ch.test("text");
+    }
+
+    void test(String format) throws Exception {
+        Files.createDirectories(GENSRC);
+        Files.createDirectories(BIN);
+        Files.createDirectories(HEADERS);
+        tb.cleanDirectory(BIN);
+        tb.cleanDirectory(HEADERS);
+
+        initialCompile();
+        compileWithFormat(format);
+
+        // As after a checkout and a restore of the build directories,
+        // every source and artifact gets a new timestamp.
+        touchAll(GENSRC);
+        touchAll(BIN);
+        touchAll(HEADERS);
+        Thread.sleep(1000);
+        Map<String,Long> previous_bin_state = collectState(BIN);
+        Map<String,Long> previous_headers_state = collectState(HEADERS);
+        compileWithFormat(format);
+        // Nothing is recompiled, but the new timestamps are recorded.
+        verifyNewerFiles(previous_bin_state, collectState(BIN),
+                         BIN + "/javac_state");
+        verifyEqual(previous_headers_state, collectState(HEADERS));
+
+        // So the next build does not even need to hash anything.
+        previous_bin_state = collectState(BIN);
+        compileWithFormat(format);
+        verifyEqual(previous_bin_state, collectState(BIN));
+
+        // A real change is still noticed.
+        tb.writeFile(GENSRC.resolve("beta/B.java"),
+                     "package beta; import alfa.omega.A; public class B {"+
+                     "private int b() { return A.DEFINITION + 1; } native void foo(); }");
+        compileWithFormat(format);
+        verifyNewerFiles(previous_bin_state, collectState(BIN),
+                         BIN + "/beta/B.class",
+                         BIN + "/beta/BINT.class",
+                         BIN + "/javac_state");
+
+        // An artifact that has been changed by someone else is rebuilt.
+        Path a = BIN.resolve("alfa/omega/A.class");
+        byte[] original = Files.readAllBytes(a);
+        byte[] tampered = original.clone();
+        tampered[tampered.length - 1] ^= 1;
+        Files.write(a, tampered);
+        compileWithFormat(format);
+        if (!Arrays.equals(original, Files.readAllBytes(a))) {
+            throw new Exception("Expected " + a + " to be rebuilt");
+        }
+    }
+
+    void compileWithFormat(String format) throws Exception {
+        compile(GENSRC.toString(),
+                "-d", BIN.toString(),
+                "--state-dir=" + BIN,
+                "-h", HEADERS.toString(),
+                "-j", "1",
+                "--state-format=" + format,
+                "--log=debug");
+    }
+
+    void touchAll(Path dir) throws IOException {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(p) && !p.getFileName().toString().equals("javac_state")) {
+                    Files.setLastModifiedTime(p, now);
+                }
+            }
+        }
+    }
+}
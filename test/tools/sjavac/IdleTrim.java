@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Tests that an idle sjavac server trims its caches before it
+ *          shuts down, and again after each new period of idleness.
+ * @modules jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac.comp
+ *          jdk.compiler/com.sun.tools.sjavac.server
+ * @build Wrapper
+ * @run main Wrapper IdleTrim
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.comp.SjavacImpl;
+import com.sun.tools.sjavac.server.IdleResetSjavac;
+import com.sun.tools.sjavac.server.Sjavac;
+
+public class IdleTrim {
+
+    final static long TRIM_MS = 1000;
+    final static long TIMEOUT_MS = 4000;
+
+    public static void main(String[] args) throws InterruptedException {
+        AtomicInteger trims = new AtomicInteger();
+        AtomicLong shutdownTimestamp = new AtomicLong(-1);
+
+        Sjavac service = new IdleResetSjavac(
+                new Sjavac() {
+                    public Result compile(String[] args) {
+                        return Result.OK;
+                    }
+                    public void shutdown() {
+                    }
+                    public void trimCaches() {
+                        trims.incrementAndGet();
+                    }
+                },
+                msg -> shutdownTimestamp.set(System.currentTimeMillis()),
+                TIMEOUT_MS,
+                TRIM_MS);
+
+        service.compile(new String[0]);
+        check(trims.get() == 0, "trimmed while busy");
+        Thread.sleep(TRIM_MS + 500);
+        check(trims.get() == 1, "expected one trim, got " + trims.get());
+        check(shutdownTimestamp.get() == -1, "shut down when only trimming was due");
+
+        // A new call starts a new period of idleness.
+        service.compile(new String[0]);
+        Thread.sleep(TRIM_MS / 2);
+        check(trims.get() == 1, "trimmed too early");
+        Thread.sleep(TRIM_MS);
+        check(trims.get() == 2, "expected another trim, got " + trims.get());
+
+        Thread.sleep(TIMEOUT_MS);
+        check(shutdownTimestamp.get() != -1, "never shut down");
+        check(trims.get() == 2, "trimmed more than once per period of idleness");
+        service.shutdown();
+
+        // The real caches can be trimmed, before and after having been used.
+        SjavacImpl impl = new SjavacImpl();
+        impl.trimCaches();
+        impl.trimCaches();
+    }
+
+    static void check(boolean cond, String msg) {
+        if (!cond)
+            throw new AssertionError(msg);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that --incremental=class only recompiles the modified sources
+ *          and the sources depending on classes whose public api changed
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ * @build Wrapper toolbox.ToolBox
+ * @run main Wrapper IncCompileClassLevel
+ */
+
+import java.util.*;
+import java.nio.file.*;
+
+public class IncCompileClassLevel extends SJavacTester {
+    public static void main(String... args) throws Exception {
+        IncCompileClassLevel cl = new IncCompileClassLevel();
+        cl.test();
+    }
+
+    void test() throws Exception {
+        Files.createDirectories(GENSRC);
+        Files.createDirectories(BIN);
+
+        tb.writeFile(GENSRC.resolve("alfa/A.java"),
+                     "package alfa; public class A { public int a() { return 1; } }");
+        tb.writeFile(GENSRC.resolve("alfa/B.java"),
+                     "package alfa; public class B extends A { " +
+                     "Runnable r = new Runnable() { public void run() { } }; }");
+        tb.writeFile(GENSRC.resolve("alfa/C.java"),
+                     "package alfa; public class C { }");
+        tb.writeFile(GENSRC.resolve("beta/D.java"),
+                     "package beta; public class D extends alfa.A { }");
+        tb.writeFile(GENSRC.resolve("beta/E.java"),
+                     "package beta; public class E { }");
+        compileClassLevel();
+
+        // A change that does not affect the public api only recompiles A.
+        previous_bin_state = collectState(BIN);
+        tb.writeFile(GENSRC.resolve("alfa/A.java"),
+                     "package alfa; public class A { public int a() { return 2; } }");
+        compileClassLevel();
+        Map<String,Long> new_bin_state = collectState(BIN);
+        verifyNewerFiles(previous_bin_state, new_bin_state,
+                         BIN + "/alfa/A.class",
+                         BIN + "/javac_state");
+
+        // A change of the public api of A recompiles the subclasses of A,
+        // but neither C, nor E.
+        previous_bin_state = new_bin_state;
+        tb.writeFile(GENSRC.resolve("alfa/A.java"),
+                     "package alfa; public class A { public int a() { return 2; } " +
+                     "public void b() { } }");
+        compileClassLevel();
+        new_bin_state = collectState(BIN);
+        verifyNewerFiles(previous_bin_state, new_bin_state,
+                         BIN + "/alfa/A.class",
+                         BIN + "/alfa/B.class",
+                         BIN + "/alfa/B$1.class",
+                         BIN + "/beta/D.class",
+                         BIN + "/javac_state");
+
+        // Dropping the anonymous class of B removes its class file.
+        previous_bin_state = new_bin_state;
+        tb.writeFile(GENSRC.resolve("alfa/B.java"),
+                     "package alfa; public class B extends A { }");
+        compileClassLevel();
+        new_bin_state = collectState(BIN);
+        verifyThatFilesHaveBeenRemoved(previous_bin_state, new_bin_state,
+                                       BIN + "/alfa/B$1.class");
+    }
+
+    void compileClassLevel() throws Exception {
+        compile(GENSRC.toString(),
+                "-d", BIN.toString(),
+                "--state-dir=" + BIN,
+                "--incremental=class",
+                "-j", "1",
+                "--log=debug");
+    }
+}
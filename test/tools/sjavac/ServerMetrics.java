@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that the sjavac server reports its metrics on request,
+ *          and writes them to the metrics file
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ *          jdk.compiler/com.sun.tools.sjavac.client
+ *          jdk.compiler/com.sun.tools.sjavac.options
+ *          jdk.compiler/com.sun.tools.sjavac.server
+ * @build Wrapper toolbox.ToolBox
+ * @run main Wrapper ServerMetrics
+ */
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.sun.tools.javac.main.Main.Result;
+import com.sun.tools.sjavac.Log;
+import com.sun.tools.sjavac.client.SjavacClient;
+import com.sun.tools.sjavac.options.Options;
+import com.sun.tools.sjavac.server.SjavacServer;
+
+import toolbox.ToolBox;
+
+public class ServerMetrics {
+
+    public static void main(String... args) throws Exception {
+        new ServerMetrics().run();
+    }
+
+    final ToolBox tb = new ToolBox();
+
+    void run() throws Exception {
+        Path src = Paths.get("src");
+        tb.writeJavaFiles(src,
+                "package p; public class A { q.B b; }",
+                "package q; public class B { }");
+        String portFile = Paths.get("portfile").toAbsolutePath().toString();
+        Path metricsFile = Paths.get("metrics.json").toAbsolutePath();
+
+        SjavacServer server = new SjavacServer(portFile, 2, 120, 30,
+                                               metricsFile.toString(), 1);
+        Thread serverThread = new Thread(() -> {
+            Log.setLogForCurrentThread(new Log(new StringWriter(), new StringWriter()));
+            try {
+                server.startServer();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+
+        Log.setLogForCurrentThread(new Log(new StringWriter(), new StringWriter()));
+        String serverConf = "--server:portfile=" + portFile + ",sjavac=none";
+        SjavacClient client = new SjavacClient(Options.parseArgs(serverConf, "-d", "bin"));
+        // Wait for the server to publish its port.
+        String json = null;
+        for (int i = 0; i < 50 && json == null; i++) {
+            Thread.sleep(100);
+            json = client.serverMetrics();
+        }
+        check(json != null, "no metrics from server");
+        check(json.contains("\"completed\": 0"), "unexpected metrics before compiling:\n" + json);
+
+        Result rc = client.compile(new String[] {
+                "-d", "bin", "--state-dir=state", "-j", "1", src.toString() });
+        check(rc == Result.OK, "compilation failed: " + rc);
+
+        json = client.serverMetrics();
+        System.out.println(json);
+        check(json.contains("\"requests\": {\"queued\": 0, \"active\": 0, \"completed\": 1"),
+              "compile request not counted");
+        check(json.contains("\"sources\": 2"), "compile chunk not reported");
+        check(json.contains("\"result\": \"OK\""), "compile chunk result not reported");
+        check(json.contains("\"maxHeapKiB\": "), "heap not reported");
+
+        // Strings are escaped in the JSON.
+        com.sun.tools.sjavac.server.ServerMetrics.chunkStarted();
+        com.sun.tools.sjavac.server.ServerMetrics.chunkFinished("p\"q\\r", 1, 0, 0, Result.OK);
+        json = client.serverMetrics();
+        check(json.contains("\"id\": \"p\\\"q\\\\r\""), "chunk id not escaped:\n" + json);
+
+        // The metrics file is written periodically, and when the server exits.
+        server.shutdown("test done");
+        serverThread.join();
+        String written = new String(Files.readAllBytes(metricsFile), "UTF-8");
+        check(written.contains("\"sources\": 2"), "metrics file not written:\n" + written);
+    }
+
+    void check(boolean cond, String message) {
+        if (!cond)
+            throw new AssertionError(message);
+    }
+}
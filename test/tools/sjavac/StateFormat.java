@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/*
+ * @test
+ * @summary Verify that the javac_state can be saved both in the binary
+ *          and in the text format, and that switching format is incremental
+ * @library /tools/lib
+ * @modules jdk.compiler/com.sun.tools.javac.api
+ *          jdk.compiler/com.sun.tools.javac.main
+ *          jdk.compiler/com.sun.tools.sjavac
+ * @build Wrapper toolbox.ToolBox
+ * @run main Wrapper StateFormat
+ */
+
+import java.util.*;
+import java.nio.file.*;
+
+public class StateFormat extends SJavacTester {
+    public static void main(String... args) throws Exception {
+        StateFormat sf = new StateFormat();
+        sf.test();
+    }
+
+    void test() throws Exception {
+        Files.createDirectories(GENSRC);
+        Files.createDirectories(BIN);
+        Files.createDirectories(HEADERS);
+
+        // The binary format is the default.
+        initialCompile();
+        verifyFormat(false);
+        Map<String,Long> previous_bin_state = collectState(BIN);
+        compileWithFormat(null);
+        verifyEqual(previous_bin_state, collectState(BIN));
+
+        // Switching format rewrites the javac_state, but recompiles nothing.
+        compileWithFormat("text");
+        verifyFormat(true);
+        verifyNewerFiles(previous_bin_state, collectState(BIN),
+                         BIN + "/javac_state");
+
+        // The text format is read back correctly.
+        previous_bin_state = collectState(BIN);
+        compileWithFormat("text");
+        verifyEqual(previous_bin_state, collectState(BIN));
+
+        // A change in a source read from the text format.
+        tb.writeFile(GENSRC.resolve("beta/B.java"),
+                     "package beta; import alfa.omega.A; public class B {"+
+                     "private int b() { return A.DEFINITION + 1; } native void foo(); }");
+        compileWithFormat("binary");
+        verifyFormat(false);
+        verifyNewerFiles(previous_bin_state, collectState(BIN),
+                         BIN + "/beta/B.class",
+                         BIN + "/beta/BINT.class",
+                         BIN + "/javac_state");
+
+        // A change in a source read from the binary format.
+        previous_bin_state = collectState(BIN);
+        tb.writeFile(GENSRC.resolve("beta/B.java"),
+                     "package beta; import alfa.omega.A; public class B {"+
+                     "private int b() { return A.DEFINITION + 2; } native void foo(); }");
+        compileWithFormat(null);
+        verifyNewerFiles(previous_bin_state, collectState(BIN),
+                         BIN + "/beta/B.class",
+                         BIN + "/beta/BINT.class",
+                         BIN + "/javac_state");
+    }
+
+    void compileWithFormat(String format) throws Exception {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                GENSRC.toString(),
+                "-d", BIN.toString(),
+                "--state-dir=" + BIN,
+                "-h", HEADERS.toString(),
+                "-j", "1",
+                "--log=debug"));
+        if (format != null) {
+            args.add("--state-format=" + format);
+        }
+        compile(args.toArray(new String[0]));
+    }
+
+    void verifyFormat(boolean text) throws Exception {
+        byte[] bytes = Files.readAllBytes(BIN.resolve("javac_state"));
+        boolean isText = bytes.length > 0 && bytes[0] == '#';
+        if (isText != text) {
+            throw new Exception("Expected javac_state to be in "
+                                + (text ? "text" : "binary") + " format");
+        }
+    }
+}